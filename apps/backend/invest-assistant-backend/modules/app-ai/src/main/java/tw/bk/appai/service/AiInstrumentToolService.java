@@ -13,9 +13,7 @@ import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import tw.bk.appai.model.InstrumentCandidate;
 import tw.bk.appstocks.service.InstrumentService;
-import tw.bk.apppersistence.entity.ExchangeEntity;
-import tw.bk.apppersistence.entity.InstrumentEntity;
-import tw.bk.apppersistence.entity.MarketEntity;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
 
 @Service
 @RequiredArgsConstructor
@@ -61,7 +59,7 @@ public class AiInstrumentToolService {
         List<String> tokens = extractTokens(input);
         for (String token : tokens) {
             if (isSymbolKey(token)) {
-                InstrumentEntity exact = instrumentService.findBySymbolKey(token).orElse(null);
+                InstrumentCatalogRow exact = instrumentService.findCatalogRowBySymbolKey(token).orElse(null);
                 if (exact != null) {
                     List<InstrumentCandidate> results = List.of(toCandidate(exact));
                     if (cache != null) {
@@ -72,7 +70,7 @@ public class AiInstrumentToolService {
                 continue;
             }
 
-            List<InstrumentEntity> matches = instrumentService.searchInstruments(token, limit);
+            List<InstrumentCatalogRow> matches = instrumentService.searchCatalogRows(token, limit);
             if (!matches.isEmpty()) {
                 List<InstrumentCandidate> results = matches.stream()
                         .map(this::toCandidate)
@@ -178,20 +176,18 @@ public class AiInstrumentToolService {
         return SYMBOL_KEY_PATTERN.matcher(token.trim()).matches();
     }
 
-    private InstrumentCandidate toCandidate(InstrumentEntity entity) {
-        if (entity == null) {
+    private InstrumentCandidate toCandidate(InstrumentCatalogRow row) {
+        if (row == null) {
             return null;
         }
-        String name = firstNonBlank(entity.getNameZh(), entity.getNameEn());
-        MarketEntity market = entity.getMarket();
-        ExchangeEntity exchange = entity.getExchange();
+        String name = firstNonBlank(row.nameZh(), row.nameEn());
         return new InstrumentCandidate(
-                entity.getSymbolKey(),
-                entity.getTicker(),
+                row.symbolKey(),
+                row.ticker(),
                 name,
-                market != null ? market.getCode() : null,
-                exchange != null ? exchange.getCode() : null,
-                entity.getAssetType());
+                row.marketCode(),
+                row.exchangeCode(),
+                row.assetType());
     }
 
     private String firstNonBlank(String primary, String fallback) {
@@ -16,9 +16,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import tw.bk.appai.model.InstrumentCandidate;
-import tw.bk.apppersistence.entity.ExchangeEntity;
-import tw.bk.apppersistence.entity.InstrumentEntity;
-import tw.bk.apppersistence.entity.MarketEntity;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
 import tw.bk.appstocks.service.InstrumentService;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,8 +35,8 @@ class AiInstrumentToolServiceTest {
 
     @Test
     void searchCandidates_shouldResolveSymbolKeyFromUrlParameter() {
-        InstrumentEntity entity = instrument("TW:XTAI:2330", "2330", "台積電");
-        when(instrumentService.findBySymbolKey("TW:XTAI:2330")).thenReturn(java.util.Optional.of(entity));
+        InstrumentCatalogRow entity = instrument("TW:XTAI:2330", "2330", "台積電");
+        when(instrumentService.findCatalogRowBySymbolKey("TW:XTAI:2330")).thenReturn(java.util.Optional.of(entity));
 
         List<InstrumentCandidate> candidates = service.searchCandidates(
                 "http://localhost:8080/api/stocks/quote?symbolKey=TW:XTAI:2330",
@@ -46,36 +44,25 @@ class AiInstrumentToolServiceTest {
 
         assertFalse(candidates.isEmpty());
         assertEquals("TW:XTAI:2330", candidates.get(0).symbolKey());
-        verify(instrumentService).findBySymbolKey("TW:XTAI:2330");
-        verify(instrumentService, never()).searchInstruments(anyString(), anyInt());
+        verify(instrumentService).findCatalogRowBySymbolKey("TW:XTAI:2330");
+        verify(instrumentService, never()).searchCatalogRows(anyString(), anyInt());
     }
 
     @Test
     void searchCandidates_shouldExtractHanTokenAfterStopwordRemoval() {
-        InstrumentEntity entity = instrument("TW:XTAI:2330", "2330", "台積電");
-        when(instrumentService.searchInstruments("台積電", 10)).thenReturn(List.of(entity));
+        InstrumentCatalogRow entity = instrument("TW:XTAI:2330", "2330", "台積電");
+        when(instrumentService.searchCatalogRows("台積電", 10)).thenReturn(List.of(entity));
 
         List<InstrumentCandidate> candidates = service.searchCandidates("台積電現在多少", 10);
 
         assertFalse(candidates.isEmpty());
         assertEquals("TW:XTAI:2330", candidates.get(0).symbolKey());
-        verify(instrumentService).searchInstruments("台積電", 10);
-        verify(instrumentService, never()).searchInstruments("台積電現在多少", 10);
+        verify(instrumentService).searchCatalogRows("台積電", 10);
+        verify(instrumentService, never()).searchCatalogRows("台積電現在多少", 10);
     }
 
-    private InstrumentEntity instrument(String symbolKey, String ticker, String nameZh) {
-        MarketEntity market = new MarketEntity();
-        market.setCode("TW");
-        ExchangeEntity exchange = new ExchangeEntity();
-        exchange.setCode("XTAI");
-
-        InstrumentEntity entity = new InstrumentEntity();
-        entity.setSymbolKey(symbolKey);
-        entity.setTicker(ticker);
-        entity.setNameZh(nameZh);
-        entity.setAssetType("STOCK");
-        entity.setMarket(market);
-        entity.setExchange(exchange);
-        return entity;
+    private InstrumentCatalogRow instrument(String symbolKey, String ticker, String nameZh) {
+        return new InstrumentCatalogRow(1L, "TW", "XTAI", "XTAI", ticker, symbolKey, nameZh, null, "TWD", "STOCK",
+                "ACTIVE");
     }
 }
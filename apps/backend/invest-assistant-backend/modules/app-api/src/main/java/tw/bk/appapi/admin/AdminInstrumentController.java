@@ -25,10 +25,7 @@ public class AdminInstrumentController {
     public Result<InstrumentSyncResponse> sync(HttpServletRequest request) {
         adminKeyGuard.require(request);
         InstrumentSyncService.SyncResult result = instrumentSyncService.syncTwEquityInstruments();
-        return Result.ok(InstrumentSyncResponse.builder()
-                .added(result.added())
-                .skipped(result.skipped())
-                .build());
+        return Result.ok(toResponse(result));
     }
 
     @PostMapping("/sync-warrants")
@@ -36,9 +33,17 @@ public class AdminInstrumentController {
     public Result<InstrumentSyncResponse> syncWarrants(HttpServletRequest request) {
         adminKeyGuard.require(request);
         InstrumentSyncService.SyncResult result = instrumentSyncService.syncTwWarrantInstruments();
-        return Result.ok(InstrumentSyncResponse.builder()
+        return Result.ok(toResponse(result));
+    }
+
+    private InstrumentSyncResponse toResponse(InstrumentSyncService.SyncResult result) {
+        return InstrumentSyncResponse.builder()
+                .scanned(result.scanned())
                 .added(result.added())
+                .updated(result.updated())
                 .skipped(result.skipped())
-                .build());
+                .elapsedMs(result.elapsedMs())
+                .rowsPerSecond(result.rowsPerSecond())
+                .build();
     }
 }
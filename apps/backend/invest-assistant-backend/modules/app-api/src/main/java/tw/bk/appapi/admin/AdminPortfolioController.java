@@ -87,6 +87,10 @@ public class AdminPortfolioController {
         }
         try {
             LocalDate from = asOfDate.minusDays(HISTORICAL_LOOKBACK_DAYS);
+            Optional<BigDecimal> stored = stockQuoteService.findStoredClose(symbolKey, from, asOfDate);
+            if (stored.isPresent()) {
+                return stored;
+            }
             List<Candle> candles = stockQuoteService.getCandles(symbolKey, "1d", from, asOfDate);
             return candles.stream()
                     .filter(candle -> candle.getTimestamp() != null)
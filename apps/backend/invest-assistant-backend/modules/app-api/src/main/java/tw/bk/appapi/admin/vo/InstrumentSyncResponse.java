@@ -10,6 +10,10 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class InstrumentSyncResponse {
+    private int scanned;
     private int added;
+    private int updated;
     private int skipped;
+    private long elapsedMs;
+    private long rowsPerSecond;
 }
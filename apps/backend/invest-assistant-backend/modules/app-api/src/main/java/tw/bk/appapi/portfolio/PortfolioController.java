@@ -5,8 +5,12 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.Set;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -154,13 +158,32 @@ public class PortfolioController {
     }
 
     private QuoteProvider createQuoteProvider() {
-        return symbolKey -> {
-            try {
-                var quote = stockQuoteService.getQuote(symbolKey);
-                return java.util.Optional.ofNullable(quote.getPrice());
-            } catch (Exception e) {
-                log.warn("無法取得報價: {}, 錯誤: {}", symbolKey, e.getMessage());
-                return java.util.Optional.empty();
+        return new QuoteProvider() {
+            @Override
+            public Optional<BigDecimal> getCurrentPrice(String symbolKey) {
+                try {
+                    var quote = stockQuoteService.getQuote(symbolKey);
+                    return Optional.ofNullable(quote.getPrice());
+                } catch (Exception e) {
+                    log.warn("無法取得報價: {}, 錯誤: {}", symbolKey, e.getMessage());
+                    return Optional.empty();
+                }
+            }
+
+            @Override
+            public Map<String, BigDecimal> getCurrentPrices(Collection<String> symbolKeys) {
+                try {
+                    Map<String, BigDecimal> prices = new HashMap<>();
+                    stockQuoteService.getQuotes(symbolKeys).forEach((symbolKey, quote) -> {
+                        if (quote.getPrice() != null) {
+                            prices.put(symbolKey, quote.getPrice());
+                        }
+                    });
+                    return prices;
+                } catch (Exception e) {
+                    log.warn("無法批次取得報價: {}, 錯誤: {}", symbolKeys, e.getMessage());
+                    return Map.of();
+                }
             }
         };
     }
@@ -12,13 +12,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.MarketCode;
 import tw.bk.appcommon.time.ClockProvider;
 import tw.bk.appportfolio.model.PortfolioValuationSnapshotResult;
 import tw.bk.appportfolio.service.PortfolioService;
 import tw.bk.appportfolio.service.QuoteProvider;
 import tw.bk.appstocks.model.Candle;
 import tw.bk.appstocks.model.Quote;
+import tw.bk.appstocks.service.MarketCalendar;
 import tw.bk.appstocks.service.StockQuoteService;
+import tw.bk.appstocks.service.VendorCallPriority;
 
 @Slf4j
 @Service
@@ -29,6 +32,7 @@ public class PortfolioValuationScheduler {
     private final PortfolioService portfolioService;
     private final StockQuoteService stockQuoteService;
     private final ClockProvider clockProvider;
+    private final MarketCalendar marketCalendar;
 
     @Value("${app.portfolio.valuation.enabled:false}")
     private boolean enabled;
@@ -36,6 +40,9 @@ public class PortfolioValuationScheduler {
     @Value("${app.portfolio.valuation.zone:Asia/Taipei}")
     private String valuationZone;
 
+    @Value("${app.portfolio.valuation.market:TW}")
+    private String valuationMarket;
+
     @Scheduled(cron = "${app.portfolio.valuation.cron:0 40 13 * * MON-FRI}",
             zone = "${app.portfolio.valuation.zone:Asia/Taipei}")
     public void runScheduled() {
@@ -44,9 +51,14 @@ public class PortfolioValuationScheduler {
         }
 
         LocalDate asOfDate = resolveAsOfDate();
-        PortfolioValuationSnapshotResult result = portfolioService.snapshotValuations(
-                asOfDate,
-                createQuoteProvider());
+        if (!isTradingDay(asOfDate)) {
+            log.info("Portfolio valuation snapshot skipped, not a trading day: asOfDate={}, market={}",
+                    asOfDate, valuationMarket);
+            return;
+        }
+        PortfolioValuationSnapshotResult result = VendorCallPriority.callAs(
+                VendorCallPriority.BATCH,
+                () -> portfolioService.snapshotValuations(asOfDate, createQuoteProvider()));
 
         log.info(
                 "Portfolio valuation snapshot finished: asOfDate={}, total={}, succeeded={}, failed={}",
@@ -68,6 +80,14 @@ public class PortfolioValuationScheduler {
         }
     }
 
+    private boolean isTradingDay(LocalDate asOfDate) {
+        if (!MarketCode.isSupported(valuationMarket)) {
+            log.warn("Invalid valuation market '{}', skip trading day check", valuationMarket);
+            return true;
+        }
+        return marketCalendar.isTradingDay(MarketCode.fromCode(valuationMarket), asOfDate);
+    }
+
     private Optional<BigDecimal> resolveCurrentPrice(String symbolKey) {
         if (symbolKey == null || symbolKey.isBlank()) {
             return Optional.empty();
@@ -86,6 +106,10 @@ public class PortfolioValuationScheduler {
         }
         try {
             LocalDate from = asOfDate.minusDays(HISTORICAL_LOOKBACK_DAYS);
+            Optional<BigDecimal> stored = stockQuoteService.findStoredClose(symbolKey, from, asOfDate);
+            if (stored.isPresent()) {
+                return stored;
+            }
             List<Candle> candles = stockQuoteService.getCandles(symbolKey, "1d", from, asOfDate);
             return candles.stream()
                     .filter(candle -> candle.getTimestamp() != null)
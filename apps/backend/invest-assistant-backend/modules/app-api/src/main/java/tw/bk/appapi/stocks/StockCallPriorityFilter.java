@@ -0,0 +1,33 @@
+package tw.bk.appapi.stocks;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import tw.bk.appstocks.service.VendorCallPriority;
+
+/**
+ * /stocks 下的使用者請求以 INTERACTIVE 優先權呼叫外部行情 API，排在批次工作之前取得 permit
+ */
+@Component
+public class StockCallPriorityFilter extends OncePerRequestFilter {
+    private static final String STOCKS_PATH = "/stocks";
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return path == null || !(path.equals(STOCKS_PATH) || path.startsWith(STOCKS_PATH + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        try (VendorCallPriority.Scope ignored = VendorCallPriority.enter(VendorCallPriority.INTERACTIVE)) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
@@ -7,7 +7,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tw.bk.appapi.stocks.stream.QuoteStreamHub;
 import tw.bk.appapi.stocks.vo.*;
 import tw.bk.appcommon.enums.ErrorCode;
 import tw.bk.appcommon.exception.BusinessException;
@@ -21,13 +24,17 @@ import tw.bk.appstocks.model.Quote;
 import tw.bk.appstocks.model.TickerList;
 import tw.bk.appstocks.model.TickerQuery;
 import tw.bk.appstocks.service.InstrumentService;
+import tw.bk.appstocks.service.StockCacheWarmer;
 import tw.bk.appstocks.service.StockQuoteService;
 import tw.bk.appstocks.service.StockTickerService;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -41,10 +48,13 @@ import java.util.stream.Collectors;
 public class StockController {
 
     private static final Set<TickerType> ALLOWED_TICKER_TYPES = EnumSet.allOf(TickerType.class);
+    private static final int MAX_BATCH_QUOTE_SIZE = 50;
 
     private final InstrumentService instrumentService;
     private final StockQuoteService stockQuoteService;
     private final StockTickerService stockTickerService;
+    private final QuoteStreamHub quoteStreamHub;
+    private final StockCacheWarmer stockCacheWarmer;
 
     /**
      * GET /api/stocks/markets - 市場列表
@@ -185,9 +195,44 @@ public class StockController {
         }
 
         Quote quote = stockQuoteService.getQuote(actualSymbolKey);
+        stockCacheWarmer.recordViewed(List.of(actualSymbolKey));
         return Result.ok(QuoteResponse.from(actualInstrumentId, actualSymbolKey, quote));
     }
 
+    /**
+     * GET /api/stocks/quotes?symbol_keys=US:XNAS:AAPL,TW:XTAI:2330 - 批次即時報價
+     */
+    @GetMapping("/quotes")
+    @Operation(summary = "批次取得即時報價", description = "一次查詢多檔股票即時報價（最多 50 檔），查無報價者不會出現在結果中")
+    public Result<List<QuoteResponse>> getQuotes(@RequestParam List<String> symbolKeys) {
+        List<String> keys = normalizeSymbolKeys(symbolKeys);
+        Map<String, String> instrumentIdBySymbolKey = instrumentService.findViewsBySymbolKeys(keys).stream()
+                .filter(view -> view.id() != null)
+                .collect(Collectors.toMap(InstrumentView::symbolKey, view -> view.id().toString(), (a, b) -> a));
+
+        Map<String, Quote> quotes = stockQuoteService.getQuotes(keys);
+        stockCacheWarmer.recordViewed(quotes.keySet());
+        List<QuoteResponse> response = quotes.entrySet().stream()
+                .map(entry -> QuoteResponse.from(
+                        instrumentIdBySymbolKey.get(entry.getKey()),
+                        entry.getKey(),
+                        entry.getValue()))
+                .toList();
+        return Result.ok(response);
+    }
+
+    /**
+     * GET /api/stocks/quotes/stream?symbol_keys=US:XNAS:AAPL,TW:XTAI:2330 - 即時報價串流（SSE）
+     */
+    @GetMapping(value = "/quotes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "訂閱即時報價串流", description = "以 SSE 推送多檔股票報價（最多 50 檔）：連線時先送出已知報價，之後僅在報價變動時推送 quote 事件")
+    public SseEmitter streamQuotes(@RequestParam List<String> symbolKeys) {
+        List<String> keys = normalizeSymbolKeys(symbolKeys);
+        SseEmitter emitter = new SseEmitter(0L);
+        quoteStreamHub.subscribe(keys, emitter);
+        return emitter;
+    }
+
     /**
      * GET
      * /api/stocks/candles?symbol_key=...&interval=1d&from=2026-01-01&to=2026-01-09
@@ -292,6 +337,28 @@ public class StockController {
         }
     }
 
+    /**
+     * 正規化並驗證批次 symbol_keys（去重、保留順序、上限 {@link #MAX_BATCH_QUOTE_SIZE}）
+     */
+    private List<String> normalizeSymbolKeys(List<String> symbolKeys) {
+        Set<String> normalizedKeys = new LinkedHashSet<>();
+        for (String symbolKey : symbolKeys) {
+            String normalized = normalizeParam(symbolKey);
+            if (normalized != null) {
+                validateSymbolKey(normalized);
+                normalizedKeys.add(normalized);
+            }
+        }
+        if (normalizedKeys.isEmpty()) {
+            throw new BusinessException(ErrorCode.VALIDATION_ERROR, "必須提供至少一個 symbol_key");
+        }
+        if (normalizedKeys.size() > MAX_BATCH_QUOTE_SIZE) {
+            throw new BusinessException(ErrorCode.VALIDATION_ERROR,
+                    "symbol_keys 最多 " + MAX_BATCH_QUOTE_SIZE + " 筆");
+        }
+        return new ArrayList<>(normalizedKeys);
+    }
+
     private void validateSymbolKey(String symbolKey) {
         if (symbolKey == null || symbolKey.isBlank()) {
             throw new BusinessException(ErrorCode.VALIDATION_ERROR, "symbol_key is required");
@@ -0,0 +1,30 @@
+package tw.bk.appapi.stocks.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * 報價串流（SSE）批次刷新與心跳用的排程器，與全域排程器分開，避免行情刷新佔用批次工作執行緒；
+ * 兩個執行緒讓刷新等待外部報價時不延誤心跳
+ */
+@Slf4j
+@Configuration
+public class QuoteStreamSchedulerConfig {
+
+    @Bean(name = "quoteStreamScheduler")
+    public TaskScheduler quoteStreamScheduler(
+            @Value("${app.stocks.quote-stream.threads:2}") int threads) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, threads));
+        scheduler.setThreadNamePrefix("quote-stream-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        scheduler.setErrorHandler(ex -> log.warn("Quote stream task failed: {}", ex.getMessage()));
+        scheduler.initialize();
+        return scheduler;
+    }
+}
@@ -0,0 +1,274 @@
+package tw.bk.appapi.stocks.stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tw.bk.appapi.stocks.vo.QuoteResponse;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appstocks.model.Quote;
+import tw.bk.appstocks.service.StockQuoteService;
+
+/**
+ * 即時報價 SSE 分送中心
+ * 單一固定間隔的刷新工作以一次 {@link StockQuoteService#getQuotes(Collection)} 批次取得所有有訂閱者的 symbolKey
+ * （每檔只取一次，不論訂閱者數量），僅在報價內容變動時推送給該檔所有訂閱者；最後一個訂閱者離開即不再刷新該檔。
+ * 新訂閱會先收到各檔目前已知的報價（同 BufferedSseSession 的重播），之後只收變動
+ */
+@Slf4j
+@Component
+public class QuoteStreamHub {
+    public static final String QUOTE_EVENT = "quote";
+
+    private final StockQuoteService stockQuoteService;
+    private final TaskScheduler quoteStreamScheduler;
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+    private final Duration refreshInterval;
+    private final Duration heartbeatInterval;
+    private final int maxSubscriptions;
+
+    private final Set<QuoteStreamSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger reservedSlots = new AtomicInteger();
+    private final Map<String, SymbolChannel> channels = new HashMap<>();
+
+    private ScheduledFuture<?> heartbeatTask;
+    private ScheduledFuture<?> refreshTask;
+
+    public QuoteStreamHub(
+            StockQuoteService stockQuoteService,
+            @Qualifier("quoteStreamScheduler") TaskScheduler quoteStreamScheduler,
+            ObjectProvider<MeterRegistry> meterRegistryProvider,
+            @Value("${app.stocks.quote-stream.refresh-interval-ms:5000}") long refreshIntervalMs,
+            @Value("${app.stocks.quote-stream.heartbeat-interval-ms:15000}") long heartbeatIntervalMs,
+            @Value("${app.stocks.quote-stream.max-subscriptions:500}") int maxSubscriptions) {
+        this.stockQuoteService = stockQuoteService;
+        this.quoteStreamScheduler = quoteStreamScheduler;
+        this.meterRegistryProvider = meterRegistryProvider;
+        this.refreshInterval = Duration.ofMillis(Math.max(refreshIntervalMs, 500L));
+        this.heartbeatInterval = Duration.ofMillis(Math.max(heartbeatIntervalMs, 1000L));
+        this.maxSubscriptions = Math.max(maxSubscriptions, 1);
+    }
+
+    @PostConstruct
+    void init() {
+        heartbeatTask = quoteStreamScheduler.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatInterval);
+        refreshTask = quoteStreamScheduler.scheduleWithFixedDelay(this::refreshAll, refreshInterval);
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Gauge.builder("stock.stream.subscriptions", subscriptions, Set::size)
+                .description("Open quote stream SSE connections")
+                .register(registry);
+        Gauge.builder("stock.stream.symbols", this, QuoteStreamHub::activeSymbolCount)
+                .description("Symbols refreshed by the quote stream")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel(false);
+        }
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+        }
+        for (QuoteStreamSubscription subscription : new ArrayList<>(subscriptions)) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * 以 emitter 訂閱多檔報價（symbolKeys 需已驗證）
+     *
+     * @throws BusinessException 連線數已達上限（RATE_LIMITED）
+     */
+    public QuoteStreamSubscription subscribe(Collection<String> symbolKeys, SseEmitter emitter) {
+        // 先佔名額再建立訂閱，並行訂閱不會超過上限
+        if (reservedSlots.getAndUpdate(reserved -> reserved < maxSubscriptions ? reserved + 1 : reserved)
+                >= maxSubscriptions) {
+            throw new BusinessException(ErrorCode.RATE_LIMITED, "報價串流連線數已達上限");
+        }
+        QuoteStreamSubscription subscription = new QuoteStreamSubscription(
+                emitter, new LinkedHashSet<>(symbolKeys), this::unsubscribe);
+        subscriptions.add(subscription);
+
+        Map<String, Quote> snapshot = new HashMap<>();
+        synchronized (this) {
+            for (String symbolKey : subscription.symbolKeys()) {
+                SymbolChannel channel = channels.computeIfAbsent(symbolKey, SymbolChannel::new);
+                channel.subscribers.add(subscription);
+                if (channel.lastQuote != null) {
+                    snapshot.put(symbolKey, channel.lastQuote);
+                }
+            }
+        }
+
+        subscription.attach();
+        snapshot.forEach((symbolKey, quote) ->
+                subscription.send(QUOTE_EVENT, QuoteResponse.from(symbolKey, quote)));
+        return subscription;
+    }
+
+    void unsubscribe(QuoteStreamSubscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        reservedSlots.decrementAndGet();
+        synchronized (this) {
+            for (String symbolKey : subscription.symbolKeys()) {
+                SymbolChannel channel = channels.get(symbolKey);
+                if (channel == null) {
+                    continue;
+                }
+                channel.subscribers.remove(subscription);
+                if (channel.subscribers.isEmpty()) {
+                    channels.remove(symbolKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * 刷新所有有訂閱者的 symbolKey：一次批次取得報價（快取命中不打外部 API、未命中合併為批次呼叫），
+     * 逐檔比對後只分送有變動者；固定間隔排程，前一輪未結束不會開始下一輪
+     */
+    void refreshAll() {
+        List<SymbolChannel> active;
+        synchronized (this) {
+            active = new ArrayList<>(channels.values());
+        }
+        if (active.isEmpty()) {
+            return;
+        }
+        Map<String, Quote> quotes;
+        try {
+            quotes = stockQuoteService.getQuotes(active.stream().map(channel -> channel.symbolKey).toList());
+        } catch (Exception ex) {
+            log.debug("Quote stream refresh failed: symbols={}, error={}", active.size(), ex.getMessage());
+            return;
+        }
+        for (SymbolChannel channel : active) {
+            publish(channel, quotes.get(channel.symbolKey));
+        }
+    }
+
+    /**
+     * 單檔分送：內容有變才推送給該檔所有訂閱者
+     */
+    private void publish(SymbolChannel channel, Quote quote) {
+        if (quote == null || channel.subscribers.isEmpty() || !hasChanged(channel.lastQuote, quote)) {
+            return;
+        }
+        channel.lastQuote = quote;
+
+        long startedAt = System.nanoTime();
+        QuoteResponse payload = QuoteResponse.from(channel.symbolKey, quote);
+        int delivered = 0;
+        for (QuoteStreamSubscription subscription : channel.subscribers) {
+            if (subscription.send(QUOTE_EVENT, payload)) {
+                delivered++;
+            }
+        }
+        recordFanout(System.nanoTime() - startedAt, delivered);
+    }
+
+    void sendHeartbeats() {
+        for (QuoteStreamSubscription subscription : new ArrayList<>(subscriptions)) {
+            subscription.heartbeat();
+        }
+    }
+
+    int subscriptionCount() {
+        return subscriptions.size();
+    }
+
+    synchronized int activeSymbolCount() {
+        return channels.size();
+    }
+
+    synchronized SymbolChannel channel(String symbolKey) {
+        return channels.get(symbolKey);
+    }
+
+    /**
+     * 比較會在前端顯示的欄位；stale / ageMs 是快取中繼資料，不視為變動
+     */
+    static boolean hasChanged(Quote previous, Quote current) {
+        if (previous == null) {
+            return true;
+        }
+        return !sameDecimal(previous.getPrice(), current.getPrice())
+                || !sameDecimal(previous.getOpen(), current.getOpen())
+                || !sameDecimal(previous.getHigh(), current.getHigh())
+                || !sameDecimal(previous.getLow(), current.getLow())
+                || !sameDecimal(previous.getPreviousClose(), current.getPreviousClose())
+                || !sameDecimal(previous.getChange(), current.getChange())
+                || !sameDecimal(previous.getChangePercent(), current.getChangePercent())
+                || !Objects.equals(previous.getVolume(), current.getVolume())
+                || !Objects.equals(previous.getTimestamp(), current.getTimestamp());
+    }
+
+    private static boolean sameDecimal(BigDecimal left, BigDecimal right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        return left.compareTo(right) == 0;
+    }
+
+    private void recordFanout(long elapsedNanos, int delivered) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("stock.stream.fanout.latency")
+                .description("Time to push one changed quote to all of its subscribers")
+                .register(registry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (delivered > 0) {
+            Counter.builder("stock.stream.events")
+                    .description("Quote events delivered to subscribers")
+                    .register(registry)
+                    .increment(delivered);
+        }
+    }
+
+    static final class SymbolChannel {
+        private final String symbolKey;
+        private final Set<QuoteStreamSubscription> subscribers = new CopyOnWriteArraySet<>();
+        private volatile Quote lastQuote;
+
+        private SymbolChannel(String symbolKey) {
+            this.symbolKey = symbolKey;
+        }
+
+        int subscriberCount() {
+            return subscribers.size();
+        }
+    }
+}
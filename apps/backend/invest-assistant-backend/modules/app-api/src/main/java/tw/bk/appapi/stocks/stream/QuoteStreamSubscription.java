@@ -0,0 +1,90 @@
+package tw.bk.appapi.stocks.stream;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 單一 SSE 連線的報價訂閱
+ * 事件 id 依連線遞增；送出失敗、逾時或連線結束時關閉並通知 hub 釋放訂閱
+ */
+@Slf4j
+public class QuoteStreamSubscription {
+    private final SseEmitter emitter;
+    private final Set<String> symbolKeys;
+    private final Consumer<QuoteStreamSubscription> onClose;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    QuoteStreamSubscription(SseEmitter emitter, Set<String> symbolKeys, Consumer<QuoteStreamSubscription> onClose) {
+        this.emitter = emitter;
+        this.symbolKeys = Set.copyOf(symbolKeys);
+        this.onClose = onClose;
+    }
+
+    void attach() {
+        emitter.onCompletion(this::close);
+        emitter.onTimeout(this::close);
+        emitter.onError(ex -> close());
+    }
+
+    public Set<String> symbolKeys() {
+        return symbolKeys;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * 送出具名事件；回傳是否送出成功
+     */
+    boolean send(String name, Object data) {
+        if (closed.get()) {
+            return false;
+        }
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(Long.toString(sequence.incrementAndGet()))
+                    .name(name)
+                    .data(data));
+            return true;
+        } catch (Exception ex) {
+            log.debug("Quote stream send failed: {}", ex.getMessage());
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * 送出 SSE 註解行作為心跳（不影響事件 id）
+     */
+    boolean heartbeat() {
+        if (closed.get()) {
+            return false;
+        }
+        try {
+            emitter.send(SseEmitter.event().comment("keepalive"));
+            return true;
+        } catch (Exception ex) {
+            log.debug("Quote stream heartbeat failed: {}", ex.getMessage());
+            close();
+            return false;
+        }
+    }
+
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        onClose.accept(this);
+        try {
+            emitter.complete();
+        } catch (Exception ex) {
+            log.debug("Quote stream complete failed: {}", ex.getMessage());
+        }
+    }
+}
@@ -48,6 +48,12 @@ public class QuoteResponse {
     /** 報價時間 (UTC ISO 8601) */
     private String timestamp;
 
+    /** 是否為舊資料（超過 soft TTL，背景刷新中） */
+    private boolean stale;
+
+    /** 舊資料年齡（毫秒），僅 stale 時有值 */
+    private Long ageMs;
+
     /**
      * 從 Quote 模型轉換
      */
@@ -71,6 +77,8 @@ public class QuoteResponse {
                 .change(quote.getChange() != null ? quote.getChange().toPlainString() : null)
                 .changePercent(quote.getChangePercent() != null ? quote.getChangePercent().toPlainString() : null)
                 .timestamp(quote.getTimestamp() != null ? quote.getTimestamp().toString() : null)
+                .stale(quote.isStale())
+                .ageMs(quote.getAgeMs())
                 .build();
     }
 }
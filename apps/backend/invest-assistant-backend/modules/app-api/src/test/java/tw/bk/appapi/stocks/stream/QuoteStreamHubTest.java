@@ -0,0 +1,240 @@
+package tw.bk.appapi.stocks.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appstocks.model.Quote;
+import tw.bk.appstocks.service.StockQuoteService;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteStreamHubTest {
+    private static final String TSMC = "TW:XTAI:2330";
+    private static final String AAPL = "US:XNAS:AAPL";
+
+    @Mock
+    private StockQuoteService stockQuoteService;
+    @Mock
+    private TaskScheduler scheduler;
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+    @Mock
+    private ScheduledFuture<Object> refreshTask;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private QuoteStreamHub hub;
+
+    @BeforeEach
+    void setUp() {
+        hub = new QuoteStreamHub(stockQuoteService, scheduler, meterRegistryProvider, 5000L, 15000L, 2);
+    }
+
+    @Test
+    void init_shouldScheduleOneRefreshTaskAndOneHeartbeat() {
+        doReturn(refreshTask).when(scheduler).scheduleWithFixedDelay(any(Runnable.class), any(Duration.class));
+
+        hub.init();
+        hub.subscribe(List.of(TSMC, AAPL), mock(SseEmitter.class));
+        hub.shutdown();
+
+        verify(scheduler).scheduleWithFixedDelay(any(Runnable.class), eq(Duration.ofMillis(5000L)));
+        verify(scheduler).scheduleWithFixedDelay(any(Runnable.class), eq(Duration.ofMillis(15000L)));
+        verify(refreshTask, times(2)).cancel(false);
+    }
+
+    @Test
+    void subscribe_shouldTrackEachSymbolOnceRegardlessOfSubscribers() {
+        hub.subscribe(List.of(TSMC), mock(SseEmitter.class));
+        hub.subscribe(List.of(TSMC, AAPL), mock(SseEmitter.class));
+
+        verify(scheduler, never()).scheduleWithFixedDelay(any(Runnable.class), any(Duration.class));
+        assertEquals(2, hub.subscriptionCount());
+        assertEquals(2, hub.activeSymbolCount());
+        assertEquals(2, hub.channel(TSMC).subscriberCount());
+        assertEquals(1, hub.channel(AAPL).subscriberCount());
+    }
+
+    @Test
+    void refreshAll_shouldFetchEverySymbolInOneBatch() {
+        hub.subscribe(List.of(TSMC), mock(SseEmitter.class));
+        hub.subscribe(List.of(TSMC, AAPL), mock(SseEmitter.class));
+        when(stockQuoteService.getQuotes(any())).thenReturn(Map.of(TSMC, quote("1000.00", 100L)));
+
+        hub.refreshAll();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> keys = ArgumentCaptor.forClass(Collection.class);
+        verify(stockQuoteService).getQuotes(keys.capture());
+        assertEquals(Set.of(TSMC, AAPL), Set.copyOf(keys.getValue()));
+        verify(stockQuoteService, never()).getQuote(any());
+    }
+
+    @Test
+    void refresh_shouldPushOnlyChangedQuotesToEverySubscriber() throws IOException {
+        when(meterRegistryProvider.getIfAvailable()).thenReturn(meterRegistry);
+        SseEmitter first = mock(SseEmitter.class);
+        SseEmitter second = mock(SseEmitter.class);
+        hub.subscribe(List.of(TSMC), first);
+        hub.subscribe(List.of(TSMC), second);
+
+        Quote quote = quote("1000.00", 100L);
+        when(stockQuoteService.getQuotes(List.of(TSMC)))
+                .thenReturn(Map.of(TSMC, quote))
+                .thenReturn(Map.of(TSMC, quote.toBuilder().stale(true).ageMs(40_000L).build()))
+                .thenReturn(Map.of(TSMC, quote("1005.00", 120L)));
+
+        hub.refreshAll();
+        hub.refreshAll();
+        hub.refreshAll();
+
+        verify(stockQuoteService, times(3)).getQuotes(List.of(TSMC));
+        verify(first, times(2)).send(any(SseEmitter.SseEventBuilder.class));
+        verify(second, times(2)).send(any(SseEmitter.SseEventBuilder.class));
+        assertEquals(2L, meterRegistry.get("stock.stream.fanout.latency").timer().count());
+        assertEquals(4.0, meterRegistry.get("stock.stream.events").counter().count());
+    }
+
+    @Test
+    void subscribe_shouldReplayLastKnownQuoteToLateSubscriber() throws IOException {
+        when(stockQuoteService.getQuotes(List.of(TSMC))).thenReturn(Map.of(TSMC, quote("1000.00", 100L)));
+        hub.subscribe(List.of(TSMC), mock(SseEmitter.class));
+        hub.refreshAll();
+
+        SseEmitter late = mock(SseEmitter.class);
+        hub.subscribe(List.of(TSMC), late);
+
+        verify(late).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    void lastSubscriberLeaving_shouldStopRefreshingSymbol() {
+        SseEmitter first = mock(SseEmitter.class);
+        SseEmitter second = mock(SseEmitter.class);
+        QuoteStreamSubscription firstSubscription = hub.subscribe(List.of(TSMC), first);
+        QuoteStreamSubscription secondSubscription = hub.subscribe(List.of(TSMC), second);
+
+        firstSubscription.close();
+        assertEquals(1, hub.channel(TSMC).subscriberCount());
+
+        secondSubscription.close();
+        assertNull(hub.channel(TSMC));
+        assertEquals(0, hub.subscriptionCount());
+        hub.refreshAll();
+        verify(stockQuoteService, never()).getQuotes(any());
+    }
+
+    @Test
+    void failedSend_shouldDropSubscriber() throws IOException {
+        SseEmitter broken = mock(SseEmitter.class);
+        doThrow(new IOException("Broken pipe")).when(broken).send(any(SseEmitter.SseEventBuilder.class));
+        QuoteStreamSubscription subscription = hub.subscribe(List.of(TSMC), broken);
+        when(stockQuoteService.getQuotes(List.of(TSMC))).thenReturn(Map.of(TSMC, quote("1000.00", 100L)));
+
+        hub.refreshAll();
+
+        assertTrue(subscription.isClosed());
+        assertEquals(0, hub.activeSymbolCount());
+    }
+
+    @Test
+    void subscribe_shouldRejectWhenConnectionLimitReached() {
+        QuoteStreamSubscription first = hub.subscribe(List.of(TSMC), mock(SseEmitter.class));
+        hub.subscribe(List.of(TSMC), mock(SseEmitter.class));
+
+        assertThrows(BusinessException.class, () -> hub.subscribe(List.of(TSMC), mock(SseEmitter.class)));
+        assertEquals(2, hub.subscriptionCount());
+
+        // 連線關閉後釋出名額
+        first.close();
+        hub.subscribe(List.of(TSMC), mock(SseEmitter.class));
+        assertEquals(2, hub.subscriptionCount());
+    }
+
+    @Test
+    void subscribe_shouldNotExceedConnectionLimitUnderConcurrentSubscribes() throws InterruptedException {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        hub.subscribe(List.of(TSMC), mock(SseEmitter.class));
+                        accepted.incrementAndGet();
+                    } catch (BusinessException ex) {
+                        rejected.incrementAndGet();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(2, accepted.get());
+        assertEquals(threads - 2, rejected.get());
+        assertEquals(2, hub.subscriptionCount());
+    }
+
+    @Test
+    void hasChanged_shouldIgnoreScaleAndCacheMetadata() {
+        Quote quote = quote("1000.00", 100L);
+
+        assertFalse(QuoteStreamHub.hasChanged(quote, quote.toBuilder().price(new BigDecimal("1000.0")).build()));
+        assertFalse(QuoteStreamHub.hasChanged(quote, quote.toBuilder().stale(true).ageMs(1L).build()));
+        assertTrue(QuoteStreamHub.hasChanged(quote, quote.toBuilder().volume(101L).build()));
+        assertTrue(QuoteStreamHub.hasChanged(null, quote));
+    }
+
+    private static Quote quote(String price, long volume) {
+        return Quote.builder()
+                .ticker("2330")
+                .price(new BigDecimal(price))
+                .volume(volume)
+                .timestamp(Instant.parse("2026-03-02T02:00:00Z").plusSeconds(volume))
+                .build();
+    }
+}
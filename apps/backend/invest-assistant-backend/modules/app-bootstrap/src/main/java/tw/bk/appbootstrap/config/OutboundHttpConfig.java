@@ -0,0 +1,25 @@
+package tw.bk.appbootstrap.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tw.bk.appcommon.http.OutboundHttpClientFactory;
+import tw.bk.appcommon.http.OutboundHttpPoolSettings;
+
+@Configuration
+public class OutboundHttpConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "app.http.outbound")
+    public OutboundHttpPoolSettings outboundHttpPoolSettings() {
+        return new OutboundHttpPoolSettings();
+    }
+
+    @Bean(destroyMethod = "close")
+    public OutboundHttpClientFactory outboundHttpClientFactory(
+            OutboundHttpPoolSettings settings, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        return new OutboundHttpClientFactory(settings, meterRegistryProvider.getIfAvailable());
+    }
+}
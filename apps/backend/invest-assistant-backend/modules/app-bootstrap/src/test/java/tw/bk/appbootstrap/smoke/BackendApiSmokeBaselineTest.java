@@ -39,6 +39,7 @@ import tw.bk.appapi.rag.RagController;
 import tw.bk.appapi.rag.dto.RagQueryRequest;
 import tw.bk.appapi.rag.vo.RagQueryResponse;
 import tw.bk.appapi.stocks.StockController;
+import tw.bk.appapi.stocks.stream.QuoteStreamHub;
 import tw.bk.appapi.stocks.vo.MarketResponse;
 import tw.bk.appauth.config.AuthProperties;
 import tw.bk.appauth.service.AuthCookieService;
@@ -62,6 +63,7 @@ import tw.bk.apprag.client.AiWorkerQueryResponse;
 import tw.bk.apprag.client.AiWorkerRagClient;
 import tw.bk.apprag.service.RagDocumentService;
 import tw.bk.appstocks.service.InstrumentService;
+import tw.bk.appstocks.service.StockCacheWarmer;
 import tw.bk.appstocks.service.StockQuoteService;
 import tw.bk.appstocks.service.StockTickerService;
 
@@ -201,7 +203,9 @@ class BackendApiSmokeBaselineTest {
         StockController controller = new StockController(
                 mock(InstrumentService.class),
                 mock(StockQuoteService.class),
-                mock(StockTickerService.class));
+                mock(StockTickerService.class),
+                mock(QuoteStreamHub.class),
+                mock(StockCacheWarmer.class));
 
         Result<List<MarketResponse>> result = controller.getMarkets();
 
@@ -14,7 +14,8 @@ public enum ErrorCode {
     PDF_PASSWORD_INVALID(422, "PDF_PASSWORD_INVALID", "PDF password invalid"),
     RATE_LIMITED(429, "RATE_LIMITED", "Too many requests"),
     NOT_IMPLEMENTED(501, "NOT_IMPLEMENTED", "Not implemented"),
-    INTERNAL_ERROR(500, "INTERNAL_ERROR", "Internal server error");
+    INTERNAL_ERROR(500, "INTERNAL_ERROR", "Internal server error"),
+    SERVICE_UNAVAILABLE(503, "SERVICE_UNAVAILABLE", "Service unavailable");
 
     private final int httpStatus;
     private final String code;
@@ -0,0 +1,157 @@
+package tw.bk.appcommon.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import io.netty.util.AttributeKey;
+import java.time.Duration;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.springframework.http.client.ReactorClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestClient;
+import reactor.netty.Connection;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * 對外 HTTP 呼叫共用的傳輸層（Reactor Netty）
+ * 所有 client 共用同一個 {@link ConnectionProvider}，每個遠端主機各自一個 keep-alive 連線池：
+ * 連線數上限 {@code maxConnections}，用滿時排隊（{@code pendingAcquireMaxCount}、{@code pendingAcquireTimeoutMs}），
+ * 閒置連線於背景清除；只有 https 的 baseUrl 以 ALPN 協商 HTTP/2，明文 http 一律 HTTP/1.1（不做 h2c upgrade）。
+ * Reactor Netty 以 client 設定（observer、metrics、channel options、協定）的雜湊區分連線池，
+ * 因此各 client 都由同一個 base client 衍生，只改不影響雜湊的設定（逾時、doOnRequest），同主機才會共用連線；
+ * 同步 RestClient 另在回應關閉時等連線歸還（{@link ReleaseAwaitingConnectionProvider}），下一個請求才能重用它。
+ * 同步呼叫取 {@link #restClient}，WebClient 取 {@link #connector}
+ */
+public class OutboundHttpClientFactory implements AutoCloseable {
+    static final String CONNECTIONS_METER = "http.client.connections";
+    private static final AttributeKey<Boolean> SEEN = AttributeKey.valueOf("outbound.connection.seen");
+    /**
+     * 所有 client 共用同一個 uri tag 函式（per-client lambda 會拆開連線池）；來源主機看 {@code remote.address} tag
+     */
+    private static final Function<String, String> URI_TAG = uri -> "outbound";
+    static final Duration RELEASE_WAIT = Duration.ofMillis(100);
+
+    private final OutboundHttpPoolSettings settings;
+    private final MeterRegistry meterRegistry;
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient baseClient;
+
+    /**
+     * @param meterRegistry 記錄新建/重用連線數；null 時不記錄
+     */
+    public OutboundHttpClientFactory(OutboundHttpPoolSettings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("outbound")
+                .maxConnections(Math.max(settings.getMaxConnections(), 1))
+                .pendingAcquireMaxCount(settings.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofMillis(Math.max(settings.getPendingAcquireTimeoutMs(), 1L)))
+                .maxIdleTime(Duration.ofMillis(Math.max(settings.getMaxIdleTimeMs(), 1L)))
+                .maxLifeTime(Duration.ofMillis(Math.max(settings.getMaxLifeTimeMs(), 1L)))
+                .metrics(settings.isMetricsEnabled());
+        if (settings.getEvictIntervalMs() > 0) {
+            builder.evictInBackground(Duration.ofMillis(settings.getEvictIntervalMs()));
+        }
+        this.connectionProvider = new ReleaseAwaitingConnectionProvider(builder.build());
+        HttpClient client = HttpClient.create(connectionProvider)
+                .observe(ReleaseAwaitingConnectionProvider.RELEASE_OBSERVER);
+        if (settings.isMetricsEnabled()) {
+            client = client.metrics(true, URI_TAG);
+        }
+        this.baseClient = client;
+    }
+
+    /**
+     * 同步 RestClient（HTTP/1.1）；readTimeout 為等待回應（含讀取 body）的逾時
+     */
+    public RestClient.Builder restClient(String clientName, Duration connectTimeout, Duration readTimeout) {
+        return restClient(clientName, null, connectTimeout, readTimeout);
+    }
+
+    /**
+     * @param baseUrl 遠端位址，只用來判斷是否為 https（決定能否啟用 HTTP/2），不會設為 builder 的 baseUrl
+     */
+    public RestClient.Builder restClient(
+            String clientName, String baseUrl, Duration connectTimeout, Duration readTimeout) {
+        return restClient(httpClient(clientName, baseUrl, connectTimeout, readTimeout), readTimeout);
+    }
+
+    static RestClient.Builder restClient(HttpClient httpClient, Duration readTimeout) {
+        ReactorClientHttpRequestFactory requestFactory = new ReactorClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return RestClient.builder()
+                .requestFactory(requestFactory)
+                .requestInterceptor(ReleaseAwaitingConnectionProvider.awaitRelease(RELEASE_WAIT));
+    }
+
+    /**
+     * WebClient 用的 connector（HTTP/1.1），連線逾時取 {@code connectTimeoutMs}
+     */
+    public ClientHttpConnector connector(String clientName, Duration responseTimeout) {
+        return connector(clientName, null, responseTimeout);
+    }
+
+    /**
+     * @param baseUrl 遠端位址，只用來判斷是否為 https（決定能否啟用 HTTP/2）
+     */
+    public ClientHttpConnector connector(String clientName, String baseUrl, Duration responseTimeout) {
+        return new ReactorClientHttpConnector(httpClient(
+                clientName, baseUrl, Duration.ofMillis(settings.getConnectTimeoutMs()), responseTimeout));
+    }
+
+    /**
+     * @param clientName {@code http.client.connections} 的 client tag（固定值，避免以 URL 為 tag 造成高基數）
+     * @param baseUrl    https 且 {@code http2Enabled} 時以 ALPN 協商 HTTP/2；null 或 http 時只用 HTTP/1.1
+     */
+    public HttpClient httpClient(
+            String clientName, String baseUrl, Duration connectTimeout, Duration responseTimeout) {
+        HttpClient client = baseClient
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        (int) Math.min(Math.max(connectTimeout.toMillis(), 1L), Integer.MAX_VALUE))
+                .responseTimeout(responseTimeout)
+                .doOnRequest(connectionCounter(clientName));
+        if (settings.isHttp2Enabled() && isHttps(baseUrl)) {
+            client = client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return client;
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.dispose();
+    }
+
+    private static boolean isHttps(String baseUrl) {
+        return baseUrl != null && baseUrl.regionMatches(true, 0, "https:", 0, 6);
+    }
+
+    /**
+     * 連線上的第一個請求記為新建，之後的記為重用
+     */
+    private BiConsumer<HttpClientRequest, Connection> connectionCounter(String clientName) {
+        if (meterRegistry == null) {
+            return (request, connection) -> { };
+        }
+        Counter created = Counter.builder(CONNECTIONS_METER)
+                .tag("client", clientName)
+                .tag("result", "new")
+                .register(meterRegistry);
+        Counter reused = Counter.builder(CONNECTIONS_METER)
+                .tag("client", clientName)
+                .tag("result", "reused")
+                .register(meterRegistry);
+        return (request, connection) -> {
+            Boolean seen = connection.channel().attr(SEEN).setIfAbsent(Boolean.TRUE);
+            if (seen == null) {
+                created.increment();
+            } else {
+                reused.increment();
+            }
+        };
+    }
+}
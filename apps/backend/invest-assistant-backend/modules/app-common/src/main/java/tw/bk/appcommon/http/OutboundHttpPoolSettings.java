@@ -0,0 +1,55 @@
+package tw.bk.appcommon.http;
+
+import lombok.Data;
+
+/**
+ * 對外 HTTP 連線池設定（{@code app.http.outbound.*}）
+ * 連線池以遠端主機為單位，以下上限皆為「每個主機」
+ */
+@Data
+public class OutboundHttpPoolSettings {
+    /**
+     * 未另外設定連線逾時的 client 使用的連線逾時（毫秒）
+     */
+    private long connectTimeoutMs = 5000;
+
+    /**
+     * 每個主機的最大連線數
+     */
+    private int maxConnections = 50;
+
+    /**
+     * 連線數用滿時排隊等待連線的上限，超過直接失敗
+     */
+    private int pendingAcquireMaxCount = 500;
+
+    /**
+     * 排隊等待連線的逾時（毫秒）
+     */
+    private long pendingAcquireTimeoutMs = 10000;
+
+    /**
+     * 閒置超過此時間（毫秒）的 keep-alive 連線不再重用；需短於對方伺服器的 keep-alive 逾時
+     */
+    private long maxIdleTimeMs = 20000;
+
+    /**
+     * 連線最長存活時間（毫秒），到期後歸還時關閉
+     */
+    private long maxLifeTimeMs = 300000;
+
+    /**
+     * 背景清除閒置/過期連線的間隔（毫秒），0 表示只在取用時檢查
+     */
+    private long evictIntervalMs = 10000;
+
+    /**
+     * https 連線以 ALPN 協商 HTTP/2（不支援時退回 HTTP/1.1）
+     */
+    private boolean http2Enabled = true;
+
+    /**
+     * 輸出 Reactor Netty 連線池與 client metrics（含 TLS handshake 時間）
+     */
+    private boolean metricsEnabled = true;
+}
@@ -0,0 +1,188 @@
+package tw.bk.appcommon.http;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.util.AttributeKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.transport.TransportConfig;
+
+/**
+ * 讓同步呼叫在回應關閉時等連線歸還連線池
+ * Reactor Netty 先通知 body 讀完、之後才把連線放回池中；同步呼叫端讀完立刻送下一個請求時，
+ * 常搶在歸還前取連線而另開新連線。{@link #awaitRelease} 記下本次請求取得的連線，
+ * 回應 {@code close()} 時等它 RELEASED（或關閉），最多 {@code maxWait}
+ */
+final class ReleaseAwaitingConnectionProvider implements ConnectionProvider {
+    private static final ThreadLocal<Lease> CURRENT = new ThreadLocal<>();
+    private static final AttributeKey<Lease> LEASE = AttributeKey.valueOf("outbound.connection.lease");
+
+    /**
+     * 加在 base client 上的共用 observer（單一實例，不會拆開連線池）
+     */
+    static final ConnectionObserver RELEASE_OBSERVER = (connection, state) -> {
+        if (state == ConnectionObserver.State.RELEASED) {
+            Lease lease = connection.channel().attr(LEASE).getAndSet(null);
+            if (lease != null) {
+                lease.released.complete(null);
+            }
+        }
+    };
+
+    private final ConnectionProvider delegate;
+
+    ReleaseAwaitingConnectionProvider(ConnectionProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * RestClient 的 interceptor；acquire 在送出請求的執行緒上同步呼叫，故以 ThreadLocal 對應本次請求
+     */
+    static ClientHttpRequestInterceptor awaitRelease(Duration maxWait) {
+        return (request, body, execution) -> {
+            Lease lease = new Lease();
+            CURRENT.set(lease);
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } finally {
+                CURRENT.remove();
+            }
+            return new ReleaseAwaitingResponse(response, lease, maxWait);
+        };
+    }
+
+    @Override
+    public Mono<? extends Connection> acquire(
+            TransportConfig config,
+            ConnectionObserver connectionObserver,
+            Supplier<? extends SocketAddress> remoteAddress,
+            AddressResolverGroup<?> resolverGroup) {
+        Lease lease = CURRENT.get();
+        Mono<? extends Connection> acquired =
+                delegate.acquire(config, connectionObserver, remoteAddress, resolverGroup);
+        return lease == null ? acquired : acquired.doOnNext(lease::attach);
+    }
+
+    @Override
+    public void disposeWhen(SocketAddress address) {
+        delegate.disposeWhen(address);
+    }
+
+    @Override
+    public void dispose() {
+        delegate.dispose();
+    }
+
+    @Override
+    public Mono<Void> disposeLater() {
+        return delegate.disposeLater();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return delegate.isDisposed();
+    }
+
+    @Override
+    public int maxConnections() {
+        return delegate.maxConnections();
+    }
+
+    @Override
+    public Map<SocketAddress, Integer> maxConnectionsPerHost() {
+        return delegate.maxConnectionsPerHost();
+    }
+
+    @Override
+    public Builder mutate() {
+        return delegate.mutate();
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    private static final class Lease {
+        private final CompletableFuture<Void> released = new CompletableFuture<>();
+        private volatile boolean attached;
+
+        void attach(Connection connection) {
+            attached = true;
+            connection.channel().attr(LEASE).set(this);
+            ChannelFuture closeFuture = connection.channel().closeFuture();
+            ChannelFutureListener onClose = future -> released.complete(null);
+            closeFuture.addListener(onClose);
+            released.whenComplete((ignored, error) -> closeFuture.removeListener(onClose));
+        }
+
+        void await(Duration maxWait) {
+            if (!attached) {
+                return;
+            }
+            try {
+                released.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException ignored) {
+                // 只是為了重用連線，逾時不影響已完成的請求
+            }
+        }
+    }
+
+    private static final class ReleaseAwaitingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Lease lease;
+        private final Duration maxWait;
+
+        ReleaseAwaitingResponse(ClientHttpResponse delegate, Lease lease, Duration maxWait) {
+            this.delegate = delegate;
+            this.lease = lease;
+            this.maxWait = maxWait;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+            lease.await(maxWait);
+        }
+    }
+}
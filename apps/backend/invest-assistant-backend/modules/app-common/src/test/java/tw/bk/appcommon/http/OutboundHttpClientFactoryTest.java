@@ -0,0 +1,135 @@
+package tw.bk.appcommon.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+/**
+ * 以本機 stub HTTP server 的 client 端 port 判斷連線是否被重用
+ */
+class OutboundHttpClientFactoryTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final ExecutorService serverExecutor = Executors.newFixedThreadPool(8);
+    private final ExecutorService callers = Executors.newFixedThreadPool(6);
+    private HttpServer server;
+    private OutboundHttpClientFactory httpClients;
+    private long responseDelayMs;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ping", this::handlePing);
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (httpClients != null) {
+            httpClients.close();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void sequentialCalls_shouldReuseOneKeepAliveConnection() {
+        httpClients = new OutboundHttpClientFactory(new OutboundHttpPoolSettings(), meterRegistry);
+        RestClient client = restClient("stub");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("pong", client.get().uri("/ping").retrieve().body(String.class));
+        }
+
+        assertEquals(1, clientPorts.size());
+        assertEquals(1.0, connections("stub", "new"));
+        assertEquals(4.0, connections("stub", "reused"));
+    }
+
+    @Test
+    void clientsForSameHost_shouldShareThePool() {
+        httpClients = new OutboundHttpClientFactory(new OutboundHttpPoolSettings(), meterRegistry);
+
+        restClient("first").get().uri("/ping").retrieve().body(String.class);
+        restClient("second").get().uri("/ping").retrieve().body(String.class);
+
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    void concurrentCalls_shouldQueueBeyondMaxConnectionsPerHost() {
+        OutboundHttpPoolSettings settings = new OutboundHttpPoolSettings();
+        settings.setMaxConnections(2);
+        httpClients = new OutboundHttpClientFactory(settings, meterRegistry);
+        RestClient client = restClient("stub");
+        responseDelayMs = 200;
+
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            calls.add(CompletableFuture.supplyAsync(
+                    () -> client.get().uri("/ping").retrieve().body(String.class), callers));
+        }
+        calls.forEach(call -> assertEquals("pong", call.join()));
+
+        assertTrue(maxInFlight.get() <= 2, "max in-flight " + maxInFlight.get());
+        assertTrue(clientPorts.size() <= 2, "connections " + clientPorts.size());
+    }
+
+    private RestClient restClient(String name) {
+        return httpClients.restClient(name, Duration.ofSeconds(1), Duration.ofSeconds(5))
+                .baseUrl("http://127.0.0.1:" + server.getAddress().getPort())
+                .build();
+    }
+
+    private double connections(String client, String result) {
+        return meterRegistry.get(OutboundHttpClientFactory.CONNECTIONS_METER)
+                .tag("client", client)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+    private void handlePing(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            if (responseDelayMs > 0) {
+                Thread.sleep(responseDelayMs);
+            }
+            byte[] body = "pong".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+}
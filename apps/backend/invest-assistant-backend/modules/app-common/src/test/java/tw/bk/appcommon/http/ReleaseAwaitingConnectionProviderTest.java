@@ -0,0 +1,155 @@
+package tw.bk.appcommon.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.Http11SslContextSpec;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * 回應關閉時等待連線歸還的行為：明文 HTTP/1.1、TLS HTTP/1.1 與 TLS HTTP/2 都應重用同一條連線，
+ * 且 close 不會等到 {@link OutboundHttpClientFactory#RELEASE_WAIT} 逾時
+ */
+class ReleaseAwaitingConnectionProviderTest {
+    private static final int CALLS = 20;
+    private static SelfSignedCertificate certificate;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final Set<String> protocols = ConcurrentHashMap.newKeySet();
+    private DisposableServer server;
+    private OutboundHttpClientFactory httpClients;
+
+    @BeforeAll
+    @SuppressWarnings("deprecation")
+    static void createCertificate() throws CertificateException {
+        certificate = new SelfSignedCertificate("localhost");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (httpClients != null) {
+            httpClients.close();
+        }
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    @Test
+    void plainHttp_shouldReuseConnectionWithoutWaitingOnClose() {
+        server = startServer(HttpServer.create().protocol(HttpProtocol.HTTP11));
+        httpClients = new OutboundHttpClientFactory(new OutboundHttpPoolSettings(), null);
+        String baseUrl = "http://127.0.0.1:" + server.port();
+        HttpClient httpClient = httpClients.httpClient("stub", baseUrl, Duration.ofSeconds(1), Duration.ofSeconds(5));
+
+        long closeNanos = callSequentially(restClient(httpClient, baseUrl));
+
+        assertEquals(Set.of("HTTP/1.1"), protocols);
+        assertEquals(1, clientPorts.size());
+        assertCloseDidNotWait(closeNanos);
+    }
+
+    @Test
+    void tlsHttp11_shouldReuseConnectionWithoutWaitingOnClose() {
+        server = startServer(HttpServer.create()
+                .protocol(HttpProtocol.HTTP11)
+                .secure(spec -> spec.sslContext(
+                        Http11SslContextSpec.forServer(certificate.certificate(), certificate.privateKey()))));
+        OutboundHttpPoolSettings settings = new OutboundHttpPoolSettings();
+        settings.setHttp2Enabled(false);
+        httpClients = new OutboundHttpClientFactory(settings, null);
+        String baseUrl = "https://localhost:" + server.port();
+        HttpClient httpClient = httpClients.httpClient("stub", baseUrl, Duration.ofSeconds(1), Duration.ofSeconds(5))
+                .secure(spec -> spec.sslContext(Http11SslContextSpec.forClient()
+                        .configure(builder -> builder.trustManager(InsecureTrustManagerFactory.INSTANCE))));
+
+        long closeNanos = callSequentially(restClient(httpClient, baseUrl));
+
+        assertEquals(Set.of("HTTP/1.1"), protocols);
+        assertEquals(1, clientPorts.size());
+        assertCloseDidNotWait(closeNanos);
+    }
+
+    @Test
+    void tlsHttp2_shouldMultiplexOneConnectionWithoutWaitingOnClose() {
+        server = startServer(HttpServer.create()
+                .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                .secure(spec -> spec.sslContext(
+                        Http2SslContextSpec.forServer(certificate.certificate(), certificate.privateKey()))));
+        httpClients = new OutboundHttpClientFactory(new OutboundHttpPoolSettings(), null);
+        String baseUrl = "https://localhost:" + server.port();
+        HttpClient httpClient = httpClients.httpClient("stub", baseUrl, Duration.ofSeconds(1), Duration.ofSeconds(5))
+                .secure(spec -> spec.sslContext(Http2SslContextSpec.forClient()
+                        .configure(builder -> builder.trustManager(InsecureTrustManagerFactory.INSTANCE))));
+
+        long closeNanos = callSequentially(restClient(httpClient, baseUrl));
+
+        assertEquals(Set.of("HTTP/2.0"), protocols);
+        assertEquals(1, clientPorts.size());
+        assertCloseDidNotWait(closeNanos);
+    }
+
+    private DisposableServer startServer(HttpServer server) {
+        return server.host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes.get("/ping", (request, response) -> {
+                    clientPorts.add(request.remoteAddress().getPort());
+                    protocols.add(request.protocol());
+                    return response.sendString(Mono.just("pong"));
+                }))
+                .bindNow();
+    }
+
+    private static RestClient restClient(HttpClient httpClient, String baseUrl) {
+        return OutboundHttpClientFactory.restClient(httpClient, Duration.ofSeconds(5))
+                .baseUrl(baseUrl)
+                .build();
+    }
+
+    /**
+     * 依序呼叫並回傳所有回應 close 的總耗時（讀完 body 之後到 exchange 返回）；第一次呼叫含連線與 TLS 握手，不計入
+     */
+    private static long callSequentially(RestClient client) {
+        long closeNanos = 0L;
+        for (int i = 0; i <= CALLS; i++) {
+            long[] bodyReadAt = new long[1];
+            String body = client.get().uri("/ping").exchange((request, response) -> {
+                String text = StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+                bodyReadAt[0] = System.nanoTime();
+                return text;
+            });
+            long closed = System.nanoTime() - bodyReadAt[0];
+            assertEquals("pong", body);
+            if (i > 0) {
+                closeNanos += closed;
+            }
+        }
+        return closeNanos;
+    }
+
+    /**
+     * 任何一次 close 等到逾時，總耗時就會超過 RELEASE_WAIT
+     */
+    private static void assertCloseDidNotWait(long closeNanos) {
+        long closeMs = Duration.ofNanos(closeNanos).toMillis();
+        assertTrue(closeMs < OutboundHttpClientFactory.RELEASE_WAIT.toMillis(),
+                "close took " + closeMs + " ms over " + CALLS + " calls");
+    }
+}
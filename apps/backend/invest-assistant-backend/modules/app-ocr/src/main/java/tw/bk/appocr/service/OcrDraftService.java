@@ -21,13 +21,13 @@ import tw.bk.appocr.model.OcrDraftUpdate;
 import tw.bk.appocr.validation.OcrDraftContext;
 import tw.bk.appocr.validation.OcrDraftValidationResult;
 import tw.bk.appocr.validation.OcrDraftValidatorChain;
-import tw.bk.apppersistence.entity.InstrumentEntity;
 import tw.bk.apppersistence.entity.StatementEntity;
 import tw.bk.apppersistence.entity.StatementTradeEntity;
-import tw.bk.apppersistence.repository.InstrumentRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
 import tw.bk.apppersistence.repository.StatementRepository;
 import tw.bk.apppersistence.repository.StockTradeRepository;
 import tw.bk.apppersistence.repository.StatementTradeRepository;
+import tw.bk.appstocks.service.InstrumentCatalogService;
 
 @Slf4j
 @Service
@@ -40,7 +40,7 @@ public class OcrDraftService {
     private static final String WARNING_INSTRUMENT_NOT_FOUND = "INSTRUMENT_NOT_FOUND";
 
     private final StatementTradeRepository statementTradeRepository;
-    private final InstrumentRepository instrumentRepository;
+    private final InstrumentCatalogService instrumentCatalogService;
     private final OcrDraftValidatorChain draftValidatorChain;
     private final ObjectMapper objectMapper;
     private final OcrRowHashService rowHashService;
@@ -99,11 +99,11 @@ public class OcrDraftService {
         entity.setQuantity(normalizeQuantity(trade.quantity()));
         entity.setPrice(normalizePrice(trade.price()));
 
-        InstrumentEntity instrument = resolveInstrument(trade.ticker());
+        InstrumentCatalogRow instrument = resolveInstrument(trade.ticker());
         if (instrument != null) {
-            entity.setInstrumentId(instrument.getId());
+            entity.setInstrumentId(instrument.id());
             if (entity.getName() == null) {
-                entity.setName(firstNonBlank(instrument.getNameZh(), instrument.getNameEn()));
+                entity.setName(firstNonBlank(instrument.nameZh(), instrument.nameEn()));
             }
         }
 
@@ -118,11 +118,11 @@ public class OcrDraftService {
         return entity;
     }
 
-    private InstrumentEntity resolveInstrument(String ticker) {
+    private InstrumentCatalogRow resolveInstrument(String ticker) {
         if (ticker == null || ticker.isBlank()) {
             return null;
         }
-        List<InstrumentEntity> matches = instrumentRepository.findByTickerIgnoreCase(ticker.trim());
+        List<InstrumentCatalogRow> matches = instrumentCatalogService.findByTicker(ticker.trim());
         if (matches == null || matches.isEmpty()) {
             return null;
         }
@@ -131,7 +131,7 @@ public class OcrDraftService {
         }
         log.warn("OCR ticker is ambiguous, manual instrument selection required: ticker={}, matches={}",
                 ticker.trim(),
-                matches.stream().map(InstrumentEntity::getSymbolKey).toList());
+                matches.stream().map(InstrumentCatalogRow::symbolKey).toList());
         return null;
     }
 
@@ -141,7 +141,7 @@ public class OcrDraftService {
             return;
         }
 
-        List<InstrumentEntity> matches = instrumentRepository.findByTickerIgnoreCase(entity.getRawTicker().trim());
+        List<InstrumentCatalogRow> matches = instrumentCatalogService.findByTicker(entity.getRawTicker().trim());
         if (matches == null || matches.isEmpty()) {
             result.addWarning(WARNING_INSTRUMENT_NOT_FOUND);
             return;
@@ -179,12 +179,12 @@ public class OcrDraftService {
         return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP);
     }
 
-    private String normalizeCurrency(String currency, InstrumentEntity instrument) {
+    private String normalizeCurrency(String currency, InstrumentCatalogRow instrument) {
         if (currency != null && !currency.isBlank()) {
             return currency.trim().toUpperCase(Locale.ROOT);
         }
-        if (instrument != null && instrument.getCurrency() != null) {
-            return instrument.getCurrency();
+        if (instrument != null && instrument.currency() != null) {
+            return instrument.currency();
         }
         return null;
     }
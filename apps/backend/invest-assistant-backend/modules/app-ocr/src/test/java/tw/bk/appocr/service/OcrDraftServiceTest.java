@@ -19,13 +19,13 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import tw.bk.appocr.client.AiWorkerParsedTrade;
 import tw.bk.appocr.validation.OcrDraftValidatorChain;
-import tw.bk.apppersistence.entity.InstrumentEntity;
 import tw.bk.apppersistence.entity.StatementEntity;
 import tw.bk.apppersistence.entity.StatementTradeEntity;
-import tw.bk.apppersistence.repository.InstrumentRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
 import tw.bk.apppersistence.repository.StatementRepository;
 import tw.bk.apppersistence.repository.StatementTradeRepository;
 import tw.bk.apppersistence.repository.StockTradeRepository;
+import tw.bk.appstocks.service.InstrumentCatalogService;
 
 @ExtendWith(MockitoExtension.class)
 class OcrDraftServiceTest {
@@ -33,7 +33,7 @@ class OcrDraftServiceTest {
     @Mock
     private StatementTradeRepository statementTradeRepository;
     @Mock
-    private InstrumentRepository instrumentRepository;
+    private InstrumentCatalogService instrumentCatalogService;
     @Mock
     private OcrDraftValidatorChain draftValidatorChain;
     @Mock
@@ -48,7 +48,7 @@ class OcrDraftServiceTest {
     void setUp() {
         service = new OcrDraftService(
                 statementTradeRepository,
-                instrumentRepository,
+                instrumentCatalogService,
                 draftValidatorChain,
                 new ObjectMapper(),
                 new OcrRowHashService(),
@@ -66,8 +66,8 @@ class OcrDraftServiceTest {
 
     @Test
     void saveDrafts_shouldAssignInstrumentWhenTickerHasSingleMatch() {
-        InstrumentEntity instrument = instrument(1L, "ABC", "US:XNAS:ABC", "USD");
-        when(instrumentRepository.findByTickerIgnoreCase("ABC")).thenReturn(List.of(instrument));
+        InstrumentCatalogRow instrument = instrument(1L, "ABC", "US:XNAS:ABC", "USD");
+        when(instrumentCatalogService.findByTicker("ABC")).thenReturn(List.of(instrument));
 
         service.saveDrafts(statement(), List.of(trade("ABC", null)));
 
@@ -80,9 +80,9 @@ class OcrDraftServiceTest {
 
     @Test
     void saveDrafts_shouldNotAssignInstrumentWhenTickerIsAmbiguous() {
-        InstrumentEntity first = instrument(1L, "ABC", "US:XNAS:ABC", "USD");
-        InstrumentEntity second = instrument(2L, "ABC", "TW:XTAI:ABC", "TWD");
-        when(instrumentRepository.findByTickerIgnoreCase("ABC")).thenReturn(List.of(first, second));
+        InstrumentCatalogRow first = instrument(1L, "ABC", "US:XNAS:ABC", "USD");
+        InstrumentCatalogRow second = instrument(2L, "ABC", "TW:XTAI:ABC", "TWD");
+        when(instrumentCatalogService.findByTicker("ABC")).thenReturn(List.of(first, second));
 
         service.saveDrafts(statement(), List.of(trade("ABC", "USD")));
 
@@ -118,12 +118,8 @@ class OcrDraftServiceTest {
                 null);
     }
 
-    private InstrumentEntity instrument(Long id, String ticker, String symbolKey, String currency) {
-        InstrumentEntity instrument = new InstrumentEntity();
-        instrument.setId(id);
-        instrument.setTicker(ticker);
-        instrument.setSymbolKey(symbolKey);
-        instrument.setCurrency(currency);
-        return instrument;
+    private InstrumentCatalogRow instrument(Long id, String ticker, String symbolKey, String currency) {
+        return new InstrumentCatalogRow(id, null, null, null, ticker, symbolKey, null, null, currency, "STOCK",
+                "ACTIVE");
     }
 }
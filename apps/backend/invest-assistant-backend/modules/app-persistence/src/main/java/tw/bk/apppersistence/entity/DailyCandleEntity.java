@@ -0,0 +1,51 @@
+package tw.bk.apppersistence.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import lombok.Getter;
+import lombok.Setter;
+
+@Entity
+@Table(name = "daily_candles", schema = "app")
+@IdClass(DailyCandleId.class)
+@Getter
+@Setter
+public class DailyCandleEntity {
+    @Id
+    @Column(name = "instrument_id", nullable = false)
+    private Long instrumentId;
+
+    @Id
+    @Column(name = "trade_date", nullable = false)
+    private LocalDate tradeDate;
+
+    @Column(name = "open")
+    private BigDecimal open;
+
+    @Column(name = "high")
+    private BigDecimal high;
+
+    @Column(name = "low")
+    private BigDecimal low;
+
+    @Column(name = "close")
+    private BigDecimal close;
+
+    @Column(name = "volume")
+    private Long volume;
+
+    @Column(name = "has_data", nullable = false)
+    private boolean hasData = true;
+
+    @Column(name = "source")
+    private String source;
+
+    @Column(name = "updated_at", insertable = false, updatable = false)
+    private OffsetDateTime updatedAt;
+}
@@ -0,0 +1,52 @@
+package tw.bk.apppersistence.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+public class DailyCandleId implements Serializable {
+    private Long instrumentId;
+    private LocalDate tradeDate;
+
+    public DailyCandleId() {
+    }
+
+    public DailyCandleId(Long instrumentId, LocalDate tradeDate) {
+        this.instrumentId = instrumentId;
+        this.tradeDate = tradeDate;
+    }
+
+    public Long getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(Long instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+
+    public LocalDate getTradeDate() {
+        return tradeDate;
+    }
+
+    public void setTradeDate(LocalDate tradeDate) {
+        this.tradeDate = tradeDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DailyCandleId that = (DailyCandleId) o;
+        return Objects.equals(instrumentId, that.instrumentId)
+                && Objects.equals(tradeDate, that.tradeDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(instrumentId, tradeDate);
+    }
+}
@@ -0,0 +1,78 @@
+package tw.bk.apppersistence.repository;
+
+import java.util.List;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tw.bk.apppersistence.entity.DailyCandleEntity;
+
+/**
+ * 日 K 線批次寫入（JDBC batch + ON CONFLICT upsert）
+ */
+@Repository
+public class DailyCandleBatchRepository {
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 無資料標記（has_data = FALSE）不覆寫既有的真實 K 線
+     */
+    private static final String UPSERT_SQL = """
+            INSERT INTO app.daily_candles (
+                instrument_id, trade_date, open, high, low, close, volume, has_data, source, updated_at
+            )
+            VALUES (:instrumentId, :tradeDate, :open, :high, :low, :close, :volume, :hasData, :source, now())
+            ON CONFLICT (instrument_id, trade_date) DO UPDATE SET
+                open = EXCLUDED.open,
+                high = EXCLUDED.high,
+                low = EXCLUDED.low,
+                close = EXCLUDED.close,
+                volume = EXCLUDED.volume,
+                has_data = EXCLUDED.has_data,
+                source = EXCLUDED.source,
+                updated_at = now()
+            WHERE EXCLUDED.has_data
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public DailyCandleBatchRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 以獨立交易寫入，呼叫端可能位於唯讀交易中（如行情查詢）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int upsertAll(List<DailyCandleEntity> candles) {
+        if (candles == null || candles.isEmpty()) {
+            return 0;
+        }
+        int written = 0;
+        for (int start = 0; start < candles.size(); start += BATCH_SIZE) {
+            List<DailyCandleEntity> chunk = candles.subList(start, Math.min(start + BATCH_SIZE, candles.size()));
+            SqlParameterSource[] params = chunk.stream()
+                    .map(DailyCandleBatchRepository::toParams)
+                    .toArray(SqlParameterSource[]::new);
+            for (int count : jdbcTemplate.batchUpdate(UPSERT_SQL, params)) {
+                written += Math.max(count, 0);
+            }
+        }
+        return written;
+    }
+
+    private static SqlParameterSource toParams(DailyCandleEntity candle) {
+        return new MapSqlParameterSource()
+                .addValue("instrumentId", candle.getInstrumentId())
+                .addValue("tradeDate", candle.getTradeDate())
+                .addValue("open", candle.getOpen())
+                .addValue("high", candle.getHigh())
+                .addValue("low", candle.getLow())
+                .addValue("close", candle.getClose())
+                .addValue("volume", candle.getVolume())
+                .addValue("hasData", candle.isHasData())
+                .addValue("source", candle.getSource());
+    }
+}
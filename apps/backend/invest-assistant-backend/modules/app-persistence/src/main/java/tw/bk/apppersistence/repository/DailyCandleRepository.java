@@ -0,0 +1,23 @@
+package tw.bk.apppersistence.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import tw.bk.apppersistence.entity.DailyCandleEntity;
+import tw.bk.apppersistence.entity.DailyCandleId;
+
+public interface DailyCandleRepository extends JpaRepository<DailyCandleEntity, DailyCandleId> {
+    List<DailyCandleEntity> findByInstrumentIdAndTradeDateBetweenOrderByTradeDateAsc(
+            Long instrumentId,
+            LocalDate from,
+            LocalDate to);
+
+    /**
+     * [from, to] 內最近一個有資料的交易日（主鍵 (instrument_id, trade_date) 反向掃描，單次索引查詢）
+     */
+    Optional<DailyCandleEntity> findFirstByInstrumentIdAndTradeDateBetweenAndHasDataTrueOrderByTradeDateDesc(
+            Long instrumentId,
+            LocalDate from,
+            LocalDate to);
+}
@@ -0,0 +1,186 @@
+package tw.bk.apppersistence.repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 商品同步的批次讀寫（多列 INSERT ... ON CONFLICT DO UPDATE，一個 chunk 一次往返）
+ */
+@Repository
+public class InstrumentBatchRepository {
+    private static final int BATCH_SIZE = 500;
+
+    private static final String FIND_SYNC_ROWS_SQL = """
+            SELECT id, market_id, exchange_id, ticker, symbol_key, name_zh, currency, asset_type, status
+            FROM app.instruments
+            WHERE market_id = :marketId
+            """;
+
+    private static final String FIND_WARRANT_PROFILES_SQL = """
+            SELECT w.instrument_id, w.underlying_symbol, w.expiry_date
+            FROM app.warrant_profiles w
+            JOIN app.instruments i ON i.id = w.instrument_id
+            WHERE i.market_id = :marketId
+            """;
+
+    /**
+     * 既有商品只更新名稱；名稱未變（或來源未提供）的列不寫入也不回傳，asset_type 保留 ticker 明細補齊的結果
+     */
+    private static final String UPSERT_INSTRUMENTS_SQL = """
+            INSERT INTO app.instruments AS i (
+                market_id, exchange_id, ticker, symbol_key, name_zh, currency, asset_type, status
+            )
+            VALUES %s
+            ON CONFLICT (exchange_id, ticker) DO UPDATE SET
+                name_zh = EXCLUDED.name_zh
+            WHERE EXCLUDED.name_zh IS NOT NULL
+              AND i.name_zh IS DISTINCT FROM EXCLUDED.name_zh
+            RETURNING i.id, i.exchange_id, i.ticker, (i.xmax = 0) AS inserted
+            """;
+
+    /**
+     * 來源未提供的欄位保留既有值；合併後無差異的列不寫入
+     */
+    private static final String UPSERT_WARRANT_PROFILES_SQL = """
+            INSERT INTO app.warrant_profiles AS w (instrument_id, underlying_symbol, expiry_date)
+            VALUES %s
+            ON CONFLICT (instrument_id) DO UPDATE SET
+                underlying_symbol = COALESCE(EXCLUDED.underlying_symbol, w.underlying_symbol),
+                expiry_date = COALESCE(EXCLUDED.expiry_date, w.expiry_date)
+            WHERE (COALESCE(EXCLUDED.underlying_symbol, w.underlying_symbol),
+                   COALESCE(EXCLUDED.expiry_date, w.expiry_date))
+                  IS DISTINCT FROM (w.underlying_symbol, w.expiry_date)
+            """;
+
+    private static final int INSTRUMENT_COLUMNS = 8;
+    private static final int WARRANT_PROFILE_COLUMNS = 3;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public InstrumentBatchRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 市場內全部商品的同步欄位，供同步前一次載入後在記憶體比對
+     */
+    public List<InstrumentSyncRow> findSyncRows(Long marketId) {
+        return jdbcTemplate.query(
+                FIND_SYNC_ROWS_SQL,
+                new MapSqlParameterSource("marketId", marketId),
+                (rs, rowNum) -> new InstrumentSyncRow(
+                        rs.getLong("id"),
+                        rs.getLong("market_id"),
+                        rs.getLong("exchange_id"),
+                        rs.getString("ticker"),
+                        rs.getString("symbol_key"),
+                        rs.getString("name_zh"),
+                        rs.getString("currency"),
+                        rs.getString("asset_type"),
+                        rs.getString("status")));
+    }
+
+    public List<WarrantProfileRow> findWarrantProfiles(Long marketId) {
+        return jdbcTemplate.query(
+                FIND_WARRANT_PROFILES_SQL,
+                new MapSqlParameterSource("marketId", marketId),
+                (rs, rowNum) -> {
+                    Date expiry = rs.getDate("expiry_date");
+                    return new WarrantProfileRow(
+                            rs.getLong("instrument_id"),
+                            rs.getString("underlying_symbol"),
+                            expiry == null ? null : expiry.toLocalDate());
+                });
+    }
+
+    /**
+     * 寫入新商品並更新名稱有變的既有商品；回傳實際寫入的列（同一批內 (exchange_id, ticker) 不可重複）
+     */
+    public List<UpsertedInstrument> upsertAll(List<InstrumentSyncRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return List.of();
+        }
+        List<UpsertedInstrument> written = new ArrayList<>();
+        for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+            List<InstrumentSyncRow> chunk = rows.subList(start, Math.min(start + BATCH_SIZE, rows.size()));
+            String sql = UPSERT_INSTRUMENTS_SQL.formatted(values(chunk.size(), INSTRUMENT_COLUMNS));
+            written.addAll(jdbcTemplate.getJdbcTemplate().query(
+                    sql,
+                    ps -> bindInstruments(ps, chunk),
+                    (rs, rowNum) -> new UpsertedInstrument(
+                            rs.getLong("id"),
+                            rs.getLong("exchange_id"),
+                            rs.getString("ticker"),
+                            rs.getBoolean("inserted"))));
+        }
+        return written;
+    }
+
+    /**
+     * 寫入或合併權證基本資料；回傳實際寫入的列數（同一批內 instrument_id 不可重複）
+     */
+    public int upsertWarrantProfiles(List<WarrantProfileRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+        int written = 0;
+        for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+            List<WarrantProfileRow> chunk = rows.subList(start, Math.min(start + BATCH_SIZE, rows.size()));
+            String sql = UPSERT_WARRANT_PROFILES_SQL.formatted(values(chunk.size(), WARRANT_PROFILE_COLUMNS));
+            written += jdbcTemplate.getJdbcTemplate().update(sql, ps -> bindWarrantProfiles(ps, chunk));
+        }
+        return written;
+    }
+
+    private static void bindInstruments(PreparedStatement ps, List<InstrumentSyncRow> chunk) throws SQLException {
+        int index = 1;
+        for (InstrumentSyncRow row : chunk) {
+            ps.setLong(index++, row.marketId());
+            ps.setLong(index++, row.exchangeId());
+            ps.setString(index++, row.ticker());
+            ps.setString(index++, row.symbolKey());
+            ps.setString(index++, row.nameZh());
+            ps.setString(index++, row.currency());
+            ps.setString(index++, row.assetType());
+            ps.setString(index++, row.status());
+        }
+    }
+
+    private static void bindWarrantProfiles(PreparedStatement ps, List<WarrantProfileRow> chunk) throws SQLException {
+        int index = 1;
+        for (WarrantProfileRow row : chunk) {
+            ps.setLong(index++, row.instrumentId());
+            ps.setString(index++, row.underlyingSymbol());
+            if (row.expiryDate() == null) {
+                ps.setNull(index++, Types.DATE);
+            } else {
+                ps.setDate(index++, Date.valueOf(row.expiryDate()));
+            }
+        }
+    }
+
+    /**
+     * 產生 rows 組 (?, ?, ...) 的 VALUES 清單
+     */
+    private static String values(int rows, int columns) {
+        String tuple = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+        return String.join(", ", Collections.nCopies(rows, tuple));
+    }
+
+    /**
+     * 實際寫入的商品；inserted=false 代表既有商品的名稱被更新
+     */
+    public record UpsertedInstrument(Long id, Long exchangeId, String ticker, boolean inserted) {
+        public String syncKey() {
+            return InstrumentSyncRow.syncKey(exchangeId, ticker);
+        }
+    }
+}
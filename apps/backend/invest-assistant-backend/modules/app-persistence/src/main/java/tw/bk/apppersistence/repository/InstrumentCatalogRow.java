@@ -0,0 +1,37 @@
+package tw.bk.apppersistence.repository;
+
+import tw.bk.appcommon.enums.AssetType;
+
+/**
+ * 記憶體商品目錄的一列：商品欄位與所屬市場、交易所代碼（不可變，取代載入 market/exchange 關聯的 entity）
+ */
+public record InstrumentCatalogRow(
+        Long id,
+        String marketCode,
+        String exchangeCode,
+        String exchangeMic,
+        String ticker,
+        String symbolKey,
+        String nameZh,
+        String nameEn,
+        String currency,
+        String assetType,
+        String status) {
+
+    public AssetType assetTypeEnum() {
+        return AssetType.from(assetType);
+    }
+
+    /**
+     * 顯示名稱：中文名稱，其次英文名稱，都沒有時為 ticker
+     */
+    public String displayName() {
+        if (nameZh != null && !nameZh.isBlank()) {
+            return nameZh;
+        }
+        if (nameEn != null && !nameEn.isBlank()) {
+            return nameEn;
+        }
+        return ticker;
+    }
+}
@@ -0,0 +1,282 @@
+package tw.bk.apppersistence.repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * ticker 明細補齊佇列（app.instrument_detail_queue）
+ * 領取時把 next_attempt_at 推後作為租約（FOR UPDATE SKIP LOCKED），多節點可同時消化同一個佇列；
+ * 節點中途停止時租約到期後由其他節點重新領取
+ */
+@Repository
+public class InstrumentDetailQueueRepository {
+    /**
+     * 需要補齊：非權證、尚未補齊、已過期，或缺英文名稱且距上次補齊已超過重試間隔
+     */
+    private static final String NEEDS_DETAIL = """
+            i.market_id = ?
+              AND i.asset_type <> 'WARRANT'
+              AND (i.detail_refreshed_at IS NULL
+                   OR i.detail_refreshed_at < now() - ? * INTERVAL '1 millisecond'
+                   OR (i.name_en IS NULL AND i.detail_refreshed_at < now() - ? * INTERVAL '1 millisecond'))
+            """;
+
+    private static final String ENQUEUE_DUE_SQL = """
+            INSERT INTO app.instrument_detail_queue (instrument_id, priority)
+            SELECT i.id, CASE WHEN i.detail_refreshed_at IS NULL THEN ? ELSE ? END
+            FROM app.instruments i
+            WHERE %s
+            ON CONFLICT (instrument_id) DO NOTHING
+            """.formatted(NEEDS_DETAIL);
+
+    /**
+     * 已在佇列者只提高優先權，不重設失敗次數與退避時間
+     */
+    private static final String BOOST_SQL = """
+            INSERT INTO app.instrument_detail_queue AS q (instrument_id, priority)
+            SELECT i.id, ?
+            FROM app.instruments i
+            WHERE %s
+              AND i.%s = ANY(?)
+            ON CONFLICT (instrument_id) DO UPDATE SET
+                priority = EXCLUDED.priority
+            WHERE q.priority < EXCLUDED.priority
+            """;
+
+    private static final String CLAIM_SQL = """
+            UPDATE app.instrument_detail_queue q
+            SET next_attempt_at = now() + ? * INTERVAL '1 millisecond'
+            FROM app.instruments i
+            WHERE q.instrument_id = i.id
+              AND q.instrument_id IN (
+                  SELECT instrument_id
+                  FROM app.instrument_detail_queue
+                  WHERE next_attempt_at <= now()
+                  ORDER BY priority DESC, next_attempt_at
+                  LIMIT ?
+                  FOR UPDATE SKIP LOCKED)
+            RETURNING q.instrument_id, i.ticker, q.priority, q.attempts
+            """;
+
+    /**
+     * 明細只補空缺或升級：英文名稱與幣別以明細為準，中文名稱只在缺漏時補上，asset_type 只會由 STOCK 升為 ETF
+     */
+    private static final String APPLY_DETAILS_SQL = """
+            UPDATE app.instruments AS i SET
+                name_en = COALESCE(v.name_en, i.name_en),
+                name_zh = COALESCE(i.name_zh, v.name_zh),
+                currency = COALESCE(v.currency, i.currency),
+                asset_type = COALESCE(v.asset_type, i.asset_type),
+                detail_refreshed_at = now()
+            FROM (VALUES %s) AS v(id, name_en, name_zh, currency, asset_type)
+            WHERE i.id = v.id
+            """;
+
+    private static final String APPLY_DETAILS_ROW = "(CAST(? AS BIGINT), CAST(? AS TEXT), CAST(? AS TEXT), "
+            + "CAST(? AS TEXT), CAST(? AS TEXT))";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM app.instrument_detail_queue WHERE instrument_id = ANY(?)";
+
+    private static final String FAIL_SQL = """
+            UPDATE app.instrument_detail_queue SET
+                attempts = attempts + 1,
+                last_error = ?,
+                next_attempt_at = now() + ? * power(2, LEAST(attempts, 10)) * INTERVAL '1 millisecond'
+            WHERE instrument_id = ?
+            """;
+
+    /**
+     * 超過失敗上限者移出佇列並標記補齊時間，過期後才會再被排入
+     */
+    private static final String GIVE_UP_SQL = """
+            WITH dropped AS (
+                DELETE FROM app.instrument_detail_queue
+                WHERE instrument_id = ANY(?) AND attempts >= ?
+                RETURNING instrument_id
+            )
+            UPDATE app.instruments SET detail_refreshed_at = now()
+            WHERE id IN (SELECT instrument_id FROM dropped)
+            """;
+
+    private static final String RELEASE_SQL =
+            "UPDATE app.instrument_detail_queue SET next_attempt_at = now() WHERE instrument_id = ANY(?)";
+
+    private static final String BACKLOG_SQL = """
+            SELECT priority, COUNT(*) AS backlog
+            FROM app.instrument_detail_queue
+            GROUP BY priority
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public InstrumentDetailQueueRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 排入市場內所有需要補齊的商品（已在佇列者不變）；回傳新排入的筆數
+     */
+    public int enqueueDue(Long marketId, int newPriority, int refreshPriority, Duration staleAfter,
+            Duration missingRetry) {
+        return jdbc().update(ENQUEUE_DUE_SQL, newPriority, refreshPriority, marketId,
+                staleAfter.toMillis(), missingRetry.toMillis());
+    }
+
+    /**
+     * 以商品 id 提高優先權（只排入需要補齊者）
+     */
+    public int boostByIds(Long marketId, Collection<Long> instrumentIds, int priority, Duration staleAfter,
+            Duration missingRetry) {
+        if (instrumentIds == null || instrumentIds.isEmpty()) {
+            return 0;
+        }
+        return boost("id", "bigint", instrumentIds.toArray(), marketId, priority, staleAfter, missingRetry);
+    }
+
+    /**
+     * 以 symbolKey 提高優先權（只排入需要補齊者）
+     */
+    public int boostBySymbolKeys(Long marketId, Collection<String> symbolKeys, int priority, Duration staleAfter,
+            Duration missingRetry) {
+        if (symbolKeys == null || symbolKeys.isEmpty()) {
+            return 0;
+        }
+        return boost("symbol_key", "text", symbolKeys.toArray(), marketId, priority, staleAfter, missingRetry);
+    }
+
+    /**
+     * 依優先權領取到期的項目並加上租約；回傳順序為優先權高到低
+     */
+    public List<InstrumentDetailTask> claimDue(int limit, Duration lease) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        List<InstrumentDetailTask> tasks = new ArrayList<>(jdbc().query(
+                CLAIM_SQL,
+                (rs, rowNum) -> new InstrumentDetailTask(
+                        rs.getLong("instrument_id"),
+                        rs.getString("ticker"),
+                        rs.getInt("priority"),
+                        rs.getInt("attempts")),
+                lease.toMillis(),
+                limit));
+        tasks.sort(Comparator.comparingInt(InstrumentDetailTask::priority).reversed());
+        return tasks;
+    }
+
+    /**
+     * 一次寫入整批明細並移出佇列
+     */
+    @Transactional
+    public int complete(List<InstrumentDetailUpdate> updates) {
+        if (updates == null || updates.isEmpty()) {
+            return 0;
+        }
+        String sql = APPLY_DETAILS_SQL.formatted(String.join(", ", Collections.nCopies(updates.size(),
+                APPLY_DETAILS_ROW)));
+        int updated = jdbc().update(sql, ps -> {
+            int index = 1;
+            for (InstrumentDetailUpdate update : updates) {
+                ps.setLong(index++, update.instrumentId());
+                ps.setString(index++, update.nameEn());
+                ps.setString(index++, update.nameZh());
+                ps.setString(index++, update.currency());
+                ps.setString(index++, update.assetType());
+            }
+        });
+        delete(updates.stream().map(InstrumentDetailUpdate::instrumentId).toList());
+        return updated;
+    }
+
+    /**
+     * 記錄失敗並指數退避；失敗次數達上限者移出佇列，回傳移出的筆數
+     */
+    @Transactional
+    public int fail(List<InstrumentDetailFailure> failures, Duration backoff, int maxAttempts) {
+        if (failures == null || failures.isEmpty()) {
+            return 0;
+        }
+        jdbc().batchUpdate(FAIL_SQL, failures, failures.size(), (ps, failure) -> {
+            ps.setString(1, failure.error());
+            ps.setLong(2, backoff.toMillis());
+            ps.setLong(3, failure.instrumentId());
+        });
+        List<Long> ids = failures.stream().map(InstrumentDetailFailure::instrumentId).toList();
+        return jdbc().update(GIVE_UP_SQL, ps -> {
+            ps.setArray(1, longArray(ps.getConnection(), ids));
+            ps.setInt(2, maxAttempts);
+        });
+    }
+
+    /**
+     * 歸還已領取但未處理的項目（例如遭限流而中止），立即可再被領取
+     */
+    public void release(List<Long> instrumentIds) {
+        if (instrumentIds == null || instrumentIds.isEmpty()) {
+            return;
+        }
+        jdbc().update(RELEASE_SQL, ps -> ps.setArray(1, longArray(ps.getConnection(), instrumentIds)));
+    }
+
+    /**
+     * 各優先權的佇列長度
+     */
+    public Map<Integer, Long> countBacklogByPriority() {
+        Map<Integer, Long> backlog = new LinkedHashMap<>();
+        jdbc().query(BACKLOG_SQL, (RowCallbackHandler) rs ->
+                backlog.put(rs.getInt("priority"), rs.getLong("backlog")));
+        return backlog;
+    }
+
+    private void delete(List<Long> instrumentIds) {
+        jdbc().update(DELETE_SQL, ps -> ps.setArray(1, longArray(ps.getConnection(), instrumentIds)));
+    }
+
+    private int boost(String column, String arrayType, Object[] values, Long marketId, int priority,
+            Duration staleAfter, Duration missingRetry) {
+        String sql = BOOST_SQL.formatted(NEEDS_DETAIL, column);
+        return jdbc().update(sql, ps -> {
+            ps.setInt(1, priority);
+            ps.setLong(2, marketId);
+            ps.setLong(3, staleAfter.toMillis());
+            ps.setLong(4, missingRetry.toMillis());
+            ps.setArray(5, ps.getConnection().createArrayOf(arrayType, values));
+        });
+    }
+
+    private static Array longArray(Connection connection, List<Long> values) throws SQLException {
+        return connection.createArrayOf("bigint", values.toArray());
+    }
+
+    private JdbcTemplate jdbc() {
+        return jdbcTemplate.getJdbcTemplate();
+    }
+
+    public record InstrumentDetailTask(Long instrumentId, String ticker, int priority, int attempts) {
+    }
+
+    /**
+     * 明細未提供的欄位為 null（保留既有值）；assetType 只在判定為 ETF 時帶入
+     */
+    public record InstrumentDetailUpdate(Long instrumentId, String nameEn, String nameZh, String currency,
+            String assetType) {
+    }
+
+    public record InstrumentDetailFailure(Long instrumentId, String error) {
+    }
+}
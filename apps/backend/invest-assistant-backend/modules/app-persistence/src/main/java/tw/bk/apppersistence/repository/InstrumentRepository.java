@@ -1,5 +1,6 @@
 package tw.bk.apppersistence.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -57,37 +58,95 @@ public interface InstrumentRepository extends JpaRepository<InstrumentEntity, Lo
         List<InstrumentEntity> findByMarketIdAndStatus(Long marketId, String status);
 
         /**
-         * Search by ticker/name fields with pagination.
+         * Contains-match on ticker/name fields, served by the pg_trgm GIN indexes (V22).
          */
-        @Query("SELECT i FROM InstrumentEntity i WHERE " +
-                        "LOWER(i.ticker) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-                        "LOWER(i.nameEn) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-                        "LOWER(i.nameZh) LIKE LOWER(CONCAT('%', :query, '%'))")
-        List<InstrumentEntity> searchInstruments(@Param("query") String query, Pageable pageable);
+        String SEARCH_FROM_WHERE = """
+                        FROM app.instruments i
+                        WHERE LOWER(i.ticker) LIKE '%' || LOWER(:query) || '%'
+                           OR LOWER(i.name_en) LIKE '%' || LOWER(:query) || '%'
+                           OR LOWER(i.name_zh) LIKE '%' || LOWER(:query) || '%'
+                        """;
 
         /**
-         * Search with market/exchange relations loaded.
+         * Exact ticker > ticker prefix > name / English word prefix > contains, then trigram relevance.
          */
-        @EntityGraph(attributePaths = { "market", "exchange" })
-        @Query("SELECT i FROM InstrumentEntity i WHERE " +
-                        "LOWER(i.ticker) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-                        "LOWER(i.nameEn) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-                        "LOWER(i.nameZh) LIKE LOWER(CONCAT('%', :query, '%'))")
-        List<InstrumentEntity> searchInstrumentsWithRelations(@Param("query") String query, Pageable pageable);
+        String SEARCH_ORDER_BY = """
+                        ORDER BY
+                            CASE
+                                WHEN LOWER(i.ticker) = LOWER(:query) THEN 0
+                                WHEN LOWER(i.ticker) LIKE LOWER(:query) || '%' THEN 1
+                                WHEN LOWER(i.name_zh) LIKE LOWER(:query) || '%'
+                                  OR LOWER(i.name_en) LIKE LOWER(:query) || '%'
+                                  OR LOWER(i.name_en) LIKE '% ' || LOWER(:query) || '%' THEN 2
+                                ELSE 3
+                            END,
+                            GREATEST(
+                                similarity(LOWER(i.ticker), LOWER(:query)),
+                                word_similarity(LOWER(:query), COALESCE(LOWER(i.name_en), '')),
+                                word_similarity(LOWER(:query), COALESCE(LOWER(i.name_zh), ''))) DESC,
+                            i.ticker,
+                            i.id
+                        """;
+
+        /**
+         * Search ids by ticker/name fields, ranked (no total count).
+         */
+        @Query(value = "SELECT i.id " + SEARCH_FROM_WHERE + SEARCH_ORDER_BY, nativeQuery = true)
+        List<Long> searchInstrumentIds(@Param("query") String query, Pageable pageable);
 
         /**
-         * Search with pagination (including total count).
+         * Search ids by ticker/name fields, ranked, with total count.
+         */
+        @Query(value = "SELECT i.id " + SEARCH_FROM_WHERE + SEARCH_ORDER_BY,
+                        countQuery = "SELECT COUNT(*) " + SEARCH_FROM_WHERE,
+                        nativeQuery = true)
+        Page<Long> searchInstrumentIdsPage(@Param("query") String query, Pageable pageable);
+
+        /**
+         * Load the columns needed by the in-memory search index.
+         */
+        @Query("SELECT new tw.bk.apppersistence.repository.InstrumentSearchRow(i.id, i.ticker, i.nameZh, i.nameEn) " +
+                        "FROM InstrumentEntity i")
+        List<InstrumentSearchRow> findAllSearchRows();
+
+        /**
+         * Catalog row projection: instrument columns plus market/exchange codes, no entity graph.
+         */
+        String CATALOG_SELECT = "SELECT new tw.bk.apppersistence.repository.InstrumentCatalogRow("
+                        + "i.id, m.code, e.code, e.mic, i.ticker, i.symbolKey, i.nameZh, i.nameEn, i.currency, "
+                        + "i.assetType, i.status) "
+                        + "FROM InstrumentEntity i LEFT JOIN i.market m LEFT JOIN i.exchange e";
+
+        /**
+         * Load the whole in-memory instrument catalog.
+         */
+        @Query(CATALOG_SELECT)
+        List<InstrumentCatalogRow> findAllCatalogRows();
+
+        /**
+         * Catalog rows by symbol_key list (fallback when the in-memory catalog misses).
+         */
+        @Query(CATALOG_SELECT + " WHERE i.symbolKey IN :symbolKeys")
+        List<InstrumentCatalogRow> findCatalogRowsBySymbolKeys(@Param("symbolKeys") Collection<String> symbolKeys);
+
+        /**
+         * Catalog rows by id list (fallback when the in-memory catalog misses).
+         */
+        @Query(CATALOG_SELECT + " WHERE i.id IN :ids")
+        List<InstrumentCatalogRow> findCatalogRowsByIds(@Param("ids") Collection<Long> ids);
+
+        /**
+         * Catalog rows by exact ticker (case-insensitive), used before the in-memory catalog is loaded.
+         */
+        @Query(CATALOG_SELECT + " WHERE UPPER(i.ticker) = UPPER(:ticker)")
+        List<InstrumentCatalogRow> findCatalogRowsByTicker(@Param("ticker") String ticker);
+
+        /**
+         * Find by id list with market/exchange relations loaded.
          */
         @EntityGraph(attributePaths = { "market", "exchange" })
-        @Query(value = "SELECT i FROM InstrumentEntity i WHERE " +
-                        "LOWER(i.ticker) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-                        "LOWER(i.nameEn) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-                        "LOWER(i.nameZh) LIKE LOWER(CONCAT('%', :query, '%'))",
-                        countQuery = "SELECT COUNT(i) FROM InstrumentEntity i WHERE " +
-                                        "LOWER(i.ticker) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-                                        "LOWER(i.nameEn) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-                                        "LOWER(i.nameZh) LIKE LOWER(CONCAT('%', :query, '%'))")
-        Page<InstrumentEntity> searchInstrumentsPage(@Param("query") String query, Pageable pageable);
+        @Query("SELECT i FROM InstrumentEntity i WHERE i.id IN :ids")
+        List<InstrumentEntity> findByIdInWithRelations(@Param("ids") List<Long> ids);
 
         /**
          * Find all with market/exchange relations loaded.
@@ -107,4 +166,11 @@ public interface InstrumentRepository extends JpaRepository<InstrumentEntity, Lo
          * Find by symbol_key list.
          */
         List<InstrumentEntity> findBySymbolKeyIn(List<String> symbolKeys);
+
+        /**
+         * Find by symbol_key list with market/exchange relations loaded.
+         */
+        @EntityGraph(attributePaths = { "market", "exchange" })
+        @Query("SELECT i FROM InstrumentEntity i WHERE i.symbolKey IN :symbolKeys")
+        List<InstrumentEntity> findBySymbolKeyInWithRelations(@Param("symbolKeys") List<String> symbolKeys);
 }
@@ -0,0 +1,7 @@
+package tw.bk.apppersistence.repository;
+
+/**
+ * 建立商品搜尋索引所需的最小欄位（不載入 market/exchange 關聯）
+ */
+public record InstrumentSearchRow(Long id, String ticker, String nameZh, String nameEn) {
+}
@@ -0,0 +1,27 @@
+package tw.bk.apppersistence.repository;
+
+/**
+ * 商品同步的比對與批次寫入欄位；id 為 null 代表尚未寫入
+ */
+public record InstrumentSyncRow(
+        Long id,
+        Long marketId,
+        Long exchangeId,
+        String ticker,
+        String symbolKey,
+        String nameZh,
+        String currency,
+        String assetType,
+        String status) {
+
+    /**
+     * 差異比對用的鍵，與 upsert 的衝突目標 (exchange_id, ticker) 一致
+     */
+    public String syncKey() {
+        return syncKey(exchangeId, ticker);
+    }
+
+    public static String syncKey(Long exchangeId, String ticker) {
+        return exchangeId + ":" + ticker;
+    }
+}
@@ -22,5 +22,16 @@ public interface UserPositionRepository extends JpaRepository<UserPositionEntity
             """)
     List<Long> findDistinctInstrumentIdsByPortfolioId(@Param("portfolioId") Long portfolioId);
 
+    /**
+     * 所有使用者持倉（數量不為 0）的商品 symbolKey，供報價快取預熱使用
+     */
+    @Query("""
+            select distinct i.symbolKey
+            from UserPositionEntity p, InstrumentEntity i
+            where i.id = p.instrumentId
+              and p.totalQuantity <> 0
+            """)
+    List<String> findDistinctHeldSymbolKeys();
+
     void deleteByPortfolioIdAndInstrumentId(Long portfolioId, Long instrumentId);
 }
@@ -0,0 +1,9 @@
+package tw.bk.apppersistence.repository;
+
+import java.time.LocalDate;
+
+/**
+ * 權證基本資料的批次寫入欄位
+ */
+public record WarrantProfileRow(Long instrumentId, String underlyingSymbol, LocalDate expiryDate) {
+}
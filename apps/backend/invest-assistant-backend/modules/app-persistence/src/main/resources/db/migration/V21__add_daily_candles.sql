@@ -0,0 +1,26 @@
+-- Persistent daily OHLCV bars keyed by (instrument_id, trade_date).
+-- Finalized bars never change, so candle requests read from here and only fetch missing dates from vendors.
+-- has_data = FALSE marks a finalized trading day the vendor returned no bar for (e.g. suspension or an
+-- unlisted holiday), so the gap is not refetched on every request.
+
+CREATE TABLE IF NOT EXISTS app.daily_candles (
+    instrument_id BIGINT NOT NULL REFERENCES app.instruments(id) ON DELETE CASCADE,
+    trade_date    DATE NOT NULL,
+    open          NUMERIC(20, 8),
+    high          NUMERIC(20, 8),
+    low           NUMERIC(20, 8),
+    close         NUMERIC(20, 8),
+    volume        BIGINT,
+    has_data      BOOLEAN NOT NULL DEFAULT TRUE,
+    source        TEXT,
+    updated_at    TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (instrument_id, trade_date),
+    CONSTRAINT chk_daily_candles_ohlc
+        CHECK (has_data = FALSE
+            OR (open IS NOT NULL AND high IS NOT NULL AND low IS NOT NULL AND close IS NOT NULL))
+);
+
+COMMENT ON TABLE app.daily_candles IS '已定案的日 K 線（依商品與交易日），用於只補抓缺漏日期';
+COMMENT ON COLUMN app.daily_candles.trade_date IS '交易日（交易所當地日期）';
+COMMENT ON COLUMN app.daily_candles.has_data IS 'FALSE 表示該交易日來源無資料（停牌或未設定的休市日），避免重複補抓';
+COMMENT ON COLUMN app.daily_candles.source IS '資料來源（fugle/alpaca/...）';
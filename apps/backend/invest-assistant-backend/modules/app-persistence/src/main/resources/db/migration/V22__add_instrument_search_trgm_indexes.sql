@@ -0,0 +1,15 @@
+-- Trigram GIN indexes backing instrument search.
+-- Search matches LOWER(col) LIKE '%q%' on ticker / name_en / name_zh; B-tree indexes cannot serve an infix
+-- pattern, so each keystroke used to be a sequential scan. gin_trgm_ops indexes the lowercase expressions the
+-- repository queries use, and pg_trgm's similarity()/word_similarity() rank the matches.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_instruments_ticker_trgm
+    ON app.instruments USING gin (LOWER(ticker) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_instruments_name_en_trgm
+    ON app.instruments USING gin (LOWER(name_en) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_instruments_name_zh_trgm
+    ON app.instruments USING gin (LOWER(name_zh) gin_trgm_ops);
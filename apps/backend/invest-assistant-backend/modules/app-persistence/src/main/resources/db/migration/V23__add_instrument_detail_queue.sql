@@ -0,0 +1,27 @@
+-- Background enrichment of instruments from the vendor ticker-detail endpoint.
+-- Enriching every instrument inline during sync exceeds the vendor rate limit, so instruments that are new,
+-- stale or missing fields are queued here and drained by a worker at a fraction of the vendor budget.
+-- Workers claim rows by pushing next_attempt_at forward (a lease), so several nodes can drain the same queue.
+
+ALTER TABLE app.instruments
+    ADD COLUMN IF NOT EXISTS detail_refreshed_at TIMESTAMPTZ;
+
+COMMENT ON COLUMN app.instruments.detail_refreshed_at IS '最近一次以 ticker 明細補齊的時間；NULL 表示尚未補齊';
+
+CREATE TABLE IF NOT EXISTS app.instrument_detail_queue (
+    instrument_id   BIGINT PRIMARY KEY REFERENCES app.instruments(id) ON DELETE CASCADE,
+    priority        SMALLINT NOT NULL DEFAULT 0,
+    attempts        INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    last_error      TEXT,
+    enqueued_at     TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_instrument_detail_queue_due
+    ON app.instrument_detail_queue (priority DESC, next_attempt_at);
+
+COMMENT ON TABLE app.instrument_detail_queue IS '待以 ticker 明細補齊的商品佇列';
+COMMENT ON COLUMN app.instrument_detail_queue.priority IS '優先權：30 持倉、20 近期查詢或搜尋、10 新商品、0 過期或缺欄位';
+COMMENT ON COLUMN app.instrument_detail_queue.attempts IS '連續失敗次數';
+COMMENT ON COLUMN app.instrument_detail_queue.next_attempt_at IS '下次可處理的時間；領取時推後作為租約';
+COMMENT ON COLUMN app.instrument_detail_queue.last_error IS '最近一次失敗原因';
@@ -29,4 +29,15 @@ class PersistenceCompositeIdTest {
         assertEquals(left.hashCode(), right.hashCode());
         assertNotEquals(left, different);
     }
+
+    @Test
+    void dailyCandleId_shouldImplementStableEqualsAndHashCode() {
+        DailyCandleId left = new DailyCandleId(400L, LocalDate.parse("2026-03-02"));
+        DailyCandleId right = new DailyCandleId(400L, LocalDate.parse("2026-03-02"));
+        DailyCandleId different = new DailyCandleId(401L, LocalDate.parse("2026-03-02"));
+
+        assertEquals(left, right);
+        assertEquals(left.hashCode(), right.hashCode());
+        assertNotEquals(left, different);
+    }
 }
@@ -0,0 +1,174 @@
+package tw.bk.apppersistence.schema;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import tw.bk.apppersistence.repository.InstrumentRepository;
+
+/**
+ * 以 EXPLAIN 驗證 {@link InstrumentRepository} 的商品搜尋走 V22 的 pg_trgm GIN 索引，並檢查排名順序
+ */
+@Testcontainers
+class InstrumentSearchTrgmIndexTest {
+
+    private static final DockerImageName PGVECTOR_IMAGE =
+            DockerImageName.parse("pgvector/pgvector:pg16")
+                    .asCompatibleSubstituteFor("postgres");
+
+    private static final String SEARCH_IDS =
+            jdbc("SELECT i.id " + InstrumentRepository.SEARCH_FROM_WHERE + InstrumentRepository.SEARCH_ORDER_BY)
+                    + " LIMIT 20";
+
+    private static final String SEARCH_COUNT = jdbc("SELECT COUNT(*) " + InstrumentRepository.SEARCH_FROM_WHERE);
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES =
+            new PostgreSQLContainer<>(PGVECTOR_IMAGE)
+                    .withDatabaseName("invest_assistant")
+                    .withUsername("postgres")
+                    .withPassword("postgres");
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+
+        try (Connection connection = openConnection()) {
+            // 2 萬筆填充資料讓 planner 以選擇性判斷是否走索引；序號轉成字母，不會命中測試查詢
+            execute(connection, """
+                    INSERT INTO app.instruments (market_id, exchange_id, ticker, name_zh, name_en, currency, symbol_key)
+                    SELECT e.market_id, e.id, f.code, '填充' || f.code, 'Filler Company ' || f.code, 'TWD',
+                           'TW:XTAI:' || f.code
+                    FROM app.exchanges e,
+                         (SELECT 'X' || translate(g::text, '0123456789', 'ABCDEFGHIJ') AS code
+                          FROM generate_series(1, 20000) g) f
+                    WHERE e.mic = 'XTAI'
+                    """);
+            execute(connection, """
+                    INSERT INTO app.instruments (market_id, exchange_id, ticker, name_zh, name_en, currency, symbol_key)
+                    SELECT e.market_id, e.id, v.ticker, v.name_zh, v.name_en, 'TWD', 'TW:XTAI:' || v.ticker
+                    FROM app.exchanges e,
+                         (VALUES ('2330', '台積電', 'Taiwan Semiconductor Manufacturing'),
+                                 ('23301P', '台積電凱基57售01', NULL),
+                                 ('12330', '測試', 'Test 2330 Holdings'),
+                                 ('2303', '聯電', 'United Microelectronics')) AS v(ticker, name_zh, name_en)
+                    WHERE e.mic = 'XTAI'
+                    """);
+            execute(connection, "ANALYZE app.instruments");
+        }
+    }
+
+    @Test
+    void search_shouldUseTrigramIndexesInsteadOfSeqScan() throws SQLException {
+        try (Connection connection = openConnection()) {
+            for (String query : List.of("2330", "台積電", "semiconductor")) {
+                String plan = explain(connection, query);
+
+                assertTrue(plan.contains("idx_instruments_ticker_trgm"), query + "\n" + plan);
+                assertTrue(plan.contains("idx_instruments_name_en_trgm"), query + "\n" + plan);
+                assertTrue(plan.contains("idx_instruments_name_zh_trgm"), query + "\n" + plan);
+                assertFalse(plan.contains("Seq Scan on instruments"), query + "\n" + plan);
+            }
+        }
+    }
+
+    @Test
+    void search_shouldRankExactTickerThenPrefixThenNamePrefixThenContains() throws SQLException {
+        try (Connection connection = openConnection()) {
+            assertEquals(List.of("2330", "23301P", "12330"), searchTickers(connection, "2330"));
+            // 1~2 字的查詢沒有 trigram 可用（走循序掃描），命中結果仍與 LIKE 相同
+            assertEquals(Set.of("2330", "23301P"), Set.copyOf(searchTickers(connection, "積電")));
+            assertEquals(3L, count(connection, "2330"));
+        }
+    }
+
+    private static String explain(Connection connection, String query) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + SEARCH_IDS)) {
+            bind(statement, SEARCH_IDS, query);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    private static List<String> searchTickers(Connection connection, String query) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(SEARCH_IDS)) {
+            bind(statement, SEARCH_IDS, query);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+            }
+        }
+        List<String> tickers = new ArrayList<>(ids.size());
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT ticker FROM app.instruments WHERE id = ?")) {
+            for (Long id : ids) {
+                statement.setLong(1, id);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    tickers.add(resultSet.getString(1));
+                }
+            }
+        }
+        return tickers;
+    }
+
+    private static long count(Connection connection, String query) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SEARCH_COUNT)) {
+            bind(statement, SEARCH_COUNT, query);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Repository 的原生查詢使用具名參數 :query，改為 JDBC 的 ? 佔位
+     */
+    private static String jdbc(String sql) {
+        return sql.replace(":query", "?");
+    }
+
+    private static void bind(PreparedStatement statement, String sql, String query) throws SQLException {
+        int parameters = sql.length() - sql.replace("?", "").length();
+        for (int i = 1; i <= parameters; i++) {
+            statement.setString(i, query);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.execute();
+        }
+    }
+
+    private static Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
@@ -11,7 +11,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -268,10 +267,8 @@ class PortfolioQueryService {
             return delegate;
         }
 
-        Map<String, Optional<BigDecimal>> priceCache = new ConcurrentHashMap<>();
-        symbolKeys.stream().distinct().parallel()
-                .forEach(key -> priceCache.put(key, delegate.getCurrentPrice(key)));
-        return symbolKey -> priceCache.getOrDefault(symbolKey, Optional.empty());
+        Map<String, BigDecimal> prices = delegate.getCurrentPrices(symbolKeys.stream().distinct().toList());
+        return symbolKey -> Optional.ofNullable(prices.get(symbolKey));
     }
 
     private PositionWithQuote buildPositionWithQuote(
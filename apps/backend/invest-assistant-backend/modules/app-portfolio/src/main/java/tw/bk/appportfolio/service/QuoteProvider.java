@@ -2,7 +2,10 @@ package tw.bk.appportfolio.service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 報價查詢介面，用於解耦 Portfolio 與 Stocks 模組
@@ -17,6 +20,20 @@ public interface QuoteProvider {
      */
     Optional<BigDecimal> getCurrentPrice(String symbolKey);
 
+    /**
+     * 批次查詢現價
+     * 預設以平行方式逐檔呼叫 {@link #getCurrentPrice(String)}，實作端可覆寫為單次批次查詢
+     *
+     * @param symbolKeys 商品識別碼列表
+     * @return symbolKey → 現價，查詢失敗的 symbolKey 不會出現在結果中
+     */
+    default Map<String, BigDecimal> getCurrentPrices(Collection<String> symbolKeys) {
+        Map<String, BigDecimal> prices = new ConcurrentHashMap<>();
+        symbolKeys.stream().distinct().parallel()
+                .forEach(key -> getCurrentPrice(key).ifPresent(price -> prices.put(key, price)));
+        return prices;
+    }
+
     /**
      * Resolve price for valuation on a specific date.
      * Default behavior keeps current behavior: use real-time quote.
@@ -8,8 +8,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -97,6 +100,40 @@ class PortfolioQueryServiceTest {
         verify(instrumentRepository, never()).findById(anyLong());
     }
 
+    @Test
+    void getPortfolioSummary_shouldResolvePricesThroughSingleBatchCall() {
+        PortfolioEntity portfolio = portfolio(20L, 10L);
+        UserPositionEntity first = position(20L, 30L, "1", "100");
+        UserPositionEntity second = position(20L, 31L, "1", "50");
+        InstrumentEntity tsmc = instrument(30L, "TW:TWSE:2330");
+        InstrumentEntity apple = instrument(31L, "US:XNAS:AAPL");
+        AtomicInteger batchCalls = new AtomicInteger();
+        QuoteProvider quoteProvider = new QuoteProvider() {
+            @Override
+            public Optional<BigDecimal> getCurrentPrice(String symbolKey) {
+                throw new AssertionError("single quote lookup should not be used: " + symbolKey);
+            }
+
+            @Override
+            public Map<String, BigDecimal> getCurrentPrices(Collection<String> symbolKeys) {
+                batchCalls.incrementAndGet();
+                return Map.of(
+                        "TW:TWSE:2330", new BigDecimal("110"),
+                        "US:XNAS:AAPL", new BigDecimal("60"));
+            }
+        };
+
+        when(portfolioRepository.findByIdAndUserId(20L, 10L)).thenReturn(Optional.of(portfolio));
+        when(positionRepository.findByPortfolioId(20L)).thenReturn(List.of(first, second));
+        when(instrumentRepository.findAllById(any())).thenReturn(List.of(tsmc, apple));
+
+        PortfolioSummary summary = queryService.getPortfolioSummary(10L, 20L, quoteProvider);
+
+        assertEquals(1, batchCalls.get());
+        assertDecimalEquals("170.000000", summary.totalMarketValue());
+        assertDecimalEquals("150.000000", summary.totalCost());
+    }
+
     @Test
     void listTrades_shouldMapInstrumentFromSingleBulkLoad() {
         PortfolioEntity portfolio = portfolio(20L, 10L);
@@ -121,6 +158,16 @@ class PortfolioQueryServiceTest {
         verify(instrumentRepository, never()).findById(anyLong());
     }
 
+    private UserPositionEntity position(Long portfolioId, Long instrumentId, String quantity, String avgCost) {
+        UserPositionEntity position = new UserPositionEntity();
+        position.setPortfolioId(portfolioId);
+        position.setInstrumentId(instrumentId);
+        position.setTotalQuantity(new BigDecimal(quantity));
+        position.setAvgCostNative(new BigDecimal(avgCost));
+        position.setCurrency("TWD");
+        return position;
+    }
+
     private PortfolioEntity portfolio(Long id, Long userId) {
         PortfolioEntity portfolio = new PortfolioEntity();
         portfolio.setId(id);
@@ -3,20 +3,18 @@ package tw.bk.apprag.client;
 import java.time.Duration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
+import tw.bk.appcommon.http.OutboundHttpClientFactory;
 
 @Configuration
 public class AiWorkerRagClientConfig {
 
     @Bean
-    public WebClient aiWorkerRagWebClient(AiWorkerRagProperties properties, WebClient.Builder builder) {
-        HttpClient httpClient = HttpClient.create()
-                .responseTimeout(timeout(properties));
+    public WebClient aiWorkerRagWebClient(
+            AiWorkerRagProperties properties, WebClient.Builder builder, OutboundHttpClientFactory httpClients) {
         return builder
                 .baseUrl(properties.getBaseUrl())
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .clientConnector(httpClients.connector("ai-worker-rag", properties.getBaseUrl(), timeout(properties)))
                 .build();
     }
 
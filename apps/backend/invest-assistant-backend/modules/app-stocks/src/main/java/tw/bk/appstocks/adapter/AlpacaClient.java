@@ -1,22 +1,24 @@
 package tw.bk.appstocks.adapter;
 
 import java.math.BigDecimal;
-import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
@@ -32,6 +34,7 @@ import tw.bk.appstocks.model.Quote;
 import tw.bk.appstocks.port.StockMarketClient;
 import tw.bk.appstocks.service.ExternalApiRateLimiter;
 import tw.bk.appstocks.service.StockMetricsRecorder;
+import tw.bk.appstocks.service.VendorCallPermit;
 
 @Slf4j
 @Component
@@ -39,6 +42,7 @@ import tw.bk.appstocks.service.StockMetricsRecorder;
 public class AlpacaClient implements StockMarketClient {
     private static final String VENDOR = "alpaca";
     private static final String ENDPOINT_QUOTE = "quote";
+    private static final String ENDPOINT_QUOTES = "quotes";
     private static final String ENDPOINT_CANDLES = "candles";
     private static final String HEADER_KEY_ID = "APCA-API-KEY-ID";
     private static final String HEADER_SECRET_KEY = "APCA-API-SECRET-KEY";
@@ -47,29 +51,19 @@ public class AlpacaClient implements StockMarketClient {
     private final StockMarketProperties properties;
     private final ExternalApiRateLimiter rateLimiter;
     private final StockMetricsRecorder metricsRecorder;
-    private final RestClient restClient = buildRestClient();
-
-    /**
-     * 建立帶有連線/讀取逾時的 RestClient，避免外部報價來源變慢時整個請求 hang 住
-     * （portfolio summary/positions 會逐檔抓報價，沒有逾時會累加成前端 timeout）。
-     */
-    private static RestClient buildRestClient() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(Duration.ofSeconds(3));
-        factory.setReadTimeout(Duration.ofSeconds(5));
-        return RestClient.builder().requestFactory(factory).build();
-    }
+    @Qualifier("alpacaRestClient")
+    private final RestClient alpacaRestClient;
 
     @Override
     public Optional<Quote> getQuote(String ticker) {
-        rateLimiter.acquire(VENDOR, ENDPOINT_QUOTE);
+        VendorCallPermit permit = rateLimiter.acquire(VENDOR, ENDPOINT_QUOTE);
         long startedAt = System.nanoTime();
         try {
             String url = String.format("%s/v2/stocks/quotes/latest?symbols=%s&feed=iex",
                     properties.getAlpaca().getBaseUrl(),
                     ticker);
 
-            ResponseEntity<AlpacaQuotesResponse> response = restClient.get()
+            ResponseEntity<AlpacaQuotesResponse> response = alpacaRestClient.get()
                     .uri(url)
                     .header(HEADER_KEY_ID, properties.getAlpaca().getKeyId().trim())
                     .header(HEADER_SECRET_KEY, properties.getAlpaca().getSecretKey().trim())
@@ -79,6 +73,7 @@ public class AlpacaClient implements StockMarketClient {
             String requestId = extractRequestId(response.getHeaders());
             int status = response.getStatusCode().value();
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(status, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_QUOTE, status, latencyMs, true);
             log.info(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={}",
@@ -96,27 +91,12 @@ public class AlpacaClient implements StockMarketClient {
                 return Optional.empty();
             }
 
-            AlpacaQuotesResponse.QuoteData quoteData = body.getQuotes().get(ticker);
-            BigDecimal bidPrice = quoteData.getBp() != null ? quoteData.getBp() : BigDecimal.ZERO;
-            BigDecimal askPrice = quoteData.getAp() != null ? quoteData.getAp() : BigDecimal.ZERO;
-            BigDecimal midPrice = bidPrice.add(askPrice).divide(BigDecimal.valueOf(2));
-
-            return Optional.of(Quote.builder()
-                    .ticker(ticker)
-                    .price(midPrice)
-                    .open(null)
-                    .high(null)
-                    .low(null)
-                    .previousClose(null)
-                    .volume(null)
-                    .change(null)
-                    .changePercent(null)
-                    .timestamp(parseTimestamp(quoteData.getT()))
-                    .build());
+            return Optional.of(toQuote(ticker, body.getQuotes().get(ticker)));
         } catch (RestClientResponseException ex) {
             long latencyMs = elapsedMillis(startedAt);
             int status = ex.getStatusCode().value();
             String requestId = extractRequestId(ex.getResponseHeaders());
+            permit.complete(status, latencyMs, ex.getResponseHeaders());
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_QUOTE, status, latencyMs, false);
             log.warn(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} error={}",
@@ -135,6 +115,7 @@ public class AlpacaClient implements StockMarketClient {
             return Optional.empty();
         } catch (Exception ex) {
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(null, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_QUOTE, null, latencyMs, false);
             log.warn(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} error={}",
@@ -151,15 +132,110 @@ public class AlpacaClient implements StockMarketClient {
         }
     }
 
+    /**
+     * 以單次 /v2/stocks/quotes/latest?symbols=A,B,C 請求取得多檔報價
+     */
+    @Override
+    public Map<String, Quote> getQuotes(Collection<String> tickers) {
+        Set<String> symbols = new LinkedHashSet<>();
+        if (tickers != null) {
+            for (String ticker : tickers) {
+                if (ticker != null && !ticker.isBlank()) {
+                    symbols.add(ticker.trim());
+                }
+            }
+        }
+        if (symbols.isEmpty()) {
+            return Map.of();
+        }
+        if (symbols.size() == 1) {
+            String ticker = symbols.iterator().next();
+            return getQuote(ticker).map(quote -> Map.of(ticker, quote)).orElseGet(Map::of);
+        }
+
+        String joined = String.join(",", symbols);
+        VendorCallPermit permit = rateLimiter.acquire(VENDOR, ENDPOINT_QUOTES);
+        long startedAt = System.nanoTime();
+        try {
+            String url = String.format("%s/v2/stocks/quotes/latest?symbols=%s&feed=iex",
+                    properties.getAlpaca().getBaseUrl(),
+                    joined);
+
+            ResponseEntity<AlpacaQuotesResponse> response = alpacaRestClient.get()
+                    .uri(url)
+                    .header(HEADER_KEY_ID, properties.getAlpaca().getKeyId().trim())
+                    .header(HEADER_SECRET_KEY, properties.getAlpaca().getSecretKey().trim())
+                    .retrieve()
+                    .toEntity(AlpacaQuotesResponse.class);
+
+            String requestId = extractRequestId(response.getHeaders());
+            int status = response.getStatusCode().value();
+            long latencyMs = elapsedMillis(startedAt);
+            permit.complete(status, latencyMs);
+            metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_QUOTES, status, latencyMs, true);
+            log.info(
+                    "external_api_call vendor={} endpoint={} tickers={} status={} latency_ms={} request_id={} trace_id={}",
+                    VENDOR,
+                    ENDPOINT_QUOTES,
+                    joined,
+                    status,
+                    latencyMs,
+                    requestId,
+                    TraceIdUtils.getTraceId());
+
+            AlpacaQuotesResponse body = response.getBody();
+            if (body == null || body.getQuotes() == null) {
+                log.warn("Alpaca quotes not found for tickers: {}", joined);
+                return Map.of();
+            }
+
+            Map<String, Quote> result = new LinkedHashMap<>();
+            for (String ticker : symbols) {
+                AlpacaQuotesResponse.QuoteData quoteData = body.getQuotes().get(ticker);
+                if (quoteData != null) {
+                    result.put(ticker, toQuote(ticker, quoteData));
+                }
+            }
+            return result;
+        } catch (RestClientResponseException ex) {
+            long latencyMs = elapsedMillis(startedAt);
+            int status = ex.getStatusCode().value();
+            String requestId = extractRequestId(ex.getResponseHeaders());
+            permit.complete(status, latencyMs, ex.getResponseHeaders());
+            metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_QUOTES, status, latencyMs, false);
+            log.warn(
+                    "external_api_call vendor={} endpoint={} tickers={} status={} latency_ms={} request_id={} trace_id={} error={}",
+                    VENDOR,
+                    ENDPOINT_QUOTES,
+                    joined,
+                    status,
+                    latencyMs,
+                    requestId,
+                    TraceIdUtils.getTraceId(),
+                    ex.getMessage());
+            if (status == 429) {
+                throw rateLimited("Alpaca", joined, ex.getResponseHeaders());
+            }
+            log.error("Failed to fetch quotes from Alpaca for tickers: {}", joined, ex);
+            return Map.of();
+        } catch (Exception ex) {
+            long latencyMs = elapsedMillis(startedAt);
+            permit.complete(null, latencyMs);
+            metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_QUOTES, null, latencyMs, false);
+            log.error("Failed to fetch quotes from Alpaca for tickers: {}", joined, ex);
+            return Map.of();
+        }
+    }
+
     @Override
     public List<Candle> getCandles(String ticker, String interval, LocalDate from, LocalDate to) {
-        rateLimiter.acquire(VENDOR, ENDPOINT_CANDLES);
+        VendorCallPermit permit = rateLimiter.acquire(VENDOR, ENDPOINT_CANDLES);
         long startedAt = System.nanoTime();
         try {
             String timeframe = convertInterval(interval);
             String url = buildCandlesUrl(ticker, timeframe, from, to);
 
-            ResponseEntity<AlpacaBarsResponse> response = restClient.get()
+            ResponseEntity<AlpacaBarsResponse> response = alpacaRestClient.get()
                     .uri(url)
                     .header(HEADER_KEY_ID, properties.getAlpaca().getKeyId())
                     .header(HEADER_SECRET_KEY, properties.getAlpaca().getSecretKey())
@@ -169,6 +245,7 @@ public class AlpacaClient implements StockMarketClient {
             String requestId = extractRequestId(response.getHeaders());
             int status = response.getStatusCode().value();
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(status, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_CANDLES, status, latencyMs, true);
             log.info(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} interval={}",
@@ -182,7 +259,10 @@ public class AlpacaClient implements StockMarketClient {
                     interval);
 
             AlpacaBarsResponse body = response.getBody();
-            if (body == null || body.getBars() == null || !body.getBars().containsKey(ticker)) {
+            if (body == null) {
+                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Alpaca candles fetch failed: empty body");
+            }
+            if (body.getBars() == null || !body.getBars().containsKey(ticker)) {
                 log.warn("Alpaca bars not found for ticker: {}", ticker);
                 return List.of();
             }
@@ -212,6 +292,7 @@ public class AlpacaClient implements StockMarketClient {
             long latencyMs = elapsedMillis(startedAt);
             int status = ex.getStatusCode().value();
             String requestId = extractRequestId(ex.getResponseHeaders());
+            permit.complete(status, latencyMs, ex.getResponseHeaders());
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_CANDLES, status, latencyMs, false);
             log.warn(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} interval={} error={}",
@@ -228,9 +309,12 @@ public class AlpacaClient implements StockMarketClient {
                 throw rateLimited("Alpaca", ticker, ex.getResponseHeaders());
             }
             log.error("Failed to fetch candles from Alpaca for ticker: {}", ticker, ex);
-            return List.of();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Alpaca candles fetch failed: status " + status);
+        } catch (BusinessException ex) {
+            throw ex;
         } catch (Exception ex) {
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(null, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_CANDLES, null, latencyMs, false);
             log.warn(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} interval={} error={}",
@@ -244,7 +328,7 @@ public class AlpacaClient implements StockMarketClient {
                     interval,
                     ex.getMessage());
             log.error("Failed to fetch candles from Alpaca for ticker: {}", ticker, ex);
-            return List.of();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Alpaca candles fetch failed");
         }
     }
 
@@ -253,6 +337,30 @@ public class AlpacaClient implements StockMarketClient {
         return MarketCode.US;
     }
 
+    @Override
+    public String getVendor() {
+        return VENDOR;
+    }
+
+    private Quote toQuote(String ticker, AlpacaQuotesResponse.QuoteData quoteData) {
+        BigDecimal bidPrice = quoteData.getBp() != null ? quoteData.getBp() : BigDecimal.ZERO;
+        BigDecimal askPrice = quoteData.getAp() != null ? quoteData.getAp() : BigDecimal.ZERO;
+        BigDecimal midPrice = bidPrice.add(askPrice).divide(BigDecimal.valueOf(2));
+
+        return Quote.builder()
+                .ticker(ticker)
+                .price(midPrice)
+                .open(null)
+                .high(null)
+                .low(null)
+                .previousClose(null)
+                .volume(null)
+                .change(null)
+                .changePercent(null)
+                .timestamp(parseTimestamp(quoteData.getT()))
+                .build();
+    }
+
     private String buildCandlesUrl(String ticker, String timeframe, LocalDate from, LocalDate to) {
         StringBuilder url = new StringBuilder();
         url.append(properties.getAlpaca().getBaseUrl())
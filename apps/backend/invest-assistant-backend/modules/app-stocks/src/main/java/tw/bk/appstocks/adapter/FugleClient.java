@@ -1,10 +1,10 @@
 package tw.bk.appstocks.adapter;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -16,11 +16,12 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
@@ -42,6 +43,7 @@ import tw.bk.appstocks.port.StockMarketClient;
 import tw.bk.appstocks.service.CandleAggregator;
 import tw.bk.appstocks.service.ExternalApiRateLimiter;
 import tw.bk.appstocks.service.StockMetricsRecorder;
+import tw.bk.appstocks.service.VendorCallPermit;
 
 @Slf4j
 @Component
@@ -52,6 +54,12 @@ public class FugleClient implements StockMarketClient {
     private static final String ENDPOINT_CANDLES = "candles";
     private static final String ENDPOINT_TICKERS = "tickers";
     private static final String ENDPOINT_TICKER_DETAIL = "ticker_detail";
+    private static final String ENDPOINT_SNAPSHOT = "snapshot";
+    /**
+     * 上市、上櫃；ALLBUT0999 排除權證（權證報價走 TPEx 全市場行情）
+     */
+    private static final List<String> SNAPSHOT_MARKETS = List.of("TSE", "OTC");
+    private static final String SNAPSHOT_TYPE = "ALLBUT0999";
     private static final String HEADER_API_KEY = "X-API-KEY";
     private static final String HEADER_REQUEST_ID = "X-Request-ID";
 
@@ -60,33 +68,24 @@ public class FugleClient implements StockMarketClient {
     private final ExternalApiRateLimiter rateLimiter;
     private final StockMetricsRecorder metricsRecorder;
     private final CandleAggregator candleAggregator;
-    private final RestClient restClient = buildRestClient();
-
-    /**
-     * 建立帶有連線/讀取逾時的 RestClient，避免外部報價來源變慢時整個請求 hang 住
-     * （portfolio summary/positions 會逐檔抓報價，沒有逾時會累加成前端 timeout）。
-     */
-    private static RestClient buildRestClient() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(Duration.ofSeconds(3));
-        factory.setReadTimeout(Duration.ofSeconds(5));
-        return RestClient.builder().requestFactory(factory).build();
-    }
+    @Qualifier("fugleRestClient")
+    private final RestClient fugleRestClient;
 
     @Override
     public Optional<Quote> getQuote(String ticker) {
-        rateLimiter.acquire(VENDOR, ENDPOINT_QUOTE);
+        VendorCallPermit permit = rateLimiter.acquire(VENDOR, ENDPOINT_QUOTE);
         long startedAt = System.nanoTime();
         try {
             String url = buildUrl("/intraday/quote", ticker);
 
-            ResponseEntity<FugleQuoteResponse> entity = withApiKey(restClient.get().uri(url))
+            ResponseEntity<FugleQuoteResponse> entity = withApiKey(fugleRestClient.get().uri(url))
                     .retrieve()
                     .toEntity(FugleQuoteResponse.class);
 
             String requestId = extractRequestId(entity.getHeaders());
             int status = entity.getStatusCode().value();
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(status, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_QUOTE, status, latencyMs, true);
             log.info(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={}",
@@ -121,9 +120,10 @@ public class FugleClient implements StockMarketClient {
                     .timestamp(Instant.now())
                     .build());
         } catch (RestClientResponseException ex) {
-            return handleRestClientError(ticker, ENDPOINT_QUOTE, startedAt, ex, true);
+            return handleRestClientError(ticker, ENDPOINT_QUOTE, permit, startedAt, ex, true);
         } catch (Exception ex) {
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(null, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_QUOTE, null, latencyMs, false);
             log.warn(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} error={}",
@@ -142,7 +142,7 @@ public class FugleClient implements StockMarketClient {
 
     @Override
     public List<Candle> getCandles(String ticker, String interval, LocalDate from, LocalDate to) {
-        rateLimiter.acquire(VENDOR, ENDPOINT_CANDLES);
+        VendorCallPermit permit = rateLimiter.acquire(VENDOR, ENDPOINT_CANDLES);
         long startedAt = System.nanoTime();
         try {
             String path = shouldUseHistorical(interval, from, to)
@@ -150,13 +150,14 @@ public class FugleClient implements StockMarketClient {
                     : "/intraday/candles";
             String url = buildUrl(path, ticker);
 
-            ResponseEntity<FugleCandlesResponse> entity = withApiKey(restClient.get().uri(url))
+            ResponseEntity<FugleCandlesResponse> entity = withApiKey(fugleRestClient.get().uri(url))
                     .retrieve()
                     .toEntity(FugleCandlesResponse.class);
 
             String requestId = extractRequestId(entity.getHeaders());
             int status = entity.getStatusCode().value();
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(status, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_CANDLES, status, latencyMs, true);
             log.info(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} interval={}",
@@ -170,7 +171,10 @@ public class FugleClient implements StockMarketClient {
                     interval);
 
             FugleCandlesResponse response = entity.getBody();
-            if (response == null || response.getData() == null) {
+            if (response == null) {
+                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Fugle candles fetch failed: empty body");
+            }
+            if (response.getData() == null) {
                 log.warn("Fugle returned empty candles for ticker: {}", ticker);
                 return List.of();
             }
@@ -200,9 +204,12 @@ public class FugleClient implements StockMarketClient {
             }
             return candles;
         } catch (RestClientResponseException ex) {
-            return handleRestClientErrorList(ticker, ENDPOINT_CANDLES, interval, startedAt, ex);
+            throw handleRestClientErrorList(ticker, ENDPOINT_CANDLES, interval, permit, startedAt, ex);
+        } catch (BusinessException ex) {
+            throw ex;
         } catch (Exception ex) {
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(null, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_CANDLES, null, latencyMs, false);
             log.warn(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} interval={} error={}",
@@ -216,13 +223,13 @@ public class FugleClient implements StockMarketClient {
                     interval,
                     ex.getMessage());
             log.error("Failed to fetch candles from Fugle for ticker: {}", ticker, ex);
-            return List.of();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Fugle candles fetch failed");
         }
     }
 
     @Override
     public Optional<TickerList> getTickers(TickerQuery query) {
-        rateLimiter.acquire(VENDOR, ENDPOINT_TICKERS);
+        VendorCallPermit permit = rateLimiter.acquire(VENDOR, ENDPOINT_TICKERS);
         long startedAt = System.nanoTime();
         try {
             String baseUrl = buildUrl("/intraday/tickers");
@@ -240,13 +247,14 @@ public class FugleClient implements StockMarketClient {
             }
 
             String url = builder.build(true).toUriString();
-            ResponseEntity<String> entity = withApiKey(restClient.get().uri(url))
-                    .retrieve()
-                    .toEntity(String.class);
+            StreamedTickers streamed = StreamingResponse.exchange(withApiKey(fugleRestClient.get().uri(url)),
+                    (statusCode, headers, body) -> new StreamedTickers(
+                            statusCode.value(), headers, parseTickerList(body, query)));
 
-            String requestId = extractRequestId(entity.getHeaders());
-            int status = entity.getStatusCode().value();
+            String requestId = extractRequestId(streamed.headers());
+            int status = streamed.status();
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(status, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_TICKERS, status, latencyMs, true);
             log.info(
                     "external_api_call vendor={} endpoint={} status={} latency_ms={} request_id={} trace_id={}",
@@ -257,18 +265,12 @@ public class FugleClient implements StockMarketClient {
                     requestId,
                     TraceIdUtils.getTraceId());
 
-            String body = entity.getBody();
-            if (body == null || body.isBlank()) {
-                return Optional.empty();
-            }
-
-            JsonNode root = objectMapper.readTree(body);
-            TickerList list = parseTickerList(root, query);
-            return Optional.ofNullable(list);
+            return Optional.ofNullable(streamed.list());
         } catch (RestClientResponseException ex) {
             long latencyMs = elapsedMillis(startedAt);
             int status = ex.getStatusCode().value();
             String requestId = extractRequestId(ex.getResponseHeaders());
+            permit.complete(status, latencyMs, ex.getResponseHeaders());
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_TICKERS, status, latencyMs, false);
             log.warn(
                     "external_api_call vendor={} endpoint={} status={} latency_ms={} request_id={} trace_id={} error={}",
@@ -284,13 +286,9 @@ public class FugleClient implements StockMarketClient {
             }
             log.error("Failed to fetch tickers from Fugle", ex);
             return Optional.empty();
-        } catch (IOException ex) {
-            long latencyMs = elapsedMillis(startedAt);
-            metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_TICKERS, null, latencyMs, false);
-            log.error("Failed to parse Fugle tickers response", ex);
-            return Optional.empty();
         } catch (Exception ex) {
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(null, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_TICKERS, null, latencyMs, false);
             log.error("Failed to fetch tickers from Fugle", ex);
             return Optional.empty();
@@ -303,17 +301,18 @@ public class FugleClient implements StockMarketClient {
         }
 
         String symbol = ticker.trim();
-        rateLimiter.acquire(VENDOR, ENDPOINT_TICKER_DETAIL);
+        VendorCallPermit permit = rateLimiter.acquire(VENDOR, ENDPOINT_TICKER_DETAIL);
         long startedAt = System.nanoTime();
         try {
             String url = buildUrl("/intraday/ticker", symbol);
-            ResponseEntity<FugleTickerResponse> entity = withApiKey(restClient.get().uri(url))
+            ResponseEntity<FugleTickerResponse> entity = withApiKey(fugleRestClient.get().uri(url))
                     .retrieve()
                     .toEntity(FugleTickerResponse.class);
 
             String requestId = extractRequestId(entity.getHeaders());
             int status = entity.getStatusCode().value();
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(status, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_TICKER_DETAIL, status, latencyMs, true);
             log.info(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={}",
@@ -330,6 +329,7 @@ public class FugleClient implements StockMarketClient {
             long latencyMs = elapsedMillis(startedAt);
             int status = ex.getStatusCode().value();
             String requestId = extractRequestId(ex.getResponseHeaders());
+            permit.complete(status, latencyMs, ex.getResponseHeaders());
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_TICKER_DETAIL, status, latencyMs, false);
             log.warn(
                     "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} error={}",
@@ -348,26 +348,191 @@ public class FugleClient implements StockMarketClient {
             return Optional.empty();
         } catch (Exception ex) {
             long latencyMs = elapsedMillis(startedAt);
+            permit.complete(null, latencyMs);
             metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_TICKER_DETAIL, null, latencyMs, false);
             log.error("Failed to fetch ticker detail from Fugle: {}", symbol, ex);
             return Optional.empty();
         }
     }
 
+    @Override
+    public boolean supportsMarketSnapshot() {
+        return properties.getFugle().isSnapshotEnabled();
+    }
+
+    /**
+     * 依序取得上市、上櫃全市場快照（每個市場一次呼叫）；單一市場失敗時仍繼續其他市場，
+     * 全部跑完後拋出列出失敗市場的例外，已交給 consumer 的列仍有效。429 直接拋出，不再呼叫後續市場
+     */
+    @Override
+    public int streamMarketSnapshot(Consumer<Quote> consumer) {
+        int delivered = 0;
+        List<String> failedMarkets = new ArrayList<>();
+        for (String market : SNAPSHOT_MARKETS) {
+            try {
+                delivered += streamSnapshot(market, consumer);
+            } catch (BusinessException ex) {
+                if (ex.getErrorCode() == ErrorCode.RATE_LIMITED) {
+                    throw ex;
+                }
+                failedMarkets.add(market);
+            }
+        }
+        if (!failedMarkets.isEmpty()) {
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR,
+                    "Fugle snapshot failed: markets=" + failedMarkets + ", delivered=" + delivered);
+        }
+        return delivered;
+    }
+
+    private int streamSnapshot(String market, Consumer<Quote> consumer) {
+        VendorCallPermit permit = rateLimiter.acquire(VENDOR, ENDPOINT_SNAPSHOT);
+        long startedAt = System.nanoTime();
+        try {
+            String url = UriComponentsBuilder.fromUriString(buildUrl("/snapshot/quotes", market))
+                    .queryParam("type", SNAPSHOT_TYPE)
+                    .build(true)
+                    .toUriString();
+            StreamedSnapshot streamed = StreamingResponse.exchange(withApiKey(fugleRestClient.get().uri(url)),
+                    (statusCode, headers, body) -> new StreamedSnapshot(
+                            statusCode.value(), headers, parseSnapshot(body, consumer)));
+
+            String requestId = extractRequestId(streamed.headers());
+            int status = streamed.status();
+            long latencyMs = elapsedMillis(startedAt);
+            permit.complete(status, latencyMs);
+            metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_SNAPSHOT, status, latencyMs, true);
+            log.info(
+                    "external_api_call vendor={} endpoint={} market={} status={} latency_ms={} rows={} request_id={} trace_id={}",
+                    VENDOR,
+                    ENDPOINT_SNAPSHOT,
+                    market,
+                    status,
+                    latencyMs,
+                    streamed.rows(),
+                    requestId,
+                    TraceIdUtils.getTraceId());
+            return streamed.rows();
+        } catch (RestClientResponseException ex) {
+            long latencyMs = elapsedMillis(startedAt);
+            int status = ex.getStatusCode().value();
+            String requestId = extractRequestId(ex.getResponseHeaders());
+            permit.complete(status, latencyMs, ex.getResponseHeaders());
+            metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_SNAPSHOT, status, latencyMs, false);
+            log.warn(
+                    "external_api_call vendor={} endpoint={} market={} status={} latency_ms={} request_id={} trace_id={} error={}",
+                    VENDOR,
+                    ENDPOINT_SNAPSHOT,
+                    market,
+                    status,
+                    latencyMs,
+                    requestId,
+                    TraceIdUtils.getTraceId(),
+                    ex.getMessage());
+            if (status == 429) {
+                throw rateLimited("Fugle", market, ex.getResponseHeaders());
+            }
+            log.error("Failed to fetch market snapshot from Fugle: {}", market, ex);
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR,
+                    "Fugle snapshot fetch failed: " + market + " status " + status);
+        } catch (Exception ex) {
+            long latencyMs = elapsedMillis(startedAt);
+            permit.complete(null, latencyMs);
+            metricsRecorder.recordExternalCall(VENDOR, ENDPOINT_SNAPSHOT, null, latencyMs, false);
+            log.error("Failed to fetch market snapshot from Fugle: {}", market, ex);
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Fugle snapshot fetch failed: " + market);
+        }
+    }
+
+    /**
+     * 以 JsonParser 在回應串流上逐列解析快照 {@code data}，每列轉成報價後立即交給 consumer；
+     * 沒有成交價（盤前或整日未成交）的列略過。回傳交給 consumer 的筆數
+     */
+    int parseSnapshot(InputStream body, Consumer<Quote> consumer) throws IOException {
+        int[] delivered = {0};
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonRowStreamReader.read(parser, false, row -> {
+                Quote quote = parseSnapshotRow(row);
+                if (quote != null) {
+                    consumer.accept(quote);
+                    delivered[0]++;
+                }
+            });
+        }
+        return delivered[0];
+    }
+
+    private Quote parseSnapshotRow(Map<String, String> row) {
+        String symbol = readText(row, "symbol", null);
+        BigDecimal closePrice = readDecimal(row, "closePrice");
+        if (symbol == null || closePrice == null) {
+            return null;
+        }
+        BigDecimal change = readDecimal(row, "change");
+        BigDecimal volume = readDecimal(row, "tradeVolume");
+        return Quote.builder()
+                .ticker(symbol.trim())
+                .price(closePrice)
+                .open(readDecimal(row, "openPrice"))
+                .high(readDecimal(row, "highPrice"))
+                .low(readDecimal(row, "lowPrice"))
+                .previousClose(change != null ? closePrice.subtract(change) : null)
+                .volume(volume != null ? volume.longValue() : null)
+                .change(change != null ? change : BigDecimal.ZERO)
+                .changePercent(readDecimal(row, "changePercent"))
+                .timestamp(readMicrosTimestamp(row, "lastUpdated"))
+                .build();
+    }
+
+    private BigDecimal readDecimal(Map<String, String> fields, String field) {
+        String text = readText(fields, field, null);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(text.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 快照的 lastUpdated 為 epoch 微秒；缺漏時以目前時間代替（與單檔報價相同）
+     */
+    private Instant readMicrosTimestamp(Map<String, String> fields, String field) {
+        String text = readText(fields, field, null);
+        if (text != null) {
+            try {
+                long micros = Long.parseLong(text.trim());
+                return Instant.ofEpochSecond(micros / 1_000_000L, (micros % 1_000_000L) * 1_000L);
+            } catch (NumberFormatException ex) {
+                log.debug("Invalid snapshot timestamp: {}", text);
+            }
+        }
+        return Instant.now();
+    }
+
     @Override
     public MarketCode getSupportedMarket() {
         return MarketCode.TW;
     }
 
+    @Override
+    public String getVendor() {
+        return VENDOR;
+    }
+
     private Optional<Quote> handleRestClientError(
             String ticker,
             String endpoint,
+            VendorCallPermit permit,
             long startedAt,
             RestClientResponseException ex,
             boolean quoteFlow) {
         long latencyMs = elapsedMillis(startedAt);
         int status = ex.getStatusCode().value();
         String requestId = extractRequestId(ex.getResponseHeaders());
+        permit.complete(status, latencyMs, ex.getResponseHeaders());
         metricsRecorder.recordExternalCall(VENDOR, endpoint, status, latencyMs, false);
         log.warn(
                 "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} error={}",
@@ -388,15 +553,20 @@ public class FugleClient implements StockMarketClient {
         return Optional.empty();
     }
 
-    private List<Candle> handleRestClientErrorList(
+    /**
+     * 記錄失敗的 K 線呼叫並回傳要拋出的例外（429 為 RATE_LIMITED），不以空清單冒充「無資料」
+     */
+    private BusinessException handleRestClientErrorList(
             String ticker,
             String endpoint,
             String interval,
+            VendorCallPermit permit,
             long startedAt,
             RestClientResponseException ex) {
         long latencyMs = elapsedMillis(startedAt);
         int status = ex.getStatusCode().value();
         String requestId = extractRequestId(ex.getResponseHeaders());
+        permit.complete(status, latencyMs, ex.getResponseHeaders());
         metricsRecorder.recordExternalCall(VENDOR, endpoint, status, latencyMs, false);
         log.warn(
                 "external_api_call vendor={} endpoint={} ticker={} status={} latency_ms={} request_id={} trace_id={} interval={} error={}",
@@ -410,10 +580,10 @@ public class FugleClient implements StockMarketClient {
                 interval,
                 ex.getMessage());
         if (status == 429) {
-            throw rateLimited("Fugle", ticker, ex.getResponseHeaders());
+            return rateLimited("Fugle", ticker, ex.getResponseHeaders());
         }
         log.error("Failed to fetch candles from Fugle for ticker: {}", ticker, ex);
-        return List.of();
+        return new BusinessException(ErrorCode.INTERNAL_ERROR, "Fugle candles fetch failed: status " + status);
     }
 
     private boolean shouldUseHistorical(String interval, LocalDate from, LocalDate to) {
@@ -488,20 +658,25 @@ public class FugleClient implements StockMarketClient {
         return value ? "1" : "0";
     }
 
-    private TickerList parseTickerList(JsonNode root, TickerQuery query) {
-        if (root == null || root.isNull()) {
+    /**
+     * 以 JsonParser 在回應串流上逐列解析 tickers（全市場清單不建立 JsonNode 樹）；空回應回傳 null
+     */
+    TickerList parseTickerList(InputStream body, TickerQuery query) throws IOException {
+        List<TickerItem> items = new ArrayList<>();
+        Map<String, String> root;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            root = JsonRowStreamReader.read(parser, true, row -> {
+                TickerItem item = parseTickerItem(row);
+                if (item.getSymbol() != null && !item.getSymbol().isBlank()) {
+                    items.add(item);
+                }
+            });
+        }
+        if (root == null) {
             return null;
         }
 
-        List<TickerItem> items = extractItems(root).stream()
-                .map(this::parseTickerItem)
-                .filter(item -> item.getSymbol() != null && !item.getSymbol().isBlank())
-                .collect(java.util.stream.Collectors.toList());
-
-        String market = readText(root, "market");
-        if (market == null && query != null) {
-            market = query.getMarket();
-        }
+        String market = readText(root, "market", query != null ? query.getMarket() : null);
 
         return TickerList.builder()
                 .date(readDate(root, "date"))
@@ -517,91 +692,46 @@ public class FugleClient implements StockMarketClient {
                 .build();
     }
 
-    private List<JsonNode> extractItems(JsonNode root) {
-        if (root.has("data")) {
-            JsonNode dataNode = root.get("data");
-            if (dataNode.isArray()) {
-                return toList(dataNode);
-            }
-            if (dataNode.isObject() && dataNode.has("data") && dataNode.get("data").isArray()) {
-                return toList(dataNode.get("data"));
-            }
-        }
-        if (root.has("items") && root.get("items").isArray()) {
-            return toList(root.get("items"));
-        }
-        for (JsonNode field : root) {
-            if (field.isArray()) {
-                return toList(field);
-            }
-        }
-        return List.of();
-    }
-
-    private List<JsonNode> toList(JsonNode arrayNode) {
-        List<JsonNode> list = new ArrayList<>();
-        arrayNode.forEach(list::add);
-        return list;
-    }
-
-    private TickerItem parseTickerItem(JsonNode node) {
-        String symbol = readText(node, "symbol", readText(node, "ticker", readText(node, "code", null)));
-        String name = readText(node, "name",
-                readText(node, "nameZh",
-                        readText(node, "nameEn",
-                                readText(node, "cname",
-                                        readText(node, "ename", symbol)))));
+    private TickerItem parseTickerItem(Map<String, String> row) {
+        String symbol = readText(row, "symbol", readText(row, "ticker", readText(row, "code", null)));
+        String name = readText(row, "name",
+                readText(row, "nameZh",
+                        readText(row, "nameEn",
+                                readText(row, "cname",
+                                        readText(row, "ename", symbol)))));
         return TickerItem.builder()
                 .symbol(symbol)
                 .name(name)
                 .build();
     }
 
-    private String readText(JsonNode node, String field) {
-        return readText(node, field, null);
-    }
-
-    private String readText(JsonNode node, String field, String fallback) {
-        if (node == null || field == null) {
-            return fallback;
-        }
-        JsonNode value = node.get(field);
-        if (value == null || value.isNull()) {
-            return fallback;
-        }
-        String text = value.asText();
+    private String readText(Map<String, String> fields, String field, String fallback) {
+        String text = fields.get(field);
         return text == null || text.isBlank() ? fallback : text;
     }
 
-    private Boolean readBoolean(JsonNode node, String field, Boolean fallback) {
-        if (node == null || field == null) {
-            return fallback;
-        }
-        JsonNode value = node.get(field);
-        if (value == null || value.isNull()) {
+    private Boolean readBoolean(Map<String, String> fields, String field, Boolean fallback) {
+        String text = fields.get(field);
+        if (text == null) {
             return fallback;
         }
-        if (value.isBoolean()) {
-            return value.asBoolean();
+        String normalized = text.trim().toLowerCase();
+        if ("true".equals(normalized)) {
+            return true;
         }
-        if (value.isNumber()) {
-            return value.asInt() != 0;
+        if ("false".equals(normalized)) {
+            return false;
         }
-        if (value.isTextual()) {
-            String text = value.asText().trim().toLowerCase();
-            if ("1".equals(text) || "true".equals(text)) {
-                return true;
-            }
-            if ("0".equals(text) || "false".equals(text)) {
-                return false;
-            }
+        try {
+            return Integer.parseInt(normalized) != 0;
+        } catch (NumberFormatException ex) {
+            return fallback;
         }
-        return fallback;
     }
 
-    private LocalDate readDate(JsonNode node, String field) {
-        String text = readText(node, field);
-        if (text == null || text.isBlank()) {
+    private LocalDate readDate(Map<String, String> fields, String field) {
+        String text = readText(fields, field, null);
+        if (text == null) {
             return null;
         }
         try {
@@ -642,4 +772,10 @@ public class FugleClient implements StockMarketClient {
         }
         return new BusinessException(ErrorCode.RATE_LIMITED, "External API rate limited", details);
     }
+
+    private record StreamedTickers(int status, HttpHeaders headers, TickerList list) {
+    }
+
+    private record StreamedSnapshot(int status, HttpHeaders headers, int rows) {
+    }
 }
@@ -0,0 +1,204 @@
+package tw.bk.appstocks.adapter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 以 Jackson streaming {@link JsonParser} 逐列讀取整份市場清單，不建立整份字串或 JsonNode 樹
+ * 支援的外型與各 client 原本的 extractItems 相同：
+ * <ul>
+ * <li>根為物件陣列</li>
+ * <li>根物件的 {@code data} / {@code Data} / {@code aaData} / {@code items} 陣列（或 {@code data.data}）</li>
+ * <li>資料列為陣列時，以同層 {@code fields} 的欄位名稱對應（fields 在資料之後出現時才暫存資料列）</li>
+ * </ul>
+ * 每列攤平為「欄位名稱 → 文字值」（null 與巢狀物件/陣列略過），交給 consumer 後即可回收
+ */
+final class JsonRowStreamReader {
+    private static final Set<String> ROW_ARRAY_FIELDS = Set.of("data", "Data", "aaData", "items");
+    private static final String FIELDS = "fields";
+
+    private JsonRowStreamReader() {
+    }
+
+    /**
+     * 讀取整份回應
+     *
+     * @param acceptAnyArray 根物件的資料列不在已知欄位時，是否以第一個陣列欄位作為資料列
+     * @return 根物件上的純量欄位（根為陣列時為空 Map）；回應為空時回傳 null
+     */
+    static Map<String, String> read(
+            JsonParser parser, boolean acceptAnyArray, Consumer<Map<String, String>> rowConsumer) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            return null;
+        }
+        Map<String, String> rootFields = new LinkedHashMap<>();
+        if (token == JsonToken.START_ARRAY) {
+            readRows(parser, new RowArrayState(), rowConsumer);
+        } else if (token == JsonToken.START_OBJECT) {
+            readContainer(parser, rootFields, acceptAnyArray, rowConsumer);
+        }
+        return rootFields;
+    }
+
+    /**
+     * 讀取一個含資料列的物件（目前 token 為 START_OBJECT），回傳是否已讀到資料列
+     */
+    private static boolean readContainer(
+            JsonParser parser,
+            Map<String, String> scalars,
+            boolean acceptAnyArray,
+            Consumer<Map<String, String>> rowConsumer) throws IOException {
+        RowArrayState state = new RowArrayState();
+        boolean consumed = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_ARRAY) {
+                if (FIELDS.equals(name)) {
+                    state.setFields(readFieldNames(parser), rowConsumer);
+                } else if (!consumed && (ROW_ARRAY_FIELDS.contains(name) || acceptAnyArray)) {
+                    consumed = readRows(parser, state, rowConsumer) > 0;
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (value == JsonToken.START_OBJECT) {
+                if (!consumed && "data".equals(name)) {
+                    consumed = readContainer(parser, new HashMap<>(), false, rowConsumer);
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (value != JsonToken.VALUE_NULL) {
+                scalars.put(name, parser.getText());
+            }
+        }
+        return consumed || state.flushed > 0;
+    }
+
+    /**
+     * 讀取資料列陣列（目前 token 為 START_ARRAY），回傳讀到的列數
+     */
+    private static int readRows(
+            JsonParser parser, RowArrayState state, Consumer<Map<String, String>> rowConsumer) throws IOException {
+        int rows = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_OBJECT) {
+                rowConsumer.accept(readFlatObject(parser));
+                rows++;
+            } else if (token == JsonToken.START_ARRAY) {
+                state.accept(readArrayValues(parser), rowConsumer);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static Map<String, String> readFlatObject(JsonParser parser) throws IOException {
+        Map<String, String> row = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            } else if (value != JsonToken.VALUE_NULL) {
+                row.put(name, parser.getText());
+            }
+        }
+        return row;
+    }
+
+    private static List<String> readArrayValues(JsonParser parser) throws IOException {
+        List<String> values = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                values.add(null);
+            } else {
+                values.add(token == JsonToken.VALUE_NULL ? null : parser.getText());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * fields 元素可為字串或 {name|field|key: ...} 物件
+     */
+    private static List<String> readFieldNames(JsonParser parser) throws IOException {
+        List<String> names = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_OBJECT) {
+                Map<String, String> field = readFlatObject(parser);
+                String name = field.get("name");
+                if (name == null) {
+                    name = field.get("field");
+                }
+                if (name == null) {
+                    name = field.get("key");
+                }
+                names.add(name);
+            } else if (token == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                names.add(null);
+            } else {
+                names.add(token == JsonToken.VALUE_NULL ? null : parser.getText());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 陣列型資料列與 fields 的對應；fields 尚未出現前的資料列先暫存
+     */
+    private static final class RowArrayState {
+        private List<String> fields;
+        private List<List<String>> pending;
+        private int flushed;
+
+        void setFields(List<String> names, Consumer<Map<String, String>> rowConsumer) {
+            fields = names;
+            if (pending != null) {
+                for (List<String> values : pending) {
+                    rowConsumer.accept(toRow(values));
+                    flushed++;
+                }
+                pending = null;
+            }
+        }
+
+        void accept(List<String> values, Consumer<Map<String, String>> rowConsumer) {
+            if (fields != null) {
+                rowConsumer.accept(toRow(values));
+                return;
+            }
+            if (pending == null) {
+                pending = new ArrayList<>();
+            }
+            pending.add(values);
+        }
+
+        private Map<String, String> toRow(List<String> values) {
+            Map<String, String> row = new HashMap<>();
+            int size = Math.min(fields.size(), values.size());
+            for (int i = 0; i < size; i++) {
+                String key = fields.get(i);
+                String value = values.get(i);
+                if (key == null || key.isBlank() || value == null) {
+                    continue;
+                }
+                row.put(key, value);
+            }
+            return row;
+        }
+    }
+}
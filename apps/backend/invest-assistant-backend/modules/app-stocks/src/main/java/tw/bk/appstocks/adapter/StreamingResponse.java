@@ -0,0 +1,46 @@
+package tw.bk.appstocks.adapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * 直接在回應 InputStream 上處理大型回應（不先讀成 String），處理完畢即關閉連線
+ * 非 2xx 時與 {@code retrieve()} 一樣丟出 {@link RestClientResponseException}（僅保留前 4KB 回應內容）
+ */
+final class StreamingResponse {
+    private static final int ERROR_BODY_LIMIT = 4096;
+
+    private StreamingResponse() {
+    }
+
+    @FunctionalInterface
+    interface BodyHandler<T> {
+        T handle(HttpStatusCode status, HttpHeaders headers, InputStream body) throws IOException;
+    }
+
+    static <T> T exchange(RestClient.RequestHeadersSpec<?> request, BodyHandler<T> handler) {
+        return request.exchange((clientRequest, response) -> {
+            HttpStatusCode status = response.getStatusCode();
+            if (status.isError()) {
+                byte[] body;
+                try (InputStream in = response.getBody()) {
+                    body = in.readNBytes(ERROR_BODY_LIMIT);
+                }
+                throw new RestClientResponseException(
+                        status.value() + " " + response.getStatusText(),
+                        status,
+                        response.getStatusText(),
+                        response.getHeaders(),
+                        body,
+                        null);
+            }
+            try (InputStream in = response.getBody()) {
+                return handler.handle(status, response.getHeaders(), in);
+            }
+        });
+    }
+}
@@ -1,16 +1,19 @@
 package tw.bk.appstocks.adapter;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.time.Duration;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
@@ -35,23 +38,13 @@ public class TpexWarrantClient {
 
     private final StockMarketProperties properties;
     private final ObjectMapper objectMapper;
-    private final RestClient restClient = buildRestClient();
-
-    /**
-     * 用 SimpleClientHttpRequestFactory（JDK，每次開新連線）+ 逾時建立 RestClient，
-     * 避免 reactor-netty 連線池重用 TPEx 已關閉的 keep-alive 連線而出現 PrematureCloseException。
-     */
-    private static RestClient buildRestClient() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(Duration.ofSeconds(5));
-        factory.setReadTimeout(Duration.ofSeconds(15));
-        return RestClient.builder().requestFactory(factory).build();
-    }
+    @Qualifier("tpexRestClient")
+    private final RestClient tpexRestClient;
 
     /**
      * 對連線層暫時性錯誤（例如 TPEx 提前關閉連線）重試一次。HTTP 狀態錯誤不重試。
      */
-    static String fetchWithRetry(Supplier<String> call) {
+    static <T> T fetchWithRetry(Supplier<T> call) {
         ResourceAccessException last = null;
         for (int attempt = 1; attempt <= MAX_FETCH_ATTEMPTS; attempt++) {
             try {
@@ -65,55 +58,25 @@ public class TpexWarrantClient {
         throw last;
     }
 
+    /**
+     * 下載權證發行清單，以 JsonParser 在回應串流上逐列解析（重試時重新解析整份，不會重複加入）
+     */
     public List<TpexWarrantItem> fetchWarrants() {
+        String url = buildUrl("/tpex_warrant_issue");
         try {
-            String url = buildUrl("/tpex_warrant_issue");
-            String body = fetchWithRetry(() -> restClient.get().uri(url)
-                    .header("accept", "application/json")
-                    .header("If-Modified-Since", "Mon, 26 Jul 1997 05:00:00 GMT")
-                    .header("Cache-Control", "no-cache")
-                    .header("Pragma", "no-cache")
-                    .retrieve()
-                    .body(String.class));
-            if (body == null || body.isBlank()) {
-                return List.of();
-            }
-            JsonNode root = objectMapper.readTree(body);
-            List<JsonNode> items = extractItems(root);
-            List<TpexWarrantItem> results = new ArrayList<>();
-            if (items.isEmpty()) {
-                log.warn("TPEx warrant response has no items: url={}, sample={}",
-                        url, summarize(body));
-            }
-            for (JsonNode node : items) {
-                String code = readTextAny(node, "Code", "代號", "證券代號", "WarrantCode");
-                if (code == null || code.isBlank()) {
-                    continue;
-                }
-                String normalizedCode = code.trim().replaceAll("\\s+", "");
-                if (!CODE_PATTERN.matcher(normalizedCode).matches()) {
-                    java.util.regex.Matcher matcher = CODE_EXTRACT_PATTERN.matcher(normalizedCode);
-                    if (matcher.find()) {
-                        normalizedCode = matcher.group(0);
-                    } else {
-                        continue;
-                    }
-                }
-                String name = readTextAny(node, "Name", "名稱", "證券名稱");
-                String underlying = readTextAny(node,
-                        "UnderlyingStockCode",
-                        "UnderlyingCode",
-                        "標的證券代號",
-                        "標的代號");
-                if (underlying == null || underlying.isBlank()) {
-                    underlying = readTextAny(node, "UnderlyingStock", "標的證券", "標的");
-                }
-                LocalDate expiry = parseDate(readTextAny(node, "ExpiryDate", "ExpirationDate", "到期日"));
-                results.add(new TpexWarrantItem(normalizedCode, trimOrNull(name), trimOrNull(underlying), expiry));
-            }
+            List<TpexWarrantItem> results = fetchWithRetry(() -> StreamingResponse.exchange(
+                    tpexRestClient.get().uri(url)
+                            .header("accept", "application/json")
+                            .header("If-Modified-Since", "Mon, 26 Jul 1997 05:00:00 GMT")
+                            .header("Cache-Control", "no-cache")
+                            .header("Pragma", "no-cache"),
+                    (status, headers, body) -> {
+                        List<TpexWarrantItem> items = new ArrayList<>();
+                        parseWarrants(body, items::add);
+                        return items;
+                    }));
             if (results.isEmpty()) {
-                log.warn("TPEx warrant returned empty results: url={}, sample={}",
-                        url, summarize(body));
+                log.warn("TPEx warrant returned empty results: url={}", url);
             }
             return results;
         } catch (RestClientResponseException ex) {
@@ -126,93 +89,47 @@ public class TpexWarrantClient {
         }
     }
 
-    private List<JsonNode> extractItems(JsonNode root) {
-        if (root == null || root.isNull()) {
-            return List.of();
-        }
-        if (root.isArray()) {
-            List<JsonNode> list = new ArrayList<>();
-            root.forEach(list::add);
-            return list;
-        }
-        List<JsonNode> fromData = extractFromData(root, "data");
-        if (!fromData.isEmpty()) {
-            return fromData;
-        }
-        if (root.has("data") && root.get("data").isObject()) {
-            List<JsonNode> fromNested = extractFromData(root.get("data"), "data");
-            if (!fromNested.isEmpty()) {
-                return fromNested;
-            }
-        }
-        List<JsonNode> fromUpperData = extractFromData(root, "Data");
-        if (!fromUpperData.isEmpty()) {
-            return fromUpperData;
-        }
-        if (root.has("aaData") && root.get("aaData").isArray()) {
-            List<JsonNode> list = new ArrayList<>();
-            root.get("aaData").forEach(list::add);
-            return list;
-        }
-        return List.of();
-    }
-
-    private List<JsonNode> extractFromData(JsonNode root, String field) {
-        if (!root.has(field) || !root.get(field).isArray()) {
-            return List.of();
-        }
-        JsonNode data = root.get(field);
-        // Case 1: array of objects
-        if (!data.isEmpty() && data.get(0).isObject()) {
-            List<JsonNode> list = new ArrayList<>();
-            data.forEach(list::add);
-            return list;
-        }
-        // Case 2: array of arrays with "fields" metadata
-        if (root.has("fields") && root.get("fields").isArray() && !data.isEmpty()
-                && data.get(0).isArray()) {
-            List<String> fields = new ArrayList<>();
-            root.get("fields").forEach(node -> fields.add(extractFieldName(node)));
-            List<JsonNode> list = new ArrayList<>();
-            data.forEach(row -> list.add(toObjectNode(fields, row)));
-            return list;
-        }
-        return List.of();
-    }
-
-    private JsonNode toObjectNode(List<String> fields, JsonNode row) {
-        var obj = objectMapper.createObjectNode();
-        int size = Math.min(fields.size(), row.size());
-        for (int i = 0; i < size; i++) {
-            String key = fields.get(i);
-            JsonNode value = row.get(i);
-            if (key == null || key.isBlank() || value == null || value.isNull()) {
-                continue;
-            }
-            obj.set(key, value);
+    /**
+     * 逐列解析權證發行清單並交給 consumer；回傳有效筆數
+     */
+    int parseWarrants(InputStream body, Consumer<TpexWarrantItem> consumer) throws IOException {
+        int[] count = new int[1];
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonRowStreamReader.read(parser, false, row -> {
+                TpexWarrantItem item = toItem(row);
+                if (item != null) {
+                    consumer.accept(item);
+                    count[0]++;
+                }
+            });
         }
-        return obj;
+        return count[0];
     }
 
-    private String extractFieldName(JsonNode node) {
-        if (node == null || node.isNull()) {
+    private TpexWarrantItem toItem(Map<String, String> row) {
+        String code = readTextAny(row, "Code", "代號", "證券代號", "WarrantCode");
+        if (code == null || code.isBlank()) {
             return null;
         }
-        if (node.isTextual()) {
-            return node.asText();
-        }
-        if (node.isObject()) {
-            if (node.has("name")) {
-                return node.get("name").asText();
-            }
-            if (node.has("field")) {
-                return node.get("field").asText();
+        String normalizedCode = code.trim().replaceAll("\\s+", "");
+        if (!CODE_PATTERN.matcher(normalizedCode).matches()) {
+            java.util.regex.Matcher matcher = CODE_EXTRACT_PATTERN.matcher(normalizedCode);
+            if (!matcher.find()) {
+                return null;
             }
-            if (node.has("key")) {
-                return node.get("key").asText();
-            }
-        }
-        return node.asText();
+            normalizedCode = matcher.group(0);
+        }
+        String name = readTextAny(row, "Name", "名稱", "證券名稱");
+        String underlying = readTextAny(row,
+                "UnderlyingStockCode",
+                "UnderlyingCode",
+                "標的證券代號",
+                "標的代號");
+        if (underlying == null || underlying.isBlank()) {
+            underlying = readTextAny(row, "UnderlyingStock", "標的證券", "標的");
+        }
+        LocalDate expiry = parseDate(readTextAny(row, "ExpiryDate", "ExpirationDate", "到期日"));
+        return new TpexWarrantItem(normalizedCode, trimOrNull(name), trimOrNull(underlying), expiry);
     }
 
     private String buildUrl(String path) {
@@ -227,24 +144,9 @@ public class TpexWarrantClient {
         return base + path;
     }
 
-    private String readText(JsonNode node, String field) {
-        if (node == null || field == null) {
-            return null;
-        }
-        JsonNode value = node.get(field);
-        if (value == null || value.isNull()) {
-            return null;
-        }
-        String text = value.asText();
-        return text == null || text.isBlank() ? null : text;
-    }
-
-    private String readTextAny(JsonNode node, String... fields) {
-        if (fields == null) {
-            return null;
-        }
+    private String readTextAny(Map<String, String> row, String... fields) {
         for (String field : fields) {
-            String text = readText(node, field);
+            String text = row.get(field);
             if (text != null && !text.isBlank()) {
                 return text;
             }
@@ -301,15 +203,6 @@ public class TpexWarrantClient {
         return trimmed.isEmpty() ? null : trimmed;
     }
 
-    private String summarize(String body) {
-        if (body == null) {
-            return "";
-        }
-        String normalized = body.replaceAll("\\s+", " ").trim();
-        int limit = Math.min(normalized.length(), 300);
-        return normalized.substring(0, limit);
-    }
-
     public record TpexWarrantItem(String code, String name, String underlyingSymbol, LocalDate expiryDate) {
     }
 }
@@ -1,17 +1,22 @@
 package tw.bk.appstocks.adapter;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
@@ -38,69 +43,48 @@ public class TpexWarrantMarketClient {
 
     private final StockMarketProperties properties;
     private final ObjectMapper objectMapper;
-    private final RestClient restClient = RestClient.create();
+    @Qualifier("tpexMarketRestClient")
+    private final RestClient tpexMarketRestClient;
 
     public List<TpexWarrantQuote> fetchDailyQuotes() {
-        return fetchQuotes("/tpex_warrant_daily_quts", QuoteType.DAILY);
+        List<TpexWarrantQuote> quotes = new ArrayList<>();
+        streamDailyQuotes(quotes::add);
+        return quotes;
     }
 
     public List<TpexWarrantQuote> fetchMonthlyQuotes() {
-        return fetchQuotes("/tpex_warrant_monthly_quts", QuoteType.MONTHLY);
+        List<TpexWarrantQuote> quotes = new ArrayList<>();
+        streamMonthlyQuotes(quotes::add);
+        return quotes;
     }
 
-    private List<TpexWarrantQuote> fetchQuotes(String path, QuoteType type) {
+    /**
+     * 逐筆解析日行情並交給 consumer（不在記憶體保留整份回應），回傳筆數
+     */
+    public int streamDailyQuotes(Consumer<TpexWarrantQuote> consumer) {
+        return streamQuotes("/tpex_warrant_daily_quts", QuoteType.DAILY, consumer);
+    }
+
+    /**
+     * 逐筆解析月行情並交給 consumer（不在記憶體保留整份回應），回傳筆數
+     */
+    public int streamMonthlyQuotes(Consumer<TpexWarrantQuote> consumer) {
+        return streamQuotes("/tpex_warrant_monthly_quts", QuoteType.MONTHLY, consumer);
+    }
+
+    private int streamQuotes(String path, QuoteType type, Consumer<TpexWarrantQuote> consumer) {
+        String url = buildUrl(path);
         try {
-            String url = buildUrl(path);
-            String body = restClient.get().uri(url)
+            int count = StreamingResponse.exchange(tpexMarketRestClient.get().uri(url)
                     .header("accept", "application/json")
                     .header("If-Modified-Since", "Mon, 26 Jul 1997 05:00:00 GMT")
                     .header("Cache-Control", "no-cache")
-                    .header("Pragma", "no-cache")
-                    .retrieve()
-                    .body(String.class);
-            if (body == null || body.isBlank()) {
-                log.warn("TPEx warrant market response empty: url={}", url);
-                return List.of();
-            }
-            JsonNode root = objectMapper.readTree(body);
-            List<JsonNode> items = extractItems(root);
-            if (items.isEmpty()) {
-                log.warn("TPEx warrant market response has no items: url={}, sample={}",
-                        url, summarize(body));
-                return List.of();
-            }
-
-            List<TpexWarrantQuote> results = new ArrayList<>();
-            for (JsonNode node : items) {
-                String code = readTextAny(node, "Code", "代號", "證券代號");
-                if (code == null || code.isBlank()) {
-                    continue;
-                }
-                String normalizedCode = normalizeCode(code);
-                if (normalizedCode == null) {
-                    continue;
-                }
-                LocalDate date = type == QuoteType.MONTHLY
-                        ? parseMonth(readTextAny(node, "Date", "日期"))
-                        : parseDate(readTextAny(node, "Date", "日期"));
-                BigDecimal open = parseDecimal(readTextAny(node, "Open", "開盤價"));
-                BigDecimal high = parseDecimal(readTextAny(node, "High", "最高價"));
-                BigDecimal low = parseDecimal(readTextAny(node, "Low", "最低價"));
-                BigDecimal close = parseDecimal(readTextAny(node, "Close", "收盤價"));
-                BigDecimal change = parseDecimal(readTextAny(node, "Change", "漲跌"));
-                Long volume = parseLong(readTextAny(node, "TradeVol.", "成交股數", "成交量"));
-
-                if (date == null) {
-                    continue;
-                }
-                results.add(new TpexWarrantQuote(normalizedCode, date, open, high, low, close, change, volume));
-            }
-
-            if (results.isEmpty()) {
-                log.warn("TPEx warrant market parsed empty results: url={}, sample={}",
-                        buildUrl(path), summarize(body));
+                    .header("Pragma", "no-cache"),
+                    (status, headers, body) -> parseQuotes(body, type, consumer));
+            if (count == 0) {
+                log.warn("TPEx warrant market parsed empty results: url={}", url);
             }
-            return results;
+            return count;
         } catch (RestClientResponseException ex) {
             log.error("Failed to fetch TPEx warrant market: status={}, body={}",
                     ex.getStatusCode().value(), ex.getResponseBodyAsString());
@@ -111,110 +95,59 @@ public class TpexWarrantMarketClient {
         }
     }
 
-    private String buildUrl(String path) {
-        String base = properties.getTpex().getBaseUrl();
-        if (base.endsWith("/")) {
-            base = base.substring(0, base.length() - 1);
-        }
-        if (base.endsWith("/openapi")) {
-            base = base + "/v1";
-        }
-        return base + path;
-    }
-
-    private List<JsonNode> extractItems(JsonNode root) {
-        if (root == null || root.isNull()) {
-            return List.of();
-        }
-        if (root.isArray()) {
-            List<JsonNode> list = new ArrayList<>();
-            root.forEach(list::add);
-            return list;
-        }
-        List<JsonNode> fromData = extractFromData(root, "data");
-        if (!fromData.isEmpty()) {
-            return fromData;
-        }
-        if (root.has("data") && root.get("data").isObject()) {
-            List<JsonNode> fromNested = extractFromData(root.get("data"), "data");
-            if (!fromNested.isEmpty()) {
-                return fromNested;
-            }
-        }
-        List<JsonNode> fromUpperData = extractFromData(root, "Data");
-        if (!fromUpperData.isEmpty()) {
-            return fromUpperData;
-        }
-        if (root.has("aaData") && root.get("aaData").isArray()) {
-            List<JsonNode> list = new ArrayList<>();
-            root.get("aaData").forEach(list::add);
-            return list;
+    /**
+     * 以 JsonParser 逐列解析回應，每列直接轉為 {@link TpexWarrantQuote}；回傳有效筆數
+     */
+    int parseQuotes(InputStream body, QuoteType type, Consumer<TpexWarrantQuote> consumer) throws IOException {
+        int[] count = new int[1];
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonRowStreamReader.read(parser, false, row -> {
+                TpexWarrantQuote quote = toQuote(row, type);
+                if (quote != null) {
+                    consumer.accept(quote);
+                    count[0]++;
+                }
+            });
         }
-        return List.of();
+        return count[0];
     }
 
-    private List<JsonNode> extractFromData(JsonNode root, String field) {
-        if (!root.has(field) || !root.get(field).isArray()) {
-            return List.of();
-        }
-        JsonNode data = root.get(field);
-        if (!data.isEmpty() && data.get(0).isObject()) {
-            List<JsonNode> list = new ArrayList<>();
-            data.forEach(list::add);
-            return list;
-        }
-        if (root.has("fields") && root.get("fields").isArray() && !data.isEmpty()
-                && data.get(0).isArray()) {
-            List<String> fields = new ArrayList<>();
-            root.get("fields").forEach(node -> fields.add(extractFieldName(node)));
-            List<JsonNode> list = new ArrayList<>();
-            data.forEach(row -> list.add(toObjectNode(fields, row)));
-            return list;
+    private TpexWarrantQuote toQuote(Map<String, String> row, QuoteType type) {
+        String normalizedCode = normalizeCode(readTextAny(row, "Code", "代號", "證券代號"));
+        if (normalizedCode == null) {
+            return null;
         }
-        return List.of();
-    }
-
-    private JsonNode toObjectNode(List<String> fields, JsonNode row) {
-        var obj = objectMapper.createObjectNode();
-        int size = Math.min(fields.size(), row.size());
-        for (int i = 0; i < size; i++) {
-            String key = fields.get(i);
-            JsonNode value = row.get(i);
-            if (key == null || key.isBlank() || value == null || value.isNull()) {
-                continue;
-            }
-            obj.set(key, value);
+        LocalDate date = type == QuoteType.MONTHLY
+                ? parseMonth(readTextAny(row, "Date", "日期"))
+                : parseDate(readTextAny(row, "Date", "日期"));
+        if (date == null) {
+            return null;
         }
-        return obj;
+        return new TpexWarrantQuote(
+                normalizedCode,
+                date,
+                parseDecimal(readTextAny(row, "Open", "開盤價")),
+                parseDecimal(readTextAny(row, "High", "最高價")),
+                parseDecimal(readTextAny(row, "Low", "最低價")),
+                parseDecimal(readTextAny(row, "Close", "收盤價")),
+                parseDecimal(readTextAny(row, "Change", "漲跌")),
+                parseLong(readTextAny(row, "TradeVol.", "成交股數", "成交量")));
     }
 
-    private String extractFieldName(JsonNode node) {
-        if (node == null || node.isNull()) {
-            return null;
-        }
-        if (node.isTextual()) {
-            return node.asText();
+    private String buildUrl(String path) {
+        String base = properties.getTpex().getBaseUrl();
+        if (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
         }
-        if (node.isObject()) {
-            if (node.has("name")) {
-                return node.get("name").asText();
-            }
-            if (node.has("field")) {
-                return node.get("field").asText();
-            }
-            if (node.has("key")) {
-                return node.get("key").asText();
-            }
+        if (base.endsWith("/openapi")) {
+            base = base + "/v1";
         }
-        return node.asText();
+        return base + path;
     }
 
-    private String readTextAny(JsonNode node, String... fields) {
-        if (fields == null) {
-            return null;
-        }
+    private String readTextAny(Map<String, String> row, String... fields) {
         for (String field : fields) {
-            String text = readText(node, field);
+            String text = row.get(field);
             if (text != null && !text.isBlank()) {
                 return text;
             }
@@ -222,18 +155,6 @@ public class TpexWarrantMarketClient {
         return null;
     }
 
-    private String readText(JsonNode node, String field) {
-        if (node == null || field == null) {
-            return null;
-        }
-        JsonNode value = node.get(field);
-        if (value == null || value.isNull()) {
-            return null;
-        }
-        String text = value.asText();
-        return text == null || text.isBlank() ? null : text;
-    }
-
     private String normalizeCode(String raw) {
         if (raw == null) {
             return null;
@@ -321,16 +242,7 @@ public class TpexWarrantMarketClient {
         }
     }
 
-    private String summarize(String body) {
-        if (body == null) {
-            return "";
-        }
-        String normalized = body.replaceAll("\\s+", " ").trim();
-        int limit = Math.min(normalized.length(), 300);
-        return normalized.substring(0, limit);
-    }
-
-    private enum QuoteType {
+    enum QuoteType {
         DAILY,
         MONTHLY
     }
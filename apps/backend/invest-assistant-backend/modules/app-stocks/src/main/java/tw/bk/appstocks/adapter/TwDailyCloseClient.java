@@ -0,0 +1,223 @@
+package tw.bk.appstocks.adapter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+/**
+ * 台股盤後全市場日收盤檔：TWSE {@code /exchangeReport/STOCK_DAY_ALL}（上市股票與 ETF）、
+ * TPEx {@code /tpex_mainboard_daily_close_quotes}（上櫃股票與 ETF）
+ * 兩份檔案都只有最近一個交易日，逐列串流解析後交給 consumer，不在記憶體保留整份回應
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TwDailyCloseClient {
+    private static final String TWSE_PATH = "/exchangeReport/STOCK_DAY_ALL";
+    private static final String TPEX_PATH = "/tpex_mainboard_daily_close_quotes";
+    private static final DateTimeFormatter[] DATE_FORMATS = new DateTimeFormatter[] {
+            DateTimeFormatter.ofPattern("yyyyMMdd"),
+            DateTimeFormatter.ofPattern("yyyy/MM/dd"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd")
+    };
+    /**
+     * 民國日期：1150227、115/02/27
+     */
+    private static final Pattern ROC_DATE_PATTERN = Pattern.compile("^(\\d{2,3})/?(\\d{2})/?(\\d{2})$");
+    private static final Pattern CODE_PATTERN = Pattern.compile("^[0-9A-Z]{4,6}$");
+    private static final Pattern DECIMAL_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?$");
+    private static final int ROC_YEAR_OFFSET = 1911;
+
+    private final StockMarketProperties properties;
+    private final ObjectMapper objectMapper;
+    @Qualifier("twseMarketRestClient")
+    private final RestClient twseMarketRestClient;
+    @Qualifier("tpexMarketRestClient")
+    private final RestClient tpexMarketRestClient;
+
+    /**
+     * 上市全市場日收盤，回傳筆數
+     */
+    public int streamTwseCloses(Consumer<DailyClose> consumer) {
+        String url = trimSlash(properties.getTwse().getOpenApiBaseUrl()) + TWSE_PATH;
+        return streamCloses("TWSE", twseMarketRestClient, url, consumer);
+    }
+
+    /**
+     * 上櫃全市場日收盤，回傳筆數
+     */
+    public int streamTpexCloses(Consumer<DailyClose> consumer) {
+        String base = trimSlash(properties.getTpex().getBaseUrl());
+        if (base.endsWith("/openapi")) {
+            base = base + "/v1";
+        }
+        return streamCloses("TPEx", tpexMarketRestClient, base + TPEX_PATH, consumer);
+    }
+
+    private int streamCloses(String source, RestClient restClient, String url, Consumer<DailyClose> consumer) {
+        try {
+            int count = StreamingResponse.exchange(restClient.get().uri(url)
+                    .header("accept", "application/json")
+                    .header("Cache-Control", "no-cache")
+                    .header("Pragma", "no-cache"),
+                    (status, headers, body) -> parseCloses(body, consumer));
+            if (count == 0) {
+                log.warn("{} daily close parsed empty results: url={}", source, url);
+            }
+            return count;
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to fetch {} daily close: status={}, body={}",
+                    source, ex.getStatusCode().value(), ex.getResponseBodyAsString());
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, source + " daily close fetch failed");
+        } catch (BusinessException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            log.error("Failed to fetch {} daily close", source, ex);
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, source + " daily close fetch failed");
+        }
+    }
+
+    /**
+     * 以 JsonParser 逐列解析，TWSE 與 TPEx 的欄位名稱都接受；略過代號或日期無法辨識的列，回傳有效筆數。
+     * 無成交的列（收盤價為 -- 或空白）仍交給 consumer，價格欄位為 null
+     */
+    int parseCloses(InputStream body, Consumer<DailyClose> consumer) throws IOException {
+        int[] count = new int[1];
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonRowStreamReader.read(parser, false, row -> {
+                DailyClose close = toClose(row);
+                if (close != null) {
+                    consumer.accept(close);
+                    count[0]++;
+                }
+            });
+        }
+        return count[0];
+    }
+
+    private DailyClose toClose(Map<String, String> row) {
+        String code = normalizeCode(readTextAny(row, "Code", "SecuritiesCompanyCode", "證券代號", "代號"));
+        if (code == null) {
+            return null;
+        }
+        LocalDate date = parseDate(readTextAny(row, "Date", "日期"));
+        if (date == null) {
+            return null;
+        }
+        return new DailyClose(
+                code,
+                date,
+                parseDecimal(readTextAny(row, "OpeningPrice", "Open", "開盤價")),
+                parseDecimal(readTextAny(row, "HighestPrice", "High", "最高價")),
+                parseDecimal(readTextAny(row, "LowestPrice", "Low", "最低價")),
+                parseDecimal(readTextAny(row, "ClosingPrice", "Close", "收盤價")),
+                parseLong(readTextAny(row, "TradeVolume", "TradingShares", "成交股數")));
+    }
+
+    private static String trimSlash(String base) {
+        return base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+    }
+
+    private String readTextAny(Map<String, String> row, String... fields) {
+        for (String field : fields) {
+            String text = row.get(field);
+            if (text != null && !text.isBlank()) {
+                return text;
+            }
+        }
+        return null;
+    }
+
+    private String normalizeCode(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String normalized = raw.trim().replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+        return CODE_PATTERN.matcher(normalized).matches() ? normalized : null;
+    }
+
+    private LocalDate parseDate(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String normalized = value.trim();
+        if (normalized.replace("/", "").length() <= 7) {
+            Matcher roc = ROC_DATE_PATTERN.matcher(normalized);
+            if (!roc.matches()) {
+                return null;
+            }
+            try {
+                return LocalDate.of(Integer.parseInt(roc.group(1)) + ROC_YEAR_OFFSET,
+                        Integer.parseInt(roc.group(2)), Integer.parseInt(roc.group(3)));
+            } catch (Exception ignore) {
+                return null;
+            }
+        }
+        for (DateTimeFormatter formatter : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(normalized, formatter);
+            } catch (Exception ignore) {
+                // try next
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 去除千分位與正號；--、---、N/A 等非數值視為無資料
+     */
+    private BigDecimal parseDecimal(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String normalized = value.trim().replace(",", "").replace("+", "");
+        return DECIMAL_PATTERN.matcher(normalized).matches() ? new BigDecimal(normalized) : null;
+    }
+
+    private Long parseLong(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String normalized = value.trim().replace(",", "");
+        try {
+            return Long.parseLong(normalized);
+        } catch (Exception ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * 單一商品的日收盤；無成交時價格欄位為 null
+     */
+    public record DailyClose(
+            String code,
+            LocalDate date,
+            BigDecimal open,
+            BigDecimal high,
+            BigDecimal low,
+            BigDecimal close,
+            Long volume) {
+
+        public boolean hasTrade() {
+            return open != null && high != null && low != null && close != null;
+        }
+    }
+}
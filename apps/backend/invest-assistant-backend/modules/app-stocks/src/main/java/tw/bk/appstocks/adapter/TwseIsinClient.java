@@ -1,6 +1,7 @@
 package tw.bk.appstocks.adapter;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -8,8 +9,8 @@ import java.util.regex.Pattern;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.parser.StreamParser;
 import org.jsoup.select.Elements;
 import org.springframework.stereotype.Component;
 import tw.bk.appcommon.enums.ErrorCode;
@@ -31,73 +32,86 @@ public class TwseIsinClient {
         if (url == null || url.isBlank()) {
             return List.of();
         }
-        try {
-            Document doc = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0")
-                    .timeout(15000)
-                    .get();
-            Elements tables = doc.select("table");
-            if (tables == null || tables.isEmpty()) {
-                log.warn("TWSE ISIN table not found: url={}", url);
-                return List.of();
+        List<TwseIsinItem> results = new ArrayList<>();
+        try (StreamParser parser = Jsoup.connect(url)
+                .userAgent("Mozilla/5.0")
+                .timeout(15000)
+                .maxBodySize(0)
+                .execute()
+                .streamParser()) {
+            Element table = null;
+            Element row;
+            while ((row = parser.selectNext("tr")) != null) {
+                Element owner = row.closest("table");
+                if (owner != table) {
+                    if (!results.isEmpty()) {
+                        // 只取第一個有資料的表格
+                        break;
+                    }
+                    table = owner;
+                }
+                TwseIsinItem item = parseRow(row);
+                if (item != null) {
+                    results.add(item);
+                }
+                row.remove();
             }
+        } catch (IOException | UncheckedIOException ex) {
+            log.error("Failed to fetch TWSE ISIN page: {}", ex.getMessage(), ex);
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "TWSE ISIN fetch failed");
+        }
 
-            for (Element table : tables) {
-                List<TwseIsinItem> results = new ArrayList<>();
-                Elements rows = table.select("tr");
-                for (Element row : rows) {
-                    Elements tds = row.select("td");
-                    if (tds.size() < 2) {
-                        continue;
-                    }
+        if (results.isEmpty()) {
+            log.warn("TWSE ISIN returned empty results: url={}", url);
+            return List.of();
+        }
+        return results;
+    }
 
-                    String code = null;
-                    String name = null;
+    /**
+     * 解析單列 {@code <tr>}：找出第一個 6 碼代號與名稱，非權證列回傳 null
+     */
+    private TwseIsinItem parseRow(Element row) {
+        Elements tds = row.select("td");
+        if (tds.size() < 2) {
+            return null;
+        }
 
-                    for (int i = 0; i < tds.size(); i++) {
-                        String cell = normalizeSpace(tds.get(i).text());
-                        if (cell == null || cell.isBlank()) {
-                            continue;
-                        }
-                        Matcher matcher = CODE_NAME_PATTERN.matcher(cell);
-                        if (matcher.find() && CODE_PATTERN.matcher(matcher.group(1)).matches()) {
-                            code = matcher.group(1);
-                            name = matcher.group(2);
-                            break;
-                        }
-                        Matcher codeMatcher = CODE_EXTRACT_PATTERN.matcher(cell);
-                        if (codeMatcher.find()) {
-                            code = codeMatcher.group(0);
-                            String maybeName = cell.replace(code, "").trim();
-                            if (!maybeName.isBlank()) {
-                                name = maybeName;
-                            } else if (i + 1 < tds.size()) {
-                                name = normalizeSpace(tds.get(i + 1).text());
-                            }
-                            break;
-                        }
-                    }
+        String code = null;
+        String name = null;
 
-                    if (code == null || code.isBlank()) {
-                        continue;
-                    }
-                    String normalizedCode = code.trim();
-                    if (!CODE_PATTERN.matcher(normalizedCode).matches()) {
-                        continue;
-                    }
-                    results.add(new TwseIsinItem(normalizedCode, trimOrNull(name)));
-                }
-                if (!results.isEmpty()) {
-                    return results;
+        for (int i = 0; i < tds.size(); i++) {
+            String cell = normalizeSpace(tds.get(i).text());
+            if (cell == null || cell.isBlank()) {
+                continue;
+            }
+            Matcher matcher = CODE_NAME_PATTERN.matcher(cell);
+            if (matcher.find() && CODE_PATTERN.matcher(matcher.group(1)).matches()) {
+                code = matcher.group(1);
+                name = matcher.group(2);
+                break;
+            }
+            Matcher codeMatcher = CODE_EXTRACT_PATTERN.matcher(cell);
+            if (codeMatcher.find()) {
+                code = codeMatcher.group(0);
+                String maybeName = cell.replace(code, "").trim();
+                if (!maybeName.isBlank()) {
+                    name = maybeName;
+                } else if (i + 1 < tds.size()) {
+                    name = normalizeSpace(tds.get(i + 1).text());
                 }
+                break;
             }
+        }
 
-            log.warn("TWSE ISIN returned empty results: url={}", url);
-            return List.of();
-        } catch (IOException ex) {
-            log.error("Failed to fetch TWSE ISIN page: {}", ex.getMessage(), ex);
-            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "TWSE ISIN fetch failed");
+        if (code == null || code.isBlank()) {
+            return null;
+        }
+        String normalizedCode = code.trim();
+        if (!CODE_PATTERN.matcher(normalizedCode).matches()) {
+            return null;
         }
+        return new TwseIsinItem(normalizedCode, trimOrNull(name));
     }
 
     private String normalizeSpace(String value) {
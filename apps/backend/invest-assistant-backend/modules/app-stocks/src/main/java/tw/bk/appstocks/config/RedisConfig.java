@@ -8,7 +8,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -23,6 +25,26 @@ public class RedisConfig {
      */
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+        Jackson2JsonRedisSerializer<Object> jsonSerializer = jsonValueSerializer();
+        return template(connectionFactory, jsonSerializer);
+    }
+
+    /**
+     * 股票快取（{@code StockCacheService}）專用的 RedisTemplate
+     * value 以 {@link StockCacheCodec} 將 Quote/K 線寫成精簡二進位，其餘型別與既有 JSON 值沿用 Jackson；
+     * 共用的 {@link #redisTemplate} 不受影響
+     */
+    @Bean
+    public RedisTemplate<String, Object> stockCacheRedisTemplate(
+            RedisConnectionFactory connectionFactory,
+            StockMarketProperties properties) {
+        StockCacheCodec valueSerializer = new StockCacheCodec(
+                jsonValueSerializer(), properties.getCache().isBinaryCodecEnabled());
+        return template(connectionFactory, valueSerializer);
+    }
+
+    private static RedisTemplate<String, Object> template(
+            RedisConnectionFactory connectionFactory, RedisSerializer<Object> valueSerializer) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
@@ -31,6 +53,17 @@ public class RedisConfig {
         template.setKeySerializer(stringSerializer);
         template.setHashKeySerializer(stringSerializer);
 
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
+
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * 帶類型資訊的 Jackson value 序列化器
+     */
+    static Jackson2JsonRedisSerializer<Object> jsonValueSerializer() {
         // 配置 ObjectMapper
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
@@ -45,13 +78,16 @@ public class RedisConfig {
                 ObjectMapper.DefaultTyping.NON_FINAL,
                 JsonTypeInfo.As.PROPERTY);
 
-        // 使用 Jackson 序列化器作為 value
-        Jackson2JsonRedisSerializer<Object> jsonSerializer = new Jackson2JsonRedisSerializer<>(objectMapper,
-                Object.class);
-        template.setValueSerializer(jsonSerializer);
-        template.setHashValueSerializer(jsonSerializer);
+        return new Jackson2JsonRedisSerializer<>(objectMapper, Object.class);
+    }
 
-        template.afterPropertiesSet();
-        return template;
+    /**
+     * Redis pub/sub listener container（用於跨節點的本機快取失效通知）
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
     }
 }
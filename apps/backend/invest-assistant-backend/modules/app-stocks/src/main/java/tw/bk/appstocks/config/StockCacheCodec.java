@@ -0,0 +1,414 @@
+package tw.bk.appstocks.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleCacheEntry;
+import tw.bk.appstocks.model.Quote;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 股票快取 value 編碼器
+ * {@link Quote} 與 {@link CandleCacheEntry} 寫成版本化的精簡二進位紀錄：價格以 (scale, unscaled long) 定點數、
+ * 時間以 epoch 秒/奈秒、整數以 zigzag varint 表示，K 線時間以前一根的差值編碼；其他型別（如權證快照列表）
+ * 以及無法以 long 表示的數值沿用 JSON。讀取時依開頭 magic byte 判斷格式，舊的 JSON 值在 rollout 期間仍可讀取
+ */
+public class StockCacheCodec implements RedisSerializer<Object> {
+    /**
+     * JSON 不會以 0xB5 開頭（必為 '{'、'[' 或空白），用來區分格式
+     */
+    static final byte MAGIC = (byte) 0xB5;
+    static final byte VERSION = 1;
+    static final byte TYPE_QUOTE = 1;
+    static final byte TYPE_CANDLES = 2;
+
+    private static final int QUOTE_TICKER = 1;
+    private static final int QUOTE_PRICE = 1 << 1;
+    private static final int QUOTE_OPEN = 1 << 2;
+    private static final int QUOTE_HIGH = 1 << 3;
+    private static final int QUOTE_LOW = 1 << 4;
+    private static final int QUOTE_PREVIOUS_CLOSE = 1 << 5;
+    private static final int QUOTE_VOLUME = 1 << 6;
+    private static final int QUOTE_CHANGE = 1 << 7;
+    private static final int QUOTE_CHANGE_PERCENT = 1 << 8;
+    private static final int QUOTE_TIMESTAMP = 1 << 9;
+    private static final int QUOTE_CACHED_AT = 1 << 10;
+    private static final int QUOTE_STALE = 1 << 11;
+    private static final int QUOTE_AGE_MS = 1 << 12;
+
+    private static final int ENTRY_CACHED_AT = 1;
+    private static final int ENTRY_CANDLES = 1 << 1;
+    private static final int ENTRY_TICKER = 1 << 2;
+
+    /**
+     * 與序列共用 ticker 不同時才逐筆寫入
+     */
+    private static final int CANDLE_TICKER = 1;
+    private static final int CANDLE_TIMESTAMP = 1 << 1;
+    private static final int CANDLE_OPEN = 1 << 2;
+    private static final int CANDLE_HIGH = 1 << 3;
+    private static final int CANDLE_LOW = 1 << 4;
+    private static final int CANDLE_CLOSE = 1 << 5;
+    private static final int CANDLE_VOLUME = 1 << 6;
+    private static final int CANDLE_NULL = 1 << 7;
+
+    private final RedisSerializer<Object> jsonSerializer;
+    private final boolean binaryWritesEnabled;
+
+    /**
+     * @param jsonSerializer      非股票模型的 value 與 JSON 舊值的讀寫
+     * @param binaryWritesEnabled false 時一律寫 JSON（rollout 期間讓舊版節點仍可讀取），讀取不受影響
+     */
+    public StockCacheCodec(RedisSerializer<Object> jsonSerializer, boolean binaryWritesEnabled) {
+        this.jsonSerializer = Objects.requireNonNull(jsonSerializer, "jsonSerializer");
+        this.binaryWritesEnabled = binaryWritesEnabled;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (binaryWritesEnabled) {
+            try {
+                if (value instanceof Quote quote) {
+                    return encodeQuote(quote);
+                }
+                if (value instanceof CandleCacheEntry entry) {
+                    return encodeCandles(entry);
+                }
+            } catch (UnencodableValueException ex) {
+                // 超出定點 long 範圍等少見情況改寫 JSON
+            }
+        }
+        return jsonSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        try {
+            Reader reader = new Reader(bytes, 1);
+            byte version = reader.readByte();
+            if (version != VERSION) {
+                throw new SerializationException("不支援的快取編碼版本: " + version);
+            }
+            byte type = reader.readByte();
+            return switch (type) {
+                case TYPE_QUOTE -> decodeQuote(reader);
+                case TYPE_CANDLES -> decodeCandles(reader);
+                default -> throw new SerializationException("未知的快取編碼型別: " + type);
+            };
+        } catch (IndexOutOfBoundsException | ArithmeticException ex) {
+            throw new SerializationException("快取內容損毀", ex);
+        }
+    }
+
+    private static byte[] encodeQuote(Quote quote) {
+        Writer writer = new Writer(64, TYPE_QUOTE);
+        int flags = flag(quote.getTicker(), QUOTE_TICKER)
+                | flag(quote.getPrice(), QUOTE_PRICE)
+                | flag(quote.getOpen(), QUOTE_OPEN)
+                | flag(quote.getHigh(), QUOTE_HIGH)
+                | flag(quote.getLow(), QUOTE_LOW)
+                | flag(quote.getPreviousClose(), QUOTE_PREVIOUS_CLOSE)
+                | flag(quote.getVolume(), QUOTE_VOLUME)
+                | flag(quote.getChange(), QUOTE_CHANGE)
+                | flag(quote.getChangePercent(), QUOTE_CHANGE_PERCENT)
+                | flag(quote.getTimestamp(), QUOTE_TIMESTAMP)
+                | flag(quote.getCachedAt(), QUOTE_CACHED_AT)
+                | (quote.isStale() ? QUOTE_STALE : 0)
+                | flag(quote.getAgeMs(), QUOTE_AGE_MS);
+        writer.writeVarLong(flags);
+        if (quote.getTicker() != null) {
+            writer.writeString(quote.getTicker());
+        }
+        writer.writeDecimalIfPresent(quote.getPrice());
+        writer.writeDecimalIfPresent(quote.getOpen());
+        writer.writeDecimalIfPresent(quote.getHigh());
+        writer.writeDecimalIfPresent(quote.getLow());
+        writer.writeDecimalIfPresent(quote.getPreviousClose());
+        if (quote.getVolume() != null) {
+            writer.writeZigZag(quote.getVolume());
+        }
+        writer.writeDecimalIfPresent(quote.getChange());
+        writer.writeDecimalIfPresent(quote.getChangePercent());
+        writer.writeInstantIfPresent(quote.getTimestamp());
+        writer.writeInstantIfPresent(quote.getCachedAt());
+        if (quote.getAgeMs() != null) {
+            writer.writeZigZag(quote.getAgeMs());
+        }
+        return writer.toByteArray();
+    }
+
+    private static Quote decodeQuote(Reader reader) {
+        int flags = (int) reader.readVarLong();
+        Quote.QuoteBuilder builder = Quote.builder();
+        if (has(flags, QUOTE_TICKER)) {
+            builder.ticker(reader.readString());
+        }
+        builder.price(has(flags, QUOTE_PRICE) ? reader.readDecimal() : null)
+                .open(has(flags, QUOTE_OPEN) ? reader.readDecimal() : null)
+                .high(has(flags, QUOTE_HIGH) ? reader.readDecimal() : null)
+                .low(has(flags, QUOTE_LOW) ? reader.readDecimal() : null)
+                .previousClose(has(flags, QUOTE_PREVIOUS_CLOSE) ? reader.readDecimal() : null)
+                .volume(has(flags, QUOTE_VOLUME) ? reader.readZigZag() : null)
+                .change(has(flags, QUOTE_CHANGE) ? reader.readDecimal() : null)
+                .changePercent(has(flags, QUOTE_CHANGE_PERCENT) ? reader.readDecimal() : null)
+                .timestamp(has(flags, QUOTE_TIMESTAMP) ? reader.readInstant() : null)
+                .cachedAt(has(flags, QUOTE_CACHED_AT) ? reader.readInstant() : null)
+                .stale(has(flags, QUOTE_STALE))
+                .ageMs(has(flags, QUOTE_AGE_MS) ? reader.readZigZag() : null);
+        return builder.build();
+    }
+
+    private static byte[] encodeCandles(CandleCacheEntry entry) {
+        List<Candle> candles = entry.getCandles();
+        String sharedTicker = sharedTicker(candles);
+        Writer writer = new Writer(16 + (candles == null ? 0 : candles.size() * 24), TYPE_CANDLES);
+        int flags = flag(entry.getCachedAt(), ENTRY_CACHED_AT)
+                | flag(candles, ENTRY_CANDLES)
+                | flag(sharedTicker, ENTRY_TICKER);
+        writer.writeVarLong(flags);
+        writer.writeInstantIfPresent(entry.getCachedAt());
+        if (sharedTicker != null) {
+            writer.writeString(sharedTicker);
+        }
+        if (candles == null) {
+            return writer.toByteArray();
+        }
+        writer.writeVarLong(candles.size());
+        long previousSecond = 0L;
+        for (Candle candle : candles) {
+            if (candle == null) {
+                writer.writeVarLong(CANDLE_NULL);
+                continue;
+            }
+            boolean ownTicker = !Objects.equals(candle.getTicker(), sharedTicker);
+            int candleFlags = (ownTicker && candle.getTicker() != null ? CANDLE_TICKER : 0)
+                    | flag(candle.getTimestamp(), CANDLE_TIMESTAMP)
+                    | flag(candle.getOpen(), CANDLE_OPEN)
+                    | flag(candle.getHigh(), CANDLE_HIGH)
+                    | flag(candle.getLow(), CANDLE_LOW)
+                    | flag(candle.getClose(), CANDLE_CLOSE)
+                    | flag(candle.getVolume(), CANDLE_VOLUME);
+            if (ownTicker && candle.getTicker() == null) {
+                // 序列有共用 ticker 但此筆為 null 時無法表示（實務上不會發生），改寫 JSON
+                throw new UnencodableValueException();
+            }
+            writer.writeVarLong(candleFlags);
+            if (ownTicker) {
+                writer.writeString(candle.getTicker());
+            }
+            if (candle.getTimestamp() != null) {
+                long second = candle.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+                writer.writeZigZag(second - previousSecond);
+                writer.writeVarLong(candle.getTimestamp().getNano());
+                previousSecond = second;
+            }
+            writer.writeDecimalIfPresent(candle.getOpen());
+            writer.writeDecimalIfPresent(candle.getHigh());
+            writer.writeDecimalIfPresent(candle.getLow());
+            writer.writeDecimalIfPresent(candle.getClose());
+            if (candle.getVolume() != null) {
+                writer.writeZigZag(candle.getVolume());
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    private static CandleCacheEntry decodeCandles(Reader reader) {
+        int flags = (int) reader.readVarLong();
+        Instant cachedAt = has(flags, ENTRY_CACHED_AT) ? reader.readInstant() : null;
+        String sharedTicker = has(flags, ENTRY_TICKER) ? reader.readString() : null;
+        if (!has(flags, ENTRY_CANDLES)) {
+            return new CandleCacheEntry(null, cachedAt);
+        }
+        int size = Math.toIntExact(reader.readVarLong());
+        List<Candle> candles = new ArrayList<>(Math.min(size, reader.remaining()));
+        long previousSecond = 0L;
+        for (int i = 0; i < size; i++) {
+            int candleFlags = (int) reader.readVarLong();
+            if (has(candleFlags, CANDLE_NULL)) {
+                candles.add(null);
+                continue;
+            }
+            Candle.CandleBuilder builder = Candle.builder()
+                    .ticker(has(candleFlags, CANDLE_TICKER) ? reader.readString() : sharedTicker);
+            if (has(candleFlags, CANDLE_TIMESTAMP)) {
+                long second = previousSecond + reader.readZigZag();
+                int nano = Math.toIntExact(reader.readVarLong());
+                builder.timestamp(LocalDateTime.ofEpochSecond(second, nano, ZoneOffset.UTC));
+                previousSecond = second;
+            }
+            builder.open(has(candleFlags, CANDLE_OPEN) ? reader.readDecimal() : null)
+                    .high(has(candleFlags, CANDLE_HIGH) ? reader.readDecimal() : null)
+                    .low(has(candleFlags, CANDLE_LOW) ? reader.readDecimal() : null)
+                    .close(has(candleFlags, CANDLE_CLOSE) ? reader.readDecimal() : null)
+                    .volume(has(candleFlags, CANDLE_VOLUME) ? reader.readZigZag() : null);
+            candles.add(builder.build());
+        }
+        return new CandleCacheEntry(candles, cachedAt);
+    }
+
+    /**
+     * 序列中第一個非 null 的 ticker，作為共用 ticker 只寫一次
+     */
+    private static String sharedTicker(List<Candle> candles) {
+        if (candles == null) {
+            return null;
+        }
+        for (Candle candle : candles) {
+            if (candle != null && candle.getTicker() != null) {
+                return candle.getTicker();
+            }
+        }
+        return null;
+    }
+
+    private static int flag(Object value, int bit) {
+        return value != null ? bit : 0;
+    }
+
+    private static boolean has(int flags, int bit) {
+        return (flags & bit) != 0;
+    }
+
+    private static final class Writer {
+        private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+        private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+        private final ByteArrayOutputStream out;
+
+        Writer(int expectedSize, byte type) {
+            out = new ByteArrayOutputStream(expectedSize);
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.write(type);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0L) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * 定點數：保留原 scale（BigDecimal.equals 依 scale 比較），unscaled 超出 long 時改寫 JSON
+         */
+        void writeDecimalIfPresent(BigDecimal value) {
+            if (value == null) {
+                return;
+            }
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.compareTo(LONG_MIN) < 0 || unscaled.compareTo(LONG_MAX) > 0) {
+                throw new UnencodableValueException();
+            }
+            writeZigZag(value.scale());
+            writeZigZag(unscaled.longValue());
+        }
+
+        void writeInstantIfPresent(Instant value) {
+            if (value == null) {
+                return;
+            }
+            writeZigZag(value.getEpochSecond());
+            writeVarLong(value.getNano());
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        byte readByte() {
+            return bytes[position++];
+        }
+
+        int remaining() {
+            return bytes.length - position;
+        }
+
+        long readVarLong() {
+            long result = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = bytes[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new SerializationException("varint 長度超過上限");
+        }
+
+        long readZigZag() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1L);
+        }
+
+        String readString() {
+            int length = Math.toIntExact(readVarLong());
+            if (length < 0 || length > remaining()) {
+                throw new SerializationException("字串長度錯誤: " + length);
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        BigDecimal readDecimal() {
+            int scale = Math.toIntExact(readZigZag());
+            return BigDecimal.valueOf(readZigZag(), scale);
+        }
+
+        Instant readInstant() {
+            long second = readZigZag();
+            return Instant.ofEpochSecond(second, readVarLong());
+        }
+    }
+
+    /**
+     * 值無法以二進位格式表示（例如超出 long 的定點數），改寫 JSON
+     */
+    private static final class UnencodableValueException extends RuntimeException {
+        UnencodableValueException() {
+            super(null, null, false, false);
+        }
+    }
+}
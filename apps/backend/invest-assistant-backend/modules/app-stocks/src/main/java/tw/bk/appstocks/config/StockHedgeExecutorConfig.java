@@ -0,0 +1,29 @@
+package tw.bk.appstocks.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * hedged 外部呼叫用的執行緒池；不排隊，執行緒皆忙碌時由呼叫端改為直接呼叫
+ */
+@Configuration
+public class StockHedgeExecutorConfig {
+
+    @Bean(name = "stockHedgeExecutor")
+    public Executor stockHedgeExecutor(StockMarketProperties properties) {
+        int threads = Math.max(1, properties.getHedge().getThreads());
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("stock-hedge-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,63 @@
+package tw.bk.appstocks.config;
+
+import java.time.Duration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestClient;
+import tw.bk.appcommon.http.OutboundHttpClientFactory;
+
+/**
+ * 行情來源的 RestClient，共用 {@link OutboundHttpClientFactory} 的每主機 keep-alive 連線池；
+ * 逾時取自各來源設定，避免外部來源變慢時整個請求 hang 住
+ */
+@Configuration
+public class StockHttpClientConfig {
+
+    @Bean(name = "fugleRestClient")
+    public RestClient fugleRestClient(OutboundHttpClientFactory httpClients, StockMarketProperties properties) {
+        StockMarketProperties.Fugle fugle = properties.getFugle();
+        return build(httpClients, "fugle", fugle.getBaseUrl(), fugle.getConnectTimeoutMs(), fugle.getReadTimeoutMs());
+    }
+
+    @Bean(name = "alpacaRestClient")
+    public RestClient alpacaRestClient(OutboundHttpClientFactory httpClients, StockMarketProperties properties) {
+        StockMarketProperties.Alpaca alpaca = properties.getAlpaca();
+        return build(httpClients, "alpaca", alpaca.getBaseUrl(), alpaca.getConnectTimeoutMs(), alpaca.getReadTimeoutMs());
+    }
+
+    /**
+     * TPEx 可能提前關閉閒置的 keep-alive 連線：連線池的 max-idle-time 需短於對方逾時，
+     * 其餘由 {@code TpexWarrantClient.fetchWithRetry} 對連線層錯誤重試一次
+     */
+    @Bean(name = "tpexRestClient")
+    public RestClient tpexRestClient(OutboundHttpClientFactory httpClients, StockMarketProperties properties) {
+        StockMarketProperties.Tpex tpex = properties.getTpex();
+        return build(httpClients, "tpex", tpex.getBaseUrl(), tpex.getConnectTimeoutMs(), tpex.getReadTimeoutMs());
+    }
+
+    @Bean(name = "tpexMarketRestClient")
+    public RestClient tpexMarketRestClient(OutboundHttpClientFactory httpClients, StockMarketProperties properties) {
+        StockMarketProperties.Tpex tpex = properties.getTpex();
+        return build(httpClients, "tpex-market", tpex.getBaseUrl(), tpex.getConnectTimeoutMs(), tpex.getMarketReadTimeoutMs());
+    }
+
+    @Bean(name = "twseMarketRestClient")
+    public RestClient twseMarketRestClient(OutboundHttpClientFactory httpClients, StockMarketProperties properties) {
+        StockMarketProperties.Twse twse = properties.getTwse();
+        return build(httpClients, "twse-market", twse.getOpenApiBaseUrl(), twse.getConnectTimeoutMs(), twse.getMarketReadTimeoutMs());
+    }
+
+    private static RestClient build(
+            OutboundHttpClientFactory httpClients,
+            String clientName,
+            String baseUrl,
+            long connectTimeoutMs,
+            long readTimeoutMs) {
+        return httpClients.restClient(
+                        clientName,
+                        baseUrl,
+                        Duration.ofMillis(connectTimeoutMs),
+                        Duration.ofMillis(readTimeoutMs))
+                .build();
+    }
+}
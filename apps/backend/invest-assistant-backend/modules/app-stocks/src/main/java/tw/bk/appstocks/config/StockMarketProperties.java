@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 股票市場 API 配置
  */
@@ -18,28 +21,93 @@ public class StockMarketProperties {
     private Twse twse = new Twse();
     private Cache cache = new Cache();
     private RateLimit rateLimit = new RateLimit();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private Hedge hedge = new Hedge();
+    private SingleFlight singleFlight = new SingleFlight();
+    private Warmer warmer = new Warmer();
+    private SearchIndex searchIndex = new SearchIndex();
+    private InstrumentCatalog instrumentCatalog = new InstrumentCatalog();
+    private InstrumentSync instrumentSync = new InstrumentSync();
+    private DetailEnrichment detailEnrichment = new DetailEnrichment();
+    private EodClose eodClose = new EodClose();
+    private Calendar calendar = new Calendar();
 
     @Data
     public static class Alpaca {
         private String keyId;
         private String secretKey;
         private String baseUrl = "https://data.alpaca.markets";
+
+        /**
+         * 連線逾時（毫秒）
+         */
+        private long connectTimeoutMs = 3000;
+
+        /**
+         * 讀取逾時（毫秒）；報價逐檔呼叫，過長會累加成前端 timeout
+         */
+        private long readTimeoutMs = 5000;
     }
 
     @Data
     public static class Fugle {
         private String apiKey;
         private String baseUrl = "https://api.fugle.tw/marketdata/v1.0/stock/";
+
+        /**
+         * 連線逾時（毫秒）
+         */
+        private long connectTimeoutMs = 3000;
+
+        /**
+         * 讀取逾時（毫秒）
+         */
+        private long readTimeoutMs = 5000;
+
+        /**
+         * 是否以 {@code /snapshot/quotes/{market}} 全市場快照刷新大量報價
+         */
+        private boolean snapshotEnabled = true;
     }
 
     @Data
     public static class Tpex {
         private String baseUrl = "https://www.tpex.org.tw/openapi/v1";
+
+        /**
+         * 連線逾時（毫秒）
+         */
+        private long connectTimeoutMs = 5000;
+
+        /**
+         * 權證清單的讀取逾時（毫秒）
+         */
+        private long readTimeoutMs = 15000;
+
+        /**
+         * 全市場權證日/月行情的讀取逾時（毫秒），檔案較大故放寬
+         */
+        private long marketReadTimeoutMs = 30000;
     }
 
     @Data
     public static class Twse {
         private String isinUrl = "https://isin.twse.com.tw/isin/class_main.jsp?issuetype=4&market=2";
+
+        /**
+         * TWSE OpenAPI（盤後全市場收盤 {@code /exchangeReport/STOCK_DAY_ALL}）
+         */
+        private String openApiBaseUrl = "https://openapi.twse.com.tw/v1";
+
+        /**
+         * 連線逾時（毫秒）
+         */
+        private long connectTimeoutMs = 5000;
+
+        /**
+         * 全市場回應的讀取逾時（毫秒）
+         */
+        private long marketReadTimeoutMs = 30000;
     }
 
     @Data
@@ -53,6 +121,72 @@ public class StockMarketProperties {
          * Candles 快取 TTL（毫秒）
          */
         private long candlesTtl = 3600000;
+
+        /**
+         * 已定案 K 線區段（月/週）的快取 TTL（毫秒）
+         */
+        private long candlesClosedBucketTtl = 604800000;
+
+        /**
+         * 當前（未定案）K 線區段的快取 TTL（毫秒）
+         */
+        private long candlesOpenBucketTtl = 60000;
+
+        /**
+         * Quote soft TTL（毫秒）：超過後直接回傳舊值（標記 stale）並於背景刷新，
+         * 超過 quoteTtl（hard TTL）才同步等待外部 API；0 表示停用
+         */
+        private long quoteSoftTtl = 0;
+
+        /**
+         * Candles soft TTL（毫秒），語意同 quoteSoftTtl；0 表示停用
+         */
+        private long candlesSoftTtl = 0;
+
+        /**
+         * 背景刷新執行緒數
+         */
+        private int refreshThreads = 2;
+
+        /**
+         * 背景刷新佇列容量，滿載時略過本次刷新（由下一次讀取再觸發）
+         */
+        private int refreshQueueCapacity = 200;
+
+        /**
+         * 是否啟用本機 L1（Caffeine）快取，位於 Redis L2 之前
+         */
+        private boolean localEnabled = true;
+
+        /**
+         * 本機 L1 快取 TTL 上限（毫秒），實際 TTL 取此值與 quoteTtl 的較小者
+         */
+        private long localTtl = 2000;
+
+        /**
+         * 本機 L1 快取最大筆數
+         */
+        private long localMaxSize = 10000;
+
+        /**
+         * 跨節點 L1 失效通知使用的 Redis pub/sub channel
+         */
+        private String invalidationChannel = "stock:cache:invalidate";
+
+        /**
+         * Quote/K 線以精簡二進位格式寫入 Redis；關閉時改寫 JSON（讀取兩種格式皆支援，供滾動部署切換）
+         */
+        private boolean binaryCodecEnabled = true;
+
+        /**
+         * 最後一筆報價（last-known）保留時間（毫秒），外部來源斷路時作為 stale 報價回傳；0 表示停用
+         */
+        private long quoteLastKnownTtl = 86400000;
+
+        /**
+         * 單一市場需要向外部來源取得的報價數達此值、且來源支援全市場快照時，改以一次快照刷新整個市場；0 表示停用
+         */
+        private int quoteSnapshotMinSymbols = 50;
     }
 
     @Data
@@ -63,7 +197,7 @@ public class StockMarketProperties {
         private boolean enabled = true;
 
         /**
-         * Fixed window size in milliseconds.
+         * Token bucket refill window in milliseconds (each vendor/endpoint refills its limit per window).
          */
         private long windowMs = 1000;
 
@@ -76,5 +210,401 @@ public class StockMarketProperties {
          * Allowed requests per window for Fugle calls.
          */
         private int fugleLimit = 8;
+
+        /**
+         * 互動請求（StockController）等待 permit 的上限（毫秒），超過回傳 RATE_LIMITED
+         */
+        private long interactiveMaxWaitMs = 2000;
+
+        /**
+         * 背景刷新等未標示優先權的呼叫等待 permit 的上限（毫秒）
+         */
+        private long defaultMaxWaitMs = 5000;
+
+        /**
+         * 批次工作（估值快照、商品同步）等待 permit 的上限（毫秒）
+         */
+        private long batchMaxWaitMs = 60000;
+
+        private Adaptive adaptive = new Adaptive();
+    }
+
+    /**
+     * 依外部 API 回應（429 / Retry-After / 延遲）自動調整的 AIMD 限流
+     * 有效速率與並行上限只會在設定值以下浮動：壅塞時乘法遞減，成功時緩慢加法回升
+     */
+    @Data
+    public static class Adaptive {
+        private boolean enabled = true;
+
+        /**
+         * 有效速率下限（每個 window 的請求數）
+         */
+        private int minLimit = 1;
+
+        /**
+         * 每個 vendor 同時進行中的請求上限，0 表示不限制並行數
+         */
+        private int maxConcurrency = 8;
+
+        /**
+         * 壅塞時速率與並行上限乘上的比例
+         */
+        private double decreaseFactor = 0.5;
+
+        /**
+         * 成功時的回升幅度：約每跑滿一個 window 的成功請求，速率增加此值
+         */
+        private double increaseStep = 1.0;
+
+        /**
+         * 成功但延遲超過此值（毫秒）也視為壅塞，0 表示不依延遲調整
+         */
+        private long latencyThresholdMs = 3000;
+
+        /**
+         * 429 未帶 Retry-After 時的暫停時間（毫秒）
+         */
+        private long defaultBackoffMs = 1000;
+
+        /**
+         * Retry-After 的採用上限（毫秒）
+         */
+        private long maxBackoffMs = 60000;
+    }
+
+    /**
+     * 每個 vendor/endpoint 的斷路器；失敗指逾時、連線錯誤或 5xx，429 交由 adaptive 限流處理不計入
+     */
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+
+        /**
+         * 計算失敗率的最近呼叫數
+         */
+        private int windowSize = 20;
+
+        /**
+         * 視窗內至少累積此呼叫數才判斷失敗率
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * 失敗率達此比例即 open
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * open 後直接拒絕的時間（毫秒），之後進入 half-open
+         */
+        private long openDurationMs = 30000;
+
+        /**
+         * half-open 放行的探測請求數，全數成功才回到 closed
+         */
+        private int halfOpenProbes = 2;
+    }
+
+    /**
+     * 報價的 hedged 請求：第一次呼叫超過近期成功延遲的分位數仍未回應時送出第二次呼叫，取先回傳者
+     */
+    @Data
+    public static class Hedge {
+        private boolean enabled = false;
+
+        /**
+         * 觸發第二次呼叫的延遲分位數
+         */
+        private double percentile = 0.95;
+
+        /**
+         * 每個 vendor/endpoint 保留的最近成功延遲樣本數
+         */
+        private int sampleSize = 200;
+
+        /**
+         * 樣本數未達此值時不 hedge
+         */
+        private int minSamples = 20;
+
+        /**
+         * hedge 延遲下限（毫秒），避免延遲分佈極短時幾乎每次都送兩次
+         */
+        private long minDelayMs = 50;
+
+        /**
+         * hedged 呼叫使用的執行緒數；執行緒皆忙碌時改在呼叫端執行緒直接呼叫、不 hedge
+         */
+        private int threads = 4;
+    }
+
+    /**
+     * 跨節點 single-flight：快取未命中時以 Redis lease 讓同一 key 只有一個節點呼叫外部 API，
+     * 其他節點等待 pub/sub 通知或短間隔輪詢快取
+     */
+    @Data
+    public static class SingleFlight {
+        private boolean distributedEnabled = true;
+
+        /**
+         * lease 存活時間（毫秒）；持有節點當機時最晚於此時間後由等待中的節點接手
+         */
+        private long leaseTtlMs = 10000;
+
+        /**
+         * 等待其他節點結果的上限（毫秒），逾時改由本節點直接呼叫
+         */
+        private long maxWaitMs = 8000;
+
+        /**
+         * 等待期間重新檢查快取與 lease 的間隔（毫秒），作為 pub/sub 通知遺失時的保底
+         */
+        private long pollIntervalMs = 100;
+
+        /**
+         * 完成通知的 pub/sub channel
+         */
+        private String channel = "stock:singleflight:done";
+    }
+
+    /**
+     * 報價快取預熱：持倉商品與近期被查詢的商品，於開盤前、盤中與收盤後分批刷新
+     */
+    @Data
+    public static class Warmer {
+        private boolean enabled = true;
+
+        /**
+         * 預熱的市場
+         */
+        private List<String> markets = new ArrayList<>(List.of("TW", "US"));
+
+        /**
+         * 檢查是否需要預熱的間隔（毫秒）
+         */
+        private long tickMs = 60000;
+
+        /**
+         * 開盤前多久（毫秒）執行開盤前預熱
+         */
+        private long preOpenLeadMs = 600000;
+
+        /**
+         * 盤中預熱間隔（毫秒）；只刷新快取未命中或已過 soft TTL 的商品
+         */
+        private long sessionIntervalMs = 120000;
+
+        /**
+         * 每批刷新的商品數（沿用批次報價的分市場呼叫，以 BATCH 優先權排隊）
+         */
+        private int batchSize = 50;
+
+        /**
+         * 批次之間的間隔（毫秒），讓出 rate limit 額度給使用者請求
+         */
+        private long batchPauseMs = 200;
+
+        /**
+         * 單輪預熱的商品上限
+         */
+        private int maxSymbols = 2000;
+
+        /**
+         * 近期查詢商品的保留時間（毫秒）
+         */
+        private long recentWindowMs = 86400000;
+
+        /**
+         * 近期查詢商品的數量上限
+         */
+        private int maxRecent = 500;
+
+        /**
+         * 啟動時預熱一次（只補快取未命中或已過 soft TTL 的商品）
+         */
+        private boolean warmOnStartup = true;
+
+        /**
+         * 啟動預熱完成（或逾時）前不回報 readiness
+         */
+        private boolean blockReadiness = false;
+
+        /**
+         * 啟動預熱阻擋 readiness 的上限（毫秒）
+         */
+        private long startupTimeoutMs = 60000;
+    }
+
+    /**
+     * 商品搜尋的記憶體索引：取代 LOWER(...) LIKE '%q%' 全表掃描，商品同步後重建並通知其他節點
+     */
+    @Data
+    public static class SearchIndex {
+        /**
+         * 關閉時商品搜尋直接查詢資料庫
+         */
+        private boolean enabled = true;
+
+        /**
+         * 重建通知的 pub/sub channel
+         */
+        private String channel = "stock:instrument-index:rebuild";
+    }
+
+    /**
+     * 記憶體商品目錄：ticker 清單、報價路由、OCR 與 AI 的商品查詢改讀不可變快照，商品異動後依版本重新載入並通知其他節點
+     */
+    @Data
+    public static class InstrumentCatalog {
+        /**
+         * 關閉時一律查詢資料庫
+         */
+        private boolean enabled = true;
+
+        /**
+         * 重新載入通知的 pub/sub channel
+         */
+        private String channel = "stock:instrument-catalog:reload";
+    }
+
+    /**
+     * 商品主檔同步：來源逐列比對既有商品，只以多列 upsert 寫入新增與變動的列
+     */
+    @Data
+    public static class InstrumentSync {
+        /**
+         * 累積多少筆新增或變動的列後寫入一次
+         */
+        private int batchSize = 500;
+
+        /**
+         * 交易所清單遭 429 時的重試次數；重試前的等待由 Fugle 限流器依 Retry-After 暫停決定
+         */
+        private int rateLimitedRetries = 3;
+    }
+
+    /**
+     * ticker 明細背景補齊：新商品、過期或缺欄位者排入持久佇列，依 Fugle 速率預算的一部分持續消化
+     */
+    @Data
+    public static class DetailEnrichment {
+        private boolean enabled = true;
+
+        /**
+         * 佔用 Fugle 有效速率（限流器調整後）的比例；其餘留給使用者請求與其他批次工作
+         */
+        private double budgetFraction = 0.25;
+
+        /**
+         * 每輪消化的間隔（毫秒）；每輪依預算領取並在輪內平均分配呼叫
+         */
+        private long tickMs = 10000;
+
+        /**
+         * 每輪最多領取的筆數，也是一次寫回的批次上限
+         */
+        private int maxBatch = 50;
+
+        /**
+         * 掃描需要補齊的商品並依持倉/近期查詢提高優先權的間隔（毫秒）
+         */
+        private long scanIntervalMs = 3600000;
+
+        /**
+         * 明細多久後視為過期需重新補齊（毫秒）
+         */
+        private long staleAfterMs = 604800000;
+
+        /**
+         * 明細仍缺英文名稱時的重試間隔（毫秒）
+         */
+        private long missingRetryMs = 86400000;
+
+        /**
+         * 領取後的租約（毫秒），節點中途停止時逾期由其他節點重新領取
+         */
+        private long leaseMs = 120000;
+
+        /**
+         * 失敗退避的基準（毫秒），依失敗次數指數成長
+         */
+        private long retryBackoffMs = 300000;
+
+        /**
+         * 連續失敗上限，超過後移出佇列待下次過期再排入
+         */
+        private int maxAttempts = 5;
+    }
+
+    /**
+     * 盤後收盤匯入：TWSE / TPEx 全市場日收盤檔串流寫入 app.daily_candles，歷史收盤價改讀資料庫
+     */
+    @Data
+    public static class EodClose {
+        private boolean enabled = true;
+
+        /**
+         * 排程（台北時間）；來源尚未更新到最近交易日時下一輪重試，已完成的交易日不重複下載
+         */
+        private String cron = "0 */30 14-18 * * MON-FRI";
+
+        /**
+         * 每批 upsert 的列數
+         */
+        private int batchSize = 500;
+
+        /**
+         * 執行中 Redis key 的 TTL（毫秒），節點中斷時逾時後由其他節點接手
+         */
+        private long leaseMs = 900000;
+    }
+
+    @Data
+    public static class Calendar {
+        /**
+         * 收盤後多久視為當日行情已定（毫秒），期間內仍使用盤中 TTL
+         */
+        private long settleDelayMs = 600000;
+
+        /**
+         * 收盤後 TTL 上限（毫秒），0 表示一路快取到下次開盤
+         */
+        private long closedTtlMaxMs = 0;
+
+        private Session tw = new Session("Asia/Taipei", "09:00", "13:30");
+        private Session us = new Session("America/New_York", "09:30", "16:00");
+    }
+
+    @Data
+    public static class Session {
+        /**
+         * 交易所時區
+         */
+        private String zone;
+
+        /**
+         * 開盤時間（HH:mm，交易所當地時間）
+         */
+        private String open;
+
+        /**
+         * 收盤時間（HH:mm，交易所當地時間）
+         */
+        private String close;
+
+        /**
+         * 休市日（yyyy-MM-dd），週末固定休市不需列出
+         */
+        private List<String> holidays = new ArrayList<>();
+
+        public Session() {
+        }
+
+        public Session(String zone, String open, String close) {
+            this.zone = zone;
+            this.open = open;
+            this.close = close;
+        }
     }
 }
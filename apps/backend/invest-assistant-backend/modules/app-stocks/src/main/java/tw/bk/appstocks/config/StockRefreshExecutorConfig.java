@@ -0,0 +1,32 @@
+package tw.bk.appstocks.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 行情快取背景刷新（stale-while-revalidate）用的有界執行緒池
+ */
+@Configuration
+public class StockRefreshExecutorConfig {
+
+    @Bean(name = "stockRefreshExecutor")
+    public Executor stockRefreshExecutor(StockMarketProperties properties) {
+        StockMarketProperties.Cache cache = properties.getCache();
+        int threads = Math.max(1, cache.getRefreshThreads());
+        int queueCapacity = Math.max(0, cache.getRefreshQueueCapacity());
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("stock-refresh-");
+        // 佇列滿時拒絕（呼叫端會略過本次刷新），避免刷新工作回到請求執行緒
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
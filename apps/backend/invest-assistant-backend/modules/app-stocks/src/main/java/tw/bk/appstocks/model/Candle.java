@@ -13,7 +13,7 @@ import java.time.LocalDateTime;
  * K 線資料模型
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Candle implements Serializable {
@@ -0,0 +1,28 @@
+package tw.bk.appstocks.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * K 線快取項目（附寫入時間，供 soft TTL 判斷）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandleCacheEntry implements Serializable {
+
+    /**
+     * K 線資料
+     */
+    private List<Candle> candles;
+
+    /**
+     * 寫入快取的時間
+     */
+    private Instant cachedAt;
+}
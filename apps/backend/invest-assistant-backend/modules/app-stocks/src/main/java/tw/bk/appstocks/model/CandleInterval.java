@@ -0,0 +1,102 @@
+package tw.bk.appstocks.model;
+
+import java.util.Locale;
+
+/**
+ * K 線週期
+ * 支援分鐘（{@code Nm}）、小時（{@code Nh}）、日（{@code 1d}）、週（{@code 1w}）、月（{@code Nmo}，N 需整除 12）、
+ * 季（{@code 1q}，即 3mo）、年（{@code 1y}，即 12mo）；小時與季/年分別正規化為分鐘與月
+ *
+ * @param amount 單位數量
+ * @param unit   單位
+ */
+public record CandleInterval(int amount, Unit unit) {
+    public static final CandleInterval ONE_MINUTE = new CandleInterval(1, Unit.MINUTE);
+    public static final CandleInterval FIVE_MINUTES = new CandleInterval(5, Unit.MINUTE);
+    public static final CandleInterval ONE_DAY = new CandleInterval(1, Unit.DAY);
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int MONTHS_PER_YEAR = 12;
+
+    public enum Unit {
+        MINUTE,
+        DAY,
+        WEEK,
+        MONTH
+    }
+
+    public CandleInterval {
+        if (unit == null || amount <= 0) {
+            throw new IllegalArgumentException("無效的 K 線週期: " + amount + " " + unit);
+        }
+    }
+
+    /**
+     * 解析週期字串（不分大小寫）；無法解析或不支援時回傳 null
+     */
+    public static CandleInterval parse(String interval) {
+        if (interval == null || interval.isBlank()) {
+            return ONE_DAY;
+        }
+        String normalized = interval.trim().toLowerCase(Locale.ROOT);
+        int split = 0;
+        while (split < normalized.length() && Character.isDigit(normalized.charAt(split))) {
+            split++;
+        }
+        if (split == 0 || split > 4) {
+            return null;
+        }
+        int amount = Integer.parseInt(normalized.substring(0, split));
+        if (amount <= 0) {
+            return null;
+        }
+        return switch (normalized.substring(split)) {
+            case "m", "min" -> amount <= MINUTES_PER_DAY ? new CandleInterval(amount, Unit.MINUTE) : null;
+            case "h" -> amount * 60 <= MINUTES_PER_DAY ? new CandleInterval(amount * 60, Unit.MINUTE) : null;
+            case "d" -> amount == 1 ? ONE_DAY : null;
+            case "w" -> amount == 1 ? new CandleInterval(1, Unit.WEEK) : null;
+            case "mo" -> MONTHS_PER_YEAR % amount == 0 ? new CandleInterval(amount, Unit.MONTH) : null;
+            case "q" -> amount == 1 ? new CandleInterval(3, Unit.MONTH) : null;
+            case "y" -> amount == 1 ? new CandleInterval(MONTHS_PER_YEAR, Unit.MONTH) : null;
+            default -> null;
+        };
+    }
+
+    public boolean isIntraday() {
+        return unit == Unit.MINUTE;
+    }
+
+    /**
+     * 可推導出此週期的最細快取序列：日以上由 1d，盤中可被 5 整除者由 5m，其餘由 1m
+     */
+    public CandleInterval base() {
+        if (!isIntraday()) {
+            return ONE_DAY;
+        }
+        return amount % FIVE_MINUTES.amount == 0 ? FIVE_MINUTES : ONE_MINUTE;
+    }
+
+    /**
+     * 是否需由較細的序列聚合而成
+     */
+    public boolean isDerived() {
+        return !equals(base());
+    }
+
+    /**
+     * 正規化的週期字串（如 5m、60m、1d、1w、3mo）
+     */
+    public String code() {
+        return switch (unit) {
+            case MINUTE -> amount + "m";
+            case DAY -> amount + "d";
+            case WEEK -> amount + "w";
+            case MONTH -> amount + "mo";
+        };
+    }
+
+    @Override
+    public String toString() {
+        return code();
+    }
+}
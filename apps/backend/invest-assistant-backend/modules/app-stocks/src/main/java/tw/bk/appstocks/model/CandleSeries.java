@@ -0,0 +1,236 @@
+package tw.bk.appstocks.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 日 K 線欄位式序列（聚合、指標運算用）
+ * 以平行的 primitive 陣列保存：日期為 epoch day、OHLC 為整個序列共用 scale 的定點 long、成交量為 long，
+ * 缺值以 {@link #MISSING} 表示。與 {@link Candle} 只在邊界互轉，運算過程不需逐筆配置物件。
+ * 陣列由建構者交出所有權，不做防禦性複製，建立後不應再修改
+ */
+public final class CandleSeries {
+    /**
+     * 缺值標記
+     */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    /**
+     * 與 app.daily_candles 的 NUMERIC(20,8) 一致，超過的小數位四捨五入
+     */
+    public static final int MAX_SCALE = 8;
+
+    private static final CandleSeries EMPTY = new CandleSeries(
+            null, 0, 0, new int[0], new long[0], new long[0], new long[0], new long[0], new long[0]);
+
+    private final String ticker;
+    private final int scale;
+    private final int size;
+    private final int[] epochDays;
+    private final long[] open;
+    private final long[] high;
+    private final long[] low;
+    private final long[] close;
+    private final long[] volume;
+
+    public CandleSeries(
+            String ticker,
+            int scale,
+            int size,
+            int[] epochDays,
+            long[] open,
+            long[] high,
+            long[] low,
+            long[] close,
+            long[] volume) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("scale 超出範圍: " + scale);
+        }
+        if (size < 0 || epochDays.length < size || open.length < size || high.length < size
+                || low.length < size || close.length < size || volume.length < size) {
+            throw new IllegalArgumentException("陣列長度小於 size: " + size);
+        }
+        this.ticker = ticker;
+        this.scale = scale;
+        this.size = size;
+        this.epochDays = epochDays;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+
+    public static CandleSeries empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 由 Candle 列表建立（略過 null 與無時間者，依日期排序）；scale 取各價格最大小數位（上限 {@link #MAX_SCALE}），
+     * 最大價格在該 scale 下超出 long 範圍時逐位調降 scale（該序列多出的小數位四捨五入），不讓單一大數值使整個請求失敗
+     *
+     * @throws IllegalArgumentException 價格即使 scale 為 0 仍超出 long 範圍（約 9.2e18，遠超過 NUMERIC(20,8)）
+     */
+    public static CandleSeries fromCandles(List<Candle> candles) {
+        if (candles == null || candles.isEmpty()) {
+            return EMPTY;
+        }
+        List<Candle> valid = new ArrayList<>(candles.size());
+        boolean sorted = true;
+        Candle previous = null;
+        String ticker = null;
+        int scale = 0;
+        BigDecimal maxAbs = BigDecimal.ZERO;
+        for (Candle candle : candles) {
+            if (candle == null || candle.getTimestamp() == null) {
+                continue;
+            }
+            if (previous != null && candle.getTimestamp().isBefore(previous.getTimestamp())) {
+                sorted = false;
+            }
+            if (ticker == null) {
+                ticker = candle.getTicker();
+            }
+            scale = Math.max(scale, Math.max(
+                    Math.max(scaleOf(candle.getOpen()), scaleOf(candle.getHigh())),
+                    Math.max(scaleOf(candle.getLow()), scaleOf(candle.getClose()))));
+            maxAbs = maxAbs(maxAbs(maxAbs(maxAbs(maxAbs, candle.getOpen()), candle.getHigh()), candle.getLow()),
+                    candle.getClose());
+            valid.add(candle);
+            previous = candle;
+        }
+        if (valid.isEmpty()) {
+            return EMPTY;
+        }
+        if (!sorted) {
+            valid.sort(Comparator.comparing(Candle::getTimestamp));
+        }
+        scale = fittingScale(maxAbs, Math.min(scale, MAX_SCALE));
+
+        int size = valid.size();
+        int[] epochDays = new int[size];
+        long[] open = new long[size];
+        long[] high = new long[size];
+        long[] low = new long[size];
+        long[] close = new long[size];
+        long[] volume = new long[size];
+        for (int i = 0; i < size; i++) {
+            Candle candle = valid.get(i);
+            epochDays[i] = Math.toIntExact(candle.getTimestamp().toLocalDate().toEpochDay());
+            open[i] = toFixed(candle.getOpen(), scale);
+            high[i] = toFixed(candle.getHigh(), scale);
+            low[i] = toFixed(candle.getLow(), scale);
+            close[i] = toFixed(candle.getClose(), scale);
+            volume[i] = candle.getVolume() == null ? MISSING : candle.getVolume();
+        }
+        return new CandleSeries(ticker, scale, size, epochDays, open, high, low, close, volume);
+    }
+
+    /**
+     * 轉回 Candle 列表（時間為當日 00:00，價格 scale 為序列共用 scale）
+     */
+    public List<Candle> toCandles() {
+        List<Candle> candles = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            candles.add(Candle.builder()
+                    .ticker(ticker)
+                    .timestamp(LocalDate.ofEpochDay(epochDays[i]).atStartOfDay())
+                    .open(toDecimal(open[i]))
+                    .high(toDecimal(high[i]))
+                    .low(toDecimal(low[i]))
+                    .close(toDecimal(close[i]))
+                    .volume(volume[i] == MISSING ? null : volume[i])
+                    .build());
+        }
+        return candles;
+    }
+
+    public BigDecimal toDecimal(long fixed) {
+        return fixed == MISSING ? null : BigDecimal.valueOf(fixed, scale);
+    }
+
+    public String ticker() {
+        return ticker;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int epochDay(int index) {
+        return epochDays[checkIndex(index)];
+    }
+
+    public long open(int index) {
+        return open[checkIndex(index)];
+    }
+
+    public long high(int index) {
+        return high[checkIndex(index)];
+    }
+
+    public long low(int index) {
+        return low[checkIndex(index)];
+    }
+
+    public long close(int index) {
+        return close[checkIndex(index)];
+    }
+
+    public long volume(int index) {
+        return volume[checkIndex(index)];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return index;
+    }
+
+    private static int scaleOf(BigDecimal value) {
+        return value == null ? 0 : Math.max(0, value.scale());
+    }
+
+    private static BigDecimal maxAbs(BigDecimal current, BigDecimal value) {
+        return value == null ? current : current.max(value.abs());
+    }
+
+    /**
+     * 不超過 scale、且最大絕對值換成定點後仍在 long 範圍內（不會撞上 {@link #MISSING}）的最大 scale
+     */
+    private static int fittingScale(BigDecimal maxAbs, int scale) {
+        while (scale > 0 && maxAbs.setScale(scale, RoundingMode.HALF_UP).unscaledValue().bitLength() >= Long.SIZE) {
+            scale--;
+        }
+        return scale;
+    }
+
+    private static long toFixed(BigDecimal value, int scale) {
+        if (value == null) {
+            return MISSING;
+        }
+        long fixed;
+        try {
+            fixed = value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("價格超出定點範圍: " + value, ex);
+        }
+        if (fixed == MISSING) {
+            throw new IllegalArgumentException("價格超出定點範圍: " + value);
+        }
+        return fixed;
+    }
+}
@@ -0,0 +1,25 @@
+package tw.bk.appstocks.model;
+
+import java.time.LocalDate;
+
+/**
+ * 單一來源的盤後收盤匯入結果
+ *
+ * @param source    來源（twse / tpex）
+ * @param tradeDate 匯入的交易日
+ * @param outcome   success、stale（來源尚未更新到該交易日）、empty、skipped（其他節點已處理）、error
+ * @param rows      來源檔案的列數
+ * @param matched   對應到商品目錄並寫入的列數（含無成交標記）
+ * @param noTrade   其中無成交、寫入無資料標記的列數
+ */
+public record EodCloseIngestResult(
+        String source, LocalDate tradeDate, String outcome, int rows, int matched, int noTrade) {
+
+    public static EodCloseIngestResult skipped(String source, LocalDate tradeDate) {
+        return new EodCloseIngestResult(source, tradeDate, "skipped", 0, 0, 0);
+    }
+
+    public static EodCloseIngestResult error(String source, LocalDate tradeDate) {
+        return new EodCloseIngestResult(source, tradeDate, "error", 0, 0, 0);
+    }
+}
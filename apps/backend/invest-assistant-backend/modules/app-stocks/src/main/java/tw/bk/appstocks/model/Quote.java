@@ -13,7 +13,7 @@ import java.time.Instant;
  * 股票報價資料模型
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Quote implements Serializable {
@@ -67,4 +67,19 @@ public class Quote implements Serializable {
      * 報價時間
      */
     private Instant timestamp;
+
+    /**
+     * 寫入快取的時間（判斷 soft TTL 用）
+     */
+    private Instant cachedAt;
+
+    /**
+     * 是否為超過 soft TTL 的舊資料（已觸發背景刷新）
+     */
+    private boolean stale;
+
+    /**
+     * 舊資料的年齡（毫秒），僅 stale 時有值
+     */
+    private Long ageMs;
 }
@@ -0,0 +1,26 @@
+package tw.bk.appstocks.model;
+
+/**
+ * 報價快取預熱單批結果
+ *
+ * @param requested    要預熱的商品數
+ * @param cachedBefore 預熱前已在報價快取中的商品數
+ * @param attempted    向外部來源刷新的商品數
+ * @param refreshed    刷新成功並寫入快取的商品數
+ * @param cachedAfter  預熱後在報價快取中的商品數
+ */
+public record QuoteWarmResult(int requested, int cachedBefore, int attempted, int refreshed, int cachedAfter) {
+
+    public static QuoteWarmResult empty() {
+        return new QuoteWarmResult(0, 0, 0, 0, 0);
+    }
+
+    public QuoteWarmResult plus(QuoteWarmResult other) {
+        return new QuoteWarmResult(
+                requested + other.requested,
+                cachedBefore + other.cachedBefore,
+                attempted + other.attempted,
+                refreshed + other.refreshed,
+                cachedAfter + other.cachedAfter);
+    }
+}
@@ -7,8 +7,13 @@ import tw.bk.appstocks.model.TickerList;
 import tw.bk.appstocks.model.TickerQuery;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * 股票市場資料提供者介面（Port）
@@ -24,6 +29,47 @@ public interface StockMarketClient {
      */
     Optional<Quote> getQuote(String ticker);
 
+    /**
+     * 批次取得即時報價
+     * 預設逐檔呼叫 {@link #getQuote(String)}，支援多檔查詢的來源（如 Alpaca）應覆寫為單次請求
+     *
+     * @param tickers 股票代碼列表
+     * @return ticker → 報價，查無資料的 ticker 不會出現在結果中
+     */
+    default Map<String, Quote> getQuotes(Collection<String> tickers) {
+        Map<String, Quote> result = new LinkedHashMap<>();
+        if (tickers == null) {
+            return result;
+        }
+        for (String ticker : tickers) {
+            getQuote(ticker).ifPresent(quote -> result.put(ticker, quote));
+        }
+        return result;
+    }
+
+    /**
+     * 是否支援全市場快照（單次請求取得整個市場的報價）
+     * 支援時批次報價需要的商品數多於 {@code stock.cache.quote-snapshot-min-symbols} 會改用 {@link #streamMarketSnapshot}
+     *
+     * @return 是否支援
+     */
+    default boolean supportsMarketSnapshot() {
+        return false;
+    }
+
+    /**
+     * 串流讀取全市場快照，每解析一列即交給 consumer（不保留整份回應）
+     * 快照沒有成交價的商品不會交給 consumer，由呼叫端改以 {@link #getQuotes(Collection)} 補齊
+     * 預設不支援快照（{@link #supportsMarketSnapshot()} 為 false），不交出任何報價並回傳 0
+     *
+     * @param consumer 報價（ticker 為快照代碼）
+     * @return 交給 consumer 的筆數
+     * @throws tw.bk.appcommon.exception.BusinessException 任一市場取得失敗；失敗前已交給 consumer 的報價仍有效
+     */
+    default int streamMarketSnapshot(Consumer<Quote> consumer) {
+        return 0;
+    }
+
     /**
      * 取得 K 線資料
      * 
@@ -31,7 +77,9 @@ public interface StockMarketClient {
      * @param interval 時間間隔（1d, 1h, 5m 等）
      * @param from     起始日期
      * @param to       結束日期
-     * @return K 線列表
+     * @return K 線列表；空列表表示來源確認該區間無資料
+     * @throws tw.bk.appcommon.exception.BusinessException 來源失敗（429 為 RATE_LIMITED，其餘錯誤、逾時、空回應為 INTERNAL_ERROR），
+     *                                                    呼叫端不得當成無資料快取
      */
     List<Candle> getCandles(String ticker, String interval, LocalDate from, LocalDate to);
 
@@ -42,6 +90,15 @@ public interface StockMarketClient {
      */
     MarketCode getSupportedMarket();
 
+    /**
+     * 資料來源名稱（寫入持久化資料的 source 欄位、metrics tag 用）
+     *
+     * @return 來源名稱（如 fugle, alpaca）
+     */
+    default String getVendor() {
+        return getSupportedMarket().getCode().toLowerCase(Locale.ROOT);
+    }
+
     /**
      * 取得股票或指數列表（依條件查詢）
      *
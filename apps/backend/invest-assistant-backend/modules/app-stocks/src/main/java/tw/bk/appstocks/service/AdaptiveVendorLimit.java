@@ -0,0 +1,181 @@
+package tw.bk.appstocks.service;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+/**
+ * 單一 vendor 的 AIMD 狀態：有效速率、並行上限、進行中請求數與 Retry-After 暫停
+ * 壅塞（429 或延遲過高）時速率與並行上限乘上 {@code decreaseFactor}，同一個 window 內只遞減一次，
+ * 避免同一波在途請求連續收到 429 時一路砍到底；每次成功回升 {@code increaseStep / 目前速率}，
+ * 約每跑滿一個 window 的成功請求增加 {@code increaseStep}
+ */
+final class AdaptiveVendorLimit {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotReleased = lock.newCondition();
+
+    private double rateLimit = -1;
+    private double concurrencyLimit = -1;
+    private int inFlight;
+    private long pausedUntil;
+    private boolean paused;
+    private long lastDecreaseAt;
+    private boolean decreased;
+
+    /**
+     * 目前有效速率（每個 window 的請求數），介於 {@code minLimit} 與設定值之間
+     */
+    int rateLimit(int configured, StockMarketProperties.Adaptive config) {
+        lock.lock();
+        try {
+            return (int) Math.floor(clampRate(configured, config));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 目前並行上限；{@code maxConcurrency <= 0} 時回傳 0（不限制）
+     */
+    int concurrencyLimit(StockMarketProperties.Adaptive config) {
+        lock.lock();
+        try {
+            return (int) Math.floor(clampConcurrency(config));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retry-After 暫停剩餘的奈秒數
+     */
+    long pauseRemainingNanos(long now) {
+        lock.lock();
+        try {
+            if (!paused) {
+                return 0L;
+            }
+            long remaining = pausedUntil - now;
+            if (remaining <= 0) {
+                paused = false;
+                return 0L;
+            }
+            return remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在期限前取得一個並行名額
+     */
+    boolean acquireSlot(StockMarketProperties.Adaptive config, long deadlineNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                double limit = clampConcurrency(config);
+                if (limit <= 0 || inFlight < (int) Math.floor(limit)) {
+                    inFlight++;
+                    return true;
+                }
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                slotReleased.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void releaseSlot() {
+        lock.lock();
+        try {
+            if (inFlight > 0) {
+                inFlight--;
+            }
+            slotReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onSuccess(int configured, StockMarketProperties.Adaptive config) {
+        lock.lock();
+        try {
+            double rate = clampRate(configured, config);
+            rateLimit = Math.min(configured, rate + config.getIncreaseStep() / Math.max(rate, 1.0));
+            double concurrency = clampConcurrency(config);
+            if (concurrency > 0) {
+                concurrencyLimit = Math.min(config.getMaxConcurrency(), concurrency + 1.0 / concurrency);
+                slotReleased.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 壅塞回饋；{@code pauseNanos > 0} 時在該時間內不送出新請求
+     *
+     * @return 是否實際遞減了速率
+     */
+    boolean onCongestion(int configured, StockMarketProperties.Adaptive config, long pauseNanos, long cooldownNanos) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (pauseNanos > 0) {
+                long until = now + pauseNanos;
+                if (!paused || until - pausedUntil > 0) {
+                    pausedUntil = until;
+                    paused = true;
+                }
+            }
+            if (decreased && now - lastDecreaseAt < cooldownNanos) {
+                return false;
+            }
+            double factor = config.getDecreaseFactor();
+            rateLimit = Math.max(Math.min(config.getMinLimit(), configured), clampRate(configured, config) * factor);
+            double concurrency = clampConcurrency(config);
+            if (concurrency > 0) {
+                concurrencyLimit = Math.max(1.0, concurrency * factor);
+            }
+            lastDecreaseAt = now;
+            decreased = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double clampRate(int configured, StockMarketProperties.Adaptive config) {
+        double floor = Math.max(1, Math.min(config.getMinLimit(), configured));
+        if (rateLimit < 0 || rateLimit > configured) {
+            rateLimit = configured;
+        }
+        rateLimit = Math.max(rateLimit, floor);
+        return rateLimit;
+    }
+
+    private double clampConcurrency(StockMarketProperties.Adaptive config) {
+        int max = config.getMaxConcurrency();
+        if (max <= 0) {
+            return 0;
+        }
+        if (concurrencyLimit < 0 || concurrencyLimit > max) {
+            concurrencyLimit = max;
+        }
+        concurrencyLimit = Math.max(concurrencyLimit, 1.0);
+        return concurrencyLimit;
+    }
+}
@@ -1,135 +1,260 @@
 package tw.bk.appstocks.service;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.YearMonth;
-import java.time.temporal.WeekFields;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.function.Function;
 import org.springframework.stereotype.Component;
 import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleInterval;
+import tw.bk.appstocks.model.CandleSeries;
 
+/**
+ * K 線時間區段聚合
+ * 任何較粗的週期都由最細的快取序列推導（見 {@link CandleInterval#base()}）：
+ * 日以上（週 K 為 ISO 週、月/季/年 K 為曆月）在 {@link CandleSeries} 上單次走訪完成，不逐筆配置物件；
+ * 盤中週期以交易時段開盤時間對齊切分（如台股 09:00 起的 1h 區段為 09:00、10:00 … 13:00）
+ */
 @Component
 public class CandleAggregator {
 
-    private static final WeekFields ISO_WEEK = WeekFields.ISO;
-
+    /**
+     * 是否需由較細的序列聚合（無法解析的週期視為原生週期，直接交給外部來源）
+     */
     public boolean isAggregateInterval(String interval) {
-        String normalized = normalizeInterval(interval);
-        return "1w".equals(normalized) || "1mo".equals(normalized);
+        CandleInterval parsed = CandleInterval.parse(interval);
+        return parsed != null && parsed.isDerived();
+    }
+
+    /**
+     * 推導此週期所需的最細序列週期；無法解析時回傳正規化後的原週期
+     */
+    public String baseIntervalOf(String interval) {
+        CandleInterval parsed = CandleInterval.parse(interval);
+        return parsed == null ? normalizeInterval(interval) : parsed.base().code();
+    }
+
+    /**
+     * 以 UTC 00:00 對齊盤中區段；日以上週期不受影響
+     */
+    public List<Candle> aggregate(String interval, List<Candle> candles) {
+        return aggregate(interval, candles, ZoneOffset.UTC, LocalTime.MIDNIGHT);
     }
 
-    public List<Candle> aggregate(String interval, List<Candle> dailyCandles) {
-        if (dailyCandles == null || dailyCandles.isEmpty()) {
+    /**
+     * 聚合 K 線；K 線時間為 UTC
+     *
+     * @param zone        交易時段所在時區（盤中區段對齊用）
+     * @param sessionOpen 開盤時間（盤中區段對齊用）
+     */
+    public List<Candle> aggregate(String interval, List<Candle> candles, ZoneId zone, LocalTime sessionOpen) {
+        if (candles == null || candles.isEmpty()) {
             return List.of();
         }
-
-        String normalized = normalizeInterval(interval);
-        if ("1w".equals(normalized)) {
-            return aggregateBy(dailyCandles, this::weeklyKey);
+        CandleInterval target = CandleInterval.parse(interval);
+        if (target == null || !target.isDerived()) {
+            return sortedValidCandles(candles);
         }
-        if ("1mo".equals(normalized)) {
-            return aggregateBy(dailyCandles, this::monthlyKey);
+        if (target.isIntraday()) {
+            return aggregateIntraday(target.amount(), sortedValidCandles(candles), zone, sessionOpen);
         }
-        return sortedValidCandles(dailyCandles);
+        return aggregate(interval, CandleSeries.fromCandles(candles)).toCandles();
     }
 
-    private List<Candle> aggregateBy(List<Candle> candles, Function<Candle, Object> keyFunction) {
-        Map<Object, Accumulator> groups = new LinkedHashMap<>();
-        for (Candle candle : sortedValidCandles(candles)) {
-            Object key = keyFunction.apply(candle);
-            groups.computeIfAbsent(key, ignored -> new Accumulator(candle)).add(candle);
+    /**
+     * 聚合日 K 序列（需依日期排序）：開盤取首日、收盤取末日、高低取極值、成交量加總，時間為區段內第一個交易日
+     */
+    public CandleSeries aggregate(String interval, CandleSeries daily) {
+        CandleInterval target = CandleInterval.parse(interval);
+        if (target == null || target.isIntraday() || target.unit() == CandleInterval.Unit.DAY) {
+            return daily;
+        }
+        boolean weekly = target.unit() == CandleInterval.Unit.WEEK;
+        int months = target.amount();
+        int size = daily.size();
+        if (size == 0) {
+            return daily;
         }
 
-        return groups.values().stream()
-                .map(Accumulator::toCandle)
-                .toList();
+        int[] epochDays = new int[size];
+        long[] open = new long[size];
+        long[] high = new long[size];
+        long[] low = new long[size];
+        long[] close = new long[size];
+        long[] volume = new long[size];
+        int groups = 0;
+        int currentKey = 0;
+        for (int i = 0; i < size; i++) {
+            int epochDay = daily.epochDay(i);
+            int key = weekly ? weekKey(epochDay) : Math.floorDiv(monthKey(epochDay), months);
+            if (groups == 0 || key != currentKey) {
+                currentKey = key;
+                epochDays[groups] = epochDay;
+                open[groups] = daily.open(i);
+                high[groups] = CandleSeries.MISSING;
+                low[groups] = CandleSeries.MISSING;
+                volume[groups] = 0L;
+                groups++;
+            }
+            int group = groups - 1;
+            high[group] = max(high[group], daily.high(i));
+            low[group] = min(low[group], daily.low(i));
+            close[group] = daily.close(i);
+            long dailyVolume = daily.volume(i);
+            if (dailyVolume != CandleSeries.MISSING) {
+                volume[group] += dailyVolume;
+            }
+        }
+        return new CandleSeries(daily.ticker(), daily.scale(), groups,
+                Arrays.copyOf(epochDays, groups),
+                Arrays.copyOf(open, groups),
+                Arrays.copyOf(high, groups),
+                Arrays.copyOf(low, groups),
+                Arrays.copyOf(close, groups),
+                Arrays.copyOf(volume, groups));
     }
 
-    private List<Candle> sortedValidCandles(List<Candle> candles) {
-        return candles.stream()
-                .filter(candle -> candle != null && candle.getTimestamp() != null)
-                .sorted(Comparator.comparing(Candle::getTimestamp))
-                .toList();
+    /**
+     * 盤中區段：以當日開盤時間為原點、每 minutes 分鐘一段（開盤前的資料依同一格線往前切）；輸入需已排序
+     */
+    private List<Candle> aggregateIntraday(
+            int minutes, List<Candle> candles, ZoneId zone, LocalTime sessionOpen) {
+        long bucketSeconds = minutes * 60L;
+        List<Candle> result = new ArrayList<>();
+        LocalDate sessionDate = null;
+        long sessionOpenSecond = 0L;
+        long currentBucket = Long.MIN_VALUE;
+        Candle first = null;
+        Candle last = null;
+        BigDecimal high = null;
+        BigDecimal low = null;
+        long volume = 0L;
+        for (Candle candle : candles) {
+            Instant at = candle.getTimestamp().toInstant(ZoneOffset.UTC);
+            LocalDate date = LocalDate.ofInstant(at, zone);
+            if (!date.equals(sessionDate)) {
+                sessionDate = date;
+                sessionOpenSecond = date.atTime(sessionOpen).atZone(zone).toEpochSecond();
+            }
+            long offset = at.getEpochSecond() - sessionOpenSecond;
+            long bucket = sessionOpenSecond + Math.floorDiv(offset, bucketSeconds) * bucketSeconds;
+            if (bucket != currentBucket) {
+                if (first != null) {
+                    result.add(toCandle(currentBucket, first, last, high, low, volume));
+                }
+                currentBucket = bucket;
+                first = candle;
+                high = null;
+                low = null;
+                volume = 0L;
+            }
+            last = candle;
+            high = max(high, candle.getHigh());
+            low = min(low, candle.getLow());
+            if (candle.getVolume() != null) {
+                volume += candle.getVolume();
+            }
+        }
+        if (first != null) {
+            result.add(toCandle(currentBucket, first, last, high, low, volume));
+        }
+        return result;
     }
 
-    private WeeklyKey weeklyKey(Candle candle) {
-        LocalDate date = candle.getTimestamp().toLocalDate();
-        int weekBasedYear = date.get(ISO_WEEK.weekBasedYear());
-        int weekOfYear = date.get(ISO_WEEK.weekOfWeekBasedYear());
-        return new WeeklyKey(weekBasedYear, weekOfYear);
+    private static Candle toCandle(
+            long bucketSecond, Candle first, Candle last, BigDecimal high, BigDecimal low, long volume) {
+        return Candle.builder()
+                .ticker(first.getTicker())
+                .timestamp(LocalDateTime.ofEpochSecond(bucketSecond, 0, ZoneOffset.UTC))
+                .open(first.getOpen())
+                .high(high)
+                .low(low)
+                .close(last.getClose())
+                .volume(volume)
+                .build();
     }
 
-    private YearMonth monthlyKey(Candle candle) {
-        return YearMonth.from(candle.getTimestamp());
+    private static BigDecimal max(BigDecimal current, BigDecimal candidate) {
+        if (current == null) {
+            return candidate;
+        }
+        if (candidate == null) {
+            return current;
+        }
+        return current.compareTo(candidate) >= 0 ? current : candidate;
     }
 
-    private String normalizeInterval(String interval) {
-        if (interval == null) {
-            return "1d";
+    private static BigDecimal min(BigDecimal current, BigDecimal candidate) {
+        if (current == null) {
+            return candidate;
         }
-        return interval.trim().toLowerCase(Locale.ROOT);
+        if (candidate == null) {
+            return current;
+        }
+        return current.compareTo(candidate) <= 0 ? current : candidate;
     }
 
-    private record WeeklyKey(int year, int week) {
+    private List<Candle> sortedValidCandles(List<Candle> candles) {
+        return candles.stream()
+                .filter(candle -> candle != null && candle.getTimestamp() != null)
+                .sorted(Comparator.comparing(Candle::getTimestamp))
+                .toList();
     }
 
-    private static final class Accumulator {
-        private final Candle first;
-        private Candle last;
-        private BigDecimal high;
-        private BigDecimal low;
-        private long volume;
+    /**
+     * 以週一為起點的週序號（epoch day 0 = 1970-01-01 為週四），同一 ISO 週得到同一值
+     */
+    static int weekKey(int epochDay) {
+        return Math.floorDiv(epochDay + 3, 7);
+    }
 
-        private Accumulator(Candle first) {
-            this.first = first;
-            this.high = first.getHigh();
-            this.low = first.getLow();
-        }
+    /**
+     * year * 12 + (month - 1)，以 civil-from-days 演算法換算，不建立 LocalDate
+     */
+    static int monthKey(int epochDay) {
+        int z = epochDay + 719_468;
+        int era = Math.floorDiv(z, 146_097);
+        int dayOfEra = z - era * 146_097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
 
-        private void add(Candle candle) {
-            last = candle;
-            high = max(high, candle.getHigh());
-            low = min(low, candle.getLow());
-            if (candle.getVolume() != null) {
-                volume += candle.getVolume();
-            }
+    private static long max(long current, long candidate) {
+        if (current == CandleSeries.MISSING) {
+            return candidate;
         }
-
-        private Candle toCandle() {
-            return Candle.builder()
-                    .ticker(first.getTicker())
-                    .timestamp(first.getTimestamp())
-                    .open(first.getOpen())
-                    .high(high)
-                    .low(low)
-                    .close(last == null ? first.getClose() : last.getClose())
-                    .volume(volume)
-                    .build();
+        if (candidate == CandleSeries.MISSING) {
+            return current;
         }
+        return Math.max(current, candidate);
+    }
 
-        private BigDecimal max(BigDecimal current, BigDecimal candidate) {
-            if (current == null) {
-                return candidate;
-            }
-            if (candidate == null) {
-                return current;
-            }
-            return current.compareTo(candidate) >= 0 ? current : candidate;
+    private static long min(long current, long candidate) {
+        if (current == CandleSeries.MISSING) {
+            return candidate;
+        }
+        if (candidate == CandleSeries.MISSING) {
+            return current;
         }
+        return Math.min(current, candidate);
+    }
 
-        private BigDecimal min(BigDecimal current, BigDecimal candidate) {
-            if (current == null) {
-                return candidate;
-            }
-            if (candidate == null) {
-                return current;
-            }
-            return current.compareTo(candidate) <= 0 ? current : candidate;
+    private String normalizeInterval(String interval) {
+        if (interval == null) {
+            return "1d";
         }
+        return interval.trim().toLowerCase(Locale.ROOT);
     }
 }
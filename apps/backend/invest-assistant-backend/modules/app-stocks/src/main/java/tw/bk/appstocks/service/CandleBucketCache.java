@@ -0,0 +1,152 @@
+package tw.bk.appstocks.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appcommon.time.ClockProvider;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleCacheEntry;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * K 線區段快取
+ * 以 (symbolKey, interval, 區段) 為 key，不再以請求的 from/to 為 key：日線以「月」為區段、盤中週期以「週」（ISO，週一起）為區段。
+ * 請求由涵蓋的區段組合而成，重疊的圖表區間（1M/3M/YTD/1Y）共用同一份快取；
+ * 已定案區段（結束日不晚於最近 settle 交易日）使用長 TTL，當前區段使用短 TTL
+ */
+@Service
+@RequiredArgsConstructor
+public class CandleBucketCache {
+
+    private final StockCacheService cacheService;
+    private final StockMarketProperties properties;
+    private final MarketCalendar marketCalendar;
+    private final ClockProvider clockProvider;
+
+    /**
+     * [from, to] 所涵蓋的區段（依時間排序）
+     */
+    public List<Bucket> bucketsFor(String baseInterval, LocalDate from, LocalDate to) {
+        List<Bucket> buckets = new ArrayList<>();
+        if (from == null || to == null || from.isAfter(to)) {
+            return buckets;
+        }
+        if (isDaily(baseInterval)) {
+            for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+                buckets.add(new Bucket(month.atDay(1), month.atEndOfMonth(), "m" + month));
+            }
+            return buckets;
+        }
+        LocalDate weekStart = from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        for (LocalDate start = weekStart; !start.isAfter(to); start = start.plusWeeks(1)) {
+            buckets.add(new Bucket(start, start.plusDays(6), "w" + start));
+        }
+        return buckets;
+    }
+
+    /**
+     * 批次讀取區段（單次 MGET），只回傳有命中的區段
+     */
+    public Map<Bucket, CandleCacheEntry> getAll(String symbolKey, String baseInterval, List<Bucket> buckets) {
+        Map<String, Bucket> byKey = new LinkedHashMap<>();
+        for (Bucket bucket : buckets) {
+            byKey.put(cacheKey(symbolKey, baseInterval, bucket), bucket);
+        }
+        Map<String, CandleCacheEntry> cached = cacheService.multiGet(byKey.keySet(), CandleCacheEntry.class);
+        Map<Bucket, CandleCacheEntry> result = new LinkedHashMap<>();
+        byKey.forEach((key, bucket) -> {
+            CandleCacheEntry entry = cached.get(key);
+            if (entry != null && entry.getCandles() != null) {
+                result.put(bucket, entry);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 依區段切分 K 線並寫入快取（空區段也寫入，避免重複請求）
+     * 空區段一律使用當前區段的短 TTL：來源暫時缺資料時不會把整段空白鎖在長 TTL 裡
+     *
+     * @param market 市場（null 時一律視為未定案區段）
+     * @return 區段 → 該區段的 K 線
+     */
+    public Map<Bucket, List<Candle>> putAll(
+            String symbolKey,
+            String baseInterval,
+            MarketCode market,
+            List<Bucket> buckets,
+            List<Candle> candles) {
+        Map<Bucket, List<Candle>> split = new LinkedHashMap<>();
+        for (Bucket bucket : buckets) {
+            split.put(bucket, new ArrayList<>());
+        }
+        if (candles != null) {
+            for (Candle candle : candles) {
+                if (candle == null || candle.getTimestamp() == null) {
+                    continue;
+                }
+                LocalDate date = candle.getTimestamp().toLocalDate();
+                for (Bucket bucket : buckets) {
+                    if (bucket.contains(date)) {
+                        split.get(bucket).add(candle);
+                        break;
+                    }
+                }
+            }
+        }
+        StockMarketProperties.Cache config = properties.getCache();
+        split.forEach((bucket, bucketCandles) -> cacheService.set(
+                cacheKey(symbolKey, baseInterval, bucket),
+                new CandleCacheEntry(bucketCandles, clockProvider.now()),
+                !bucketCandles.isEmpty() && isClosed(bucket, market)
+                        ? config.getCandlesClosedBucketTtl()
+                        : config.getCandlesOpenBucketTtl()));
+        return split;
+    }
+
+    /**
+     * 區段是否已定案：最近 settle 交易日之後、區段結束日之前沒有其他交易日（月底遇週末時也視為定案）
+     */
+    public boolean isClosed(Bucket bucket, MarketCode market) {
+        if (market == null) {
+            return false;
+        }
+        LocalDate settled = marketCalendar.lastSettledDate(market);
+        if (settled == null) {
+            return false;
+        }
+        for (LocalDate date = settled.plusDays(1); !date.isAfter(bucket.end()); date = date.plusDays(1)) {
+            if (marketCalendar.isTradingDay(market, date)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String cacheKey(String symbolKey, String baseInterval, Bucket bucket) {
+        return "candles:" + symbolKey + ":" + baseInterval + ":" + bucket.label();
+    }
+
+    private static boolean isDaily(String baseInterval) {
+        return DailyCandleStore.DAILY_INTERVAL.equals(baseInterval);
+    }
+
+    /**
+     * 快取區段 [start, end]（含頭尾）
+     */
+    public record Bucket(LocalDate start, LocalDate end, String label) {
+
+        public boolean contains(LocalDate date) {
+            return !date.isBefore(start) && !date.isAfter(end);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package tw.bk.appstocks.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.port.StockMarketClient;
+import tw.bk.apppersistence.entity.DailyCandleEntity;
+import tw.bk.apppersistence.repository.DailyCandleBatchRepository;
+import tw.bk.apppersistence.repository.DailyCandleRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * 日 K 線持久化儲存（app.daily_candles）
+ * 已定案（最近 settle 交易日以前）的日 K 從資料庫讀取，只向外部來源補抓缺漏的交易日並批次 upsert；
+ * 尚未定案的區段（當日盤中）每次向外部來源取得、不落地
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DailyCandleStore {
+    static final String DAILY_INTERVAL = "1d";
+
+    /**
+     * 缺漏區段過多時合併成單次請求，避免碎片化的外部呼叫
+     */
+    static final int MAX_FETCH_SEGMENTS = 4;
+
+    private final DailyCandleRepository dailyCandleRepository;
+    private final DailyCandleBatchRepository dailyCandleBatchRepository;
+    private final MarketCalendar marketCalendar;
+    private final StockMetricsRecorder metricsRecorder;
+
+    /**
+     * 取得 [from, to] 的日 K 線（依日期排序）
+     */
+    public List<Candle> getDailyCandles(
+            InstrumentCatalogRow instrument,
+            MarketCode market,
+            StockMarketClient client,
+            LocalDate from,
+            LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            return List.of();
+        }
+        LocalDate settled = marketCalendar.lastSettledDate(market);
+        LocalDate finalTo = settled == null || settled.isBefore(from)
+                ? from.minusDays(1)
+                : (settled.isBefore(to) ? settled : to);
+
+        // 1. 已定案區段從資料庫讀取
+        Map<LocalDate, DailyCandleEntity> stored = new HashMap<>();
+        if (!finalTo.isBefore(from)) {
+            for (DailyCandleEntity row : dailyCandleRepository.findByInstrumentIdAndTradeDateBetweenOrderByTradeDateAsc(
+                    instrument.id(), from, finalTo)) {
+                stored.put(row.getTradeDate(), row);
+            }
+        }
+
+        // 2. 找出缺漏的交易日並切成連續區段；未定案區段併入最後一段
+        List<DateRange> ranges = missingRanges(market, stored, from, finalTo);
+        if (finalTo.isBefore(to)) {
+            LocalDate tailFrom = finalTo.isBefore(from) ? from : finalTo.plusDays(1);
+            DateRange last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last.to().equals(lastTradingDayOnOrBefore(market, finalTo, from))) {
+                ranges.set(ranges.size() - 1, new DateRange(last.from(), to));
+            } else {
+                ranges.add(new DateRange(tailFrom, to));
+            }
+        }
+
+        // 3. 向外部來源補抓缺漏區段
+        TreeMap<LocalDate, Candle> result = new TreeMap<>();
+        stored.values().stream()
+                .filter(DailyCandleEntity::isHasData)
+                .forEach(row -> result.put(row.getTradeDate(), toCandle(instrument.ticker(), row)));
+        int storedCount = result.size();
+        int fetchedCount = 0;
+        List<DailyCandleEntity> toPersist = new ArrayList<>();
+        for (DateRange range : ranges) {
+            Map<LocalDate, Candle> fetched = new HashMap<>();
+            List<Candle> candles = client.getCandles(instrument.ticker(), DAILY_INTERVAL, range.from(), range.to());
+            for (Candle candle : candles) {
+                if (candle.getTimestamp() == null) {
+                    continue;
+                }
+                LocalDate date = candle.getTimestamp().toLocalDate();
+                if (date.isBefore(range.from()) || date.isAfter(range.to())) {
+                    continue;
+                }
+                fetched.put(date, candle);
+                result.put(date, candle);
+            }
+            fetchedCount += fetched.size();
+            collectFinalized(instrument, market, client.getVendor(), range, finalTo, stored, fetched,
+                    !candles.isEmpty(), toPersist);
+        }
+
+        // 4. 批次寫入已定案的 K 線與無資料標記
+        if (!toPersist.isEmpty()) {
+            try {
+                dailyCandleBatchRepository.upsertAll(toPersist);
+            } catch (RuntimeException ex) {
+                log.warn("Daily candle upsert failed: symbolKey={}, rows={}, error={}",
+                        instrument.symbolKey(), toPersist.size(), ex.getMessage());
+            }
+        }
+        metricsRecorder.recordDailyCandleRows("db", storedCount);
+        metricsRecorder.recordDailyCandleRows("vendor", fetchedCount);
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * 資料庫中 [from, to] 內最近一個交易日的收盤價（盤後收盤匯入與日 K 補抓寫入），單次索引查詢、不呼叫外部來源。
+     * 只在該筆即為 to 以前最近一個交易日時回傳（該日尚未寫入時回傳 empty，由呼叫端改向外部來源取得）
+     */
+    public Optional<BigDecimal> findStoredClose(
+            InstrumentCatalogRow instrument, MarketCode market, LocalDate from, LocalDate to) {
+        if (instrument == null || instrument.id() == null || from == null || to == null || from.isAfter(to)) {
+            return Optional.empty();
+        }
+        LocalDate expected = lastTradingDayOnOrBefore(market, to, from);
+        if (expected == null) {
+            return Optional.empty();
+        }
+        Optional<BigDecimal> close = dailyCandleRepository
+                .findFirstByInstrumentIdAndTradeDateBetweenAndHasDataTrueOrderByTradeDateDesc(
+                        instrument.id(), from, to)
+                .filter(row -> expected.equals(row.getTradeDate()))
+                .map(DailyCandleEntity::getClose);
+        metricsRecorder.recordDailyCandleRows("db", close.isPresent() ? 1 : 0);
+        return close;
+    }
+
+    /**
+     * 將 [from, finalTo] 中缺漏的交易日切成連續區段（以交易日序列判斷連續）
+     */
+    private List<DateRange> missingRanges(
+            MarketCode market,
+            Map<LocalDate, DailyCandleEntity> stored,
+            LocalDate from,
+            LocalDate finalTo) {
+        List<DateRange> ranges = new ArrayList<>();
+        LocalDate runStart = null;
+        LocalDate runEnd = null;
+        for (LocalDate date = from; !date.isAfter(finalTo); date = date.plusDays(1)) {
+            if (!marketCalendar.isTradingDay(market, date)) {
+                continue;
+            }
+            if (stored.containsKey(date)) {
+                if (runStart != null) {
+                    ranges.add(new DateRange(runStart, runEnd));
+                    runStart = null;
+                }
+                continue;
+            }
+            if (runStart == null) {
+                runStart = date;
+            }
+            runEnd = date;
+        }
+        if (runStart != null) {
+            ranges.add(new DateRange(runStart, runEnd));
+        }
+        if (ranges.size() > MAX_FETCH_SEGMENTS) {
+            DateRange merged = new DateRange(ranges.get(0).from(), ranges.get(ranges.size() - 1).to());
+            ranges.clear();
+            ranges.add(merged);
+        }
+        return ranges;
+    }
+
+    /**
+     * 補抓結果中已定案的日期：有資料者寫入 K 線，原本缺漏但來源無資料的交易日寫入無資料標記。
+     * 外部來源失敗時 adapter 拋出例外、整批不寫入；整段空清單仍可能是來源暫時缺資料，
+     * 因此只有來源對該區段回傳過至少一根 K 線時才寫入無資料標記，否則下次再補抓
+     */
+    private void collectFinalized(
+            InstrumentCatalogRow instrument,
+            MarketCode market,
+            String vendor,
+            DateRange range,
+            LocalDate finalTo,
+            Map<LocalDate, DailyCandleEntity> stored,
+            Map<LocalDate, Candle> fetched,
+            boolean vendorAnswered,
+            List<DailyCandleEntity> toPersist) {
+        LocalDate end = range.to().isAfter(finalTo) ? finalTo : range.to();
+        for (LocalDate date = range.from(); !date.isAfter(end); date = date.plusDays(1)) {
+            Candle candle = fetched.get(date);
+            if (candle != null) {
+                toPersist.add(toEntity(instrument.id(), date, candle, vendor));
+            } else if (vendorAnswered && !stored.containsKey(date) && marketCalendar.isTradingDay(market, date)) {
+                toPersist.add(noDataEntity(instrument.id(), date, vendor));
+            }
+        }
+    }
+
+    private LocalDate lastTradingDayOnOrBefore(MarketCode market, LocalDate date, LocalDate floor) {
+        for (LocalDate candidate = date; !candidate.isBefore(floor); candidate = candidate.minusDays(1)) {
+            if (marketCalendar.isTradingDay(market, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static Candle toCandle(String ticker, DailyCandleEntity row) {
+        return Candle.builder()
+                .ticker(ticker)
+                .timestamp(row.getTradeDate().atStartOfDay())
+                .open(row.getOpen())
+                .high(row.getHigh())
+                .low(row.getLow())
+                .close(row.getClose())
+                .volume(row.getVolume())
+                .build();
+    }
+
+    private static DailyCandleEntity toEntity(Long instrumentId, LocalDate date, Candle candle, String vendor) {
+        DailyCandleEntity entity = new DailyCandleEntity();
+        entity.setInstrumentId(instrumentId);
+        entity.setTradeDate(date);
+        entity.setOpen(candle.getOpen());
+        entity.setHigh(candle.getHigh());
+        entity.setLow(candle.getLow());
+        entity.setClose(candle.getClose());
+        entity.setVolume(candle.getVolume());
+        entity.setHasData(candle.getOpen() != null && candle.getHigh() != null
+                && candle.getLow() != null && candle.getClose() != null);
+        entity.setSource(vendor);
+        return entity;
+    }
+
+    private static DailyCandleEntity noDataEntity(Long instrumentId, LocalDate date, String vendor) {
+        DailyCandleEntity entity = new DailyCandleEntity();
+        entity.setInstrumentId(instrumentId);
+        entity.setTradeDate(date);
+        entity.setHasData(false);
+        entity.setSource(vendor);
+        return entity;
+    }
+
+    private record DateRange(LocalDate from, LocalDate to) {
+    }
+}
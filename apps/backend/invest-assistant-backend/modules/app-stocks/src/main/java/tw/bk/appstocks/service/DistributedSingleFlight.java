@@ -0,0 +1,153 @@
+package tw.bk.appstocks.service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+/**
+ * 跨節點 single-flight
+ * 本機 single-flight 只合併同一 JVM 內的請求；快取未命中時先以 {@code SET NX PX} 取得 Redis lease，
+ * 取得者執行載入（寫入快取）後釋放 lease 並發布完成通知，其他節點等待通知或每 {@code poll-interval-ms} 重新讀取快取。
+ * 持有者當機時 lease 過期即由等待中的節點接手；等待超過 {@code max-wait-ms} 或 Redis 無法使用時退回本節點直接載入
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DistributedSingleFlight {
+    static final String LEASE_PREFIX = "singleflight:";
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> signals = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void subscribe() {
+        StockMarketProperties.SingleFlight config = properties.getSingleFlight();
+        if (!config.isDistributedEnabled()) {
+            return;
+        }
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onCompleted(message),
+                new ChannelTopic(config.getChannel()));
+    }
+
+    /**
+     * 以 Redis lease 合併各節點對同一 key 的載入
+     *
+     * @param key         快取 key（lease 與完成通知都以此識別）
+     * @param type        metrics 的 type 標籤
+     * @param cachedValue 讀取其他節點載入後寫入的快取
+     * @param loader      取得 lease 後執行的載入，需自行寫入快取
+     */
+    public <T> T execute(String key, String type, Supplier<Optional<T>> cachedValue, Supplier<T> loader) {
+        StockMarketProperties.SingleFlight config = properties.getSingleFlight();
+        if (!config.isDistributedEnabled()) {
+            return loader.get();
+        }
+
+        String leaseKey = LEASE_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMs());
+        long pollNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(config.getPollIntervalMs(), 1L));
+        boolean waited = false;
+        while (true) {
+            // 先登記再檢查，避免檢查與等待之間錯過完成通知
+            CompletableFuture<Void> signal = signals.computeIfAbsent(key, ignored -> new CompletableFuture<>());
+            if (waited) {
+                Optional<T> cached = cachedValue.get();
+                if (cached.isPresent()) {
+                    signals.remove(key, signal);
+                    metricsRecorder.recordSingleFlightJoined(type, StockMetricsRecorder.SINGLE_FLIGHT_REMOTE);
+                    return cached.get();
+                }
+            }
+
+            Boolean acquired;
+            try {
+                acquired = stringRedisTemplate.opsForValue()
+                        .setIfAbsent(leaseKey, token, Duration.ofMillis(config.getLeaseTtlMs()));
+            } catch (RuntimeException ex) {
+                signals.remove(key, signal);
+                log.debug("Single-flight lease unavailable: key={}, error={}", key, ex.getMessage());
+                metricsRecorder.recordSingleFlightLease(type, "error");
+                return loader.get();
+            }
+            if (Boolean.TRUE.equals(acquired)) {
+                signals.remove(key, signal);
+                // 等待後才取得代表持有者當機（lease 過期）或載入失敗未寫入快取
+                metricsRecorder.recordSingleFlightLease(type, waited ? "takeover" : "acquired");
+                try {
+                    return loader.get();
+                } finally {
+                    release(key, leaseKey, token);
+                }
+            }
+
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0L) {
+                signals.remove(key, signal);
+                metricsRecorder.recordSingleFlightLease(type, "timeout");
+                return loader.get();
+            }
+            waited = true;
+            await(signal, Math.min(pollNanos, remainingNanos));
+        }
+    }
+
+    private void release(String key, String leaseKey, String token) {
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey), token);
+            stringRedisTemplate.convertAndSend(properties.getSingleFlight().getChannel(), key);
+        } catch (RuntimeException ex) {
+            // 未釋放的 lease 於 TTL 後過期，等待者輪詢後接手
+            log.debug("Single-flight release failed: key={}, error={}", key, ex.getMessage());
+        }
+    }
+
+    private static void await(CompletableFuture<Void> signal, long timeoutNanos) {
+        try {
+            signal.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException ignored) {
+            // 逾時即重新檢查快取與 lease
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Interrupted while waiting for single-flight");
+        }
+    }
+
+    void onCompleted(Message message) {
+        if (message == null || message.getBody() == null) {
+            return;
+        }
+        CompletableFuture<Void> signal = signals.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (signal != null) {
+            signal.complete(null);
+        }
+    }
+}
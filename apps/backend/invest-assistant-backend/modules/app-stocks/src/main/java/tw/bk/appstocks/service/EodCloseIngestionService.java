@@ -0,0 +1,226 @@
+package tw.bk.appstocks.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntBiFunction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.apppersistence.entity.DailyCandleEntity;
+import tw.bk.apppersistence.repository.DailyCandleBatchRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
+import tw.bk.appstocks.adapter.TwDailyCloseClient;
+import tw.bk.appstocks.adapter.TwDailyCloseClient.DailyClose;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.EodCloseIngestResult;
+
+/**
+ * 台股盤後收盤匯入：TWSE / TPEx 全市場日收盤檔各下載一次、逐列串流解析，
+ * 以記憶體商品目錄將代號對應到上市 / 上櫃的股票與 ETF，每 batchSize 列以 {@link DailyCandleBatchRepository#upsertAll}
+ * 寫入 app.daily_candles；無成交的列寫入無資料標記（不覆寫既有 K 線）。估值與歷史收盤價改由資料庫單次索引查詢取得
+ * <p>
+ * 以交易日為單位冪等：同一日重跑只會以相同的值覆寫，來源檔案中其他日期的列一律略過。
+ * 排程以 Redis key 記錄每個來源、交易日的狀態，多節點只由先取得 key 的節點執行；來源尚未更新到該交易日或失敗時刪除 key，
+ * 下一輪重試，完成後保留 key 不再重複下載
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EodCloseIngestionService {
+    static final String CLAIM_KEY_PREFIX = "stock:eod-close:";
+    static final String SOURCE_TWSE = "twse";
+    static final String SOURCE_TPEX = "tpex";
+    private static final String EXCHANGE_TWSE = "TWSE";
+    private static final String EXCHANGE_TPEX = "TPEx";
+    private static final Set<String> ASSET_TYPES = Set.of("STOCK", "ETF");
+    private static final String CLAIM_RUNNING = "running";
+    private static final String CLAIM_DONE = "done";
+    private static final Duration DONE_TTL = Duration.ofDays(7);
+
+    private final TwDailyCloseClient dailyCloseClient;
+    private final DailyCandleBatchRepository dailyCandleBatchRepository;
+    private final InstrumentCatalogService instrumentCatalogService;
+    private final MarketCalendar marketCalendar;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
+
+    @Scheduled(cron = "${stock.eod-close.cron:0 */30 14-18 * * MON-FRI}", zone = "Asia/Taipei")
+    public void runScheduled() {
+        if (!properties.getEodClose().isEnabled()) {
+            return;
+        }
+        LocalDate tradeDate = marketCalendar.lastSettledDate(MarketCode.TW);
+        if (tradeDate == null) {
+            return;
+        }
+        for (Feed feed : Feed.values()) {
+            if (!claim(feed, tradeDate)) {
+                continue;
+            }
+            EodCloseIngestResult result = ingest(feed, tradeDate);
+            if ("success".equals(result.outcome())) {
+                markDone(feed, tradeDate);
+            } else {
+                release(feed, tradeDate);
+            }
+        }
+    }
+
+    /**
+     * 匯入指定交易日的兩個來源（不檢查 Redis 狀態，可重複執行）；來源只提供最近一個交易日，
+     * 指定日期與檔案日期不同時結果為 stale、不寫入
+     */
+    public List<EodCloseIngestResult> ingest(LocalDate tradeDate) {
+        List<EodCloseIngestResult> results = new ArrayList<>();
+        for (Feed feed : Feed.values()) {
+            results.add(ingest(feed, tradeDate));
+        }
+        return results;
+    }
+
+    EodCloseIngestResult ingest(Feed feed, LocalDate tradeDate) {
+        long startedAt = System.nanoTime();
+        try {
+            Map<String, Long> instrumentIds = instrumentIds(feed);
+            int batchSize = Math.max(properties.getEodClose().getBatchSize(), 1);
+            Tally tally = new Tally();
+            List<DailyCandleEntity> pending = new ArrayList<>(batchSize);
+            int rows = feed.stream(dailyCloseClient, close -> {
+                if (!tradeDate.equals(close.date())) {
+                    tally.stale++;
+                    return;
+                }
+                Long instrumentId = instrumentIds.get(close.code());
+                if (instrumentId == null) {
+                    return;
+                }
+                pending.add(toEntity(instrumentId, close, feed.source));
+                tally.matched++;
+                if (!close.hasTrade()) {
+                    tally.noTrade++;
+                }
+                if (pending.size() >= batchSize) {
+                    dailyCandleBatchRepository.upsertAll(pending);
+                    pending.clear();
+                }
+            });
+            dailyCandleBatchRepository.upsertAll(pending);
+
+            String outcome = tally.matched > 0 ? "success" : tally.stale > 0 ? "stale" : "empty";
+            long elapsed = System.nanoTime() - startedAt;
+            metricsRecorder.recordEodClose(feed.source, outcome, tally.matched, elapsed);
+            log.info("EOD close ingested: source={}, tradeDate={}, outcome={}, rows={}, matched={}, noTrade={}, "
+                            + "stale={}, took={} ms",
+                    feed.source, tradeDate, outcome, rows, tally.matched, tally.noTrade, tally.stale,
+                    elapsed / 1_000_000);
+            return new EodCloseIngestResult(feed.source, tradeDate, outcome, rows, tally.matched, tally.noTrade);
+        } catch (RuntimeException ex) {
+            metricsRecorder.recordEodClose(feed.source, "error", 0, System.nanoTime() - startedAt);
+            log.warn("EOD close ingestion failed: source={}, tradeDate={}, error={}",
+                    feed.source, tradeDate, ex.getMessage());
+            return EodCloseIngestResult.error(feed.source, tradeDate);
+        }
+    }
+
+    /**
+     * 該交易所股票與 ETF 的代號 → 商品 id
+     */
+    private Map<String, Long> instrumentIds(Feed feed) {
+        List<InstrumentCatalogRow> instruments =
+                instrumentCatalogService.list(MarketCode.TW, feed.exchangeCode, ASSET_TYPES, null);
+        Map<String, Long> ids = new HashMap<>(instruments.size() * 4 / 3 + 1);
+        for (InstrumentCatalogRow instrument : instruments) {
+            ids.putIfAbsent(instrument.ticker().trim().toUpperCase(Locale.ROOT), instrument.id());
+        }
+        return ids;
+    }
+
+    private static DailyCandleEntity toEntity(Long instrumentId, DailyClose close, String source) {
+        DailyCandleEntity entity = new DailyCandleEntity();
+        entity.setInstrumentId(instrumentId);
+        entity.setTradeDate(close.date());
+        entity.setHasData(close.hasTrade());
+        entity.setSource(source);
+        if (close.hasTrade()) {
+            entity.setOpen(close.open());
+            entity.setHigh(close.high());
+            entity.setLow(close.low());
+            entity.setClose(close.close());
+            entity.setVolume(close.volume());
+        }
+        return entity;
+    }
+
+    /**
+     * 多節點只由先寫入 Redis key 的節點執行，已完成的交易日 key 仍在而略過；Redis 無法使用時直接執行（重跑冪等）
+     */
+    private boolean claim(Feed feed, LocalDate tradeDate) {
+        try {
+            Boolean claimed = stringRedisTemplate.opsForValue().setIfAbsent(
+                    claimKey(feed, tradeDate),
+                    CLAIM_RUNNING,
+                    Duration.ofMillis(Math.max(properties.getEodClose().getLeaseMs(), 1L)));
+            return Boolean.TRUE.equals(claimed);
+        } catch (RuntimeException ex) {
+            log.debug("EOD close claim failed, ingesting locally: source={}, error={}", feed.source, ex.getMessage());
+            return true;
+        }
+    }
+
+    private void markDone(Feed feed, LocalDate tradeDate) {
+        try {
+            stringRedisTemplate.opsForValue().set(claimKey(feed, tradeDate), CLAIM_DONE, DONE_TTL);
+        } catch (RuntimeException ex) {
+            log.debug("EOD close completion mark failed: source={}, error={}", feed.source, ex.getMessage());
+        }
+    }
+
+    private void release(Feed feed, LocalDate tradeDate) {
+        try {
+            stringRedisTemplate.delete(claimKey(feed, tradeDate));
+        } catch (RuntimeException ex) {
+            log.debug("EOD close claim release failed: source={}, error={}", feed.source, ex.getMessage());
+        }
+    }
+
+    private static String claimKey(Feed feed, LocalDate tradeDate) {
+        return CLAIM_KEY_PREFIX + feed.source + ":" + tradeDate;
+    }
+
+    enum Feed {
+        TWSE(SOURCE_TWSE, EXCHANGE_TWSE, TwDailyCloseClient::streamTwseCloses),
+        TPEX(SOURCE_TPEX, EXCHANGE_TPEX, TwDailyCloseClient::streamTpexCloses);
+
+        private final String source;
+        private final String exchangeCode;
+        private final ToIntBiFunction<TwDailyCloseClient, Consumer<DailyClose>> streamer;
+
+        Feed(String source, String exchangeCode,
+                ToIntBiFunction<TwDailyCloseClient, Consumer<DailyClose>> streamer) {
+            this.source = source;
+            this.exchangeCode = exchangeCode;
+            this.streamer = streamer;
+        }
+
+        int stream(TwDailyCloseClient client, Consumer<DailyClose> consumer) {
+            return streamer.applyAsInt(client, consumer);
+        }
+    }
+
+    private static final class Tally {
+        private int matched;
+        private int noTrade;
+        private int stale;
+    }
+}
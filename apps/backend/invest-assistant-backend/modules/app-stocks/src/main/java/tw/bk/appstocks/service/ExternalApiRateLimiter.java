@@ -1,58 +1,285 @@
 package tw.bk.appstocks.service;
 
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import tw.bk.appcommon.enums.ErrorCode;
 import tw.bk.appcommon.exception.BusinessException;
-import tw.bk.appcommon.ratelimit.RateLimiter;
 import tw.bk.appstocks.config.StockMarketProperties;
 
+/**
+ * 外部行情 API 的 permit 排程
+ * 每個 vendor/endpoint 一個 token bucket（每 {@code window-ms} 補滿 {@code *-limit} 個），額度用完時呼叫端排隊等待，
+ * 依 {@link VendorCallPriority} 先服務互動請求；等待超過該優先權的期限才回傳 RATE_LIMITED。
+ * 啟用 adaptive 時，bucket 容量改用 {@link AdaptiveVendorLimit} 依 429 / Retry-After / 延遲調整後的有效速率，
+ * 並限制每個 vendor 的並行請求數。排隊前先經 {@link VendorCircuitBreakers} 判斷斷路器狀態
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ExternalApiRateLimiter {
     private final StockMarketProperties properties;
     private final StockMetricsRecorder metricsRecorder;
-    private final RateLimiter rateLimiter;
+    private final VendorCircuitBreakers circuitBreakers;
+    private final ConcurrentHashMap<String, VendorPermitBucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AdaptiveVendorLimit> adaptiveLimits = new ConcurrentHashMap<>();
 
-    public void acquire(String vendor, String endpoint) {
+    /**
+     * 取得一次外部呼叫的許可；呼叫端必須在每個結果分支呼叫 {@link VendorCallPermit#complete}
+     * 斷路器 open 時拋出 SERVICE_UNAVAILABLE，不進入排隊
+     */
+    public VendorCallPermit acquire(String vendor, String endpoint) {
+        String normalizedVendor = normalize(vendor);
+        String normalizedEndpoint = normalize(endpoint);
+        VendorCircuitBreakers.Admission admission = circuitBreakers.admit(normalizedVendor, normalizedEndpoint);
+        VendorCallPermit.Feedback throttle;
+        try {
+            throttle = acquireThrottle(normalizedVendor, normalizedEndpoint);
+        } catch (RuntimeException ex) {
+            if (admission != null) {
+                admission.cancel();
+            }
+            throw ex;
+        }
+        if (admission == null && throttle == null) {
+            return VendorCallPermit.UNLIMITED;
+        }
+        return new VendorCallPermit((status, latencyMs, retryAfter) -> {
+            if (throttle != null) {
+                throttle.onComplete(status, latencyMs, retryAfter);
+            }
+            if (admission != null) {
+                admission.complete(status, latencyMs);
+            }
+        });
+    }
+
+    /**
+     * 依 token bucket 與 adaptive 並行上限等待；未啟用限流時回傳 null
+     */
+    private VendorCallPermit.Feedback acquireThrottle(String normalizedVendor, String normalizedEndpoint) {
         StockMarketProperties.RateLimit config = properties.getRateLimit();
         if (config == null || !config.isEnabled()) {
-            return;
+            return null;
         }
 
         long windowMs = config.getWindowMs();
         if (windowMs <= 0L) {
-            return;
+            return null;
         }
 
-        int limit = resolveLimit(vendor, config);
-        if (limit <= 0) {
-            return;
+        int configuredLimit = resolveLimit(normalizedVendor, config);
+        if (configuredLimit <= 0) {
+            return null;
         }
 
-        String normalizedVendor = normalize(vendor);
-        String normalizedEndpoint = normalize(endpoint);
-        String key = "stock:external:" + normalizedVendor + ":" + normalizedEndpoint;
-        if (rateLimiter.tryAcquire(key, limit, Duration.ofMillis(windowMs))) {
-            return;
+        VendorCallPriority priority = VendorCallPriority.current();
+        long maxWaitMs = Math.max(resolveMaxWait(priority, config), 0L);
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+
+        StockMarketProperties.Adaptive adaptiveConfig = config.getAdaptive();
+        AdaptiveVendorLimit adaptive = adaptiveConfig != null && adaptiveConfig.isEnabled()
+                ? adaptiveLimit(normalizedVendor, configuredLimit, adaptiveConfig)
+                : null;
+        int limit = adaptive == null ? configuredLimit : adaptive.rateLimit(configuredLimit, adaptiveConfig);
+        VendorPermitBucket bucket = buckets.computeIfAbsent(
+                bucketKey(normalizedVendor, normalizedEndpoint),
+                key -> new VendorPermitBucket(depth -> metricsRecorder.recordRateLimitQueueDepth(
+                        normalizedVendor, normalizedEndpoint, depth)));
+
+        try {
+            if (adaptive != null) {
+                long pause = adaptive.pauseRemainingNanos(startedAt);
+                if (pause > 0) {
+                    if (pause > deadline - startedAt) {
+                        throw rejected(normalizedVendor, normalizedEndpoint, priority, limit, windowMs, maxWaitMs,
+                                TimeUnit.NANOSECONDS.toMillis(pause));
+                    }
+                    TimeUnit.NANOSECONDS.sleep(pause);
+                }
+            }
+
+            // 先取並行名額再扣 token：名額等到逾時被拒時不會白白消耗 vendor 的速率額度
+            if (adaptive != null && !adaptive.acquireSlot(adaptiveConfig, deadline)) {
+                throw rejected(normalizedVendor, normalizedEndpoint, priority, limit, windowMs, maxWaitMs, null);
+            }
+            long bucketWait = VendorPermitBucket.REJECTED;
+            try {
+                bucketWait = bucket.acquire(
+                        priority,
+                        limit,
+                        TimeUnit.MILLISECONDS.toNanos(windowMs),
+                        Math.max(deadline - System.nanoTime(), 0L));
+            } finally {
+                if (bucketWait == VendorPermitBucket.REJECTED && adaptive != null) {
+                    adaptive.releaseSlot();
+                }
+            }
+            if (bucketWait == VendorPermitBucket.REJECTED) {
+                throw rejected(normalizedVendor, normalizedEndpoint, priority, limit, windowMs, maxWaitMs, null);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Interrupted while waiting for external API permit");
+        }
+
+        metricsRecorder.recordRateLimitWait(
+                normalizedVendor, normalizedEndpoint, priority, System.nanoTime() - startedAt, true);
+        if (adaptive == null) {
+            return null;
+        }
+        return (status, latencyMs, retryAfter) -> {
+            adaptive.releaseSlot();
+            onComplete(normalizedVendor, configuredLimit, windowMs, adaptiveConfig, adaptive,
+                    status, latencyMs, retryAfter);
+        };
+    }
+
+    /**
+     * 目前排隊等待 permit 的呼叫數
+     */
+    int queueDepth(String vendor, String endpoint) {
+        VendorPermitBucket bucket = buckets.get(bucketKey(normalize(vendor), normalize(endpoint)));
+        return bucket == null ? 0 : bucket.queueDepth();
+    }
+
+    /**
+     * 目前 vendor 的有效速率（每個 window 的請求數）；未啟用 adaptive 時為設定值
+     */
+    int effectiveLimit(String vendor) {
+        StockMarketProperties.RateLimit config = properties.getRateLimit();
+        int configured = resolveLimit(vendor, config);
+        AdaptiveVendorLimit adaptive = adaptiveLimits.get(normalize(vendor));
+        return adaptive == null ? configured : adaptive.rateLimit(configured, config.getAdaptive());
+    }
+
+    private void onComplete(
+            String vendor,
+            int configuredLimit,
+            long windowMs,
+            StockMarketProperties.Adaptive config,
+            AdaptiveVendorLimit adaptive,
+            Integer status,
+            long latencyMs,
+            String retryAfter) {
+        boolean throttled = status != null && status == 429;
+        boolean slow = status != null && status < 400
+                && config.getLatencyThresholdMs() > 0 && latencyMs >= config.getLatencyThresholdMs();
+        if (throttled || slow) {
+            long pauseMs = throttled ? resolveBackoffMs(retryAfter, config) : 0L;
+            boolean decreased = adaptive.onCongestion(
+                    configuredLimit,
+                    config,
+                    TimeUnit.MILLISECONDS.toNanos(pauseMs),
+                    TimeUnit.MILLISECONDS.toNanos(windowMs));
+            if (decreased) {
+                log.warn("Adaptive rate limit decreased: vendor={}, reason={}, limit={}, concurrency={}, pause_ms={}",
+                        vendor,
+                        throttled ? "429" : "latency",
+                        adaptive.rateLimit(configuredLimit, config),
+                        adaptive.concurrencyLimit(config),
+                        pauseMs);
+            }
+        } else if (status != null && status < 400) {
+            adaptive.onSuccess(configuredLimit, config);
+        }
+        recordAdaptiveLimit(vendor, configuredLimit, config, adaptive);
+    }
+
+    private AdaptiveVendorLimit adaptiveLimit(
+            String vendor, int configuredLimit, StockMarketProperties.Adaptive config) {
+        AdaptiveVendorLimit existing = adaptiveLimits.get(vendor);
+        if (existing != null) {
+            return existing;
+        }
+        AdaptiveVendorLimit created = new AdaptiveVendorLimit();
+        AdaptiveVendorLimit raced = adaptiveLimits.putIfAbsent(vendor, created);
+        if (raced != null) {
+            return raced;
         }
+        recordAdaptiveLimit(vendor, configuredLimit, config, created);
+        return created;
+    }
 
-        metricsRecorder.recordRateLimitBlocked(normalizedVendor, normalizedEndpoint);
+    private void recordAdaptiveLimit(
+            String vendor, int configuredLimit, StockMarketProperties.Adaptive config, AdaptiveVendorLimit adaptive) {
+        metricsRecorder.recordAdaptiveLimit(
+                vendor,
+                adaptive.rateLimit(configuredLimit, config),
+                adaptive.concurrencyLimit(config));
+    }
+
+    /**
+     * Retry-After 可為秒數或 HTTP-date；無法解析時使用 {@code default-backoff-ms}
+     */
+    static long parseRetryAfterMillis(String retryAfter, long nowEpochMillis) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return -1L;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.max(Duration.ofSeconds(Long.parseLong(value)).toMillis(), 0L);
+        } catch (NumberFormatException ignore) {
+            // HTTP-date
+        }
+        try {
+            long at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(at - nowEpochMillis, 0L);
+        } catch (DateTimeParseException ex) {
+            return -1L;
+        }
+    }
+
+    private long resolveBackoffMs(String retryAfter, StockMarketProperties.Adaptive config) {
+        long parsed = parseRetryAfterMillis(retryAfter, System.currentTimeMillis());
+        long backoff = parsed < 0 ? config.getDefaultBackoffMs() : parsed;
+        return Math.min(backoff, config.getMaxBackoffMs());
+    }
+
+    private BusinessException rejected(
+            String vendor,
+            String endpoint,
+            VendorCallPriority priority,
+            int limit,
+            long windowMs,
+            long maxWaitMs,
+            Long retryAfterMs) {
+        metricsRecorder.recordRateLimitWait(vendor, endpoint, priority, 0L, false);
+        metricsRecorder.recordRateLimitBlocked(vendor, endpoint);
         Map<String, Object> details = new LinkedHashMap<>();
-        details.put("vendor", normalizedVendor);
-        details.put("endpoint", normalizedEndpoint);
+        details.put("vendor", vendor);
+        details.put("endpoint", endpoint);
         details.put("limit", limit);
         details.put("windowMs", windowMs);
-        throw new BusinessException(
+        details.put("priority", priority.name());
+        details.put("maxWaitMs", maxWaitMs);
+        if (retryAfterMs != null) {
+            details.put("retryAfterMs", retryAfterMs);
+        }
+        return new BusinessException(
                 ErrorCode.RATE_LIMITED,
                 "External API rate limit exceeded",
                 details);
     }
 
+    private long resolveMaxWait(VendorCallPriority priority, StockMarketProperties.RateLimit config) {
+        return switch (priority) {
+            case INTERACTIVE -> config.getInteractiveMaxWaitMs();
+            case DEFAULT -> config.getDefaultMaxWaitMs();
+            case BATCH -> config.getBatchMaxWaitMs();
+        };
+    }
+
     private int resolveLimit(String vendor, StockMarketProperties.RateLimit config) {
         String normalized = normalize(vendor);
         return switch (normalized) {
@@ -62,6 +289,10 @@ public class ExternalApiRateLimiter {
         };
     }
 
+    private String bucketKey(String vendor, String endpoint) {
+        return vendor + ":" + endpoint;
+    }
+
     private String normalize(String value) {
         if (value == null || value.isBlank()) {
             return "unknown";
@@ -0,0 +1,117 @@
+package tw.bk.appstocks.service;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+
+/**
+ * 外部呼叫的 hedged 執行
+ * 第一次呼叫超過 {@link VendorCircuitBreakers#hedgeDelayMs} 仍未回應時再送出一次，取先回傳可用結果者；
+ * 較慢的一次不取消（HTTP 呼叫無法中斷），其結果照常回饋限流與斷路器。兩次呼叫都會經過 {@link ExternalApiRateLimiter}
+ */
+@Service
+@RequiredArgsConstructor
+public class HedgedCallExecutor {
+    private final VendorCircuitBreakers circuitBreakers;
+    private final StockMetricsRecorder metricsRecorder;
+    @Qualifier("stockHedgeExecutor")
+    private final Executor stockHedgeExecutor;
+
+    /**
+     * 執行可 hedge 的呼叫；回傳 empty 視為不可用而等待另一次呼叫，兩次都不可用時回傳第一次呼叫的結果（或例外）
+     * 未啟用 hedge 或樣本不足時直接在呼叫端執行緒呼叫
+     */
+    public <T> Optional<T> call(String vendor, String endpoint, Supplier<Optional<T>> call) {
+        long delayMs = circuitBreakers.hedgeDelayMs(vendor, endpoint);
+        if (delayMs < 0) {
+            return call.get();
+        }
+
+        VendorCallPriority priority = VendorCallPriority.current();
+        Supplier<Optional<T>> task = () -> VendorCallPriority.callAs(priority, call);
+        CompletableFuture<Optional<T>> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(task, stockHedgeExecutor);
+        } catch (RejectedExecutionException ex) {
+            metricsRecorder.recordHedge(vendor, endpoint, "skipped");
+            return call.get();
+        }
+
+        try {
+            return primary.get(delayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ignore) {
+            // 超過 hedge 延遲，送出第二次呼叫
+        } catch (ExecutionException ex) {
+            throw propagate(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Interrupted while waiting for external API");
+        }
+
+        CompletableFuture<Optional<T>> hedge;
+        try {
+            hedge = CompletableFuture.supplyAsync(task, stockHedgeExecutor);
+        } catch (RejectedExecutionException ex) {
+            metricsRecorder.recordHedge(vendor, endpoint, "skipped");
+            return join(primary);
+        }
+        metricsRecorder.recordHedge(vendor, endpoint, "fired");
+
+        // 先決定勝者並記錄 metric，再完成 winner，呼叫端返回時 metric 已寫入
+        CompletableFuture<Optional<T>> winner = new CompletableFuture<>();
+        AtomicBoolean decided = new AtomicBoolean();
+        primary.whenComplete((value, error) -> {
+            if (error == null && value != null && value.isPresent() && decided.compareAndSet(false, true)) {
+                winner.complete(value);
+            }
+        });
+        hedge.whenComplete((value, error) -> {
+            if (error == null && value != null && value.isPresent() && decided.compareAndSet(false, true)) {
+                metricsRecorder.recordHedge(vendor, endpoint, "won");
+                winner.complete(value);
+            }
+        });
+        CompletableFuture.allOf(primary, hedge).whenComplete((ignored, error) ->
+                primary.whenComplete((value, primaryError) -> {
+                    if (primaryError != null) {
+                        winner.completeExceptionally(primaryError);
+                    } else {
+                        winner.complete(value);
+                    }
+                }));
+        return join(winner);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            throw propagate(ex.getCause());
+        }
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof CompletionException completion && completion.getCause() != null) {
+            cause = completion.getCause();
+        }
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new RuntimeException(cause);
+    }
+}
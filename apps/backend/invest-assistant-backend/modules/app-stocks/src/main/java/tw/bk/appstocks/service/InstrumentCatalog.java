@@ -0,0 +1,230 @@
+package tw.bk.appstocks.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
+
+/**
+ * 商品目錄的不可變快照：主鍵、symbolKey、ticker 與市場 / 交易所 / 資產類型的次要索引
+ * <p>
+ * 建立後不再變動，由 {@link InstrumentCatalogService} 依版本號重新載入後整份替換，讀取端不需加鎖。
+ * 市場、交易所、幣別、資產類型與狀態等重複值在建立時共用同一個字串實例；各索引的清單皆依 (ticker, id) 排序
+ */
+final class InstrumentCatalog {
+    /**
+     * 單筆商品的估計常駐大小：record + Long id + ticker / symbolKey / 中英文名稱字串（重複值共用不計）
+     */
+    static final long ESTIMATED_ROW_BYTES = 240L;
+
+    /**
+     * 每筆商品的估計索引成本：主鍵、symbolKey、ticker 三個雜湊表節點與各次要索引清單的參照
+     */
+    static final long ESTIMATED_INDEX_BYTES = 110L;
+
+    private static final Comparator<InstrumentCatalogRow> BY_TICKER = Comparator
+            .comparing(InstrumentCatalogRow::ticker)
+            .thenComparing(InstrumentCatalogRow::id);
+
+    private final long version;
+    private final List<InstrumentCatalogRow> rows;
+    private final Map<Long, InstrumentCatalogRow> byId;
+    private final Map<String, InstrumentCatalogRow> bySymbolKey;
+    private final Map<String, List<InstrumentCatalogRow>> byTicker;
+    private final Map<MarketCode, List<InstrumentCatalogRow>> byMarket;
+    private final Map<String, List<InstrumentCatalogRow>> byExchange;
+    private final Map<String, List<InstrumentCatalogRow>> byAssetType;
+
+    private InstrumentCatalog(
+            long version,
+            List<InstrumentCatalogRow> rows,
+            Map<Long, InstrumentCatalogRow> byId,
+            Map<String, InstrumentCatalogRow> bySymbolKey,
+            Map<String, List<InstrumentCatalogRow>> byTicker,
+            Map<MarketCode, List<InstrumentCatalogRow>> byMarket,
+            Map<String, List<InstrumentCatalogRow>> byExchange,
+            Map<String, List<InstrumentCatalogRow>> byAssetType) {
+        this.version = version;
+        this.rows = rows;
+        this.byId = byId;
+        this.bySymbolKey = bySymbolKey;
+        this.byTicker = byTicker;
+        this.byMarket = byMarket;
+        this.byExchange = byExchange;
+        this.byAssetType = byAssetType;
+    }
+
+    /**
+     * 建立快照（略過無 id、ticker 或 symbolKey 者）
+     */
+    static InstrumentCatalog build(long version, List<InstrumentCatalogRow> source) {
+        Map<String, String> shared = new HashMap<>();
+        List<InstrumentCatalogRow> sorted = new ArrayList<>(source == null ? 0 : source.size());
+        if (source != null) {
+            for (InstrumentCatalogRow row : source) {
+                if (row != null && row.id() != null && row.ticker() != null && row.symbolKey() != null) {
+                    sorted.add(share(row, shared));
+                }
+            }
+        }
+        sorted.sort(BY_TICKER);
+
+        Map<Long, InstrumentCatalogRow> byId = new HashMap<>(capacity(sorted.size()));
+        Map<String, InstrumentCatalogRow> bySymbolKey = new HashMap<>(capacity(sorted.size()));
+        Map<String, List<InstrumentCatalogRow>> byTicker = new HashMap<>(capacity(sorted.size()));
+        Map<MarketCode, List<InstrumentCatalogRow>> byMarket = new EnumMap<>(MarketCode.class);
+        Map<String, List<InstrumentCatalogRow>> byExchange = new HashMap<>();
+        Map<String, List<InstrumentCatalogRow>> byAssetType = new HashMap<>();
+        for (InstrumentCatalogRow row : sorted) {
+            byId.put(row.id(), row);
+            bySymbolKey.put(row.symbolKey(), row);
+            byTicker.computeIfAbsent(normalize(row.ticker()), ignored -> new ArrayList<>(1)).add(row);
+            if (row.marketCode() != null && MarketCode.isSupported(row.marketCode())) {
+                byMarket.computeIfAbsent(MarketCode.fromCode(row.marketCode()), ignored -> new ArrayList<>()).add(row);
+            }
+            if (row.marketCode() != null && row.exchangeCode() != null) {
+                byExchange.computeIfAbsent(exchangeKey(row.marketCode(), row.exchangeCode()),
+                        ignored -> new ArrayList<>()).add(row);
+            }
+            if (row.assetType() != null) {
+                byAssetType.computeIfAbsent(normalize(row.assetType()), ignored -> new ArrayList<>()).add(row);
+            }
+        }
+        return new InstrumentCatalog(
+                version,
+                List.copyOf(sorted),
+                Map.copyOf(byId),
+                Map.copyOf(bySymbolKey),
+                freeze(byTicker),
+                freeze(byMarket),
+                freeze(byExchange),
+                freeze(byAssetType));
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return rows.size();
+    }
+
+    long estimatedBytes() {
+        return rows.size() * (ESTIMATED_ROW_BYTES + ESTIMATED_INDEX_BYTES);
+    }
+
+    Optional<InstrumentCatalogRow> findById(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(byId.get(id));
+    }
+
+    Optional<InstrumentCatalogRow> findBySymbolKey(String symbolKey) {
+        return symbolKey == null ? Optional.empty() : Optional.ofNullable(bySymbolKey.get(symbolKey));
+    }
+
+    /**
+     * ticker 完全相符（不分大小寫），可能跨市場 / 交易所有多筆
+     */
+    List<InstrumentCatalogRow> findByTicker(String ticker) {
+        if (ticker == null || ticker.isBlank()) {
+            return List.of();
+        }
+        return byTicker.getOrDefault(normalize(ticker), List.of());
+    }
+
+    /**
+     * 依市場列出商品；exchangeCode、assetTypes（大寫的 {@code AssetType} 名稱）、status 為 null 時不限制。
+     * 以最小的次要索引清單為候選，再逐筆確認其餘條件
+     */
+    List<InstrumentCatalogRow> list(
+            MarketCode market, String exchangeCode, Collection<String> assetTypes, String status) {
+        List<InstrumentCatalogRow> candidates = byMarket.getOrDefault(market, List.of());
+        if (exchangeCode != null && !exchangeCode.isBlank()) {
+            List<InstrumentCatalogRow> exchangeRows =
+                    byExchange.getOrDefault(exchangeKey(market.getCode(), exchangeCode), List.of());
+            if (exchangeRows.size() < candidates.size()) {
+                candidates = exchangeRows;
+            }
+        }
+        if (assetTypes != null && assetTypes.size() == 1) {
+            List<InstrumentCatalogRow> typeRows =
+                    byAssetType.getOrDefault(normalize(assetTypes.iterator().next()), List.of());
+            if (typeRows.size() < candidates.size()) {
+                candidates = typeRows;
+            }
+        }
+        List<InstrumentCatalogRow> result = new ArrayList<>();
+        for (InstrumentCatalogRow row : candidates) {
+            if (matches(row, market, exchangeCode, assetTypes, status)) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@link #list} 的篩選條件；目錄尚未載入時呼叫端以同一條件過濾資料庫結果
+     */
+    static boolean matches(
+            InstrumentCatalogRow row, MarketCode market, String exchangeCode, Collection<String> assetTypes,
+            String status) {
+        if (row.marketCode() == null || !market.getCode().equalsIgnoreCase(row.marketCode())) {
+            return false;
+        }
+        if (exchangeCode != null && !exchangeCode.isBlank()
+                && (row.exchangeCode() == null || !exchangeCode.trim().equalsIgnoreCase(row.exchangeCode()))) {
+            return false;
+        }
+        if (assetTypes != null
+                && (row.assetType() == null || !assetTypes.contains(normalize(row.assetType())))) {
+            return false;
+        }
+        return status == null || status.equalsIgnoreCase(row.status());
+    }
+
+    private static InstrumentCatalogRow share(InstrumentCatalogRow row, Map<String, String> shared) {
+        return new InstrumentCatalogRow(
+                row.id(),
+                shared(row.marketCode(), shared),
+                shared(row.exchangeCode(), shared),
+                shared(row.exchangeMic(), shared),
+                row.ticker(),
+                row.symbolKey(),
+                row.nameZh(),
+                row.nameEn(),
+                shared(row.currency(), shared),
+                shared(row.assetType(), shared),
+                shared(row.status(), shared));
+    }
+
+    private static String shared(String value, Map<String, String> shared) {
+        return value == null ? null : shared.computeIfAbsent(value, key -> key);
+    }
+
+    /**
+     * 清單改為不可變；Map.copyOf 的開放定址表比 HashMap 節點精簡
+     */
+    private static <K> Map<K, List<InstrumentCatalogRow>> freeze(Map<K, List<InstrumentCatalogRow>> index) {
+        index.replaceAll((key, value) -> List.copyOf(value));
+        return index instanceof EnumMap ? Collections.unmodifiableMap(index) : Map.copyOf(index);
+    }
+
+    private static String exchangeKey(String marketCode, String exchangeCode) {
+        return normalize(marketCode) + ":" + normalize(exchangeCode);
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static int capacity(int size) {
+        return size * 4 / 3 + 1;
+    }
+}
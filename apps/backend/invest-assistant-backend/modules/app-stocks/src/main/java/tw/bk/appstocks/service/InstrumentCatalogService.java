@@ -0,0 +1,292 @@
+package tw.bk.appstocks.service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
+import tw.bk.apppersistence.repository.InstrumentRepository;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+/**
+ * 持有記憶體商品目錄 {@link InstrumentCatalog}：ticker 清單、報價路由、OCR 與 AI 的商品查詢不再逐次查詢資料庫
+ * <p>
+ * 每次商品異動（同步、新增、明細補齊）遞增要求版本，背景載入整份目錄後以版本號整份替換（只會換成較新的版本），
+ * 載入期間的新要求會在完成後再載入一次；同時以 Redis pub/sub 通知其他節點。
+ * 目錄尚未載入或停用時直接查詢資料庫；symbolKey / id 查不到時也改查資料庫，剛新增、尚未重新載入的商品仍可使用
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InstrumentCatalogService implements ApplicationRunner {
+    private final InstrumentRepository instrumentRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicReference<InstrumentCatalog> catalog = new AtomicReference<>();
+    private final AtomicLong requestedVersion = new AtomicLong();
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    private final Object reloadLock = new Object();
+
+    @PostConstruct
+    void subscribe() {
+        StockMarketProperties.InstrumentCatalog config = properties.getInstrumentCatalog();
+        if (!config.isEnabled()) {
+            return;
+        }
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onReloadRequested(message),
+                new ChannelTopic(config.getChannel()));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        requestReload();
+    }
+
+    public Optional<InstrumentCatalogRow> findBySymbolKey(String symbolKey) {
+        if (symbolKey == null || symbolKey.isBlank()) {
+            return Optional.empty();
+        }
+        return findBySymbolKeys(List.of(symbolKey)).stream().findFirst();
+    }
+
+    /**
+     * 依 symbolKey 批次查詢（順序不保證，找不到者略過）
+     */
+    public List<InstrumentCatalogRow> findBySymbolKeys(Collection<String> symbolKeys) {
+        if (symbolKeys == null || symbolKeys.isEmpty()) {
+            return List.of();
+        }
+        return lookup(symbolKeys, InstrumentCatalog::findBySymbolKey, instrumentRepository::findCatalogRowsBySymbolKeys);
+    }
+
+    public Optional<InstrumentCatalogRow> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return findByIds(List.of(id)).stream().findFirst();
+    }
+
+    /**
+     * 依 id 批次查詢，回傳順序與傳入的 id 相同（找不到者略過）
+     */
+    public List<InstrumentCatalogRow> findByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, InstrumentCatalogRow> byId = lookup(ids, InstrumentCatalog::findById,
+                instrumentRepository::findCatalogRowsByIds).stream()
+                .collect(Collectors.toMap(InstrumentCatalogRow::id, Function.identity(), (a, b) -> a));
+        List<InstrumentCatalogRow> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            InstrumentCatalogRow row = byId.get(id);
+            if (row != null) {
+                ordered.add(row);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * ticker 完全相符（不分大小寫）的商品，可能跨市場有多筆
+     */
+    public List<InstrumentCatalogRow> findByTicker(String ticker) {
+        if (ticker == null || ticker.isBlank()) {
+            return List.of();
+        }
+        InstrumentCatalog current = loaded();
+        if (current == null) {
+            metricsRecorder.recordInstrumentCatalogLookup("unloaded");
+            return instrumentRepository.findCatalogRowsByTicker(ticker.trim());
+        }
+        metricsRecorder.recordInstrumentCatalogLookup("hit");
+        return current.findByTicker(ticker);
+    }
+
+    /**
+     * 依市場列出商品；exchangeCode、assetTypes（大寫的 {@code AssetType} 名稱）、status 為 null 時不限制，依 ticker 排序
+     */
+    public List<InstrumentCatalogRow> list(
+            MarketCode market, String exchangeCode, Collection<String> assetTypes, String status) {
+        InstrumentCatalog current = loaded();
+        if (current != null) {
+            metricsRecorder.recordInstrumentCatalogLookup("hit");
+            return current.list(market, exchangeCode, assetTypes, status);
+        }
+        metricsRecorder.recordInstrumentCatalogLookup("unloaded");
+        return instrumentRepository.findAllCatalogRows().stream()
+                .filter(row -> InstrumentCatalog.matches(row, market, exchangeCode, assetTypes, status))
+                .toList();
+    }
+
+    /**
+     * 商品異動後呼叫：目前交易提交後（無交易時立即）遞增版本並於背景重新載入，同時通知其他節點
+     */
+    public void scheduleReload() {
+        if (!properties.getInstrumentCatalog().isEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    requestReload();
+                    publish();
+                }
+            });
+            return;
+        }
+        requestReload();
+        publish();
+    }
+
+    /**
+     * 同步載入目前要求的版本；失敗時保留舊目錄
+     */
+    public boolean reload() {
+        synchronized (reloadLock) {
+            long version = requestedVersion.get();
+            long startedAt = System.nanoTime();
+            try {
+                InstrumentCatalog built = InstrumentCatalog.build(version, instrumentRepository.findAllCatalogRows());
+                InstrumentCatalog swapped = catalog.accumulateAndGet(built,
+                        (current, next) -> current == null || next.version() >= current.version() ? next : current);
+                long elapsed = System.nanoTime() - startedAt;
+                metricsRecorder.recordInstrumentCatalog(
+                        "success", swapped.size(), swapped.estimatedBytes(), swapped.version(), elapsed);
+                log.info("Instrument catalog reloaded: version={}, instruments={}, estimated_kb={}, took={} ms",
+                        swapped.version(), swapped.size(), swapped.estimatedBytes() / 1024, elapsed / 1_000_000);
+                return true;
+            } catch (RuntimeException ex) {
+                InstrumentCatalog current = catalog.get();
+                metricsRecorder.recordInstrumentCatalog(
+                        "error",
+                        current == null ? 0 : current.size(),
+                        current == null ? 0L : current.estimatedBytes(),
+                        current == null ? 0L : current.version(),
+                        System.nanoTime() - startedAt);
+                log.warn("Instrument catalog reload failed, keeping version {}: {}",
+                        current == null ? 0L : current.version(), ex.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 目前載入的版本；尚未載入時為 0
+     */
+    public long loadedVersion() {
+        InstrumentCatalog current = catalog.get();
+        return current == null ? 0L : current.version();
+    }
+
+    private void requestReload() {
+        if (!properties.getInstrumentCatalog().isEnabled()) {
+            return;
+        }
+        requestedVersion.incrementAndGet();
+        reloadAsync();
+    }
+
+    /**
+     * 背景載入直到追上要求的版本；同時只有一個載入執行緒，期間的要求合併為下一次載入
+     */
+    private void reloadAsync() {
+        if (!reloading.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofPlatform().name("instrument-catalog").daemon().start(() -> {
+            boolean succeeded = true;
+            try {
+                while (succeeded && loadedVersion() < requestedVersion.get()) {
+                    succeeded = reload();
+                }
+            } finally {
+                reloading.set(false);
+            }
+            // 釋放旗標與新要求之間的空檔
+            if (succeeded && loadedVersion() < requestedVersion.get()) {
+                reloadAsync();
+            }
+        });
+    }
+
+    private InstrumentCatalog loaded() {
+        return properties.getInstrumentCatalog().isEnabled() ? catalog.get() : null;
+    }
+
+    private <K> List<InstrumentCatalogRow> lookup(
+            Collection<K> keys,
+            CatalogLookup<K> fromCatalog,
+            Function<Collection<K>, List<InstrumentCatalogRow>> fromDatabase) {
+        InstrumentCatalog current = loaded();
+        if (current == null) {
+            metricsRecorder.recordInstrumentCatalogLookup("unloaded");
+            return fromDatabase.apply(new LinkedHashSet<>(keys));
+        }
+        List<InstrumentCatalogRow> found = new ArrayList<>(keys.size());
+        LinkedHashSet<K> missing = new LinkedHashSet<>();
+        for (K key : keys) {
+            Optional<InstrumentCatalogRow> row = fromCatalog.find(current, key);
+            if (row.isPresent()) {
+                found.add(row.get());
+            } else if (key != null) {
+                missing.add(key);
+            }
+        }
+        metricsRecorder.recordInstrumentCatalogLookup(missing.isEmpty() ? "hit" : "miss");
+        if (!missing.isEmpty()) {
+            found.addAll(fromDatabase.apply(missing));
+        }
+        return found;
+    }
+
+    private void publish() {
+        try {
+            stringRedisTemplate.convertAndSend(properties.getInstrumentCatalog().getChannel(), nodeId);
+        } catch (RuntimeException ex) {
+            log.warn("Instrument catalog reload notification failed: {}", ex.getMessage());
+        }
+    }
+
+    void onReloadRequested(Message message) {
+        if (message == null || message.getBody() == null) {
+            return;
+        }
+        String sender = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (!nodeId.equals(sender)) {
+            requestReload();
+        }
+    }
+
+    @FunctionalInterface
+    private interface CatalogLookup<K> {
+        Optional<InstrumentCatalogRow> find(InstrumentCatalog catalog, K key);
+    }
+}
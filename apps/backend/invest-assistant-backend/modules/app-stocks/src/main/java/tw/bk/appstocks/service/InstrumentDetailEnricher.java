@@ -0,0 +1,309 @@
+package tw.bk.appstocks.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.AssetType;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.apppersistence.entity.MarketEntity;
+import tw.bk.apppersistence.repository.InstrumentDetailQueueRepository;
+import tw.bk.apppersistence.repository.InstrumentDetailQueueRepository.InstrumentDetailFailure;
+import tw.bk.apppersistence.repository.InstrumentDetailQueueRepository.InstrumentDetailTask;
+import tw.bk.apppersistence.repository.InstrumentDetailQueueRepository.InstrumentDetailUpdate;
+import tw.bk.apppersistence.repository.MarketRepository;
+import tw.bk.apppersistence.repository.UserPositionRepository;
+import tw.bk.appstocks.adapter.FugleClient;
+import tw.bk.appstocks.adapter.dto.FugleTickerResponse;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+/**
+ * ticker 明細背景補齊（英文名稱、交易幣別、ETF 判定）
+ * 新商品、明細過期或缺英文名稱者排入持久佇列 {@code app.instrument_detail_queue}；持倉商品與近期查詢、搜尋命中的商品
+ * 提高優先權。每輪依 Fugle 有效速率（限流器調整後）乘上 {@code budget-fraction} 決定可用呼叫數，輪內平均分配，
+ * 以 BATCH 優先權取得 permit；整輪結果一次批次寫回。遭限流時歸還剩餘項目，下一輪再處理
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InstrumentDetailEnricher {
+    static final int PRIORITY_HELD = 30;
+    static final int PRIORITY_SEARCHED = 20;
+    static final int PRIORITY_NEW = 10;
+    static final int PRIORITY_REFRESH = 0;
+
+    private static final String VENDOR = "fugle";
+    private static final String MARKET_TW = "TW";
+    private static final String ASSET_TYPE_ETF = AssetType.ETF.name();
+    private static final Set<String> ETF_SECURITY_TYPES = Set.of(
+            "24", "25", "26", "28", "45", "46", "47", "48", "49");
+    private static final int MAX_PENDING_SEARCHED = 10_000;
+    private static final int SEARCHED_PER_QUERY = 10;
+
+    private final FugleClient fugleClient;
+    private final ExternalApiRateLimiter rateLimiter;
+    private final InstrumentDetailQueueRepository queueRepository;
+    private final MarketRepository marketRepository;
+    private final UserPositionRepository userPositionRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final InstrumentSearchIndexService instrumentSearchIndexService;
+    private final InstrumentCatalogService instrumentCatalogService;
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
+
+    private final Set<Long> pendingSearched = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scanRequested = new AtomicBoolean(true);
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private volatile long lastRefreshNanos;
+    private volatile long lastScanNanos;
+    private volatile Long marketId;
+
+    /**
+     * 記錄搜尋命中的商品（每次只取排名最前的幾筆），下一輪提高其補齊優先權
+     */
+    public void recordSearched(List<Long> instrumentIds) {
+        if (!properties.getDetailEnrichment().isEnabled() || instrumentIds == null) {
+            return;
+        }
+        for (Long id : instrumentIds.subList(0, Math.min(instrumentIds.size(), SEARCHED_PER_QUERY))) {
+            if (pendingSearched.size() >= MAX_PENDING_SEARCHED) {
+                return;
+            }
+            if (id != null) {
+                pendingSearched.add(id);
+            }
+        }
+    }
+
+    /**
+     * 商品同步後呼叫，下一輪立即掃描新商品
+     */
+    public void requestScan() {
+        scanRequested.set(true);
+    }
+
+    @Scheduled(
+            fixedDelayString = "${stock.detail-enrichment.tick-ms:10000}",
+            initialDelayString = "${stock.detail-enrichment.tick-ms:10000}")
+    public void tick() {
+        StockMarketProperties.DetailEnrichment config = properties.getDetailEnrichment();
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            Long twMarketId = twMarketId();
+            if (twMarketId == null) {
+                return;
+            }
+            if (scanRequested.getAndSet(false)
+                    || System.nanoTime() - lastScanNanos >= Duration.ofMillis(config.getScanIntervalMs()).toNanos()) {
+                scan(twMarketId, config);
+            }
+            boostSearched(twMarketId, config);
+            boolean drained = drain(config);
+            refreshCatalog(drained, config);
+            recordBacklog();
+        } catch (RuntimeException ex) {
+            log.warn("Instrument detail enrichment tick failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * 排入需要補齊的商品，並提高持倉與近期查詢商品的優先權
+     */
+    void scan(Long twMarketId, StockMarketProperties.DetailEnrichment config) {
+        lastScanNanos = System.nanoTime();
+        Duration staleAfter = Duration.ofMillis(config.getStaleAfterMs());
+        Duration missingRetry = Duration.ofMillis(config.getMissingRetryMs());
+        int enqueued = queueRepository.enqueueDue(
+                twMarketId, PRIORITY_NEW, PRIORITY_REFRESH, staleAfter, missingRetry);
+        int held = queueRepository.boostBySymbolKeys(
+                twMarketId, userPositionRepository.findDistinctHeldSymbolKeys(), PRIORITY_HELD,
+                staleAfter, missingRetry);
+        int viewed = queueRepository.boostBySymbolKeys(
+                twMarketId, recentlyViewed(), PRIORITY_SEARCHED, staleAfter, missingRetry);
+        log.info("Instrument detail enrichment scan: enqueued={}, held={}, viewed={}", enqueued, held, viewed);
+    }
+
+    /**
+     * 依速率預算領取一輪並逐筆呼叫 ticker 明細，整輪結果一次寫回；回傳佇列是否已無到期項目（領取數少於預算）
+     */
+    boolean drain(StockMarketProperties.DetailEnrichment config) {
+        long windowMs = properties.getRateLimit().getWindowMs();
+        double callsPerWindow = rateLimiter.effectiveLimit(VENDOR) * config.getBudgetFraction();
+        if (callsPerWindow <= 0 || windowMs <= 0) {
+            return false;
+        }
+        long intervalMs = Math.max((long) Math.ceil(windowMs / callsPerWindow), 1L);
+        metricsRecorder.recordInstrumentEnrichmentBudget(Duration.ofMinutes(1).toMillis() / intervalMs);
+        int budget = (int) Math.min(Math.max(config.getMaxBatch(), 0), Math.max(config.getTickMs() / intervalMs, 1L));
+        List<InstrumentDetailTask> tasks = queueRepository.claimDue(budget, Duration.ofMillis(config.getLeaseMs()));
+        if (tasks.isEmpty()) {
+            return true;
+        }
+
+        long startedAt = System.nanoTime();
+        List<InstrumentDetailUpdate> updates = new ArrayList<>();
+        List<InstrumentDetailFailure> failures = new ArrayList<>();
+        List<Long> released = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            InstrumentDetailTask task = tasks.get(i);
+            if (i > 0 && !pause(intervalMs)) {
+                tasks.subList(i, tasks.size()).forEach(rest -> released.add(rest.instrumentId()));
+                break;
+            }
+            try {
+                Optional<FugleTickerResponse> detail = VendorCallPriority.callAs(
+                        VendorCallPriority.BATCH, () -> fugleClient.getTickerDetail(task.ticker()));
+                if (detail.isPresent()) {
+                    updates.add(toUpdate(task.instrumentId(), detail.get()));
+                } else {
+                    failures.add(new InstrumentDetailFailure(task.instrumentId(), "ticker detail unavailable"));
+                }
+            } catch (BusinessException ex) {
+                if (ex.getErrorCode() == ErrorCode.RATE_LIMITED || ex.getErrorCode() == ErrorCode.SERVICE_UNAVAILABLE) {
+                    // 限流或斷路中：剩餘項目歸還佇列，不計失敗次數
+                    tasks.subList(i, tasks.size()).forEach(rest -> released.add(rest.instrumentId()));
+                    break;
+                }
+                failures.add(new InstrumentDetailFailure(task.instrumentId(), ex.getMessage()));
+            }
+        }
+
+        int enriched = queueRepository.complete(updates);
+        int dropped = queueRepository.fail(failures, Duration.ofMillis(config.getRetryBackoffMs()),
+                config.getMaxAttempts());
+        queueRepository.release(released);
+        if (enriched > 0) {
+            refreshPending.set(true);
+        }
+        metricsRecorder.recordInstrumentEnrichment("enriched", enriched);
+        metricsRecorder.recordInstrumentEnrichment("failed", failures.size());
+        metricsRecorder.recordInstrumentEnrichment("dropped", dropped);
+        metricsRecorder.recordInstrumentEnrichment("released", released.size());
+        log.info("Instrument detail enrichment batch: claimed={}, enriched={}, failed={}, dropped={}, released={}, "
+                        + "interval_ms={}, took={} ms",
+                tasks.size(), enriched, failures.size(), dropped, released.size(), intervalMs,
+                Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+        return tasks.size() < budget && released.isEmpty();
+    }
+
+    /**
+     * 補齊的名稱、幣別與資產類型反映到商品目錄與搜尋索引；整份重建成本較高，
+     * 佇列清空或距上次重建超過 {@code scan-interval-ms} 時才重建，不逐輪觸發
+     */
+    void refreshCatalog(boolean drained, StockMarketProperties.DetailEnrichment config) {
+        if (!refreshPending.get()) {
+            return;
+        }
+        if (!drained
+                && System.nanoTime() - lastRefreshNanos < Duration.ofMillis(config.getScanIntervalMs()).toNanos()) {
+            return;
+        }
+        refreshPending.set(false);
+        lastRefreshNanos = System.nanoTime();
+        instrumentCatalogService.scheduleReload();
+        instrumentSearchIndexService.scheduleRebuild();
+    }
+
+    private void boostSearched(Long twMarketId, StockMarketProperties.DetailEnrichment config) {
+        if (pendingSearched.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(pendingSearched);
+        pendingSearched.removeAll(ids);
+        queueRepository.boostByIds(twMarketId, ids, PRIORITY_SEARCHED,
+                Duration.ofMillis(config.getStaleAfterMs()), Duration.ofMillis(config.getMissingRetryMs()));
+    }
+
+    private void recordBacklog() {
+        Map<Integer, Long> backlog = queueRepository.countBacklogByPriority();
+        metricsRecorder.recordInstrumentEnrichmentBacklog("held", backlog.getOrDefault(PRIORITY_HELD, 0L));
+        metricsRecorder.recordInstrumentEnrichmentBacklog("searched", backlog.getOrDefault(PRIORITY_SEARCHED, 0L));
+        metricsRecorder.recordInstrumentEnrichmentBacklog("new", backlog.getOrDefault(PRIORITY_NEW, 0L));
+        metricsRecorder.recordInstrumentEnrichmentBacklog("refresh", backlog.getOrDefault(PRIORITY_REFRESH, 0L));
+    }
+
+    /**
+     * 近期被查詢報價的商品（與報價預熱共用 Redis 紀錄）
+     */
+    private Collection<String> recentlyViewed() {
+        int maxRecent = properties.getWarmer().getMaxRecent();
+        if (maxRecent <= 0) {
+            return List.of();
+        }
+        try {
+            Set<String> viewed = stringRedisTemplate.opsForZSet()
+                    .reverseRange(StockCacheWarmer.VIEWED_KEY, 0, maxRecent - 1L);
+            return viewed == null ? List.of() : viewed;
+        } catch (RuntimeException ex) {
+            log.debug("Load recently viewed symbols failed: {}", ex.getMessage());
+            return List.of();
+        }
+    }
+
+    private Long twMarketId() {
+        Long cached = marketId;
+        if (cached == null) {
+            cached = marketRepository.findByCode(MARKET_TW).map(MarketEntity::getId).orElse(null);
+            marketId = cached;
+        }
+        return cached;
+    }
+
+    static InstrumentDetailUpdate toUpdate(Long instrumentId, FugleTickerResponse detail) {
+        String currency = trimToNull(detail.getTradingCurrency());
+        if (currency != null) {
+            currency = currency.toUpperCase(Locale.ROOT);
+            if (currency.length() != 3) {
+                currency = null;
+            }
+        }
+        return new InstrumentDetailUpdate(
+                instrumentId,
+                trimToNull(detail.getNameEn()),
+                trimToNull(detail.getName()),
+                currency,
+                isEtf(detail.getSecurityType()) ? ASSET_TYPE_ETF : null);
+    }
+
+    private static boolean isEtf(String securityType) {
+        if (securityType == null || securityType.isBlank()) {
+            return false;
+        }
+        return ETF_SECURITY_TYPES.contains(securityType.trim());
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * 回傳 false 表示被中斷，應停止本輪
+     */
+    private static boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
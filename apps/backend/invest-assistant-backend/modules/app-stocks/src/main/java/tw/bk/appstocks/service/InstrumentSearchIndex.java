@@ -0,0 +1,273 @@
+package tw.bk.appstocks.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import tw.bk.apppersistence.repository.InstrumentSearchRow;
+
+/**
+ * 商品目錄的不可變搜尋索引，取代 LOWER(...) LIKE '%q%' 的全表掃描
+ * <p>
+ * 命中條件與原 SQL 相同：ticker / nameEn / nameZh 任一欄位（不分大小寫）包含查詢字串。
+ * 三個欄位的單字元與相鄰雙字元（中文名稱即 CJK bigram）各建一份倒排表，查詢時取查詢字串所有 bigram 的交集再逐筆確認，
+ * 不會漏掉 ticker 或英文名稱中段的命中（例如 "330" → 2330）。
+ * 文件依 (ticker, id) 排序，排名為 ticker 完全相符 &gt; ticker 前綴 &gt; 名稱或英文單字字首 &gt; 包含，同級維持 ticker 順序，
+ * 分頁結果穩定。由 {@link InstrumentSearchIndexService} 重建後整份替換
+ */
+final class InstrumentSearchIndex {
+    static final int TIER_EXACT_TICKER = 0;
+    static final int TIER_TICKER_PREFIX = 1;
+    static final int TIER_NAME_PREFIX = 2;
+    static final int TIER_CONTAINS = 3;
+
+    private static final int[] NO_DOCS = new int[0];
+
+    private static final Comparator<InstrumentSearchRow> BY_TICKER = Comparator
+            .comparing((InstrumentSearchRow row) -> normalize(row.ticker()))
+            .thenComparing(InstrumentSearchRow::id);
+
+    private final long[] ids;
+    private final String[] tickers;
+    private final String[] namesEn;
+    private final String[] namesZh;
+    private final Map<Long, int[]> postings;
+    private final long postingCount;
+
+    private InstrumentSearchIndex(
+            long[] ids, String[] tickers, String[] namesEn, String[] namesZh, Map<Long, int[]> postings,
+            long postingCount) {
+        this.ids = ids;
+        this.tickers = tickers;
+        this.namesEn = namesEn;
+        this.namesZh = namesZh;
+        this.postings = postings;
+        this.postingCount = postingCount;
+    }
+
+    /**
+     * 建立索引（略過無 id 或無 ticker 者）
+     */
+    static InstrumentSearchIndex build(List<InstrumentSearchRow> rows) {
+        List<InstrumentSearchRow> docs = new ArrayList<>(rows == null ? 0 : rows.size());
+        if (rows != null) {
+            for (InstrumentSearchRow row : rows) {
+                if (row != null && row.id() != null && row.ticker() != null) {
+                    docs.add(row);
+                }
+            }
+        }
+        docs.sort(BY_TICKER);
+
+        int size = docs.size();
+        long[] ids = new long[size];
+        String[] tickers = new String[size];
+        String[] namesEn = new String[size];
+        String[] namesZh = new String[size];
+        Map<Long, PostingBuilder> builders = new HashMap<>();
+        for (int doc = 0; doc < size; doc++) {
+            InstrumentSearchRow row = docs.get(doc);
+            ids[doc] = row.id();
+            tickers[doc] = normalize(row.ticker());
+            namesEn[doc] = normalize(row.nameEn());
+            namesZh[doc] = normalize(row.nameZh());
+            addGrams(builders, tickers[doc], doc);
+            addGrams(builders, namesEn[doc], doc);
+            addGrams(builders, namesZh[doc], doc);
+        }
+
+        Map<Long, int[]> postings = new HashMap<>(builders.size() * 4 / 3 + 1);
+        long postingCount = 0L;
+        for (Map.Entry<Long, PostingBuilder> entry : builders.entrySet()) {
+            int[] docIds = entry.getValue().toArray();
+            postings.put(entry.getKey(), docIds);
+            postingCount += docIds.length;
+        }
+        return new InstrumentSearchIndex(ids, tickers, namesEn, namesZh, postings, postingCount);
+    }
+
+    /**
+     * 依排名取出 [offset, offset + limit) 的商品 id 與命中總數；query 為 null 時無結果
+     */
+    Hits search(String query, long offset, int limit) {
+        if (query == null) {
+            return Hits.NONE;
+        }
+        String normalized = normalize(query);
+        int[] candidates = candidates(normalized);
+        int candidateCount = candidates == null ? ids.length : candidates.length;
+
+        // 高 32 位元為排名、低 32 位元為文件序號（即 ticker 順序），排序後即為最終順序
+        long[] ranked = new long[candidateCount];
+        int matched = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int doc = candidates == null ? i : candidates[i];
+            int tier = tier(doc, normalized);
+            if (tier >= 0) {
+                ranked[matched++] = ((long) tier << 32) | doc;
+            }
+        }
+        Arrays.sort(ranked, 0, matched);
+
+        int from = (int) Math.min(Math.max(offset, 0L), matched);
+        int to = (int) Math.min(matched, from + (long) Math.max(limit, 0));
+        List<Long> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(ids[(int) ranked[i]]);
+        }
+        return new Hits(page, matched);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long postingCount() {
+        return postingCount;
+    }
+
+    /**
+     * 候選文件（遞增序號）；null 代表全部文件
+     */
+    private int[] candidates(String query) {
+        if (query.isEmpty()) {
+            return null;
+        }
+        if (query.length() == 1) {
+            return postings.getOrDefault(unigram(query.charAt(0)), NO_DOCS);
+        }
+        int[][] lists = new int[query.length() - 1][];
+        for (int i = 0; i < lists.length; i++) {
+            int[] docIds = postings.get(bigram(query.charAt(i), query.charAt(i + 1)));
+            if (docIds == null) {
+                return NO_DOCS;
+            }
+            lists[i] = docIds;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(docIds -> docIds.length));
+        int[] result = lists[0];
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            if (lists[i] != lists[i - 1]) {
+                result = intersect(result, lists[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 文件對查詢的排名；未命中回傳 -1
+     */
+    private int tier(int doc, String query) {
+        String ticker = tickers[doc];
+        if (ticker.equals(query)) {
+            return TIER_EXACT_TICKER;
+        }
+        if (ticker.startsWith(query)) {
+            return TIER_TICKER_PREFIX;
+        }
+        String nameEn = namesEn[doc];
+        String nameZh = namesZh[doc];
+        if (isWordPrefix(nameEn, query) || (nameZh != null && nameZh.startsWith(query))) {
+            return TIER_NAME_PREFIX;
+        }
+        if (ticker.contains(query)
+                || (nameEn != null && nameEn.contains(query))
+                || (nameZh != null && nameZh.contains(query))) {
+            return TIER_CONTAINS;
+        }
+        return -1;
+    }
+
+    private static boolean isWordPrefix(String text, String query) {
+        if (text == null) {
+            return false;
+        }
+        int at = text.indexOf(query);
+        while (at >= 0) {
+            if (at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1))) {
+                return true;
+            }
+            at = text.indexOf(query, at + 1);
+        }
+        return false;
+    }
+
+    private static int[] intersect(int[] smaller, int[] larger) {
+        int[] out = new int[smaller.length];
+        int size = 0;
+        int from = 0;
+        for (int doc : smaller) {
+            int found = Arrays.binarySearch(larger, from, larger.length, doc);
+            if (found >= 0) {
+                out[size++] = doc;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+            if (from >= larger.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    private static void addGrams(Map<Long, PostingBuilder> builders, String text, int doc) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            builders.computeIfAbsent(unigram(text.charAt(i)), ignored -> new PostingBuilder()).add(doc);
+            if (i + 1 < text.length()) {
+                builders.computeIfAbsent(bigram(text.charAt(i), text.charAt(i + 1)), ignored -> new PostingBuilder())
+                        .add(doc);
+            }
+        }
+    }
+
+    private static long unigram(char c) {
+        return (1L << 32) | c;
+    }
+
+    private static long bigram(char first, char second) {
+        return ((long) first << 16) | second;
+    }
+
+    /**
+     * 與資料庫 LOWER() 對齊的正規化
+     */
+    private static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 單頁命中的商品 id（依排名）與命中總數
+     */
+    record Hits(List<Long> ids, long total) {
+        static final Hits NONE = new Hits(List.of(), 0L);
+    }
+
+    /**
+     * 依文件序號遞增累加的倒排表；同一文件重複的字元組合只記一次
+     */
+    private static final class PostingBuilder {
+        private int[] docIds = new int[4];
+        private int size;
+
+        void add(int doc) {
+            if (size > 0 && docIds[size - 1] == doc) {
+                return;
+            }
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+            }
+            docIds[size++] = doc;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(docIds, size);
+        }
+    }
+}
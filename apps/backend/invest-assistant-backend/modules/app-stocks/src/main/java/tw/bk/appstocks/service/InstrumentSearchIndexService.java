@@ -0,0 +1,155 @@
+package tw.bk.appstocks.service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tw.bk.apppersistence.repository.InstrumentRepository;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+/**
+ * 持有商品搜尋索引 {@link InstrumentSearchIndex}：啟動時於背景建立，商品同步或新增後重建並整份替換，
+ * 同時以 Redis pub/sub 通知其他節點重建。索引尚未建立、建立失敗或停用時 {@link #search} 回傳 empty，
+ * 由呼叫端退回資料庫搜尋（pg_trgm 索引）
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InstrumentSearchIndexService implements ApplicationRunner {
+    private final InstrumentRepository instrumentRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicReference<InstrumentSearchIndex> index = new AtomicReference<>();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final Object rebuildLock = new Object();
+
+    @PostConstruct
+    void subscribe() {
+        StockMarketProperties.SearchIndex config = properties.getSearchIndex();
+        if (!config.isEnabled()) {
+            return;
+        }
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onRebuildRequested(message),
+                new ChannelTopic(config.getChannel()));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rebuildAsync();
+    }
+
+    /**
+     * 以索引搜尋，回傳單頁商品 id（依排名，不套用 pageable 的排序）與命中總數；索引不可用時回傳 empty
+     */
+    public Optional<Page<Long>> search(String query, Pageable pageable) {
+        InstrumentSearchIndex current = index.get();
+        if (current == null || !properties.getSearchIndex().isEnabled()) {
+            return Optional.empty();
+        }
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0L;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        InstrumentSearchIndex.Hits hits = current.search(query, offset, limit);
+        return Optional.of(new PageImpl<>(hits.ids(), pageable, hits.total()));
+    }
+
+    /**
+     * 商品異動後呼叫：目前交易提交後（無交易時立即）於背景重建本節點索引並通知其他節點
+     */
+    public void scheduleRebuild() {
+        if (!properties.getSearchIndex().isEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuildAsync();
+                    publish();
+                }
+            });
+            return;
+        }
+        rebuildAsync();
+        publish();
+    }
+
+    /**
+     * 同步重建本節點索引；失敗時保留舊索引
+     */
+    public boolean rebuild() {
+        synchronized (rebuildLock) {
+            long startedAt = System.nanoTime();
+            try {
+                InstrumentSearchIndex built = InstrumentSearchIndex.build(instrumentRepository.findAllSearchRows());
+                index.set(built);
+                long elapsed = System.nanoTime() - startedAt;
+                metricsRecorder.recordInstrumentSearchIndex(
+                        "success", built.size(), built.postingCount(), elapsed);
+                log.info("Instrument search index rebuilt: instruments={}, postings={}, took={} ms",
+                        built.size(), built.postingCount(), elapsed / 1_000_000);
+                return true;
+            } catch (RuntimeException ex) {
+                InstrumentSearchIndex current = index.get();
+                metricsRecorder.recordInstrumentSearchIndex(
+                        "error",
+                        current == null ? 0 : current.size(),
+                        current == null ? 0L : current.postingCount(),
+                        System.nanoTime() - startedAt);
+                log.warn("Instrument search index rebuild failed, keeping previous index: {}", ex.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 背景重建；已有排隊中的重建時合併為一次（該次會讀到最新資料）
+     */
+    private void rebuildAsync() {
+        if (!properties.getSearchIndex().isEnabled() || !rebuildQueued.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofPlatform().name("instrument-search-index").daemon().start(() -> {
+            rebuildQueued.set(false);
+            rebuild();
+        });
+    }
+
+    private void publish() {
+        try {
+            stringRedisTemplate.convertAndSend(properties.getSearchIndex().getChannel(), nodeId);
+        } catch (RuntimeException ex) {
+            log.warn("Instrument search index rebuild notification failed: {}", ex.getMessage());
+        }
+    }
+
+    void onRebuildRequested(Message message) {
+        if (message == null || message.getBody() == null) {
+            return;
+        }
+        String sender = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (!nodeId.equals(sender)) {
+            rebuildAsync();
+        }
+    }
+}
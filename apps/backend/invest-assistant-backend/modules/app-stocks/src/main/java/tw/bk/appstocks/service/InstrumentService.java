@@ -2,6 +2,7 @@ package tw.bk.appstocks.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -15,11 +16,16 @@ import tw.bk.apppersistence.entity.ExchangeEntity;
 import tw.bk.apppersistence.entity.InstrumentEntity;
 import tw.bk.apppersistence.entity.MarketEntity;
 import tw.bk.apppersistence.repository.ExchangeRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
 import tw.bk.apppersistence.repository.InstrumentRepository;
 import tw.bk.apppersistence.repository.MarketRepository;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Instrument service.
@@ -32,6 +38,10 @@ public class InstrumentService {
     private final InstrumentRepository instrumentRepository;
     private final MarketRepository marketRepository;
     private final ExchangeRepository exchangeRepository;
+    private final InstrumentSearchIndexService instrumentSearchIndexService;
+    private final InstrumentDetailEnricher instrumentDetailEnricher;
+    private final InstrumentCatalogService instrumentCatalogService;
+    private final StockMetricsRecorder metricsRecorder;
 
     /**
      * Create a new instrument manually.
@@ -75,7 +85,10 @@ public class InstrumentService {
         entity.setStatus(InstrumentStatus.ACTIVE.name());
         entity.setSymbolKey(symbolKey);
 
-        return instrumentRepository.save(entity);
+        InstrumentEntity saved = instrumentRepository.save(entity);
+        instrumentSearchIndexService.scheduleRebuild();
+        instrumentCatalogService.scheduleReload();
+        return saved;
     }
 
     @Transactional
@@ -96,6 +109,18 @@ public class InstrumentService {
         return findBySymbolKey(symbolKey).map(this::toView);
     }
 
+    /**
+     * Find views by symbol_key list (single query).
+     */
+    public List<InstrumentView> findViewsBySymbolKeys(List<String> symbolKeys) {
+        if (symbolKeys == null || symbolKeys.isEmpty()) {
+            return List.of();
+        }
+        return instrumentRepository.findBySymbolKeyInWithRelations(symbolKeys).stream()
+                .map(this::toView)
+                .toList();
+    }
+
     /**
      * Find by id.
      */
@@ -126,7 +151,42 @@ public class InstrumentService {
         int validLimit = Math.min(Math.max(limit, 1), 50);
         Pageable pageable = PageRequest.of(0, validLimit);
 
-        return instrumentRepository.searchInstrumentsWithRelations(query, pageable);
+        Optional<Page<InstrumentEntity>> indexed = searchIndexed(query, pageable);
+        if (indexed.isPresent()) {
+            return indexed.get().getContent();
+        }
+        long startedAt = System.nanoTime();
+        List<InstrumentEntity> found = findInOrder(instrumentRepository.searchInstrumentIds(query, pageable));
+        metricsRecorder.recordInstrumentSearch("database", System.nanoTime() - startedAt);
+        return found;
+    }
+
+    /**
+     * Search instruments by ticker or name (limit 1-50), rows served from the in-memory catalog.
+     */
+    public List<InstrumentCatalogRow> searchCatalogRows(String query, int limit) {
+        int validLimit = Math.min(Math.max(limit, 1), 50);
+        Pageable pageable = PageRequest.of(0, validLimit);
+
+        long startedAt = System.nanoTime();
+        Optional<Page<Long>> indexed = instrumentSearchIndexService.search(query, pageable);
+        List<Long> ids = indexed.isPresent()
+                ? indexed.get().getContent()
+                : instrumentRepository.searchInstrumentIds(query, pageable);
+        if (!ids.isEmpty()) {
+            instrumentDetailEnricher.recordSearched(ids);
+        }
+        List<InstrumentCatalogRow> found = instrumentCatalogService.findByIds(ids);
+        metricsRecorder.recordInstrumentSearch(indexed.isPresent() ? "index" : "database",
+                System.nanoTime() - startedAt);
+        return found;
+    }
+
+    /**
+     * Find catalog row by symbol_key (in-memory catalog, database on miss).
+     */
+    public Optional<InstrumentCatalogRow> findCatalogRowBySymbolKey(String symbolKey) {
+        return instrumentCatalogService.findBySymbolKey(symbolKey);
     }
 
     public List<InstrumentView> searchInstrumentViews(String query, int limit) {
@@ -139,7 +199,19 @@ public class InstrumentService {
      * Search instruments by ticker or name with pagination.
      */
     public Page<InstrumentEntity> searchInstrumentsPage(String query, Pageable pageable) {
-        return instrumentRepository.searchInstrumentsPage(query, pageable);
+        Optional<Page<InstrumentEntity>> indexed = searchIndexed(query, pageable);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+        // 兩條路徑都以相關度排名，不套用呼叫端的排序
+        Pageable unsorted = pageable.isPaged()
+                ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize())
+                : Pageable.unpaged();
+        long startedAt = System.nanoTime();
+        Page<Long> ids = instrumentRepository.searchInstrumentIdsPage(query, unsorted);
+        Page<InstrumentEntity> found = new PageImpl<>(findInOrder(ids.getContent()), unsorted, ids.getTotalElements());
+        metricsRecorder.recordInstrumentSearch("database", System.nanoTime() - startedAt);
+        return found;
     }
 
     public Page<InstrumentView> searchInstrumentViewsPage(String query, Pageable pageable) {
@@ -170,6 +242,40 @@ public class InstrumentService {
         return findAll(pageable).map(this::toView);
     }
 
+    /**
+     * Search via the in-memory index, then load the page rows by primary key (empty when the index is unavailable;
+     * the database search with pg_trgm indexes is used instead).
+     */
+    private Optional<Page<InstrumentEntity>> searchIndexed(String query, Pageable pageable) {
+        long startedAt = System.nanoTime();
+        Optional<Page<Long>> ids = instrumentSearchIndexService.search(query, pageable);
+        if (ids.isEmpty()) {
+            return Optional.empty();
+        }
+        Page<Long> page = ids.get();
+        List<InstrumentEntity> content = findInOrder(page.getContent());
+        metricsRecorder.recordInstrumentSearch("index", System.nanoTime() - startedAt);
+        return Optional.of(new PageImpl<>(content, pageable, page.getTotalElements()));
+    }
+
+    private List<InstrumentEntity> findInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // 搜尋命中的商品優先補齊 ticker 明細
+        instrumentDetailEnricher.recordSearched(ids);
+        Map<Long, InstrumentEntity> byId = instrumentRepository.findByIdInWithRelations(ids).stream()
+                .collect(Collectors.toMap(InstrumentEntity::getId, Function.identity()));
+        List<InstrumentEntity> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            InstrumentEntity entity = byId.get(id);
+            if (entity != null) {
+                ordered.add(entity);
+            }
+        }
+        return ordered;
+    }
+
     private InstrumentView toView(InstrumentEntity entity) {
         return new InstrumentView(
                 entity.getId(),
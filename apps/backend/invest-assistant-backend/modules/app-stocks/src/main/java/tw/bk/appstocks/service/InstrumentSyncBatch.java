@@ -0,0 +1,158 @@
+package tw.bk.appstocks.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import tw.bk.apppersistence.repository.InstrumentBatchRepository;
+import tw.bk.apppersistence.repository.InstrumentSyncRow;
+import tw.bk.apppersistence.repository.WarrantProfileRow;
+
+/**
+ * 單次商品同步的寫入端：來源逐列交入，與同步前載入的既有商品比對，只把新增與名稱變動的列緩衝，
+ * 滿一批即以多列 upsert 寫入（權證基本資料在商品寫入後依回傳的 id 一併寫入）。
+ * 同一 (exchange, ticker) 只取第一列；非執行緒安全，每次同步建立一個
+ */
+@Slf4j
+final class InstrumentSyncBatch {
+    private final InstrumentBatchRepository batchRepository;
+    private final int batchSize;
+    private final Map<String, InstrumentSyncRow> existing = new HashMap<>();
+    private final Map<Long, WarrantProfileRow> existingProfiles = new HashMap<>();
+    private final Set<String> seen = new HashSet<>();
+    private final Map<String, InstrumentSyncRow> pendingInstruments = new LinkedHashMap<>();
+    private final Map<String, WarrantProfileRow> pendingNewProfiles = new HashMap<>();
+    private final List<WarrantProfileRow> pendingProfiles = new ArrayList<>();
+
+    private int scanned;
+    private int added;
+    private int updated;
+    private int skipped;
+    private int profilesWritten;
+
+    InstrumentSyncBatch(
+            InstrumentBatchRepository batchRepository,
+            int batchSize,
+            List<InstrumentSyncRow> existingRows,
+            List<WarrantProfileRow> existingProfileRows) {
+        this.batchRepository = batchRepository;
+        this.batchSize = Math.max(batchSize, 1);
+        for (InstrumentSyncRow row : existingRows) {
+            existing.put(row.syncKey(), row);
+        }
+        for (WarrantProfileRow row : existingProfileRows) {
+            existingProfiles.put(row.instrumentId(), row);
+        }
+    }
+
+    void accept(InstrumentSyncRow row) {
+        accept(row, null, null);
+    }
+
+    /**
+     * 交入一列來源資料；underlyingSymbol / expiryDate 皆為 null 時不寫權證基本資料
+     */
+    void accept(InstrumentSyncRow row, String underlyingSymbol, LocalDate expiryDate) {
+        scanned++;
+        String key = row.syncKey();
+        if (!seen.add(key)) {
+            skipped++;
+            return;
+        }
+
+        InstrumentSyncRow current = existing.get(key);
+        boolean instrumentChanged = current == null
+                || (row.nameZh() != null && !row.nameZh().equals(current.nameZh()));
+        boolean hasProfile = underlyingSymbol != null || expiryDate != null;
+
+        if (current == null) {
+            pendingInstruments.put(key, row);
+            if (hasProfile) {
+                pendingNewProfiles.put(key, new WarrantProfileRow(null, underlyingSymbol, expiryDate));
+            }
+        } else {
+            boolean profileChanged = hasProfile && profileChanged(current.id(), underlyingSymbol, expiryDate);
+            if (profileChanged) {
+                pendingProfiles.add(new WarrantProfileRow(current.id(), underlyingSymbol, expiryDate));
+            }
+            if (instrumentChanged) {
+                // 計數在寫入後依回傳結果累加
+                pendingInstruments.put(key, row);
+            } else if (profileChanged) {
+                updated++;
+            } else {
+                skipped++;
+            }
+        }
+
+        if (pendingInstruments.size() >= batchSize || pendingProfiles.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 寫入剩餘的緩衝並回傳統計
+     */
+    Counts finish() {
+        flush();
+        return new Counts(scanned, added, updated, skipped, profilesWritten);
+    }
+
+    private void flush() {
+        if (!pendingInstruments.isEmpty()) {
+            Set<String> written = new HashSet<>();
+            for (InstrumentBatchRepository.UpsertedInstrument upserted
+                    : batchRepository.upsertAll(new ArrayList<>(pendingInstruments.values()))) {
+                String key = upserted.syncKey();
+                written.add(key);
+                if (upserted.inserted()) {
+                    added++;
+                } else {
+                    updated++;
+                }
+                WarrantProfileRow profile = pendingNewProfiles.remove(key);
+                if (profile != null) {
+                    pendingProfiles.add(new WarrantProfileRow(
+                            upserted.id(), profile.underlyingSymbol(), profile.expiryDate()));
+                }
+            }
+            for (String key : pendingInstruments.keySet()) {
+                if (!written.contains(key)) {
+                    // 同步期間已由其他來源寫入且名稱相同；權證基本資料留待下次同步比對
+                    skipped++;
+                    if (pendingNewProfiles.remove(key) != null) {
+                        log.debug("Instrument written concurrently, defer warrant profile: {}", key);
+                    }
+                }
+            }
+            pendingInstruments.clear();
+        }
+        if (!pendingProfiles.isEmpty()) {
+            profilesWritten += batchRepository.upsertWarrantProfiles(new ArrayList<>(pendingProfiles));
+            pendingProfiles.clear();
+        }
+    }
+
+    private boolean profileChanged(Long instrumentId, String underlyingSymbol, LocalDate expiryDate) {
+        WarrantProfileRow current = existingProfiles.get(instrumentId);
+        if (current == null) {
+            return true;
+        }
+        // 來源未提供的欄位沿用既有值，與 upsert 的 COALESCE 一致
+        return (underlyingSymbol != null && !underlyingSymbol.equals(current.underlyingSymbol()))
+                || (expiryDate != null && !Objects.equals(expiryDate, current.expiryDate()));
+    }
+
+    /**
+     * scanned 為來源列數（= added + updated + skipped）；updated 含只有權證基本資料變動的商品；
+     * skipped 含重複列與無變動的列；profiles 為實際寫入的權證基本資料列數
+     */
+    record Counts(int scanned, int added, int updated, int skipped, int profiles) {
+    }
+}
@@ -1,15 +1,11 @@
 package tw.bk.appstocks.service;
 
-import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import tw.bk.appcommon.enums.AssetType;
@@ -17,18 +13,23 @@ import tw.bk.appcommon.enums.ErrorCode;
 import tw.bk.appcommon.enums.InstrumentStatus;
 import tw.bk.appcommon.exception.BusinessException;
 import tw.bk.apppersistence.entity.ExchangeEntity;
-import tw.bk.apppersistence.entity.InstrumentEntity;
 import tw.bk.apppersistence.entity.MarketEntity;
 import tw.bk.apppersistence.repository.ExchangeRepository;
-import tw.bk.apppersistence.repository.InstrumentRepository;
+import tw.bk.apppersistence.repository.InstrumentBatchRepository;
+import tw.bk.apppersistence.repository.InstrumentSyncRow;
 import tw.bk.apppersistence.repository.MarketRepository;
+import tw.bk.apppersistence.repository.WarrantProfileRow;
 import tw.bk.appstocks.adapter.FugleClient;
 import tw.bk.appstocks.adapter.TpexWarrantClient;
 import tw.bk.appstocks.adapter.TwseIsinClient;
-import tw.bk.appstocks.adapter.dto.FugleTickerResponse;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.TickerItem;
 import tw.bk.appstocks.model.TickerList;
 import tw.bk.appstocks.model.TickerQuery;
 
+/**
+ * 台股商品主檔同步：來源清單逐列交給 {@link InstrumentSyncBatch} 與既有商品比對，只以多列 upsert 寫入新增與變動的列
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -37,97 +38,56 @@ public class InstrumentSyncService {
     private static final String EXCHANGE_TWSE = "TWSE";
     private static final String EXCHANGE_TPEX = "TPEx";
     private static final String ASSET_TYPE_STOCK = AssetType.STOCK.name();
-    private static final String ASSET_TYPE_ETF = AssetType.ETF.name();
     private static final String ASSET_TYPE_WARRANT = AssetType.WARRANT.name();
     private static final String STATUS_ACTIVE = InstrumentStatus.ACTIVE.name();
-    private static final Set<String> ETF_SECURITY_TYPES = Set.of(
-            "24", "25", "26", "28", "45", "46", "47", "48", "49");
+    private static final String KIND_EQUITY = "equity";
+    private static final String KIND_WARRANT = "warrant";
 
     private final FugleClient fugleClient;
     private final TwseIsinClient twseIsinClient;
     private final TpexWarrantClient tpexWarrantClient;
-    private final WarrantProfileService warrantProfileService;
     private final MarketRepository marketRepository;
     private final ExchangeRepository exchangeRepository;
-    private final InstrumentRepository instrumentRepository;
+    private final InstrumentBatchRepository instrumentBatchRepository;
+    private final InstrumentSearchIndexService instrumentSearchIndexService;
+    private final InstrumentCatalogService instrumentCatalogService;
+    private final InstrumentDetailEnricher instrumentDetailEnricher;
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
 
     @CacheEvict(value = "instrumentSearch", allEntries = true)
     public SyncResult syncTwEquityInstruments() {
-        MarketEntity market = marketRepository.findByCode(MARKET_TW)
-                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR, "TW market not found"));
-
-        ExchangeEntity twse = exchangeRepository.findByMarketIdAndCodeIgnoreCase(market.getId(), EXCHANGE_TWSE)
-                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR, "TWSE exchange not found"));
-        ExchangeEntity tpex = exchangeRepository.findByMarketIdAndCodeIgnoreCase(market.getId(), EXCHANGE_TPEX)
-                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR, "TPEx exchange not found"));
-
-        List<Seed> seeds = new ArrayList<>();
-        log.info("Fetching TWSE instruments...");
-        seeds.addAll(fetchSeeds(EXCHANGE_TWSE, market, twse));
-        log.info("TWSE fetch complete. Waiting 60 seconds before fetching TPEx to avoid rate limiting...");
-
-        // 延遲 60 秒以避免 Fugle API 速率限制 (429 Too Many Requests)
         try {
-            Thread.sleep(60_000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Sync interrupted");
-        }
-
-        log.info("Fetching TPEx instruments...");
-        seeds.addAll(fetchSeeds(EXCHANGE_TPEX, market, tpex));
-
-        if (seeds.isEmpty()) {
-            return new SyncResult(0, 0);
+            // 批次同步的外部呼叫排在使用者請求之後取得 permit
+            return VendorCallPriority.callAs(VendorCallPriority.BATCH, this::doSyncTwEquityInstruments);
+        } finally {
+            // 中途失敗時已寫入的商品也要能被搜尋到、進入商品目錄
+            instrumentSearchIndexService.scheduleRebuild();
+            instrumentCatalogService.scheduleReload();
+            // 新商品的英文名稱、幣別與 ETF 判定由背景補齊
+            instrumentDetailEnricher.requestScan();
         }
+    }
 
-        Set<String> allKeys = seeds.stream()
-                .map(seed -> buildSymbolKey(market.getCode(), seed.exchange().getMic(), seed.ticker()))
-                .collect(Collectors.toSet());
-
-        Set<String> existingKeys = instrumentRepository.findBySymbolKeyIn(new ArrayList<>(allKeys)).stream()
-                .map(InstrumentEntity::getSymbolKey)
-                .collect(Collectors.toSet());
-
-        int added = 0;
-        int skipped = 0;
-        Set<String> seen = new HashSet<>();
-
-        for (Seed seed : seeds) {
-            String symbolKey = buildSymbolKey(market.getCode(), seed.exchange().getMic(), seed.ticker());
-            if (!seen.add(symbolKey)) {
-                skipped++;
-                continue;
-            }
-            if (existingKeys.contains(symbolKey)) {
-                skipped++;
-                continue;
-            }
-
-            InstrumentEntity entity = new InstrumentEntity();
-            entity.setMarket(seed.market());
-            entity.setExchange(seed.exchange());
-            entity.setTicker(seed.ticker());
-            entity.setSymbolKey(symbolKey);
-            entity.setNameZh(seed.name());
-            entity.setNameEn(null);
-            entity.setCurrency(seed.market().getDefaultCurrency());
-            entity.setAssetType(ASSET_TYPE_STOCK);
-            entity.setStatus(STATUS_ACTIVE);
-            // 註釋掉以避免 Fugle API 限流 (429 Too Many Requests)
-            // 基本資料已足夠，詳細資料可之後單獨獲取
-            // applyTickerDetail(entity, seed.ticker());
-            try {
-                instrumentRepository.save(entity);
-                added++;
-            } catch (DataIntegrityViolationException ex) {
-                skipped++;
-                log.debug("Instrument already exists, skip: {}", symbolKey);
-            }
+    private SyncResult doSyncTwEquityInstruments() {
+        long startedAt = System.nanoTime();
+        try {
+            MarketEntity market = findTwMarket();
+            ExchangeEntity twse = findExchange(market, EXCHANGE_TWSE);
+            ExchangeEntity tpex = findExchange(market, EXCHANGE_TPEX);
+            InstrumentSyncBatch batch = newBatch(market, List.of());
+
+            // 兩個交易所接續抓取，不再固定等待：permit 由 Fugle 限流器的速率預算控管，遭 429 時依 Retry-After 暫停後重試
+            log.info("Fetching TWSE instruments...");
+            streamTickers(market, twse, EXCHANGE_TWSE, batch);
+            log.info("Fetching TPEx instruments...");
+            streamTickers(market, tpex, EXCHANGE_TPEX, batch);
+
+            return complete(KIND_EQUITY, batch.finish(), startedAt);
+        } catch (RuntimeException ex) {
+            metricsRecorder.recordInstrumentSync(KIND_EQUITY, "error", 0, 0, 0, 0L, System.nanoTime() - startedAt);
+            throw ex;
         }
-
-        log.info("Instrument sync done: added={}, skipped={}", added, skipped);
-        return new SyncResult(added, skipped);
     }
 
     /**
@@ -135,155 +95,166 @@ public class InstrumentSyncService {
      */
     @CacheEvict(value = "instrumentSearch", allEntries = true)
     public SyncResult syncTwWarrantInstruments() {
-        MarketEntity market = marketRepository.findByCode(MARKET_TW)
-                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR, "TW market not found"));
-
-        ExchangeEntity twse = exchangeRepository.findByMarketIdAndCodeIgnoreCase(market.getId(), EXCHANGE_TWSE)
-                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR, "TWSE exchange not found"));
-        ExchangeEntity tpex = exchangeRepository.findByMarketIdAndCodeIgnoreCase(market.getId(), EXCHANGE_TPEX)
-                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR, "TPEx exchange not found"));
-
-        List<WarrantSeed> seeds = new ArrayList<>();
+        try {
+            // 批次同步的外部呼叫排在使用者請求之後取得 permit
+            return VendorCallPriority.callAs(VendorCallPriority.BATCH, this::doSyncTwWarrantInstruments);
+        } finally {
+            // 中途失敗時已寫入的商品也要能被搜尋到、進入商品目錄
+            instrumentSearchIndexService.scheduleRebuild();
+            instrumentCatalogService.scheduleReload();
+            // 新商品的英文名稱、幣別與 ETF 判定由背景補齊
+            instrumentDetailEnricher.requestScan();
+        }
+    }
 
-        // Fetch TWSE warrants
-        log.info("Fetching TWSE warrants...");
+    private SyncResult doSyncTwWarrantInstruments() {
+        long startedAt = System.nanoTime();
         try {
-            List<TwseIsinClient.TwseIsinItem> twseWarrants = twseIsinClient.fetchWarrants();
+            MarketEntity market = findTwMarket();
+            ExchangeEntity twse = findExchange(market, EXCHANGE_TWSE);
+            ExchangeEntity tpex = findExchange(market, EXCHANGE_TPEX);
+            InstrumentSyncBatch batch = newBatch(market, instrumentBatchRepository.findWarrantProfiles(market.getId()));
+
+            log.info("Fetching TWSE warrants...");
+            List<TwseIsinClient.TwseIsinItem> twseWarrants = fetchWarrants("TWSE", twseIsinClient::fetchWarrants);
             for (TwseIsinClient.TwseIsinItem item : twseWarrants) {
-                seeds.add(new WarrantSeed(market, twse, item.code(), item.name(), null, null));
+                batch.accept(newRow(market, twse, item.code(), item.name(), ASSET_TYPE_WARRANT));
             }
             log.info("TWSE warrants fetched: {}", twseWarrants.size());
-        } catch (Exception ex) {
-            log.warn("Failed to fetch TWSE warrants: {}", ex.getMessage());
-        }
 
-        // Fetch TPEx warrants
-        log.info("Fetching TPEx warrants...");
-        try {
-            List<TpexWarrantClient.TpexWarrantItem> tpexWarrants = tpexWarrantClient.fetchWarrants();
+            log.info("Fetching TPEx warrants...");
+            List<TpexWarrantClient.TpexWarrantItem> tpexWarrants =
+                    fetchWarrants("TPEx", tpexWarrantClient::fetchWarrants);
             for (TpexWarrantClient.TpexWarrantItem item : tpexWarrants) {
-                seeds.add(new WarrantSeed(market, tpex, item.code(), item.name(),
-                        item.underlyingSymbol(), item.expiryDate()));
+                batch.accept(newRow(market, tpex, item.code(), item.name(), ASSET_TYPE_WARRANT),
+                        item.underlyingSymbol(), item.expiryDate());
             }
             log.info("TPEx warrants fetched: {}", tpexWarrants.size());
-        } catch (Exception ex) {
-            log.warn("Failed to fetch TPEx warrants: {}", ex.getMessage());
-        }
 
-        if (seeds.isEmpty()) {
-            log.info("No warrants to sync");
-            return new SyncResult(0, 0);
+            return complete(KIND_WARRANT, batch.finish(), startedAt);
+        } catch (RuntimeException ex) {
+            metricsRecorder.recordInstrumentSync(KIND_WARRANT, "error", 0, 0, 0, 0L, System.nanoTime() - startedAt);
+            throw ex;
         }
+    }
 
-        Set<String> allKeys = seeds.stream()
-                .map(seed -> buildSymbolKey(market.getCode(), seed.exchange().getMic(), seed.ticker()))
-                .collect(Collectors.toSet());
+    private MarketEntity findTwMarket() {
+        return marketRepository.findByCode(MARKET_TW)
+                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR, "TW market not found"));
+    }
 
-        Set<String> existingKeys = instrumentRepository.findBySymbolKeyIn(new ArrayList<>(allKeys)).stream()
-                .map(InstrumentEntity::getSymbolKey)
-                .collect(Collectors.toSet());
+    private ExchangeEntity findExchange(MarketEntity market, String exchangeCode) {
+        return exchangeRepository.findByMarketIdAndCodeIgnoreCase(market.getId(), exchangeCode)
+                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR,
+                        exchangeCode + " exchange not found"));
+    }
 
-        int added = 0;
-        int skipped = 0;
-        Set<String> seen = new HashSet<>();
+    /**
+     * 同步前一次載入市場內既有商品（與權證基本資料），之後逐列在記憶體比對
+     */
+    private InstrumentSyncBatch newBatch(MarketEntity market, List<WarrantProfileRow> existingProfiles) {
+        List<InstrumentSyncRow> existing = instrumentBatchRepository.findSyncRows(market.getId());
+        log.info("Instrument sync preloaded: market={}, instruments={}, warrant_profiles={}",
+                market.getCode(), existing.size(), existingProfiles.size());
+        return new InstrumentSyncBatch(
+                instrumentBatchRepository,
+                properties.getInstrumentSync().getBatchSize(),
+                existing,
+                existingProfiles);
+    }
 
-        for (WarrantSeed seed : seeds) {
-            String symbolKey = buildSymbolKey(market.getCode(), seed.exchange().getMic(), seed.ticker());
-            if (!seen.add(symbolKey)) {
-                skipped++;
-                continue;
-            }
-            if (existingKeys.contains(symbolKey)) {
-                skipped++;
+    private void streamTickers(
+            MarketEntity market, ExchangeEntity exchange, String exchangeCode, InstrumentSyncBatch batch) {
+        TickerList list = fetchTickers(exchangeCode);
+        if (list.getData() == null) {
+            return;
+        }
+        for (TickerItem item : list.getData()) {
+            if (item.getSymbol() == null || item.getSymbol().isBlank()) {
                 continue;
             }
-
-            InstrumentEntity entity = new InstrumentEntity();
-            entity.setMarket(seed.market());
-            entity.setExchange(seed.exchange());
-            entity.setTicker(seed.ticker());
-            entity.setSymbolKey(symbolKey);
-            entity.setNameZh(seed.name());
-            entity.setNameEn(null);
-            entity.setCurrency(seed.market().getDefaultCurrency());
-            entity.setAssetType(ASSET_TYPE_WARRANT);
-            entity.setStatus(STATUS_ACTIVE);
-
-            try {
-                InstrumentEntity saved = instrumentRepository.save(entity);
-                // Save warrant profile if we have underlying or expiry info
-                if (seed.underlyingSymbol() != null || seed.expiryDate() != null) {
-                    warrantProfileService.upsert(saved.getId(), seed.underlyingSymbol(), seed.expiryDate());
-                }
-                added++;
-            } catch (DataIntegrityViolationException ex) {
-                skipped++;
-                log.debug("Warrant instrument already exists, skip: {}", symbolKey);
-            }
+            String ticker = item.getSymbol().trim().toUpperCase(Locale.ROOT);
+            batch.accept(newRow(market, exchange, ticker, item.getName(), ASSET_TYPE_STOCK));
         }
-
-        log.info("Warrant sync done: added={}, skipped={}", added, skipped);
-        return new SyncResult(added, skipped);
     }
 
-    private List<Seed> fetchSeeds(String exchangeCode, MarketEntity market, ExchangeEntity exchange) {
+    /**
+     * 遭 429 時有限次重試：限流器已依 Retry-After 暫停該 vendor，下一次取得 permit 會等到暫停結束
+     */
+    private TickerList fetchTickers(String exchangeCode) {
         TickerQuery query = TickerQuery.builder()
                 .type("EQUITY")
                 .exchange(exchangeCode)
                 .build();
-
-        TickerList list = fugleClient.getTickers(query)
-                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR,
-                        "Fugle tickers empty for exchange: " + exchangeCode));
-
-        if (list.getData() == null || list.getData().isEmpty()) {
-            return List.of();
+        int retries = Math.max(properties.getInstrumentSync().getRateLimitedRetries(), 0);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return fugleClient.getTickers(query)
+                        .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR,
+                                "Fugle tickers empty for exchange: " + exchangeCode));
+            } catch (BusinessException ex) {
+                if (ex.getErrorCode() != ErrorCode.RATE_LIMITED || attempt >= retries) {
+                    throw ex;
+                }
+                log.warn("Fugle tickers rate limited, retrying: exchange={}, attempt={}/{}, details={}",
+                        exchangeCode, attempt + 1, retries, ex.getDetails());
+            }
         }
-
-        return list.getData().stream()
-                .filter(item -> item.getSymbol() != null && !item.getSymbol().isBlank())
-                .map(item -> new Seed(
-                        market,
-                        exchange,
-                        item.getSymbol().trim().toUpperCase(Locale.ROOT),
-                        item.getName()))
-                .toList();
     }
 
-    private String buildSymbolKey(String marketCode, String mic, String ticker) {
-        return marketCode + ":" + mic + ":" + ticker;
-    }
-
-    private void applyTickerDetail(InstrumentEntity entity, String ticker) {
-        FugleTickerResponse detail = fugleClient.getTickerDetail(ticker).orElse(null);
-        if (detail == null) {
-            return;
-        }
-        if (detail.getNameEn() != null && !detail.getNameEn().isBlank()) {
-            entity.setNameEn(detail.getNameEn().trim());
-        }
-        if (detail.getTradingCurrency() != null && !detail.getTradingCurrency().isBlank()) {
-            entity.setCurrency(detail.getTradingCurrency().trim().toUpperCase(Locale.ROOT));
-        }
-        if (isEtf(detail.getSecurityType())) {
-            entity.setAssetType(ASSET_TYPE_ETF);
+    /**
+     * 單一來源失敗不影響另一個來源
+     */
+    private <T> List<T> fetchWarrants(String source, Supplier<List<T>> fetch) {
+        try {
+            return fetch.get();
+        } catch (Exception ex) {
+            log.warn("Failed to fetch {} warrants: {}", source, ex.getMessage());
+            return List.of();
         }
     }
 
-    private boolean isEtf(String securityType) {
-        if (securityType == null || securityType.isBlank()) {
-            return false;
-        }
-        return ETF_SECURITY_TYPES.contains(securityType.trim());
+    private InstrumentSyncRow newRow(
+            MarketEntity market, ExchangeEntity exchange, String ticker, String name, String assetType) {
+        return new InstrumentSyncRow(
+                null,
+                market.getId(),
+                exchange.getId(),
+                ticker,
+                buildSymbolKey(market.getCode(), exchange.getMic(), ticker),
+                name,
+                market.getDefaultCurrency(),
+                assetType,
+                STATUS_ACTIVE);
     }
 
-    private record Seed(MarketEntity market, ExchangeEntity exchange, String ticker, String name) {
+    private SyncResult complete(String kind, InstrumentSyncBatch.Counts counts, long startedAt) {
+        long elapsedNanos = System.nanoTime() - startedAt;
+        SyncResult result = new SyncResult(
+                counts.scanned(),
+                counts.added(),
+                counts.updated(),
+                counts.skipped(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        metricsRecorder.recordInstrumentSync(kind, "success", counts.added(), counts.updated(), counts.skipped(),
+                result.rowsPerSecond(), elapsedNanos);
+        log.info("Instrument sync done: kind={}, scanned={}, added={}, updated={}, skipped={}, warrant_profiles={}, "
+                        + "took={} ms, rows_per_sec={}",
+                kind, counts.scanned(), counts.added(), counts.updated(), counts.skipped(), counts.profiles(),
+                result.elapsedMs(), result.rowsPerSecond());
+        return result;
     }
 
-    private record WarrantSeed(MarketEntity market, ExchangeEntity exchange, String ticker, String name,
-            String underlyingSymbol, LocalDate expiryDate) {
+    private String buildSymbolKey(String marketCode, String mic, String ticker) {
+        return marketCode + ":" + mic + ":" + ticker;
     }
 
-    public record SyncResult(int added, int skipped) {
+    /**
+     * scanned = added + updated + skipped；elapsedMs 為整次同步（含外部抓取）的牆鐘時間
+     */
+    public record SyncResult(int scanned, int added, int updated, int skipped, long elapsedMs) {
+        public long rowsPerSecond() {
+            return elapsedMs <= 0 ? scanned : scanned * 1000L / elapsedMs;
+        }
     }
 }
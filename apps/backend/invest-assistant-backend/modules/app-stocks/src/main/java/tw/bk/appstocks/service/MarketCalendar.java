@@ -0,0 +1,221 @@
+package tw.bk.appstocks.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appcommon.time.ClockProvider;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 市場交易日曆
+ * 依 MarketCode 提供交易時段、週末與設定的休市日，並據以決定報價快取 TTL：
+ * 盤中（含收盤後 settle 緩衝）使用短 TTL，收盤後快取到下次開盤
+ */
+@Service
+@RequiredArgsConstructor
+public class MarketCalendar {
+    /**
+     * 往前/往後搜尋交易日的上限（天），避免休市設定錯誤時無限迴圈
+     */
+    private static final int MAX_SCAN_DAYS = 30;
+
+    private final StockMarketProperties properties;
+    private final ClockProvider clockProvider;
+    private Map<MarketCode, MarketSession> sessions = Map.of();
+
+    @PostConstruct
+    void initSessions() {
+        StockMarketProperties.Calendar config = properties.getCalendar();
+        Map<MarketCode, MarketSession> resolved = new EnumMap<>(MarketCode.class);
+        resolved.put(MarketCode.TW, MarketSession.from(config.getTw()));
+        resolved.put(MarketCode.US, MarketSession.from(config.getUs()));
+        sessions = resolved;
+    }
+
+    /**
+     * 市場所在時區
+     */
+    public ZoneId zoneOf(MarketCode market) {
+        return session(market).zone();
+    }
+
+    /**
+     * 開盤時間（市場當地時間，盤中 K 線區段對齊用）
+     */
+    public LocalTime sessionOpen(MarketCode market) {
+        return session(market).open();
+    }
+
+    /**
+     * 市場當地的今天
+     */
+    public LocalDate today(MarketCode market) {
+        return clockProvider.now().atZone(zoneOf(market)).toLocalDate();
+    }
+
+    /**
+     * 是否為交易日（非週末且不在休市清單）
+     */
+    public boolean isTradingDay(MarketCode market, LocalDate date) {
+        return date != null && session(market).isTradingDay(date);
+    }
+
+    /**
+     * 指定時間是否在交易時段內
+     */
+    public boolean isOpen(MarketCode market, Instant at) {
+        MarketSession session = session(market);
+        LocalDate date = at.atZone(session.zone()).toLocalDate();
+        return session.isTradingDay(date)
+                && !at.isBefore(session.openAt(date))
+                && at.isBefore(session.closeAt(date));
+    }
+
+    /**
+     * 指定時間之後（含）最近一次開盤時間；找不到時回傳 null
+     */
+    public Instant nextOpen(MarketCode market, Instant at) {
+        MarketSession session = session(market);
+        LocalDate date = at.atZone(session.zone()).toLocalDate();
+        for (int i = 0; i <= MAX_SCAN_DAYS; i++) {
+            LocalDate candidate = date.plusDays(i);
+            if (session.isTradingDay(candidate) && !session.openAt(candidate).isBefore(at)) {
+                return session.openAt(candidate);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 最近一個已收盤（含 settle 緩衝）的交易日，該日以前的日 K 視為定案；找不到時回傳 null
+     */
+    public LocalDate lastSettledDate(MarketCode market) {
+        return lastSettledDate(session(market), clockProvider.now());
+    }
+
+    /**
+     * 報價快取 TTL
+     * 盤中（開盤至收盤 + settleDelay）回傳 intradayTtlMs；收盤後若報價已涵蓋最近一個交易日，快取到下次開盤，
+     * 否則（例如 EOD 資料尚未更新）維持 intradayTtlMs 持續輪詢
+     *
+     * @param quoteTime 報價時間（用於判斷資料是否已涵蓋最近一個交易日）
+     */
+    public long quoteTtlMs(MarketCode market, Instant quoteTime, long intradayTtlMs) {
+        Instant now = clockProvider.now();
+        MarketSession session = session(market);
+        if (isActive(session, now)) {
+            return intradayTtlMs;
+        }
+        LocalDate settledDate = lastSettledDate(session, now);
+        if (settledDate == null || !covers(session, quoteTime, settledDate)) {
+            return intradayTtlMs;
+        }
+        Instant next = nextOpen(market, now);
+        if (next == null) {
+            return intradayTtlMs;
+        }
+        long ttl = Math.max(intradayTtlMs, Duration.between(now, next).toMillis());
+        long cap = properties.getCalendar().getClosedTtlMaxMs();
+        return cap > 0L ? Math.min(ttl, Math.max(intradayTtlMs, cap)) : ttl;
+    }
+
+    /**
+     * 市場已收盤且快取內容已是最終行情（收盤 settle 後才寫入，且報價日期涵蓋最近交易日），無須再刷新
+     */
+    public boolean isSettled(MarketCode market, Instant quoteTime, Instant cachedAt) {
+        Instant now = clockProvider.now();
+        MarketSession session = session(market);
+        if (cachedAt == null || isActive(session, now)) {
+            return false;
+        }
+        LocalDate settledDate = lastSettledDate(session, now);
+        return settledDate != null
+                && !cachedAt.isBefore(session.settleAt(settledDate, settleDelay()))
+                && covers(session, quoteTime, settledDate);
+    }
+
+    private boolean isActive(MarketSession session, Instant now) {
+        LocalDate date = now.atZone(session.zone()).toLocalDate();
+        return session.isTradingDay(date)
+                && !now.isBefore(session.openAt(date))
+                && now.isBefore(session.settleAt(date, settleDelay()));
+    }
+
+    /**
+     * 最近一個已過 settle 時間的交易日
+     */
+    private LocalDate lastSettledDate(MarketSession session, Instant now) {
+        LocalDate date = now.atZone(session.zone()).toLocalDate();
+        for (int i = 0; i <= MAX_SCAN_DAYS; i++) {
+            LocalDate candidate = date.minusDays(i);
+            if (session.isTradingDay(candidate) && !now.isBefore(session.settleAt(candidate, settleDelay()))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private boolean covers(MarketSession session, Instant quoteTime, LocalDate settledDate) {
+        return quoteTime != null && !quoteTime.atZone(session.zone()).toLocalDate().isBefore(settledDate);
+    }
+
+    private Duration settleDelay() {
+        return Duration.ofMillis(Math.max(0L, properties.getCalendar().getSettleDelayMs()));
+    }
+
+    private MarketSession session(MarketCode market) {
+        MarketSession session = sessions.get(market);
+        if (session == null) {
+            throw new IllegalStateException("未設定市場交易日曆: " + market);
+        }
+        return session;
+    }
+
+    private record MarketSession(ZoneId zone, LocalTime open, LocalTime close, Set<LocalDate> holidays) {
+
+        static MarketSession from(StockMarketProperties.Session config) {
+            Set<LocalDate> holidays = new HashSet<>();
+            if (config.getHolidays() != null) {
+                for (String holiday : config.getHolidays()) {
+                    if (holiday != null && !holiday.isBlank()) {
+                        holidays.add(LocalDate.parse(holiday.trim()));
+                    }
+                }
+            }
+            return new MarketSession(
+                    ZoneId.of(config.getZone()),
+                    LocalTime.parse(config.getOpen()),
+                    LocalTime.parse(config.getClose()),
+                    Set.copyOf(holidays));
+        }
+
+        boolean isTradingDay(LocalDate date) {
+            DayOfWeek day = date.getDayOfWeek();
+            return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY && !holidays.contains(date);
+        }
+
+        Instant openAt(LocalDate date) {
+            return date.atTime(open).atZone(zone).toInstant();
+        }
+
+        Instant closeAt(LocalDate date) {
+            return date.atTime(close).atZone(zone).toInstant();
+        }
+
+        Instant settleAt(LocalDate date, Duration settleDelay) {
+            return closeAt(date).plus(settleDelay);
+        }
+    }
+}
@@ -1,42 +1,191 @@
 package tw.bk.appstocks.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleCacheEntry;
+import tw.bk.appstocks.model.Quote;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * 股票資料快取服務
+ * 兩層快取：本機 L1（Caffeine，短 TTL）→ Redis L2；寫入/刪除時透過 Redis pub/sub 通知其他節點清除 L1。
+ * L1 每筆的存活時間取 {@code localTtl} 與該 key 在 Redis 剩餘 TTL 的較小者（PTTL 與 GET/MGET 以同一個 pipeline 取得），不會比 Redis 活得久；
+ * L1 的值放入與讀出時都複製，呼叫端拿到的物件不與快取共用
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class StockCacheService {
+    static final String TIER_LOCAL = "l1";
+    static final String TIER_REDIS = "l2";
+    private static final char INVALIDATION_SEPARATOR = '|';
+    private static final char INVALIDATION_KEY_SEPARATOR = '\n';
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    @Qualifier("stockCacheRedisTemplate")
+    private final RedisTemplate<String, Object> stockCacheRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
+    private final String nodeId = UUID.randomUUID().toString();
+    private Cache<String, Object> localCache;
+    private Policy.VarExpiration<String, Object> localExpiry;
+    private long localTtlMs;
+
+    @PostConstruct
+    void initLocalCache() {
+        StockMarketProperties.Cache config = properties.getCache();
+        if (!config.isLocalEnabled()) {
+            return;
+        }
+        long ttlMs = config.getLocalTtl();
+        if (ttlMs <= 0L) {
+            return;
+        }
+        localTtlMs = ttlMs;
+        localCache = Caffeine.newBuilder()
+                .expireAfter(Expiry.<String, Object>writing((key, value) -> Duration.ofMillis(ttlMs)))
+                .maximumSize(Math.max(1L, config.getLocalMaxSize()))
+                .build();
+        localExpiry = localCache.policy().expireVariably().orElseThrow();
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onInvalidation(message),
+                new ChannelTopic(config.getInvalidationChannel()));
+    }
 
     /**
      * 從快取取得資料
      */
     public <T> Optional<T> get(String key, Class<T> type) {
+        Object local = getLocal(key);
+        if (type.isInstance(local)) {
+            return Optional.of(type.cast(local));
+        }
         try {
-            Object value = redisTemplate.opsForValue().get(key);
+            Object value = getRemote(key);
             if (value == null) {
+                metricsRecorder.recordCacheTierMiss(TIER_REDIS, typeOf(key));
                 return Optional.empty();
             }
+            metricsRecorder.recordCacheTierHit(TIER_REDIS, typeOf(key));
             return Optional.of(type.cast(value));
         } catch (Exception e) {
             return Optional.empty();
         }
     }
 
+    /**
+     * 批次從快取取得資料（單次 MGET），只回傳有命中的 key
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> multiGet(Collection<String> keys, Class<T> type) {
+        if (keys == null || keys.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, T> result = new LinkedHashMap<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : keys) {
+            Object local = getLocal(key);
+            if (type.isInstance(local)) {
+                result.put(key, type.cast(local));
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return result;
+        }
+        try {
+            List<Object> values;
+            List<Object> ttls = List.of();
+            if (localCache == null) {
+                values = stockCacheRedisTemplate.opsForValue().multiGet(remoteKeys);
+            } else {
+                List<Object> replies = pipelineWithTtl(remoteKeys, ops -> ops.multiGet(remoteKeys));
+                values = replies.isEmpty() ? null : (List<Object>) replies.get(0);
+                ttls = replies.size() > 1 ? replies.subList(1, replies.size()) : List.of();
+            }
+            for (int i = 0; i < remoteKeys.size(); i++) {
+                String key = remoteKeys.get(i);
+                Object value = values != null && i < values.size() ? values.get(i) : null;
+                if (type.isInstance(value)) {
+                    metricsRecorder.recordCacheTierHit(TIER_REDIS, typeOf(key));
+                    putLocal(key, value, toRemainingMs(i < ttls.size() ? ttls.get(i) : null));
+                    result.put(key, type.cast(value));
+                } else {
+                    metricsRecorder.recordCacheTierMiss(TIER_REDIS, typeOf(key));
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Redis MGET failed: size={}, error={}", remoteKeys.size(), e.getMessage());
+        }
+        return result;
+    }
+
     /**
      * 寫入快取
      */
     public void set(String key, Object value, long ttlMs) {
-        redisTemplate.opsForValue().set(key, value, Duration.ofMillis(ttlMs));
+        stockCacheRedisTemplate.opsForValue().set(key, value, Duration.ofMillis(ttlMs));
+        putLocal(key, value, ttlMs);
+        publishInvalidation(key);
+    }
+
+    /**
+     * 批次寫入快取：所有 SET 以單一 pipeline 送出，L1 失效通知合併為一則訊息
+     */
+    public void setAll(List<Write> writes) {
+        if (writes == null || writes.isEmpty()) {
+            return;
+        }
+        stockCacheRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                ValueOperations<String, Object> values = (ValueOperations<String, Object>) operations.opsForValue();
+                for (Write write : writes) {
+                    values.set(write.key(), write.value(), Duration.ofMillis(write.ttlMs()));
+                }
+                return null;
+            }
+        });
+        StringBuilder keys = new StringBuilder();
+        for (Write write : writes) {
+            putLocal(write.key(), write.value(), write.ttlMs());
+            if (!keys.isEmpty()) {
+                keys.append(INVALIDATION_KEY_SEPARATOR);
+            }
+            keys.append(write.key());
+        }
+        publishInvalidation(keys.toString());
     }
 
     /**
@@ -44,28 +193,211 @@ public class StockCacheService {
      */
     @SuppressWarnings("unchecked")
     public <T> Optional<List<T>> getList(String key, Class<T> type) {
+        Object local = getLocal(key);
+        if (local instanceof List<?>) {
+            return Optional.of((List<T>) local);
+        }
         try {
-            Object value = redisTemplate.opsForValue().get(key);
+            Object value = getRemote(key);
             if (value == null) {
+                metricsRecorder.recordCacheTierMiss(TIER_REDIS, typeOf(key));
                 return Optional.empty();
             }
+            metricsRecorder.recordCacheTierHit(TIER_REDIS, typeOf(key));
             return Optional.of((List<T>) value);
         } catch (Exception e) {
             return Optional.empty();
         }
     }
 
+    /**
+     * 從 Redis 取得列表資料與該 key 的剩餘 TTL（GET 與 PTTL 同一個 pipeline，不經 L1）；
+     * 供呼叫端自行保留由此衍生的資料（如索引）時，以剩餘 TTL 限制保留時間，不比 Redis 的副本活得久
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Optional<Expiring<List<T>>> getListWithTtl(String key, Class<T> type) {
+        try {
+            List<Object> replies = pipelineWithTtl(List.of(key), ops -> ops.get(key));
+            Object value = replies.isEmpty() ? null : replies.get(0);
+            if (!(value instanceof List<?>)) {
+                metricsRecorder.recordCacheTierMiss(TIER_REDIS, typeOf(key));
+                return Optional.empty();
+            }
+            metricsRecorder.recordCacheTierHit(TIER_REDIS, typeOf(key));
+            Object pttl = replies.size() > 1 ? replies.get(1) : null;
+            long remainingMs = Long.valueOf(-1L).equals(pttl) ? Long.MAX_VALUE : toRemainingMs(pttl);
+            return Optional.of(new Expiring<>((List<T>) value, remainingMs));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
     /**
      * 寫入列表快取
      */
     public <T> void setList(String key, List<T> value, long ttlMs) {
-        redisTemplate.opsForValue().set(key, value, Duration.ofMillis(ttlMs));
+        stockCacheRedisTemplate.opsForValue().set(key, value, Duration.ofMillis(ttlMs));
+        putLocal(key, value, ttlMs);
+        publishInvalidation(key);
     }
 
     /**
      * 刪除快取
      */
     public void delete(String key) {
-        redisTemplate.delete(key);
+        stockCacheRedisTemplate.delete(key);
+        if (localCache != null) {
+            localCache.invalidate(key);
+        }
+        publishInvalidation(key);
+    }
+
+    private Object getLocal(String key) {
+        if (localCache == null) {
+            return null;
+        }
+        Object value = localCache.getIfPresent(key);
+        if (value == null) {
+            metricsRecorder.recordCacheTierMiss(TIER_LOCAL, typeOf(key));
+        } else {
+            metricsRecorder.recordCacheTierHit(TIER_LOCAL, typeOf(key));
+        }
+        return detach(value);
+    }
+
+    /**
+     * @param remainingMs 該 key 在 Redis 的剩餘 TTL；L1 只保留 min(localTtl, remainingMs)，不大於 0 時不放入
+     */
+    private void putLocal(String key, Object value, long remainingMs) {
+        if (localCache == null || value == null) {
+            return;
+        }
+        long ttlMs = Math.min(localTtlMs, remainingMs);
+        if (ttlMs <= 0L) {
+            localCache.invalidate(key);
+            return;
+        }
+        localExpiry.put(key, detach(value), Duration.ofMillis(ttlMs));
+    }
+
+    /**
+     * 讀取 Redis 並放入 L1；L1 啟用時 GET 與 PTTL 以同一個 pipeline 送出，只需一次往返
+     */
+    private Object getRemote(String key) {
+        if (localCache == null) {
+            return stockCacheRedisTemplate.opsForValue().get(key);
+        }
+        List<Object> replies = pipelineWithTtl(List.of(key), ops -> ops.get(key));
+        Object value = replies.isEmpty() ? null : replies.get(0);
+        if (value != null) {
+            putLocal(key, value, toRemainingMs(replies.size() > 1 ? replies.get(1) : null));
+        }
+        return value;
+    }
+
+    /**
+     * 讀取指令與各 key 的 PTTL 以單一 pipeline 送出；回傳的第一筆為讀取結果，其後依序為各 key 的 PTTL
+     */
+    private List<Object> pipelineWithTtl(List<String> keys, Consumer<ValueOperations<String, Object>> read) {
+        List<Object> replies = stockCacheRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                read.accept(ops.opsForValue());
+                for (String key : keys) {
+                    ops.getExpire(key, TimeUnit.MILLISECONDS);
+                }
+                return null;
+            }
+        });
+        return replies == null ? List.of() : replies;
+    }
+
+    /**
+     * PTTL：-1 表示未設定過期（只受 localTtl 限制），-2 表示已不存在
+     */
+    private long toRemainingMs(Object pttl) {
+        if (!(pttl instanceof Long ms)) {
+            return 0L;
+        }
+        return ms == -1L ? localTtlMs : ms;
+    }
+
+    /**
+     * L1 與呼叫端不共用物件：放入與讀出時各複製一份（報價、K 線與列表），
+     * 呼叫端修改或排序回傳值不會影響同節點其他請求，行為與每次自 Redis 反序列化相同
+     */
+    private static Object detach(Object value) {
+        if (value instanceof Quote quote) {
+            return quote.toBuilder().build();
+        }
+        if (value instanceof CandleCacheEntry entry) {
+            List<Candle> candles = null;
+            if (entry.getCandles() != null) {
+                candles = new ArrayList<>(entry.getCandles().size());
+                for (Candle candle : entry.getCandles()) {
+                    candles.add(candle == null ? null : candle.toBuilder().build());
+                }
+            }
+            return new CandleCacheEntry(candles, entry.getCachedAt());
+        }
+        if (value instanceof List<?> list) {
+            return new ArrayList<>(list);
+        }
+        return value;
+    }
+
+    private void publishInvalidation(String key) {
+        if (localCache == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(
+                    properties.getCache().getInvalidationChannel(),
+                    nodeId + INVALIDATION_SEPARATOR + key);
+        } catch (Exception e) {
+            log.debug("Publish cache invalidation failed: key={}, error={}", key, e.getMessage());
+        }
+    }
+
+    void onInvalidation(Message message) {
+        if (localCache == null || message == null || message.getBody() == null) {
+            return;
+        }
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = payload.indexOf(INVALIDATION_SEPARATOR);
+        if (separator <= 0 || separator == payload.length() - 1) {
+            return;
+        }
+        if (nodeId.equals(payload.substring(0, separator))) {
+            return;
+        }
+        // 批次寫入時一則訊息帶多個 key
+        for (String key : payload.substring(separator + 1).split(String.valueOf(INVALIDATION_KEY_SEPARATOR))) {
+            if (!key.isEmpty()) {
+                localCache.invalidate(key);
+            }
+        }
+    }
+
+    private String typeOf(String key) {
+        if (key == null) {
+            return "unknown";
+        }
+        int separator = key.indexOf(':');
+        return separator > 0 ? key.substring(0, separator) : key;
+    }
+
+    /**
+     * 批次寫入的單筆資料
+     */
+    public record Write(String key, Object value, long ttlMs) {
+    }
+
+    /**
+     * 快取值與其在 Redis 的剩餘 TTL（毫秒；未設定過期時為 {@link Long#MAX_VALUE}）
+     */
+    public record Expiring<T>(T value, long remainingMs) {
     }
 }
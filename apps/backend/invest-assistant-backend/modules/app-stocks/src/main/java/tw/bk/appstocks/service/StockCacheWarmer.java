@@ -0,0 +1,338 @@
+package tw.bk.appstocks.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appcommon.time.ClockProvider;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.QuoteWarmResult;
+import tw.bk.apppersistence.repository.UserPositionRepository;
+
+/**
+ * 報價快取預熱
+ * 收集所有使用者持倉（{@code user_positions}）與近期被查詢的 symbolKey，依 {@link MarketCalendar} 於
+ * 開盤前（pre_open）、盤中每 {@code session-interval-ms}（session）與收盤 settle 後（post_close）分批刷新報價，
+ * 讓第一個打開投資組合的使用者不必等待外部 API。批次以 BATCH 優先權取得 permit，使用者請求優先；
+ * 一批完全刷新失敗（限流或斷路）即中止本輪。多節點時每一輪以 Redis key 選出一個節點執行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockCacheWarmer implements ApplicationRunner {
+    static final String VIEWED_KEY = "stock:warmer:viewed";
+    private static final String WAVE_KEY_PREFIX = "stock:warmer:wave:";
+    private static final Duration VIEW_RECORD_INTERVAL = Duration.ofMinutes(1);
+
+    private final UserPositionRepository userPositionRepository;
+    private final StockQuoteService stockQuoteService;
+    private final MarketCalendar marketCalendar;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
+    private final ClockProvider clockProvider;
+    private final ConcurrentHashMap<MarketCode, WaveState> waveStates = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Cache<String, Boolean> recentlyRecorded = Caffeine.newBuilder()
+            .expireAfterWrite(VIEW_RECORD_INTERVAL)
+            .maximumSize(10_000)
+            .build();
+
+    enum Wave {
+        STARTUP, PRE_OPEN, SESSION, POST_CLOSE;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * 記錄被查詢的商品；同一節點每分鐘對同一 symbolKey 最多寫一次 Redis
+     */
+    public void recordViewed(Collection<String> symbolKeys) {
+        StockMarketProperties.Warmer config = properties.getWarmer();
+        if (!config.isEnabled() || config.getMaxRecent() <= 0 || symbolKeys == null) {
+            return;
+        }
+        long now = clockProvider.now().toEpochMilli();
+        for (String symbolKey : symbolKeys) {
+            if (symbolKey == null || symbolKey.isBlank() || recentlyRecorded.getIfPresent(symbolKey) != null) {
+                continue;
+            }
+            recentlyRecorded.put(symbolKey, Boolean.TRUE);
+            try {
+                stringRedisTemplate.opsForZSet().add(VIEWED_KEY, symbolKey, now);
+            } catch (RuntimeException ex) {
+                log.debug("Record viewed symbol failed: symbolKey={}, error={}", symbolKey, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 啟動預熱；{@code block-readiness} 時等待完成（最多 {@code startup-timeout-ms}）才讓 Spring Boot 回報 readiness
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        StockMarketProperties.Warmer config = properties.getWarmer();
+        if (!config.isEnabled() || !config.isWarmOnStartup()) {
+            return;
+        }
+        CompletableFuture<Void> warm = new CompletableFuture<>();
+        Thread.ofPlatform().name("stock-cache-warmer").daemon().start(() -> {
+            try {
+                warmAll(Wave.STARTUP);
+                warm.complete(null);
+            } catch (RuntimeException ex) {
+                warm.completeExceptionally(ex);
+            }
+        });
+        if (!config.isBlockReadiness()) {
+            return;
+        }
+        try {
+            warm.get(config.getStartupTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            log.warn("Startup cache warm still running after {} ms, continuing startup", config.getStartupTimeoutMs());
+        } catch (ExecutionException ex) {
+            log.warn("Startup cache warm failed: {}", ex.getCause() == null ? ex.getMessage() : ex.getCause().getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stock.warmer.tick-ms:60000}", initialDelayString = "${stock.warmer.tick-ms:60000}")
+    public void tick() {
+        if (!properties.getWarmer().isEnabled()) {
+            return;
+        }
+        Instant now = clockProvider.now();
+        for (MarketCode market : markets()) {
+            Wave wave = dueWave(market, now);
+            if (wave != null) {
+                warm(market, wave, now);
+            }
+        }
+    }
+
+    private void warmAll(Wave wave) {
+        Instant now = clockProvider.now();
+        for (MarketCode market : markets()) {
+            warm(market, wave, now);
+        }
+    }
+
+    /**
+     * 依市場時段判斷應執行的預熱；每種預熱在同一節點每個交易日（盤中為每個間隔）最多一次
+     */
+    Wave dueWave(MarketCode market, Instant now) {
+        StockMarketProperties.Warmer config = properties.getWarmer();
+        WaveState state = waveStates.computeIfAbsent(market, ignored -> new WaveState());
+        if (marketCalendar.isOpen(market, now)) {
+            Instant last = state.lastSession;
+            return last == null || Duration.between(last, now).toMillis() >= config.getSessionIntervalMs()
+                    ? Wave.SESSION
+                    : null;
+        }
+        LocalDate today = now.atZone(marketCalendar.zoneOf(market)).toLocalDate();
+        if (today.equals(marketCalendar.lastSettledDate(market)) && !today.equals(state.lastPostClose)) {
+            return Wave.POST_CLOSE;
+        }
+        Instant nextOpen = marketCalendar.nextOpen(market, now);
+        if (nextOpen != null && Duration.between(now, nextOpen).toMillis() <= config.getPreOpenLeadMs()) {
+            LocalDate openDate = nextOpen.atZone(marketCalendar.zoneOf(market)).toLocalDate();
+            if (!openDate.equals(state.lastPreOpen)) {
+                return Wave.PRE_OPEN;
+            }
+        }
+        return null;
+    }
+
+    private void warm(MarketCode market, Wave wave, Instant now) {
+        if (!running.compareAndSet(false, true)) {
+            // 未標記完成，下一次 tick 再判斷
+            log.debug("Cache warm deferred, previous wave still running: market={}, wave={}", market, wave.tag());
+            return;
+        }
+        try {
+            String slot = markDone(market, wave, now);
+            if (!claim(market, wave, slot)) {
+                return;
+            }
+            List<String> symbolKeys = collectSymbolKeys(market);
+            if (symbolKeys.isEmpty()) {
+                return;
+            }
+            warmBatches(market, wave, symbolKeys);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void warmBatches(MarketCode market, Wave wave, List<String> symbolKeys) {
+        StockMarketProperties.Warmer config = properties.getWarmer();
+        // 開盤前與收盤後一律刷新（收盤後寫入的是定案行情並快取到下次開盤）；盤中與啟動時只補未命中或 stale 者
+        boolean force = wave == Wave.PRE_OPEN || wave == Wave.POST_CLOSE;
+        int batchSize = Math.max(config.getBatchSize(), 1);
+        long startedAt = System.nanoTime();
+        QuoteWarmResult total = QuoteWarmResult.empty();
+        String outcome = "completed";
+        try {
+            for (int from = 0; from < symbolKeys.size(); from += batchSize) {
+                List<String> batch = symbolKeys.subList(from, Math.min(from + batchSize, symbolKeys.size()));
+                QuoteWarmResult result = VendorCallPriority.callAs(
+                        VendorCallPriority.BATCH,
+                        () -> stockQuoteService.warmQuotes(batch, force));
+                total = total.plus(result);
+                if (result.attempted() > 0 && result.refreshed() == 0) {
+                    outcome = "aborted";
+                    break;
+                }
+                if (result.attempted() > 0 && from + batchSize < symbolKeys.size()) {
+                    pause(config.getBatchPauseMs());
+                }
+            }
+        } catch (RuntimeException ex) {
+            outcome = "failed";
+            log.warn("Cache warm failed: market={}, wave={}, error={}", market, wave.tag(), ex.getMessage());
+        }
+
+        metricsRecorder.recordCacheWarm(market.getCode(), wave.tag(), outcome, total, System.nanoTime() - startedAt);
+        log.info("Cache warm {}: market={}, wave={}, symbols={}, cachedBefore={}, refreshed={}, cachedAfter={}",
+                outcome, market, wave.tag(), total.requested(), total.cachedBefore(), total.refreshed(),
+                total.cachedAfter());
+    }
+
+    /**
+     * 持倉商品優先，其次為近期查詢（新到舊），上限 {@code max-symbols}
+     */
+    private List<String> collectSymbolKeys(MarketCode market) {
+        StockMarketProperties.Warmer config = properties.getWarmer();
+        String prefix = market.getCode() + ":";
+        Set<String> symbolKeys = new LinkedHashSet<>();
+        for (String symbolKey : userPositionRepository.findDistinctHeldSymbolKeys()) {
+            if (symbolKey != null && symbolKey.startsWith(prefix)) {
+                symbolKeys.add(symbolKey);
+            }
+        }
+        for (String symbolKey : recentlyViewed()) {
+            if (symbolKey.startsWith(prefix)) {
+                symbolKeys.add(symbolKey);
+            }
+        }
+        List<String> result = new ArrayList<>(symbolKeys);
+        int max = Math.max(config.getMaxSymbols(), 0);
+        return result.size() > max ? result.subList(0, max) : result;
+    }
+
+    private Set<String> recentlyViewed() {
+        StockMarketProperties.Warmer config = properties.getWarmer();
+        if (config.getMaxRecent() <= 0) {
+            return Set.of();
+        }
+        long cutoff = clockProvider.now().toEpochMilli() - config.getRecentWindowMs();
+        try {
+            stringRedisTemplate.opsForZSet().removeRangeByScore(VIEWED_KEY, Double.NEGATIVE_INFINITY, cutoff);
+            Set<String> viewed = stringRedisTemplate.opsForZSet().reverseRange(VIEWED_KEY, 0, config.getMaxRecent() - 1L);
+            return viewed == null ? Set.of() : viewed;
+        } catch (RuntimeException ex) {
+            log.debug("Load recently viewed symbols failed: {}", ex.getMessage());
+            return Set.of();
+        }
+    }
+
+    /**
+     * 記錄本節點已處理此輪，回傳此輪在叢集內的識別（開盤前/收盤後為日期，盤中為間隔序號）
+     */
+    private String markDone(MarketCode market, Wave wave, Instant now) {
+        WaveState state = waveStates.computeIfAbsent(market, ignored -> new WaveState());
+        LocalDate today = now.atZone(marketCalendar.zoneOf(market)).toLocalDate();
+        return switch (wave) {
+            case SESSION -> {
+                state.lastSession = now;
+                yield String.valueOf(now.toEpochMilli() / Math.max(properties.getWarmer().getSessionIntervalMs(), 1L));
+            }
+            case POST_CLOSE -> {
+                state.lastPostClose = today;
+                yield today.toString();
+            }
+            case PRE_OPEN -> {
+                Instant nextOpen = marketCalendar.nextOpen(market, now);
+                LocalDate openDate = nextOpen == null ? today : nextOpen.atZone(marketCalendar.zoneOf(market)).toLocalDate();
+                state.lastPreOpen = openDate;
+                yield openDate.toString();
+            }
+            case STARTUP -> "startup";
+        };
+    }
+
+    /**
+     * 多節點只由先寫入 Redis key 的節點執行；啟動預熱各節點各自執行，Redis 無法使用時也直接執行
+     */
+    private boolean claim(MarketCode market, Wave wave, String slot) {
+        if (wave == Wave.STARTUP) {
+            return true;
+        }
+        long ttlMs = wave == Wave.SESSION
+                ? Math.max(properties.getWarmer().getSessionIntervalMs(), 1L)
+                : Duration.ofDays(1).toMillis();
+        try {
+            Boolean claimed = stringRedisTemplate.opsForValue().setIfAbsent(
+                    WAVE_KEY_PREFIX + market.getCode() + ":" + wave.tag() + ":" + slot,
+                    "1",
+                    Duration.ofMillis(ttlMs));
+            return Boolean.TRUE.equals(claimed);
+        } catch (RuntimeException ex) {
+            log.debug("Cache warm claim failed, warming locally: market={}, wave={}, error={}",
+                    market, wave.tag(), ex.getMessage());
+            return true;
+        }
+    }
+
+    private List<MarketCode> markets() {
+        List<MarketCode> markets = new ArrayList<>();
+        for (String code : properties.getWarmer().getMarkets()) {
+            if (MarketCode.isSupported(code)) {
+                markets.add(MarketCode.fromCode(code));
+            }
+        }
+        return markets;
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0L) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class WaveState {
+        private volatile Instant lastSession;
+        private volatile LocalDate lastPostClose;
+        private volatile LocalDate lastPreOpen;
+    }
+}
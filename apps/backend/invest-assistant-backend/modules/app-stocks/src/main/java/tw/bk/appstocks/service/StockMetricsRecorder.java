@@ -2,16 +2,24 @@ package tw.bk.appstocks.service;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import tw.bk.appstocks.model.QuoteWarmResult;
 
 @Service
 @RequiredArgsConstructor
 public class StockMetricsRecorder {
+    public static final String SINGLE_FLIGHT_LOCAL = "local";
+    public static final String SINGLE_FLIGHT_REMOTE = "remote";
+
     private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+    private final ConcurrentHashMap<String, AtomicLong> gaugeValues = new ConcurrentHashMap<>();
 
     public void recordCacheHit(String type) {
         increment("stock.cache.requests", "type", type, "result", "hit");
@@ -21,14 +29,303 @@ public class StockMetricsRecorder {
         increment("stock.cache.requests", "type", type, "result", "miss");
     }
 
-    public void recordSingleFlightJoined(String type) {
-        increment("stock.singleflight.joined", "type", type);
+    public void recordCacheTierHit(String tier, String type) {
+        increment("stock.cache.tier.requests", "tier", tier, "type", type, "result", "hit");
+    }
+
+    public void recordCacheTierMiss(String tier, String type) {
+        increment("stock.cache.tier.requests", "tier", tier, "type", type, "result", "miss");
+    }
+
+    public void recordStaleServed(String type) {
+        increment("stock.cache.stale.served", "type", type);
+    }
+
+    public void recordBackgroundRefresh(String type, String outcome) {
+        increment("stock.cache.refresh", "type", type, "outcome", outcome);
+    }
+
+    /**
+     * 全市場快照刷新報價快取；rows 為快照列數，cached 為寫入快取的商品數（只寫入目錄內的有效商品）
+     */
+    public void recordQuoteSnapshot(String market, String outcome, int rows, int cached, long durationNanos) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Counter.builder("stock.quote.snapshot.requests")
+                .tag("market", market)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+        Counter.builder("stock.quote.snapshot.cached")
+                .tag("market", market)
+                .register(registry)
+                .increment(cached);
+        Timer.builder("stock.quote.snapshot.duration")
+                .tag("market", market)
+                .register(registry)
+                .record(Math.max(durationNanos, 0L), TimeUnit.NANOSECONDS);
+        setGauge("stock.quote.snapshot.rows", Tags.of("market", market), rows);
+    }
+
+    /**
+     * 報價快取預熱一輪的結果
+     * {@code stock.cache.warm.cached} 的 phase=before|after 除以 {@code stock.cache.warm.symbols} 即為預熱前後的快取命中率
+     */
+    public void recordCacheWarm(String market, String wave, String outcome, QuoteWarmResult result, long durationNanos) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Counter.builder("stock.cache.warm.waves")
+                .tag("market", market)
+                .tag("wave", wave)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+        Counter.builder("stock.cache.warm.refreshed")
+                .tag("market", market)
+                .tag("wave", wave)
+                .register(registry)
+                .increment(result.refreshed());
+        Timer.builder("stock.cache.warm.duration")
+                .tag("market", market)
+                .tag("wave", wave)
+                .register(registry)
+                .record(Math.max(durationNanos, 0L), TimeUnit.NANOSECONDS);
+        setGauge("stock.cache.warm.symbols", Tags.of("market", market), result.requested());
+        setGauge("stock.cache.warm.cached", Tags.of("market", market, "phase", "before"), result.cachedBefore());
+        setGauge("stock.cache.warm.cached", Tags.of("market", market, "phase", "after"), result.cachedAfter());
+    }
+
+    public void recordDailyCandleRows(String source, int count) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null || count <= 0) {
+            return;
+        }
+        Counter.builder("stock.candles.daily.rows")
+                .tag("source", source)
+                .register(registry)
+                .increment(count);
+    }
+
+    /**
+     * 盤後收盤匯入；matched 為寫入 app.daily_candles 的列數（含無成交標記）
+     */
+    public void recordEodClose(String source, String outcome, int matched, long durationNanos) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Counter.builder("stock.eod.close.runs")
+                .tag("source", source)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+        Counter.builder("stock.eod.close.rows")
+                .tag("source", source)
+                .register(registry)
+                .increment(Math.max(matched, 0));
+        Timer.builder("stock.eod.close.duration")
+                .tag("source", source)
+                .register(registry)
+                .record(Math.max(durationNanos, 0L), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 併入進行中的載入；scope 為 local（同節點）或 remote（等待其他節點的 Redis lease 後讀快取）
+     */
+    public void recordSingleFlightJoined(String type, String scope) {
+        increment("stock.singleflight.joined", "type", type, "scope", scope);
+    }
+
+    /**
+     * 跨節點 single-flight 的 lease 結果：acquired、takeover（等待後接手）、timeout、error（Redis 無法使用）
+     */
+    public void recordSingleFlightLease(String type, String outcome) {
+        increment("stock.singleflight.lease", "type", type, "outcome", outcome);
+    }
+
+    /**
+     * 權證快照索引重建後的大小（代號數與估計記憶體）
+     */
+    public void recordWarrantIndex(String feed, int codes, long estimatedBytes) {
+        setGauge("stock.warrant.index.codes", feed, codes);
+        setGauge("stock.warrant.index.bytes", feed, estimatedBytes);
+    }
+
+    public void recordWarrantIndexLookup(String feed, long latencyNanos, boolean found) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("stock.warrant.index.lookup")
+                .tag("feed", feed)
+                .tag("result", found ? "hit" : "miss")
+                .register(registry)
+                .record(Math.max(latencyNanos, 0L), TimeUnit.NANOSECONDS);
+    }
+
+    public void recordInstrumentSearchIndex(String outcome, int instruments, long postings, long durationNanos) {
+        increment("stock.instrument.index.rebuilds", "outcome", outcome);
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("stock.instrument.index.rebuild")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(Math.max(durationNanos, 0L), TimeUnit.NANOSECONDS);
+        setGauge("stock.instrument.index.instruments", Tags.empty(), instruments);
+        setGauge("stock.instrument.index.postings", Tags.empty(), postings);
+    }
+
+    /**
+     * 記憶體商品目錄重新載入後的大小（商品數、估計記憶體）與目前版本
+     */
+    public void recordInstrumentCatalog(
+            String outcome, int instruments, long estimatedBytes, long version, long durationNanos) {
+        increment("stock.instrument.catalog.reloads", "outcome", outcome);
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("stock.instrument.catalog.reload")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(Math.max(durationNanos, 0L), TimeUnit.NANOSECONDS);
+        setGauge("stock.instrument.catalog.instruments", Tags.empty(), instruments);
+        setGauge("stock.instrument.catalog.bytes", Tags.empty(), estimatedBytes);
+        setGauge("stock.instrument.catalog.version", Tags.empty(), version);
+    }
+
+    /**
+     * 商品目錄查詢；result 為 hit、miss（目錄沒有，改查資料庫）、unloaded（目錄尚未載入或停用）
+     */
+    public void recordInstrumentCatalogLookup(String result) {
+        increment("stock.instrument.catalog.lookups", "result", result);
+    }
+
+    /**
+     * 商品主檔同步；kind 為 equity / warrant，result 為 added / updated / skipped，
+     * throughput 為最近一次同步每秒處理的來源列數
+     */
+    public void recordInstrumentSync(
+            String kind, String outcome, int added, int updated, int skipped, long rowsPerSecond,
+            long durationNanos) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        int[] counts = {added, updated, skipped};
+        String[] results = {"added", "updated", "skipped"};
+        for (int i = 0; i < results.length; i++) {
+            Counter.builder("stock.instrument.sync.rows")
+                    .tag("kind", kind)
+                    .tag("result", results[i])
+                    .register(registry)
+                    .increment(counts[i]);
+        }
+        Timer.builder("stock.instrument.sync.duration")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(Math.max(durationNanos, 0L), TimeUnit.NANOSECONDS);
+        setGauge("stock.instrument.sync.throughput", Tags.of("kind", kind), rowsPerSecond);
+    }
+
+    /**
+     * ticker 明細補齊的處理結果：enriched、failed（退避重試）、dropped（超過失敗上限移出佇列）、released（遭限流歸還）
+     */
+    public void recordInstrumentEnrichment(String result, int count) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null || count <= 0) {
+            return;
+        }
+        Counter.builder("stock.instrument.enrichment.processed")
+                .tag("result", result)
+                .register(registry)
+                .increment(count);
+    }
+
+    /**
+     * ticker 明細補齊佇列長度；priority 為 held / searched / new / refresh
+     */
+    public void recordInstrumentEnrichmentBacklog(String priority, long backlog) {
+        setGauge("stock.instrument.enrichment.backlog", Tags.of("priority", priority), backlog);
+    }
+
+    /**
+     * ticker 明細補齊目前可用的呼叫數（每分鐘），隨限流器的有效速率調整
+     */
+    public void recordInstrumentEnrichmentBudget(long callsPerMinute) {
+        setGauge("stock.instrument.enrichment.budget", Tags.empty(), callsPerMinute);
+    }
+
+    public void recordInstrumentSearch(String source, long latencyNanos) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("stock.instrument.search")
+                .tag("source", source)
+                .register(registry)
+                .record(Math.max(latencyNanos, 0L), TimeUnit.NANOSECONDS);
     }
 
     public void recordRateLimitBlocked(String vendor, String endpoint) {
         increment("stock.external.ratelimit.blocked", "vendor", vendor, "endpoint", endpoint);
     }
 
+    /**
+     * 等待外部 API permit 的時間（含立即取得的 0）；acquired=false 表示等到期限仍未取得
+     */
+    public void recordRateLimitWait(
+            String vendor, String endpoint, VendorCallPriority priority, long waitedNanos, boolean acquired) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("stock.external.ratelimit.wait")
+                .tag("vendor", vendor)
+                .tag("endpoint", endpoint)
+                .tag("priority", priority.name().toLowerCase())
+                .tag("acquired", acquired ? "true" : "false")
+                .register(registry)
+                .record(Math.max(waitedNanos, 0L), TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRateLimitQueueDepth(String vendor, String endpoint, int depth) {
+        setGauge("stock.external.ratelimit.queue", Tags.of("vendor", vendor, "endpoint", endpoint), depth);
+    }
+
+    /**
+     * AIMD 調整後的有效速率（每個 window 的請求數）與並行上限（0 表示不限制）
+     */
+    public void recordAdaptiveLimit(String vendor, int rateLimit, int concurrencyLimit) {
+        setGauge("stock.external.ratelimit.effective", Tags.of("vendor", vendor), rateLimit);
+        setGauge("stock.external.ratelimit.concurrency", Tags.of("vendor", vendor), concurrencyLimit);
+    }
+
+    /**
+     * 斷路器狀態：0=closed、1=half_open、2=open
+     */
+    public void recordCircuitState(String vendor, String endpoint, int state) {
+        setGauge("stock.external.circuit.state", Tags.of("vendor", vendor, "endpoint", endpoint), state);
+    }
+
+    public void recordCircuitRejected(String vendor, String endpoint) {
+        increment("stock.external.circuit.rejected", "vendor", vendor, "endpoint", endpoint);
+    }
+
+    /**
+     * hedged 請求：fired=送出第二次呼叫、won=第二次呼叫先取得結果、skipped=執行緒皆忙碌改為直接呼叫
+     */
+    public void recordHedge(String vendor, String endpoint, String outcome) {
+        increment("stock.external.hedge", "vendor", vendor, "endpoint", endpoint, "outcome", outcome);
+    }
+
     public void recordExternalCall(
             String vendor,
             String endpoint,
@@ -60,6 +357,20 @@ public class StockMetricsRecorder {
                 .record(Math.max(latencyMs, 0L), TimeUnit.MILLISECONDS);
     }
 
+    private void setGauge(String meterName, String feed, long value) {
+        setGauge(meterName, Tags.of("feed", feed), value);
+    }
+
+    private void setGauge(String meterName, Tags tags, long value) {
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        gaugeValues.computeIfAbsent(meterName + tags,
+                        key -> registry.gauge(meterName, tags, new AtomicLong()))
+                .set(value);
+    }
+
     private void increment(String meterName, String... tags) {
         MeterRegistry registry = meterRegistryProvider.getIfAvailable();
         if (registry == null) {
@@ -2,47 +2,82 @@ package tw.bk.appstocks.service;
 
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import tw.bk.appcommon.enums.AssetType;
 import tw.bk.appcommon.enums.ErrorCode;
 import tw.bk.appcommon.exception.BusinessException;
 import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appcommon.time.ClockProvider;
 import tw.bk.appstocks.config.StockMarketProperties;
 import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleCacheEntry;
 import tw.bk.appstocks.model.Quote;
+import tw.bk.appstocks.model.QuoteWarmResult;
 import tw.bk.appstocks.port.StockMarketClient;
-import tw.bk.apppersistence.entity.InstrumentEntity;
-import tw.bk.apppersistence.repository.InstrumentRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * 股票報價服務
+ * 快取採 soft/hard TTL：超過 soft TTL 直接回傳舊值（stale）並於背景刷新一次，超過 hard TTL（Redis 過期）才同步等待外部 API；
+ * 報價 hard TTL 依 {@link MarketCalendar} 決定（盤中短 TTL，收盤後快取到下次開盤）；
+ * 外部來源斷路（SERVICE_UNAVAILABLE）時改回傳 last-known 報價並標記 stale；
+ * 快取未命中先以本機 single-flight 合併同節點請求，再經 {@link DistributedSingleFlight} 合併跨節點請求
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class StockQuoteService {
+    private static final String QUOTE_ENDPOINT = "quote";
+    private static final String STATUS_ACTIVE = "ACTIVE";
 
-    private final InstrumentRepository instrumentRepository;
+    private final InstrumentCatalogService instrumentCatalogService;
     private final List<StockMarketClient> stockMarketClients;
     private final StockCacheService cacheService;
     private final StockMarketProperties properties;
     private final WarrantQuoteService warrantQuoteService;
+    private final DailyCandleStore dailyCandleStore;
+    private final CandleBucketCache candleBucketCache;
+    private final CandleAggregator candleAggregator;
     private final StockMetricsRecorder metricsRecorder;
+    private final HedgedCallExecutor hedgedCalls;
+    private final DistributedSingleFlight distributedSingleFlight;
+    private final MarketCalendar marketCalendar;
+    private final ClockProvider clockProvider;
+    @Qualifier("stockRefreshExecutor")
+    private final Executor stockRefreshExecutor;
     private Map<MarketCode, StockMarketClient> clientMap = Collections.emptyMap();
     private final ConcurrentHashMap<String, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
 
     @PostConstruct
     void initClientMap() {
@@ -63,11 +98,11 @@ public class StockQuoteService {
      */
     public Quote getQuote(String symbolKey) {
         // 1. 檢查快取
-        String cacheKey = "quote:" + symbolKey;
+        String cacheKey = quoteCacheKey(symbolKey);
         Optional<Quote> cached = cacheService.get(cacheKey, Quote.class);
         if (cached.isPresent()) {
             metricsRecorder.recordCacheHit("quote");
-            return cached.get();
+            return serveCachedQuote(symbolKey, cached.get());
         }
         metricsRecorder.recordCacheMiss("quote");
 
@@ -77,78 +112,702 @@ public class StockQuoteService {
                 metricsRecorder.recordCacheHit("quote");
                 return cachedAgain.get();
             }
+            return distributedSingleFlight.execute(cacheKey, "quote",
+                    () -> cacheService.get(cacheKey, Quote.class),
+                    () -> loadQuote(symbolKey));
+        });
+    }
 
-            // 2. 查詢商品資訊
-            InstrumentEntity instrument = instrumentRepository.findBySymbolKeyWithRelations(symbolKey)
-                    .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND, "商品不存在: " + symbolKey));
-            if (AssetType.WARRANT.equals(instrument.getAssetTypeEnum())) {
-                Quote quote = warrantQuoteService.getQuote(instrument.getTicker());
-                cacheService.set(cacheKey, quote, properties.getCache().getQuoteTtl());
-                return quote;
+    /**
+     * 批次取得股票即時報價
+     * 以單次 MGET 讀取快取，未命中的商品以單次查詢載入，並依市場分組後每個 client 只呼叫一次
+     *
+     * @param symbolKeys 商品唯一識別碼列表
+     * @return symbolKey → 報價（依輸入順序），查無商品或報價的 symbolKey 不會出現在結果中
+     */
+    public Map<String, Quote> getQuotes(Collection<String> symbolKeys) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (symbolKeys != null) {
+            for (String symbolKey : symbolKeys) {
+                if (symbolKey != null && !symbolKey.isBlank()) {
+                    keys.add(symbolKey.trim());
+                }
             }
+        }
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
 
-            // 3. 根據市場選擇對應的 client
-            String marketCodeValue = instrument.getMarket() != null ? instrument.getMarket().getCode() : null;
-            MarketCode marketCode = MarketCode.requireSupported(
-                    marketCodeValue,
-                    ErrorCode.INTERNAL_ERROR,
-                    "無法取得股票報價: " + marketCodeValue);
-            StockMarketClient client = getClientByMarket(marketCode);
+        // 1. 批次檢查快取
+        Map<String, Quote> cached = cacheService.multiGet(
+                keys.stream().map(StockQuoteService::quoteCacheKey).toList(),
+                Quote.class);
+        Map<String, Quote> resolved = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        List<String> stale = new ArrayList<>();
+        for (String symbolKey : keys) {
+            Quote quote = cached.get(quoteCacheKey(symbolKey));
+            if (quote != null) {
+                metricsRecorder.recordCacheHit("quote");
+                long ageMs = ageMs(quote.getCachedAt());
+                if (isQuoteStale(symbolKey, quote, ageMs)) {
+                    metricsRecorder.recordStaleServed("quote");
+                    stale.add(symbolKey);
+                    quote = markStale(quote, ageMs);
+                }
+                resolved.put(symbolKey, quote);
+            } else {
+                metricsRecorder.recordCacheMiss("quote");
+                missing.add(symbolKey);
+            }
+        }
 
-            // 4. 呼叫第三方 API
-            Quote quote = client.getQuote(instrument.getTicker())
-                    .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR,
-                            "無法取得報價資料: " + symbolKey));
+        // 2. 未命中者批次向外部來源取得
+        if (!missing.isEmpty()) {
+            resolved.putAll(fetchQuotes(missing));
+        }
 
-            // 5. 寫入快取
-            cacheService.set(cacheKey, quote, properties.getCache().getQuoteTtl());
-            return quote;
-        });
+        // 3. 過期（stale）者以單一背景工作批次刷新
+        if (!stale.isEmpty()) {
+            scheduleBatchQuoteRefresh(stale);
+        }
+
+        Map<String, Quote> result = new LinkedHashMap<>();
+        for (String symbolKey : keys) {
+            Quote quote = resolved.get(symbolKey);
+            if (quote != null) {
+                result.put(symbolKey, quote);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 預熱報價快取（{@link StockCacheWarmer} 使用，不計入 cache hit/miss）
+     * 以單次 MGET 檢查快取，未命中或已過 soft TTL 的商品（force 時為全部）沿用批次報價的分市場呼叫刷新；
+     * 斷路時取得的 last-known 報價不算刷新成功
+     */
+    public QuoteWarmResult warmQuotes(List<String> symbolKeys, boolean force) {
+        if (symbolKeys == null || symbolKeys.isEmpty()) {
+            return QuoteWarmResult.empty();
+        }
+        Map<String, Quote> cached = cacheService.multiGet(
+                symbolKeys.stream().map(StockQuoteService::quoteCacheKey).toList(),
+                Quote.class);
+        Set<String> present = new HashSet<>();
+        List<String> targets = new ArrayList<>();
+        for (String symbolKey : symbolKeys) {
+            Quote quote = cached.get(quoteCacheKey(symbolKey));
+            if (quote != null) {
+                present.add(symbolKey);
+            }
+            if (force || quote == null || isQuoteStale(symbolKey, quote, ageMs(quote.getCachedAt()))) {
+                targets.add(symbolKey);
+            }
+        }
+
+        int refreshed = 0;
+        if (!targets.isEmpty()) {
+            for (Map.Entry<String, Quote> entry : fetchQuotes(targets).entrySet()) {
+                if (!entry.getValue().isStale()) {
+                    refreshed++;
+                    present.add(entry.getKey());
+                }
+            }
+        }
+        return new QuoteWarmResult(symbolKeys.size(), cached.size(), targets.size(), refreshed, present.size());
     }
 
+    /**
+     * asOfDate 以前最近一個交易日的收盤價，從資料庫單次索引查詢（台股由 {@link EodCloseIngestionService} 每日寫入），
+     * 不呼叫外部來源；該日尚無資料時回傳 empty，由呼叫端改走 {@link #getCandles}
+     */
+    public Optional<BigDecimal> findStoredClose(String symbolKey, LocalDate from, LocalDate asOfDate) {
+        Optional<InstrumentCatalogRow> instrument = instrumentCatalogService.findBySymbolKey(symbolKey);
+        if (instrument.isEmpty() || !MarketCode.isSupported(instrument.get().marketCode())) {
+            return Optional.empty();
+        }
+        MarketCode marketCode = MarketCode.fromCode(instrument.get().marketCode());
+        return dailyCandleStore.findStoredClose(instrument.get(), marketCode, from, asOfDate);
+    }
+
+    /**
+     * 取得 K 線
+     * 指定 from/to 時以區段快取組合（見 {@link CandleBucketCache}），只向外部來源補抓缺漏的區段；
+     * 較粗的週期（1w/1mo/1q/1y、15m/1h/4h 等）由日 K 或 5m/1m 區段聚合，不另外快取。權證與未指定區間的請求沿用整段快取
+     */
     public List<Candle> getCandles(String symbolKey, String interval, LocalDate from, LocalDate to) {
+        String normalized = normalizeInterval(interval);
+        if (from != null && to != null && !from.isAfter(to) && !isWarrant(symbolKey)) {
+            return getBucketedCandles(symbolKey, normalized, from, to);
+        }
+
         // 1. 檢查快取
         String cacheKey = String.format("candles:%s:%s:%s:%s",
                 symbolKey, interval, from, to);
-        Optional<List<Candle>> cached = cacheService.getList(cacheKey, Candle.class);
+        Optional<CandleCacheEntry> cached = cacheService.get(cacheKey, CandleCacheEntry.class);
         if (cached.isPresent()) {
             metricsRecorder.recordCacheHit("candles");
-            return cached.get();
+            CandleCacheEntry entry = cached.get();
+            if (isStale(ageMs(entry.getCachedAt()), properties.getCache().getCandlesSoftTtl())) {
+                metricsRecorder.recordStaleServed("candles");
+                scheduleRefresh(cacheKey, "candles", () -> loadCandles(cacheKey, symbolKey, interval, from, to));
+            }
+            return entry.getCandles();
         }
         metricsRecorder.recordCacheMiss("candles");
 
         return singleFlight(cacheKey, "candles", () -> {
-            Optional<List<Candle>> cachedAgain = cacheService.getList(cacheKey, Candle.class);
+            Optional<CandleCacheEntry> cachedAgain = cacheService.get(cacheKey, CandleCacheEntry.class);
             if (cachedAgain.isPresent()) {
                 metricsRecorder.recordCacheHit("candles");
-                return cachedAgain.get();
+                return cachedAgain.get().getCandles();
+            }
+            return distributedSingleFlight.execute(cacheKey, "candles",
+                    () -> cacheService.get(cacheKey, CandleCacheEntry.class).map(CandleCacheEntry::getCandles),
+                    () -> loadCandles(cacheKey, symbolKey, interval, from, to));
+        });
+    }
+
+    /**
+     * 權證的 K 線由 {@link WarrantQuoteService} 提供，不走區段快取；在讀取區段快取、取得分散式 lease 之前判斷。
+     * 商品目錄查無此代號時視為非權證，由載入區段時回報 NOT_FOUND
+     */
+    private boolean isWarrant(String symbolKey) {
+        return instrumentCatalogService.findBySymbolKey(symbolKey)
+                .map(instrument -> AssetType.WARRANT.equals(instrument.assetTypeEnum()))
+                .orElse(false);
+    }
+
+    /**
+     * 以區段快取組合 [from, to] 的 K 線（權證不走此路徑，見 {@link #isWarrant}）
+     */
+    private List<Candle> getBucketedCandles(
+            String symbolKey, String interval, LocalDate from, LocalDate to) {
+        String baseInterval = candleAggregator.baseIntervalOf(interval);
+        MarketCode market = marketOf(symbolKey);
+
+        // 1. 批次檢查區段快取
+        List<CandleBucketCache.Bucket> buckets = candleBucketCache.bucketsFor(baseInterval, from, to);
+        Map<CandleBucketCache.Bucket, CandleCacheEntry> cached = candleBucketCache.getAll(symbolKey, baseInterval, buckets);
+        Map<CandleBucketCache.Bucket, List<Candle>> resolved = new HashMap<>();
+        List<CandleBucketCache.Bucket> missing = new ArrayList<>();
+        for (CandleBucketCache.Bucket bucket : buckets) {
+            CandleCacheEntry entry = cached.get(bucket);
+            if (entry == null) {
+                metricsRecorder.recordCacheMiss("candles");
+                missing.add(bucket);
+                continue;
             }
+            metricsRecorder.recordCacheHit("candles");
+            resolved.put(bucket, entry.getCandles());
+            if (!candleBucketCache.isClosed(bucket, market)
+                    && isStale(ageMs(entry.getCachedAt()), properties.getCache().getCandlesSoftTtl())) {
+                metricsRecorder.recordStaleServed("candles");
+                scheduleRefresh(candleBucketCache.cacheKey(symbolKey, baseInterval, bucket), "candles",
+                        () -> loadBuckets(symbolKey, baseInterval, List.of(bucket)));
+            }
+        }
+
+        // 2. 只載入缺漏的區段
+        if (!missing.isEmpty()) {
+            String flightKey = "candles:" + symbolKey + ":" + baseInterval + ":"
+                    + missing.stream().map(CandleBucketCache.Bucket::label).collect(Collectors.joining(","));
+            Map<CandleBucketCache.Bucket, List<Candle>> loaded = singleFlight(flightKey, "candles",
+                    () -> distributedSingleFlight.execute(flightKey, "candles",
+                            () -> cachedBuckets(symbolKey, baseInterval, missing),
+                            () -> loadBuckets(symbolKey, baseInterval, missing)));
+            resolved.putAll(loaded);
+        }
+
+        // 3. 依時間組合並裁切至 [from, to]
+        List<Candle> candles = new ArrayList<>();
+        for (CandleBucketCache.Bucket bucket : buckets) {
+            for (Candle candle : resolved.getOrDefault(bucket, List.of())) {
+                LocalDate date = candle.getTimestamp() == null ? null : candle.getTimestamp().toLocalDate();
+                if (date != null && !date.isBefore(from) && !date.isAfter(to)) {
+                    candles.add(candle);
+                }
+            }
+        }
+        return baseInterval.equals(interval) ? candles : aggregate(interval, candles, market);
+    }
+
+    /**
+     * 其他節點載入後的區段快取；任一區段仍缺漏時回傳 empty
+     */
+    private Optional<Map<CandleBucketCache.Bucket, List<Candle>>> cachedBuckets(
+            String symbolKey, String baseInterval, List<CandleBucketCache.Bucket> buckets) {
+        Map<CandleBucketCache.Bucket, CandleCacheEntry> cached = candleBucketCache.getAll(symbolKey, baseInterval, buckets);
+        if (cached.size() < buckets.size()) {
+            return Optional.empty();
+        }
+        Map<CandleBucketCache.Bucket, List<Candle>> result = new LinkedHashMap<>();
+        cached.forEach((bucket, entry) -> result.put(bucket, entry.getCandles()));
+        return Optional.of(result);
+    }
+
+    /**
+     * 載入區段並寫入區段快取；相鄰區段合併成單次外部呼叫，未來日期不呼叫
+     */
+    private Map<CandleBucketCache.Bucket, List<Candle>> loadBuckets(
+            String symbolKey, String baseInterval, List<CandleBucketCache.Bucket> buckets) {
+        InstrumentCatalogRow instrument = instrumentCatalogService.findBySymbolKey(symbolKey)
+                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND, "商品不存在: " + symbolKey));
+        MarketCode marketCode = requireMarket(instrument);
+        StockMarketClient client = getClientByMarket(marketCode);
+        LocalDate today = marketCalendar.today(marketCode);
+
+        Map<CandleBucketCache.Bucket, List<Candle>> result = new LinkedHashMap<>();
+        int runStart = 0;
+        for (int i = 0; i < buckets.size(); i++) {
+            boolean runEnds = i == buckets.size() - 1
+                    || !buckets.get(i + 1).start().equals(buckets.get(i).end().plusDays(1));
+            if (!runEnds) {
+                continue;
+            }
+            List<CandleBucketCache.Bucket> run = buckets.subList(runStart, i + 1);
+            LocalDate runFrom = run.get(0).start();
+            LocalDate runTo = run.get(run.size() - 1).end();
+            if (runTo.isAfter(today)) {
+                runTo = today;
+            }
+            List<Candle> candles = runFrom.isAfter(runTo)
+                    ? List.of()
+                    : fetchCandles(instrument, marketCode, client, baseInterval, runFrom, runTo);
+            result.putAll(candleBucketCache.putAll(symbolKey, baseInterval, marketCode, run, candles));
+            runStart = i + 1;
+        }
+        return result;
+    }
+
+    private Quote loadQuote(String symbolKey) {
+        // 2. 查詢商品資訊
+        InstrumentCatalogRow instrument = instrumentCatalogService.findBySymbolKey(symbolKey)
+                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND, "商品不存在: " + symbolKey));
+        if (AssetType.WARRANT.equals(instrument.assetTypeEnum())) {
+            return cacheQuote(symbolKey, warrantQuoteService.getQuote(instrument.ticker()));
+        }
+
+        // 3. 根據市場選擇對應的 client
+        String marketCodeValue = instrument.marketCode();
+        MarketCode marketCode = MarketCode.requireSupported(
+                marketCodeValue,
+                ErrorCode.INTERNAL_ERROR,
+                "無法取得股票報價: " + marketCodeValue);
+        StockMarketClient client = getClientByMarket(marketCode);
 
-            // 2. 查詢商品資訊
-            InstrumentEntity instrument = instrumentRepository.findBySymbolKeyWithRelations(symbolKey)
-                    .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND, "商品不存在: " + symbolKey));
-            if (AssetType.WARRANT.equals(instrument.getAssetTypeEnum())) {
-                List<Candle> candles = warrantQuoteService.getCandles(
-                        instrument.getTicker(), interval, from, to);
-                cacheService.setList(cacheKey, candles, properties.getCache().getCandlesTtl());
-                return candles;
+        // 4. 呼叫第三方 API（延遲過長時 hedge）
+        Quote quote;
+        try {
+            quote = hedgedCalls.call(client.getVendor(), QUOTE_ENDPOINT, () -> client.getQuote(instrument.ticker()))
+                    .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR,
+                            "無法取得報價資料: " + symbolKey));
+        } catch (BusinessException ex) {
+            if (ex.getErrorCode() != ErrorCode.SERVICE_UNAVAILABLE) {
+                throw ex;
             }
+            return lastKnownQuotes(List.of(symbolKey)).values().stream().findFirst().orElseThrow(() -> ex);
+        }
+
+        // 5. 寫入快取
+        return cacheQuote(symbolKey, quote);
+    }
 
+    private List<Candle> loadCandles(
+            String cacheKey, String symbolKey, String interval, LocalDate from, LocalDate to) {
+        // 2. 查詢商品資訊
+        InstrumentCatalogRow instrument = instrumentCatalogService.findBySymbolKey(symbolKey)
+                .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND, "商品不存在: " + symbolKey));
+        List<Candle> candles;
+        if (AssetType.WARRANT.equals(instrument.assetTypeEnum())) {
+            candles = warrantQuoteService.getCandles(instrument.ticker(), interval, from, to);
+        } else {
             // 3. 根據市場選擇對應的 client
-            String marketCodeValue = instrument.getMarket() != null ? instrument.getMarket().getCode() : null;
-            MarketCode marketCode = MarketCode.requireSupported(
-                    marketCodeValue,
-                    ErrorCode.INTERNAL_ERROR,
-                    "不支援的市場: " + marketCodeValue);
+            MarketCode marketCode = requireMarket(instrument);
             StockMarketClient client = getClientByMarket(marketCode);
 
             // 4. 呼叫第三方 API
-            List<Candle> candles = client.getCandles(instrument.getTicker(), interval, from, to);
+            candles = fetchCandles(instrument, marketCode, client, interval, from, to);
+        }
+
+        // 5. 寫入快取（空結果也快取避免重複請求）
+        List<Candle> snapshot = candles == null ? new ArrayList<>() : new ArrayList<>(candles);
+        cacheService.set(cacheKey, new CandleCacheEntry(snapshot, clockProvider.now()),
+                properties.getCache().getCandlesTtl());
+        return snapshot;
+    }
+
+    /**
+     * 取得週期所需的最細序列再聚合（見 {@link CandleAggregator#baseIntervalOf}）；
+     * 日 K 走持久化儲存（只補抓缺漏日期），其餘週期直接呼叫第三方 API
+     */
+    private List<Candle> fetchCandles(
+            InstrumentCatalogRow instrument,
+            MarketCode marketCode,
+            StockMarketClient client,
+            String interval,
+            LocalDate from,
+            LocalDate to) {
+        String baseInterval = candleAggregator.baseIntervalOf(interval);
+        List<Candle> candles;
+        if (isDailyInterval(baseInterval) && from != null && to != null) {
+            candles = dailyCandleStore.getDailyCandles(instrument, marketCode, client, from, to);
+        } else {
+            candles = client.getCandles(instrument.ticker(), baseInterval, from, to);
+        }
+        return baseInterval.equals(normalizeInterval(interval)) ? candles : aggregate(interval, candles, marketCode);
+    }
+
+    /**
+     * 盤中週期以市場開盤時間對齊區段
+     */
+    private List<Candle> aggregate(String interval, List<Candle> candles, MarketCode market) {
+        if (market == null) {
+            return candleAggregator.aggregate(interval, candles);
+        }
+        return candleAggregator.aggregate(interval, candles,
+                marketCalendar.zoneOf(market), marketCalendar.sessionOpen(market));
+    }
+
+    private static MarketCode requireMarket(InstrumentCatalogRow instrument) {
+        String marketCodeValue = instrument.marketCode();
+        return MarketCode.requireSupported(
+                marketCodeValue,
+                ErrorCode.INTERNAL_ERROR,
+                "不支援的市場: " + marketCodeValue);
+    }
+
+    private static boolean isDailyInterval(String interval) {
+        return DailyCandleStore.DAILY_INTERVAL.equals(normalizeInterval(interval));
+    }
 
-            // 5. 寫入快取（空結果也快取避免重複請求）
-            cacheService.setList(cacheKey, candles, properties.getCache().getCandlesTtl());
-            return candles;
+    private static String normalizeInterval(String interval) {
+        if (interval == null || interval.isBlank()) {
+            return DailyCandleStore.DAILY_INTERVAL;
+        }
+        return interval.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private Map<String, Quote> fetchQuotes(List<String> symbolKeys) {
+        Map<String, Quote> result = new HashMap<>();
+        Map<MarketCode, Map<String, List<String>>> symbolKeysByMarket = new EnumMap<>(MarketCode.class);
+        for (InstrumentCatalogRow instrument : instrumentCatalogService.findBySymbolKeys(symbolKeys)) {
+            String symbolKey = instrument.symbolKey();
+            if (AssetType.WARRANT.equals(instrument.assetTypeEnum())) {
+                try {
+                    result.put(symbolKey, cacheQuote(symbolKey, warrantQuoteService.getQuote(instrument.ticker())));
+                } catch (BusinessException ex) {
+                    log.warn("Batch warrant quote skipped: symbolKey={}, error={}", symbolKey, ex.getMessage());
+                }
+                continue;
+            }
+
+            String marketCodeValue = instrument.marketCode();
+            if (!MarketCode.isSupported(marketCodeValue)) {
+                log.warn("Batch quote skipped, unsupported market: symbolKey={}, market={}",
+                        symbolKey, marketCodeValue);
+                continue;
+            }
+            symbolKeysByMarket
+                    .computeIfAbsent(MarketCode.fromCode(marketCodeValue), ignored -> new LinkedHashMap<>())
+                    .computeIfAbsent(instrument.ticker(), ignored -> new ArrayList<>())
+                    .add(symbolKey);
+        }
+
+        for (Map.Entry<MarketCode, Map<String, List<String>>> entry : symbolKeysByMarket.entrySet()) {
+            StockMarketClient client = clientMap.get(entry.getKey());
+            if (client == null) {
+                log.warn("Batch quote skipped, no client for market: {}", entry.getKey().getCode());
+                continue;
+            }
+            Map<String, List<String>> symbolKeysByTicker = entry.getValue();
+            if (shouldUseSnapshot(client, symbolKeysByTicker.size())) {
+                symbolKeysByTicker = resolveFromSnapshot(entry.getKey(), client, symbolKeysByTicker, result);
+                if (symbolKeysByTicker.isEmpty()) {
+                    continue;
+                }
+            }
+            Map<String, Quote> quotes;
+            try {
+                quotes = client.getQuotes(symbolKeysByTicker.keySet());
+            } catch (BusinessException ex) {
+                log.warn("Batch quote fetch failed: market={}, size={}, error={}",
+                        entry.getKey().getCode(), symbolKeysByTicker.size(), ex.getMessage());
+                if (ex.getErrorCode() == ErrorCode.SERVICE_UNAVAILABLE) {
+                    result.putAll(lastKnownQuotes(symbolKeysByTicker.values().stream()
+                            .flatMap(List::stream)
+                            .toList()));
+                }
+                continue;
+            }
+            symbolKeysByTicker.forEach((ticker, keys) -> {
+                Quote quote = quotes.get(ticker);
+                if (quote == null) {
+                    return;
+                }
+                for (String symbolKey : keys) {
+                    result.put(symbolKey, cacheQuote(symbolKey, quote));
+                }
+            });
+        }
+        return result;
+    }
+
+    private boolean shouldUseSnapshot(StockMarketClient client, int wanted) {
+        int minSymbols = properties.getCache().getQuoteSnapshotMinSymbols();
+        return minSymbols > 0 && wanted >= minSymbols && client.supportsMarketSnapshot();
+    }
+
+    /**
+     * 以全市場快照取得需要的報價，回傳快照未涵蓋、仍需逐檔（或批次）呼叫的 ticker
+     */
+    private Map<String, List<String>> resolveFromSnapshot(
+            MarketCode market,
+            StockMarketClient client,
+            Map<String, List<String>> symbolKeysByTicker,
+            Map<String, Quote> result) {
+        Map<String, Quote> snapshot = singleFlight("quote-snapshot:" + market.getCode(), "quote",
+                () -> refreshFromSnapshot(market, client));
+        Map<String, List<String>> remaining = new LinkedHashMap<>();
+        symbolKeysByTicker.forEach((ticker, keys) -> {
+            for (String symbolKey : keys) {
+                Quote quote = snapshot.get(symbolKey);
+                if (quote != null) {
+                    result.put(symbolKey, quote);
+                } else {
+                    remaining.computeIfAbsent(ticker, ignored -> new ArrayList<>()).add(symbolKey);
+                }
+            }
         });
+        return remaining;
+    }
+
+    /**
+     * 串流讀取全市場快照，目錄內該市場所有有效（非權證）商品的報價以單一 pipeline 寫入快取；
+     * 回傳 symbolKey → 報價。快照失敗（含只有部分市場成功）時記為 error，失敗前已收到的報價仍寫入快取並回傳，
+     * 其餘由呼叫端改走原本的批次呼叫
+     */
+    private Map<String, Quote> refreshFromSnapshot(MarketCode market, StockMarketClient client) {
+        Map<String, List<String>> activeByTicker = new HashMap<>();
+        for (InstrumentCatalogRow instrument : instrumentCatalogService.list(market, null, null, STATUS_ACTIVE)) {
+            if (!AssetType.WARRANT.equals(instrument.assetTypeEnum())) {
+                activeByTicker.computeIfAbsent(instrument.ticker(), ignored -> new ArrayList<>(1))
+                        .add(instrument.symbolKey());
+            }
+        }
+
+        long startedAt = System.nanoTime();
+        Instant cachedAt = clockProvider.now();
+        Map<String, Quote> quotes = new HashMap<>();
+        List<StockCacheService.Write> writes = new ArrayList<>();
+        int[] rows = {0};
+        String outcome = "success";
+        try {
+            client.streamMarketSnapshot(quote -> {
+                rows[0]++;
+                List<String> symbolKeys = activeByTicker.get(quote.getTicker());
+                if (symbolKeys == null) {
+                    return;
+                }
+                Quote stamped = stamp(quote, cachedAt);
+                for (String symbolKey : symbolKeys) {
+                    quotes.put(symbolKey, stamped);
+                    addCacheWrites(writes, symbolKey, stamped);
+                }
+            });
+        } catch (RuntimeException ex) {
+            outcome = "error";
+            log.warn("Quote snapshot failed, falling back to batch quotes: market={}, rows={}, error={}",
+                    market.getCode(), rows[0], ex.getMessage());
+        }
+        if (!writes.isEmpty()) {
+            try {
+                cacheService.setAll(writes);
+            } catch (RuntimeException ex) {
+                log.warn("Quote snapshot cache write failed: market={}, size={}, error={}",
+                        market.getCode(), quotes.size(), ex.getMessage());
+            }
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        metricsRecorder.recordQuoteSnapshot(market.getCode(), outcome, rows[0], quotes.size(), elapsed);
+        log.info("Quote snapshot refreshed: market={}, outcome={}, rows={}, cached={}, took={} ms",
+                market.getCode(), outcome, rows[0], quotes.size(), elapsed / 1_000_000);
+        return quotes;
+    }
+
+    private static String quoteCacheKey(String symbolKey) {
+        return "quote:" + symbolKey;
+    }
+
+    private static String lastKnownQuoteCacheKey(String symbolKey) {
+        return "quote:last:" + symbolKey;
+    }
+
+    /**
+     * 以單次 MGET 讀取 last-known 報價並標記 stale；不寫回報價快取，斷路器恢復後的下一次讀取即重新呼叫外部來源
+     */
+    private Map<String, Quote> lastKnownQuotes(List<String> symbolKeys) {
+        if (properties.getCache().getQuoteLastKnownTtl() <= 0L || symbolKeys.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Quote> cached = cacheService.multiGet(
+                symbolKeys.stream().map(StockQuoteService::lastKnownQuoteCacheKey).toList(),
+                Quote.class);
+        Map<String, Quote> result = new LinkedHashMap<>();
+        for (String symbolKey : symbolKeys) {
+            Quote quote = cached.get(lastKnownQuoteCacheKey(symbolKey));
+            if (quote != null) {
+                metricsRecorder.recordStaleServed("quote");
+                result.put(symbolKey, markStale(quote, ageMs(quote.getCachedAt())));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 以寫入時間標記後寫入快取；回傳新物件，不修改外部來源回傳的實例
+     */
+    private Quote cacheQuote(String symbolKey, Quote quote) {
+        Quote stamped = stamp(quote, clockProvider.now());
+        cacheService.set(quoteCacheKey(symbolKey), stamped, quoteTtlMs(symbolKey, stamped));
+        long lastKnownTtl = properties.getCache().getQuoteLastKnownTtl();
+        if (lastKnownTtl > 0L) {
+            cacheService.set(lastKnownQuoteCacheKey(symbolKey), stamped, lastKnownTtl);
+        }
+        return stamped;
+    }
+
+    private static Quote stamp(Quote quote, Instant cachedAt) {
+        return quote.toBuilder()
+                .cachedAt(cachedAt)
+                .stale(false)
+                .ageMs(null)
+                .build();
+    }
+
+    /**
+     * 與 {@link #cacheQuote} 相同的報價與 last-known 兩筆寫入，交由 {@link StockCacheService#setAll} 批次送出
+     */
+    private void addCacheWrites(List<StockCacheService.Write> writes, String symbolKey, Quote stamped) {
+        writes.add(new StockCacheService.Write(quoteCacheKey(symbolKey), stamped, quoteTtlMs(symbolKey, stamped)));
+        long lastKnownTtl = properties.getCache().getQuoteLastKnownTtl();
+        if (lastKnownTtl > 0L) {
+            writes.add(new StockCacheService.Write(lastKnownQuoteCacheKey(symbolKey), stamped, lastKnownTtl));
+        }
+    }
+
+    private long quoteTtlMs(String symbolKey, Quote quote) {
+        long intradayTtl = properties.getCache().getQuoteTtl();
+        MarketCode market = marketOf(symbolKey);
+        return market == null ? intradayTtl : marketCalendar.quoteTtlMs(market, quote.getTimestamp(), intradayTtl);
+    }
+
+    /**
+     * 超過 soft TTL 且非收盤後的最終行情才視為 stale
+     */
+    private boolean isQuoteStale(String symbolKey, Quote quote, long ageMs) {
+        if (!isStale(ageMs, properties.getCache().getQuoteSoftTtl())) {
+            return false;
+        }
+        MarketCode market = marketOf(symbolKey);
+        return market == null || !marketCalendar.isSettled(market, quote.getTimestamp(), quote.getCachedAt());
+    }
+
+    /**
+     * symbolKey 格式為 {MarketCode}:{ExchangeCode}:{Ticker}
+     */
+    private static MarketCode marketOf(String symbolKey) {
+        int separator = symbolKey == null ? -1 : symbolKey.indexOf(':');
+        String code = separator > 0 ? symbolKey.substring(0, separator) : null;
+        return MarketCode.isSupported(code) ? MarketCode.fromCode(code) : null;
+    }
+
+    private Quote serveCachedQuote(String symbolKey, Quote quote) {
+        long ageMs = ageMs(quote.getCachedAt());
+        if (!isQuoteStale(symbolKey, quote, ageMs)) {
+            return quote;
+        }
+        metricsRecorder.recordStaleServed("quote");
+        scheduleRefresh(quoteCacheKey(symbolKey), "quote", () -> loadQuote(symbolKey));
+        return markStale(quote, ageMs);
+    }
+
+    /**
+     * 快取物件可能被 L1 共用，標記 stale 時一律複製
+     */
+    private static Quote markStale(Quote quote, long ageMs) {
+        return quote.toBuilder().stale(true).ageMs(ageMs).build();
+    }
+
+    private long ageMs(Instant cachedAt) {
+        if (cachedAt == null) {
+            return -1L;
+        }
+        return Math.max(0L, Duration.between(cachedAt, clockProvider.now()).toMillis());
+    }
+
+    /**
+     * 未記錄寫入時間（舊格式）或未設定 soft TTL 時視為新鮮，由 hard TTL 控制
+     */
+    private static boolean isStale(long ageMs, long softTtlMs) {
+        return softTtlMs > 0L && ageMs >= softTtlMs;
+    }
+
+    /**
+     * 背景刷新單一 key；同一 key 同時只排一個刷新，並與同步請求共用 singleFlight
+     */
+    private void scheduleRefresh(String key, String type, Supplier<?> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            stockRefreshExecutor.execute(() -> {
+                try {
+                    singleFlight(key, type, loader);
+                    metricsRecorder.recordBackgroundRefresh(type, "success");
+                } catch (RuntimeException ex) {
+                    metricsRecorder.recordBackgroundRefresh(type, "failure");
+                    log.warn("Background refresh failed: key={}, error={}", key, ex.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            refreshing.remove(key);
+            metricsRecorder.recordBackgroundRefresh(type, "rejected");
+        }
+    }
+
+    /**
+     * 批次報價的 stale 商品合併成一個背景工作，沿用 fetchQuotes 的分市場批次呼叫
+     */
+    private void scheduleBatchQuoteRefresh(List<String> symbolKeys) {
+        List<String> claimed = new ArrayList<>();
+        for (String symbolKey : symbolKeys) {
+            if (refreshing.add(quoteCacheKey(symbolKey))) {
+                claimed.add(symbolKey);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        try {
+            stockRefreshExecutor.execute(() -> {
+                try {
+                    fetchQuotes(claimed);
+                    metricsRecorder.recordBackgroundRefresh("quote", "success");
+                } catch (RuntimeException ex) {
+                    metricsRecorder.recordBackgroundRefresh("quote", "failure");
+                    log.warn("Background batch refresh failed: size={}, error={}", claimed.size(), ex.getMessage());
+                } finally {
+                    claimed.forEach(symbolKey -> refreshing.remove(quoteCacheKey(symbolKey)));
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            claimed.forEach(symbolKey -> refreshing.remove(quoteCacheKey(symbolKey)));
+            metricsRecorder.recordBackgroundRefresh("quote", "rejected");
+        }
     }
 
     private <T> T singleFlight(String key, String type, Supplier<T> supplier) {
@@ -167,7 +826,7 @@ public class StockQuoteService {
             }
         }
 
-        metricsRecorder.recordSingleFlightJoined(type);
+        metricsRecorder.recordSingleFlightJoined(type, StockMetricsRecorder.SINGLE_FLIGHT_LOCAL);
         try {
             @SuppressWarnings("unchecked")
             T value = (T) existing.join();
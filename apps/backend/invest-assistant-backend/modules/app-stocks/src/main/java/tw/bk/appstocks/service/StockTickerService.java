@@ -5,19 +5,18 @@ import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import tw.bk.appcommon.enums.AssetType;
 import tw.bk.appcommon.enums.ErrorCode;
 import tw.bk.appcommon.enums.InstrumentStatus;
 import tw.bk.appcommon.enums.TickerType;
 import tw.bk.appcommon.exception.BusinessException;
 import tw.bk.appcommon.enums.MarketCode;
-import tw.bk.apppersistence.entity.InstrumentEntity;
-import tw.bk.apppersistence.repository.InstrumentRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
 import tw.bk.appstocks.model.TickerItem;
 import tw.bk.appstocks.model.TickerList;
 import tw.bk.appstocks.model.TickerQuery;
@@ -25,13 +24,12 @@ import tw.bk.appstocks.port.StockMarketClient;
 
 @Service
 @RequiredArgsConstructor
-@Transactional(readOnly = true)
 public class StockTickerService {
 
     private static final String STATUS_ACTIVE = InstrumentStatus.ACTIVE.name();
 
     private final List<StockMarketClient> stockMarketClients;
-    private final InstrumentRepository instrumentRepository;
+    private final InstrumentCatalogService instrumentCatalogService;
     private Map<MarketCode, StockMarketClient> clientMap = Collections.emptyMap();
 
     @PostConstruct
@@ -63,18 +61,18 @@ public class StockTickerService {
         return client;
     }
 
+    /**
+     * 外部來源無資料時由記憶體商品目錄列出（市場、交易所、類型索引），不再載入整張商品表
+     */
     private TickerList buildFallbackList(MarketCode marketCode, TickerQuery query) {
-        List<InstrumentEntity> instruments = instrumentRepository.findAllWithRelations();
-
-        List<TickerItem> items = instruments.stream()
-                .filter(i -> i.getMarket() != null
-                        && marketCode.getCode().equalsIgnoreCase(i.getMarket().getCode()))
-                .filter(i -> matchesExchange(i, query.getExchange()))
-                .filter(i -> matchesMarket(i, query.getMarket()))
-                .filter(i -> matchesType(i, query.getType()))
-                .filter(i -> STATUS_ACTIVE.equalsIgnoreCase(i.getStatus()))
-                .map(this::toTickerItem)
-                .collect(Collectors.toList());
+        List<TickerItem> items = List.of();
+        if (matchesMarket(marketCode, query.getMarket())) {
+            items = instrumentCatalogService.list(
+                            marketCode, query.getExchange(), assetTypesOf(query.getType()), STATUS_ACTIVE)
+                    .stream()
+                    .map(this::toTickerItem)
+                    .collect(Collectors.toList());
+        }
 
         String resolvedMarket = query.getMarket();
         if (resolvedMarket == null || resolvedMarket.isBlank()) {
@@ -95,63 +93,38 @@ public class StockTickerService {
                 .build();
     }
 
-    private boolean matchesExchange(InstrumentEntity instrument, String exchange) {
-        if (exchange == null || exchange.isBlank()) {
-            return true;
-        }
-        if (instrument.getExchange() == null || instrument.getExchange().getCode() == null) {
-            return false;
-        }
-        return exchange.trim().equalsIgnoreCase(instrument.getExchange().getCode());
-    }
-
-    private boolean matchesMarket(InstrumentEntity instrument, String market) {
+    private boolean matchesMarket(MarketCode marketCode, String market) {
         if (market == null || market.isBlank()) {
             return true;
         }
-        if (instrument.getMarket() == null || instrument.getMarket().getCode() == null) {
-            return false;
-        }
-        return market.trim().equalsIgnoreCase(instrument.getMarket().getCode());
+        return market.trim().equalsIgnoreCase(marketCode.getCode());
     }
 
-    private boolean matchesType(InstrumentEntity instrument, String type) {
+    /**
+     * 查詢類型對應的 asset_type；null 表示不限制
+     */
+    private Set<String> assetTypesOf(String type) {
         if (type == null || type.isBlank()) {
-            return true;
-        }
-        String assetType = instrument.getAssetType();
-        if (assetType == null) {
-            return false;
+            return null;
         }
         String normalized = type.trim().toUpperCase();
         TickerType tickerType = TickerType.from(normalized);
-        if (tickerType == null) {
-            return assetType.equalsIgnoreCase(normalized);
-        }
         if (TickerType.EQUITY.equals(tickerType)) {
-            return AssetType.STOCK.name().equalsIgnoreCase(assetType)
-                    || AssetType.ETF.name().equalsIgnoreCase(assetType);
+            return Set.of(AssetType.STOCK.name(), AssetType.ETF.name());
         }
         if (TickerType.INDEX.equals(tickerType)) {
-            return "INDEX".equalsIgnoreCase(assetType);
+            return Set.of("INDEX");
         }
         if (TickerType.WARRANT.equals(tickerType)) {
-            return AssetType.WARRANT.name().equalsIgnoreCase(assetType);
+            return Set.of(AssetType.WARRANT.name());
         }
-        return assetType.equalsIgnoreCase(normalized);
+        return Set.of(normalized);
     }
 
-    private TickerItem toTickerItem(InstrumentEntity instrument) {
-        String name = instrument.getNameZh();
-        if (name == null || name.isBlank()) {
-            name = instrument.getNameEn();
-        }
-        if (name == null || name.isBlank()) {
-            name = instrument.getTicker();
-        }
+    private TickerItem toTickerItem(InstrumentCatalogRow instrument) {
         return TickerItem.builder()
-                .symbol(instrument.getTicker())
-                .name(name)
+                .symbol(instrument.ticker())
+                .name(instrument.displayName())
                 .build();
     }
 }
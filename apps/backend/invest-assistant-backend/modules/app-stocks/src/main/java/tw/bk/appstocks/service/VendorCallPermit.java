@@ -0,0 +1,40 @@
+package tw.bk.appstocks.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * {@link ExternalApiRateLimiter#acquire} 取得的單次外部呼叫許可
+ * adapter 在每個結果分支（成功、HTTP 錯誤、例外）呼叫一次 {@link #complete}，
+ * 釋放並行名額並把狀態碼、延遲與 Retry-After 回饋給 AIMD 限流；重複呼叫會被忽略
+ */
+public final class VendorCallPermit {
+    static final VendorCallPermit UNLIMITED = new VendorCallPermit(null);
+
+    private final Feedback feedback;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    VendorCallPermit(Feedback feedback) {
+        this.feedback = feedback;
+    }
+
+    /**
+     * 回報結果；status 為 null 表示未取得 HTTP 回應（逾時、連線錯誤、解析失敗）
+     */
+    public void complete(Integer status, long latencyMs) {
+        complete(status, latencyMs, null);
+    }
+
+    public void complete(Integer status, long latencyMs, HttpHeaders headers) {
+        if (feedback == null || !completed.compareAndSet(false, true)) {
+            return;
+        }
+        String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        feedback.onComplete(status, latencyMs, retryAfter);
+    }
+
+    @FunctionalInterface
+    interface Feedback {
+        void onComplete(Integer status, long latencyMs, String retryAfter);
+    }
+}
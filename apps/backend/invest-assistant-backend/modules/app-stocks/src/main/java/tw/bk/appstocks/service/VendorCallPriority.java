@@ -0,0 +1,64 @@
+package tw.bk.appstocks.service;
+
+import java.util.function.Supplier;
+
+/**
+ * 外部行情 API 呼叫的優先權（數值越小越先取得 {@link ExternalApiRateLimiter} 的 permit）
+ * 以 ThreadLocal 綁定在呼叫端執行緒上，adapter 不需改簽章；未指定時為 {@link #DEFAULT}
+ */
+public enum VendorCallPriority {
+    /**
+     * 使用者互動請求（StockController）
+     */
+    INTERACTIVE,
+
+    /**
+     * 背景刷新、報價串流等未特別標示的呼叫
+     */
+    DEFAULT,
+
+    /**
+     * 批次工作（估值快照、商品同步）
+     */
+    BATCH;
+
+    private static final ThreadLocal<VendorCallPriority> CURRENT = new ThreadLocal<>();
+
+    public static VendorCallPriority current() {
+        VendorCallPriority priority = CURRENT.get();
+        return priority == null ? DEFAULT : priority;
+    }
+
+    /**
+     * 設定目前執行緒的優先權，關閉 scope 時還原原本的設定（供 try-with-resources 使用）
+     */
+    public static Scope enter(VendorCallPriority priority) {
+        VendorCallPriority previous = CURRENT.get();
+        CURRENT.set(priority);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public static <T> T callAs(VendorCallPriority priority, Supplier<T> work) {
+        try (Scope ignored = enter(priority)) {
+            return work.get();
+        }
+    }
+
+    public static void runAs(VendorCallPriority priority, Runnable work) {
+        try (Scope ignored = enter(priority)) {
+            work.run();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
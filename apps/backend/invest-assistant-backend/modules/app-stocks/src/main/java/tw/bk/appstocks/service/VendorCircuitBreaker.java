@@ -0,0 +1,155 @@
+package tw.bk.appstocks.service;
+
+import java.util.function.Consumer;
+
+/**
+ * 單一 vendor/endpoint 的斷路器（closed → open → half-open）
+ * closed 時以最近 {@code windowSize} 次呼叫的失敗率判斷，達到門檻即 open 並直接拒絕，
+ * 經過 {@code openDuration} 後進入 half-open 只放行少量探測請求：全數成功才回到 closed，任一失敗立即重新 open。
+ * 每次狀態轉換遞增 generation，轉換前送出的請求回報的結果不會影響新狀態
+ */
+final class VendorCircuitBreaker {
+    static final long REJECTED = -1L;
+
+    enum State {
+        CLOSED(0), HALF_OPEN(1), OPEN(2);
+
+        private final int gaugeValue;
+
+        State(int gaugeValue) {
+            this.gaugeValue = gaugeValue;
+        }
+
+        int gaugeValue() {
+            return gaugeValue;
+        }
+    }
+
+    private final Consumer<State> transitionListener;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private boolean[] outcomes = new boolean[0];
+    private int outcomeIndex;
+    private int outcomeCount;
+    private int failureCount;
+    private long openedAt;
+    private int probesIssued;
+    private int probeSuccesses;
+
+    VendorCircuitBreaker(Consumer<State> transitionListener) {
+        this.transitionListener = transitionListener;
+    }
+
+    /**
+     * 嘗試放行一次呼叫
+     *
+     * @return 呼叫所屬的 generation，回報結果時帶回；斷路器 open 或 half-open 探測額度用完時回傳 {@link #REJECTED}
+     */
+    synchronized long tryAcquire(long now, long openDurationNanos, int halfOpenProbes) {
+        if (state == State.OPEN) {
+            if (now - openedAt < openDurationNanos) {
+                return REJECTED;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= Math.max(halfOpenProbes, 1)) {
+                return REJECTED;
+            }
+            probesIssued++;
+        }
+        return generation;
+    }
+
+    /**
+     * 已放行的探測請求在送出前被取消（例如限流拒絕），歸還探測額度
+     */
+    synchronized void release(long acquiredGeneration) {
+        if (acquiredGeneration == generation && state == State.HALF_OPEN && probesIssued > 0) {
+            probesIssued--;
+        }
+    }
+
+    synchronized void onResult(
+            long acquiredGeneration,
+            boolean failure,
+            long now,
+            int windowSize,
+            int minimumCalls,
+            double failureRateThreshold,
+            int halfOpenProbes) {
+        if (acquiredGeneration != generation) {
+            return;
+        }
+        switch (state) {
+            case CLOSED -> {
+                record(failure, Math.max(windowSize, 1));
+                if (outcomeCount >= Math.max(minimumCalls, 1)
+                        && (double) failureCount / outcomeCount >= failureRateThreshold) {
+                    open(now);
+                }
+            }
+            case HALF_OPEN -> {
+                if (failure) {
+                    open(now);
+                } else if (++probeSuccesses >= Math.max(halfOpenProbes, 1)) {
+                    transition(State.CLOSED);
+                }
+            }
+            case OPEN -> {
+                // open 期間不會放行同一 generation 的請求
+            }
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * open 狀態剩餘的奈秒數；非 open 時回傳 0
+     */
+    synchronized long openRemainingNanos(long now, long openDurationNanos) {
+        return state == State.OPEN ? Math.max(openDurationNanos - (now - openedAt), 0L) : 0L;
+    }
+
+    private void record(boolean failure, int windowSize) {
+        if (outcomes.length != windowSize) {
+            outcomes = new boolean[windowSize];
+            outcomeIndex = 0;
+            outcomeCount = 0;
+            failureCount = 0;
+        }
+        if (outcomeCount == windowSize) {
+            if (outcomes[outcomeIndex]) {
+                failureCount--;
+            }
+        } else {
+            outcomeCount++;
+        }
+        outcomes[outcomeIndex] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        outcomeIndex = (outcomeIndex + 1) % windowSize;
+    }
+
+    private void open(long now) {
+        openedAt = now;
+        transition(State.OPEN);
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+        probesIssued = 0;
+        probeSuccesses = 0;
+        if (next == State.CLOSED) {
+            outcomeIndex = 0;
+            outcomeCount = 0;
+            failureCount = 0;
+        }
+        transitionListener.accept(next);
+    }
+}
@@ -0,0 +1,210 @@
+package tw.bk.appstocks.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+/**
+ * 外部行情 API 的斷路器與延遲樣本
+ * 由 {@link ExternalApiRateLimiter#acquire} 在取得 permit 前呼叫 {@link #admit}，
+ * 結果經 {@link VendorCallPermit#complete} 回饋（與 {@code recordExternalCall} 記錄的是同一組狀態碼與延遲）；
+ * 成功呼叫的延遲同時作為 {@link HedgedCallExecutor} 的 hedge 延遲依據
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VendorCircuitBreakers {
+    private final StockMarketProperties properties;
+    private final StockMetricsRecorder metricsRecorder;
+    private final ConcurrentHashMap<String, VendorCircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencySamples> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * 放行一次呼叫；斷路器 open 時拋出 SERVICE_UNAVAILABLE
+     *
+     * @return 回報結果用的 admission；斷路器與 hedge 皆停用時回傳 null
+     */
+    Admission admit(String vendor, String endpoint) {
+        StockMarketProperties.CircuitBreaker config = properties.getCircuitBreaker();
+        boolean breakerEnabled = config != null && config.isEnabled();
+        boolean hedgeEnabled = properties.getHedge() != null && properties.getHedge().isEnabled();
+        if (!breakerEnabled && !hedgeEnabled) {
+            return null;
+        }
+
+        String key = key(vendor, endpoint);
+        LatencySamples samples = hedgeEnabled ? latencies.computeIfAbsent(key, ignored -> new LatencySamples()) : null;
+        if (!breakerEnabled) {
+            return new Admission(this, null, 0L, samples);
+        }
+
+        VendorCircuitBreaker breaker = breaker(vendor, endpoint);
+        long now = System.nanoTime();
+        long openDurationNanos = TimeUnit.MILLISECONDS.toNanos(config.getOpenDurationMs());
+        long generation = breaker.tryAcquire(now, openDurationNanos, config.getHalfOpenProbes());
+        if (generation == VendorCircuitBreaker.REJECTED) {
+            metricsRecorder.recordCircuitRejected(vendor, endpoint);
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("vendor", vendor);
+            details.put("endpoint", endpoint);
+            details.put("state", breaker.state().name());
+            details.put("retryAfterMs", TimeUnit.NANOSECONDS.toMillis(
+                    breaker.openRemainingNanos(now, openDurationNanos)));
+            throw new BusinessException(
+                    ErrorCode.SERVICE_UNAVAILABLE,
+                    "External API circuit open",
+                    details);
+        }
+        return new Admission(this, breaker, generation, samples);
+    }
+
+    /**
+     * 斷路器目前狀態；尚未有呼叫時為 closed
+     */
+    VendorCircuitBreaker.State state(String vendor, String endpoint) {
+        VendorCircuitBreaker breaker = breakers.get(key(normalize(vendor), normalize(endpoint)));
+        return breaker == null ? VendorCircuitBreaker.State.CLOSED : breaker.state();
+    }
+
+    /**
+     * hedge 延遲（毫秒）：近期成功延遲的 {@code percentile} 分位數，不低於 {@code min-delay-ms}
+     *
+     * @return 未啟用 hedge、樣本不足或斷路器非 closed 時回傳 -1
+     */
+    public long hedgeDelayMs(String vendor, String endpoint) {
+        StockMarketProperties.Hedge config = properties.getHedge();
+        if (config == null || !config.isEnabled()) {
+            return -1L;
+        }
+        String normalizedVendor = normalize(vendor);
+        String normalizedEndpoint = normalize(endpoint);
+        if (state(normalizedVendor, normalizedEndpoint) != VendorCircuitBreaker.State.CLOSED) {
+            return -1L;
+        }
+        LatencySamples samples = latencies.get(key(normalizedVendor, normalizedEndpoint));
+        long percentile = samples == null
+                ? -1L
+                : samples.percentile(config.getPercentile(), Math.max(config.getMinSamples(), 1));
+        return percentile < 0 ? -1L : Math.max(percentile, config.getMinDelayMs());
+    }
+
+    private void onComplete(Admission admission, Integer status, long latencyMs) {
+        boolean failure = status == null || status >= 500;
+        if (admission.samples != null && !failure && status < 400) {
+            admission.samples.add(latencyMs, Math.max(properties.getHedge().getSampleSize(), 1));
+        }
+        if (admission.breaker == null) {
+            return;
+        }
+        StockMarketProperties.CircuitBreaker config = properties.getCircuitBreaker();
+        admission.breaker.onResult(
+                admission.generation,
+                failure,
+                System.nanoTime(),
+                config.getWindowSize(),
+                config.getMinimumCalls(),
+                config.getFailureRateThreshold(),
+                config.getHalfOpenProbes());
+    }
+
+    private VendorCircuitBreaker breaker(String vendor, String endpoint) {
+        String key = key(vendor, endpoint);
+        VendorCircuitBreaker existing = breakers.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        VendorCircuitBreaker created = new VendorCircuitBreaker(state -> {
+            metricsRecorder.recordCircuitState(vendor, endpoint, state.gaugeValue());
+            if (state == VendorCircuitBreaker.State.OPEN) {
+                log.warn("Circuit breaker opened: vendor={}, endpoint={}", vendor, endpoint);
+            } else {
+                log.info("Circuit breaker {}: vendor={}, endpoint={}",
+                        state.name().toLowerCase(Locale.ROOT), vendor, endpoint);
+            }
+        });
+        VendorCircuitBreaker raced = breakers.putIfAbsent(key, created);
+        if (raced != null) {
+            return raced;
+        }
+        metricsRecorder.recordCircuitState(vendor, endpoint, VendorCircuitBreaker.State.CLOSED.gaugeValue());
+        return created;
+    }
+
+    private static String key(String vendor, String endpoint) {
+        return vendor + ":" + endpoint;
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.isBlank()) {
+            return "unknown";
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 單次放行：送出前被取消呼叫 {@link #cancel}，取得結果呼叫 {@link #complete}
+     */
+    static final class Admission {
+        private final VendorCircuitBreakers owner;
+        private final VendorCircuitBreaker breaker;
+        private final long generation;
+        private final LatencySamples samples;
+
+        private Admission(
+                VendorCircuitBreakers owner, VendorCircuitBreaker breaker, long generation, LatencySamples samples) {
+            this.owner = owner;
+            this.breaker = breaker;
+            this.generation = generation;
+            this.samples = samples;
+        }
+
+        void cancel() {
+            if (breaker != null) {
+                breaker.release(generation);
+            }
+        }
+
+        void complete(Integer status, long latencyMs) {
+            owner.onComplete(this, status, latencyMs);
+        }
+    }
+
+    /**
+     * 最近 N 次成功呼叫延遲的環狀緩衝
+     */
+    private static final class LatencySamples {
+        private long[] values = new long[0];
+        private int index;
+        private int count;
+
+        synchronized void add(long latencyMs, int capacity) {
+            if (values.length != capacity) {
+                values = Arrays.copyOf(values, capacity);
+                count = Math.min(count, capacity);
+                index = count % capacity;
+            }
+            values[index] = Math.max(latencyMs, 0L);
+            index = (index + 1) % capacity;
+            count = Math.min(count + 1, capacity);
+        }
+
+        synchronized long percentile(double percentile, int minSamples) {
+            if (count < minSamples) {
+                return -1L;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(Math.min(Math.max(percentile, 0.0), 1.0) * count) - 1;
+            return sorted[Math.min(Math.max(rank, 0), count - 1)];
+        }
+    }
+}
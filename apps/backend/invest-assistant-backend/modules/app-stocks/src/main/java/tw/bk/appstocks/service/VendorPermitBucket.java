@@ -0,0 +1,127 @@
+package tw.bk.appstocks.service;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * 單一 vendor/endpoint 的 token bucket 與等候佇列
+ * 容量為每個視窗的請求數（允許的 burst），以「容量 / 視窗」的速率連續補充。
+ * 沒有人在等且有 token 時直接取得；否則依（優先權, 到達順序）排隊，只有佇列最前面的等候者可以取 token。
+ */
+final class VendorPermitBucket {
+    /**
+     * 取得失敗（等待會超過期限）
+     */
+    static final long REJECTED = -1L;
+
+    private static final Comparator<Waiter> ORDER = Comparator
+            .comparingInt((Waiter waiter) -> waiter.priority().ordinal())
+            .thenComparingLong(Waiter::sequence);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(ORDER);
+    private final IntConsumer queueDepthListener;
+
+    private double tokens = -1;
+    private long refilledAt;
+    private long sequence;
+
+    VendorPermitBucket(IntConsumer queueDepthListener) {
+        this.queueDepthListener = queueDepthListener;
+    }
+
+    /**
+     * 取得一個 permit，最多等待 {@code maxWaitNanos}
+     * 依目前排在前面的等候者估計，必定等不到時不進入佇列、立即回傳失敗
+     *
+     * @return 實際等待的奈秒數；逾時回傳 {@link #REJECTED}
+     */
+    long acquire(VendorCallPriority priority, int capacity, long windowNanos, long maxWaitNanos)
+            throws InterruptedException {
+        double nanosPerToken = (double) windowNanos / capacity;
+        lock.lockInterruptibly();
+        try {
+            long startedAt = System.nanoTime();
+            refill(startedAt, capacity, nanosPerToken);
+            if (waiters.isEmpty() && tokens >= 1) {
+                tokens -= 1;
+                return 0L;
+            }
+
+            double needed = waitersAhead(priority) + 1 - tokens;
+            if (needed * nanosPerToken > maxWaitNanos) {
+                return REJECTED;
+            }
+
+            Waiter self = new Waiter(priority, sequence++);
+            waiters.add(self);
+            queueDepthListener.accept(waiters.size());
+            long deadline = startedAt + maxWaitNanos;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now, capacity, nanosPerToken);
+                    boolean head = waiters.peek() == self;
+                    if (head && tokens >= 1) {
+                        tokens -= 1;
+                        return now - startedAt;
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        return REJECTED;
+                    }
+                    long wait = head
+                            ? Math.min(remaining, (long) Math.ceil((1 - tokens) * nanosPerToken))
+                            : remaining;
+                    changed.awaitNanos(Math.max(wait, TimeUnit.MICROSECONDS.toNanos(100)));
+                }
+            } finally {
+                waiters.remove(self);
+                queueDepthListener.accept(waiters.size());
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queueDepth() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now, int capacity, double nanosPerToken) {
+        if (tokens < 0) {
+            tokens = capacity;
+            refilledAt = now;
+            return;
+        }
+        long elapsed = now - refilledAt;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed / nanosPerToken);
+            refilledAt = now;
+        }
+    }
+
+    private int waitersAhead(VendorCallPriority priority) {
+        int ahead = 0;
+        for (Waiter waiter : waiters) {
+            if (waiter.priority().ordinal() <= priority.ordinal()) {
+                ahead++;
+            }
+        }
+        return ahead;
+    }
+
+    private record Waiter(VendorCallPriority priority, long sequence) {
+    }
+}
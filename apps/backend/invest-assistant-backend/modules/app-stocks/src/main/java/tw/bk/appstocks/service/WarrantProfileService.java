@@ -1,14 +1,21 @@
 package tw.bk.appstocks.service;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
 import tw.bk.appstocks.model.WarrantProfileView;
 import tw.bk.apppersistence.entity.WarrantProfileEntity;
+import tw.bk.apppersistence.repository.InstrumentBatchRepository;
 import tw.bk.apppersistence.repository.WarrantProfileRepository;
+import tw.bk.apppersistence.repository.WarrantProfileRow;
 
 /**
  * Service for Warrant Profile operations.
@@ -18,6 +25,7 @@ import tw.bk.apppersistence.repository.WarrantProfileRepository;
 public class WarrantProfileService {
 
     private final WarrantProfileRepository warrantProfileRepository;
+    private final InstrumentBatchRepository instrumentBatchRepository;
 
     @Transactional(readOnly = true)
     public Optional<WarrantProfileEntity> findByInstrumentId(Long instrumentId) {
@@ -29,30 +37,34 @@ public class WarrantProfileService {
         return findByInstrumentId(instrumentId).map(this::toView);
     }
 
-    @Transactional(noRollbackFor = DataIntegrityViolationException.class)
+    /**
+     * 寫入或合併單筆權證基本資料；空白或 null 的欄位保留既有值
+     */
+    @Transactional
     public WarrantProfileEntity upsert(Long instrumentId, String underlyingSymbol, LocalDate expiryDate) {
-        WarrantProfileEntity entity = warrantProfileRepository.findByInstrumentId(instrumentId)
-                .orElseGet(WarrantProfileEntity::new);
-        entity.setInstrumentId(instrumentId);
-        if (underlyingSymbol != null && !underlyingSymbol.isBlank()) {
-            entity.setUnderlyingSymbol(underlyingSymbol.trim());
-        }
-        if (expiryDate != null) {
-            entity.setExpiryDate(expiryDate);
-        }
-        try {
-            return warrantProfileRepository.save(entity);
-        } catch (DataIntegrityViolationException ex) {
-            WarrantProfileEntity existing = warrantProfileRepository.findByInstrumentId(instrumentId)
-                    .orElseThrow(() -> ex);
-            if (underlyingSymbol != null && !underlyingSymbol.isBlank()) {
-                existing.setUnderlyingSymbol(underlyingSymbol.trim());
-            }
-            if (expiryDate != null) {
-                existing.setExpiryDate(expiryDate);
+        upsertAll(List.of(new WarrantProfileRow(instrumentId, underlyingSymbol, expiryDate)));
+        return warrantProfileRepository.findByInstrumentId(instrumentId)
+                .orElseThrow(() -> new BusinessException(ErrorCode.INTERNAL_ERROR,
+                        "Warrant profile not found after upsert: " + instrumentId));
+    }
+
+    /**
+     * 以多列 ON CONFLICT upsert 寫入（與商品同步相同路徑）；回傳實際寫入的列數
+     */
+    public int upsertAll(List<WarrantProfileRow> rows) {
+        Map<Long, WarrantProfileRow> byInstrument = new LinkedHashMap<>();
+        for (WarrantProfileRow row : rows) {
+            if (row.instrumentId() == null) {
+                continue;
             }
-            return warrantProfileRepository.save(existing);
+            String underlying = row.underlyingSymbol() == null || row.underlyingSymbol().isBlank()
+                    ? null
+                    : row.underlyingSymbol().trim();
+            // 同一批內 instrument_id 不可重複，以最後一筆為準
+            byInstrument.put(row.instrumentId(),
+                    new WarrantProfileRow(row.instrumentId(), underlying, row.expiryDate()));
         }
+        return instrumentBatchRepository.upsertWarrantProfiles(new ArrayList<>(byInstrument.values()));
     }
 
     private WarrantProfileView toView(WarrantProfileEntity entity) {
@@ -0,0 +1,110 @@
+package tw.bk.appstocks.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import tw.bk.appstocks.adapter.TpexWarrantMarketClient.TpexWarrantQuote;
+
+/**
+ * TPEx 權證快照的不可變索引（權證代號 → 依日期排序的快照）
+ * 每次下載（或從 Redis 讀回）只建立一次，之後單檔查詢為一次 hash 查找，不再線性掃描整份清單。
+ * 以來源快取 key 與到期時間判斷是否仍可使用，由 {@link WarrantQuoteService} 整份替換
+ */
+final class WarrantQuoteIndex {
+    /**
+     * 單筆快照的估計常駐大小：record + 代號字串 + LocalDate + 5 個 BigDecimal + Long
+     */
+    static final long ESTIMATED_QUOTE_BYTES = 320L;
+
+    /**
+     * 每個代號的估計索引成本：雜湊表槽位 + 單筆/多筆不可變 List
+     */
+    static final long ESTIMATED_CODE_BYTES = 64L;
+
+    private static final Comparator<TpexWarrantQuote> BY_DATE = Comparator.comparing(TpexWarrantQuote::date);
+
+    private final String sourceKey;
+    private final Instant expiresAt;
+    private final Map<String, List<TpexWarrantQuote>> quotesByCode;
+    private final int quoteCount;
+
+    private WarrantQuoteIndex(
+            String sourceKey, Instant expiresAt, Map<String, List<TpexWarrantQuote>> quotesByCode, int quoteCount) {
+        this.sourceKey = sourceKey;
+        this.expiresAt = expiresAt;
+        this.quotesByCode = quotesByCode;
+        this.quoteCount = quoteCount;
+    }
+
+    /**
+     * 建立索引（略過無代號或無日期者；代號去除前後空白）
+     */
+    static WarrantQuoteIndex build(String sourceKey, List<TpexWarrantQuote> quotes, Instant expiresAt) {
+        Map<String, List<TpexWarrantQuote>> grouped = new HashMap<>();
+        int count = 0;
+        if (quotes != null) {
+            for (TpexWarrantQuote quote : quotes) {
+                if (quote == null || quote.code() == null || quote.date() == null) {
+                    continue;
+                }
+                String code = quote.code().trim();
+                if (code.isEmpty()) {
+                    continue;
+                }
+                grouped.computeIfAbsent(code, ignored -> new ArrayList<>(1)).add(quote);
+                count++;
+            }
+        }
+        grouped.replaceAll((code, byCode) -> {
+            if (byCode.size() > 1) {
+                byCode.sort(BY_DATE);
+            }
+            return List.copyOf(byCode);
+        });
+        return new WarrantQuoteIndex(sourceKey, expiresAt, Map.copyOf(grouped), count);
+    }
+
+    /**
+     * 是否為同一份來源且尚未到期
+     */
+    boolean isValidFor(String sourceKey, Instant now) {
+        return this.sourceKey.equals(sourceKey) && now.isBefore(expiresAt);
+    }
+
+    /**
+     * 指定代號日期最新的一筆
+     */
+    Optional<TpexWarrantQuote> latest(String code) {
+        List<TpexWarrantQuote> byCode = history(code);
+        return byCode.isEmpty() ? Optional.empty() : Optional.of(byCode.get(byCode.size() - 1));
+    }
+
+    /**
+     * 指定代號的所有快照（依日期遞增）；查無時回傳空列表
+     */
+    List<TpexWarrantQuote> history(String code) {
+        if (code == null) {
+            return List.of();
+        }
+        return quotesByCode.getOrDefault(code.trim(), List.of());
+    }
+
+    int codeCount() {
+        return quotesByCode.size();
+    }
+
+    int quoteCount() {
+        return quoteCount;
+    }
+
+    /**
+     * 估計常駐記憶體（位元組），僅供監控趨勢參考
+     */
+    long estimatedBytes() {
+        return quoteCount * ESTIMATED_QUOTE_BYTES + quotesByCode.size() * ESTIMATED_CODE_BYTES;
+    }
+}
@@ -2,6 +2,7 @@ package tw.bk.appstocks.service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
@@ -9,39 +10,56 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.enums.MarketCode;
 import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appcommon.time.ClockProvider;
 import tw.bk.appstocks.adapter.TpexWarrantMarketClient;
 import tw.bk.appstocks.adapter.TpexWarrantMarketClient.TpexWarrantQuote;
 import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleInterval;
 import tw.bk.appstocks.model.Quote;
 import tw.bk.appstocks.config.StockMarketProperties;
 
+/**
+ * 權證行情（TPEx 日/月快照）
+ * 每份下載只建立一次 {@link WarrantQuoteIndex}（代號 → 快照），以 AtomicReference 整份替換；
+ * 單檔報價與 K 線為 hash 查找，不再對數千筆快照線性掃描
+ */
 @Service
 @RequiredArgsConstructor
 public class WarrantQuoteService {
     private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
     private static final ZoneId TAIPEI_TZ = ZoneId.of("Asia/Taipei");
+    private static final String DAILY_FEED = "daily";
+    private static final String MONTHLY_FEED = "monthly";
 
     private final TpexWarrantMarketClient marketClient;
     private final StockCacheService cacheService;
     private final StockMarketProperties properties;
-    private final ConcurrentHashMap<String, CompletableFuture<List<TpexWarrantQuote>>> inflight = new ConcurrentHashMap<>();
+    private final MarketCalendar marketCalendar;
+    private final CandleAggregator candleAggregator;
+    private final StockMetricsRecorder metricsRecorder;
+    private final ClockProvider clockProvider;
+    private final ConcurrentHashMap<String, CompletableFuture<WarrantQuoteIndex>> inflight = new ConcurrentHashMap<>();
+    private final AtomicReference<WarrantQuoteIndex> dailyIndex = new AtomicReference<>();
+    private final AtomicReference<WarrantQuoteIndex> monthlyIndex = new AtomicReference<>();
 
     public Quote getQuote(String ticker) {
-        List<TpexWarrantQuote> quotes = fetchDailyQuotesCached();
-        TpexWarrantQuote latest = quotes.stream()
-                .filter(q -> matchTicker(q.code(), ticker))
-                .max(Comparator.comparing(TpexWarrantQuote::date))
+        WarrantQuoteIndex index = dailyIndexCached();
+        long startedAt = System.nanoTime();
+        Optional<TpexWarrantQuote> found = index.latest(ticker);
+        metricsRecorder.recordWarrantIndexLookup(DAILY_FEED, System.nanoTime() - startedAt, found.isPresent());
+        TpexWarrantQuote latest = found
                 .orElseThrow(() -> new BusinessException(ErrorCode.NOT_FOUND,
                         "Warrant quote not found: " + ticker));
 
@@ -71,22 +89,25 @@ public class WarrantQuoteService {
                 .build();
     }
 
+    /**
+     * 權證 K 線：TPEx 只提供日/月快照，其他日以上週期（1w、1q、1y…）由 {@link CandleAggregator} 聚合；
+     * 月的倍數由月資料聚合（歷史較長），其餘由日資料聚合，不支援盤中週期
+     */
     public List<Candle> getCandles(String ticker, String interval, LocalDate from, LocalDate to) {
-        String normalized = interval == null ? "1d" : interval.trim().toLowerCase(Locale.ROOT);
-        List<TpexWarrantQuote> quotes;
-        if ("1d".equals(normalized)) {
-            quotes = fetchDailyQuotesCached();
-        } else if ("1mo".equals(normalized)) {
-            quotes = fetchMonthlyQuotesCached();
-        } else {
+        CandleInterval target = CandleInterval.parse(interval);
+        if (target == null || target.isIntraday()) {
             throw new BusinessException(ErrorCode.VALIDATION_ERROR,
-                    "Warrant candles only support 1d/1mo interval");
+                    "Warrant candles do not support interval: " + interval);
         }
+        boolean monthly = target.unit() == CandleInterval.Unit.MONTH;
+        String feed = monthly ? MONTHLY_FEED : DAILY_FEED;
+        WarrantQuoteIndex index = monthly ? monthlyIndexCached() : dailyIndexCached();
+        long startedAt = System.nanoTime();
+        List<TpexWarrantQuote> history = index.history(ticker);
+        metricsRecorder.recordWarrantIndexLookup(feed, System.nanoTime() - startedAt, !history.isEmpty());
 
-        return quotes.stream()
-                .filter(q -> matchTicker(q.code(), ticker))
+        List<Candle> candles = history.stream()
                 .filter(q -> isWithinRange(q.date(), from, to))
-                .sorted(Comparator.comparing(TpexWarrantQuote::date))
                 .map(q -> Candle.builder()
                         .ticker(q.code())
                         .timestamp(toTimestamp(q.date()))
@@ -97,13 +118,8 @@ public class WarrantQuoteService {
                         .volume(q.volume())
                         .build())
                 .toList();
-    }
-
-    private boolean matchTicker(String code, String ticker) {
-        if (code == null || ticker == null) {
-            return false;
-        }
-        return Objects.equals(code.trim(), ticker.trim());
+        boolean nativeInterval = monthly ? target.amount() == 1 : !target.isDerived();
+        return nativeInterval ? candles : candleAggregator.aggregate(target.code(), candles);
     }
 
     private boolean isWithinRange(LocalDate date, LocalDate from, LocalDate to) {
@@ -120,48 +136,87 @@ public class WarrantQuoteService {
         return date.atStartOfDay(ZoneOffset.UTC).toLocalDateTime();
     }
 
-    private List<TpexWarrantQuote> fetchDailyQuotesCached() {
-        LocalDate today = LocalDate.now(TAIPEI_TZ);
+    private WarrantQuoteIndex dailyIndexCached() {
+        LocalDate today = marketCalendar.today(MarketCode.TW);
         String cacheKey = "warrant:daily:" + today;
-        Optional<List<TpexWarrantQuote>> cached = cacheService.getList(cacheKey, TpexWarrantQuote.class);
-        if (cached.isPresent()) {
-            return cached.get();
-        }
-        return singleFlight(cacheKey, () -> {
-            Optional<List<TpexWarrantQuote>> cachedAgain = cacheService.getList(cacheKey, TpexWarrantQuote.class);
-            if (cachedAgain.isPresent()) {
-                return cachedAgain.get();
+        return indexCached(DAILY_FEED, cacheKey, dailyIndex, () -> {
+            Optional<StockCacheService.Expiring<List<TpexWarrantQuote>>> cached =
+                    cacheService.getListWithTtl(cacheKey, TpexWarrantQuote.class);
+            if (cached.isPresent()) {
+                List<TpexWarrantQuote> quotes = cached.get().value();
+                return new IndexSource(quotes, Math.min(dailyQuotesTtlMs(quotes), cached.get().remainingMs()));
             }
             List<TpexWarrantQuote> quotes = marketClient.fetchDailyQuotes();
-            cacheService.setList(cacheKey, quotes, properties.getCache().getQuoteTtl());
-            return quotes;
+            long ttlMs = dailyQuotesTtlMs(quotes);
+            cacheService.setList(cacheKey, quotes, ttlMs);
+            return new IndexSource(quotes, ttlMs);
         });
     }
 
-    private List<TpexWarrantQuote> fetchMonthlyQuotesCached() {
+    /**
+     * TPEx 日行情為盤後資料：資料日期已涵蓋最近交易日時快取到下次開盤，否則以 quoteTtl 持續輪詢
+     */
+    private long dailyQuotesTtlMs(List<TpexWarrantQuote> quotes) {
+        Instant latest = quotes.stream()
+                .map(TpexWarrantQuote::date)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .map(date -> date.atStartOfDay(TAIPEI_TZ).toInstant())
+                .orElse(null);
+        return marketCalendar.quoteTtlMs(MarketCode.TW, latest, properties.getCache().getQuoteTtl());
+    }
+
+    private WarrantQuoteIndex monthlyIndexCached() {
         YearMonth month = YearMonth.now(TAIPEI_TZ);
         String cacheKey = "warrant:monthly:" + month;
-        Optional<List<TpexWarrantQuote>> cached = cacheService.getList(cacheKey, TpexWarrantQuote.class);
-        if (cached.isPresent()) {
-            return cached.get();
+        return indexCached(MONTHLY_FEED, cacheKey, monthlyIndex, () -> {
+            long ttlMs = properties.getCache().getCandlesTtl();
+            Optional<StockCacheService.Expiring<List<TpexWarrantQuote>>> cached =
+                    cacheService.getListWithTtl(cacheKey, TpexWarrantQuote.class);
+            if (cached.isPresent()) {
+                return new IndexSource(cached.get().value(), Math.min(ttlMs, cached.get().remainingMs()));
+            }
+            List<TpexWarrantQuote> quotes = marketClient.fetchMonthlyQuotes();
+            cacheService.setList(cacheKey, quotes, ttlMs);
+            return new IndexSource(quotes, ttlMs);
+        });
+    }
+
+    /**
+     * 目前索引仍對應同一個快取 key 且未到期時直接使用；否則（single-flight）讀 Redis 或重新下載後重建並整份替換。
+     * 自行下載時索引到期時間與寫入 Redis 的 TTL 相同；讀 Redis 時以該 key 的剩餘 TTL 為上限，
+     * 索引不會比 Redis 的副本活得久，其他節點更新的資料最晚在一個 TTL 內被讀到
+     */
+    private WarrantQuoteIndex indexCached(
+            String feed, String cacheKey, AtomicReference<WarrantQuoteIndex> holder, Supplier<IndexSource> loader) {
+        WarrantQuoteIndex current = holder.get();
+        if (current != null && current.isValidFor(cacheKey, clockProvider.now())) {
+            return current;
         }
         return singleFlight(cacheKey, () -> {
-            Optional<List<TpexWarrantQuote>> cachedAgain = cacheService.getList(cacheKey, TpexWarrantQuote.class);
-            if (cachedAgain.isPresent()) {
-                return cachedAgain.get();
+            WarrantQuoteIndex latest = holder.get();
+            Instant now = clockProvider.now();
+            if (latest != null && latest.isValidFor(cacheKey, now)) {
+                return latest;
             }
-            List<TpexWarrantQuote> quotes = marketClient.fetchMonthlyQuotes();
-            cacheService.setList(cacheKey, quotes, properties.getCache().getCandlesTtl());
-            return quotes;
+            IndexSource source = loader.get();
+            WarrantQuoteIndex index = WarrantQuoteIndex.build(
+                    cacheKey, source.quotes(), now.plusMillis(Math.max(source.ttlMs(), 0L)));
+            holder.set(index);
+            metricsRecorder.recordWarrantIndex(feed, index.codeCount(), index.estimatedBytes());
+            return index;
         });
     }
 
-    private List<TpexWarrantQuote> singleFlight(String key, Supplier<List<TpexWarrantQuote>> supplier) {
-        CompletableFuture<List<TpexWarrantQuote>> future = new CompletableFuture<>();
-        CompletableFuture<List<TpexWarrantQuote>> existing = inflight.putIfAbsent(key, future);
+    private record IndexSource(List<TpexWarrantQuote> quotes, long ttlMs) {
+    }
+
+    private WarrantQuoteIndex singleFlight(String key, Supplier<WarrantQuoteIndex> supplier) {
+        CompletableFuture<WarrantQuoteIndex> future = new CompletableFuture<>();
+        CompletableFuture<WarrantQuoteIndex> existing = inflight.putIfAbsent(key, future);
         if (existing == null) {
             try {
-                List<TpexWarrantQuote> value = supplier.get();
+                WarrantQuoteIndex value = supplier.get();
                 future.complete(value);
                 return value;
             } catch (Throwable ex) {
@@ -0,0 +1,152 @@
+package tw.bk.appstocks.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appcommon.http.OutboundHttpClientFactory;
+import tw.bk.appcommon.http.OutboundHttpPoolSettings;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.service.CandleAggregator;
+import tw.bk.appstocks.service.ExternalApiRateLimiter;
+import tw.bk.appstocks.service.StockMetricsRecorder;
+import tw.bk.appstocks.service.VendorCallPriority;
+import tw.bk.appstocks.service.VendorCircuitBreakers;
+
+/**
+ * 以本機 stub HTTP server 注入 429，驗證 FugleClient 經 ExternalApiRateLimiter 的 AIMD 調整
+ */
+@ExtendWith(MockitoExtension.class)
+class FugleClientAdaptiveThrottleTest {
+    private static final String QUOTE_BODY = "{\"symbol\":\"2330\",\"lastPrice\":1000.0,\"referencePrice\":990.0}";
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Queue<String> tooManyRequests = new ConcurrentLinkedQueue<>();
+    private final List<Long> arrivals = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private OutboundHttpClientFactory httpClients;
+    private StockMarketProperties properties;
+    private FugleClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/intraday/quote/", this::handleQuote);
+        server.start();
+
+        when(meterRegistryProvider.getIfAvailable()).thenReturn(meterRegistry);
+        httpClients = new OutboundHttpClientFactory(new OutboundHttpPoolSettings(), meterRegistry);
+        properties = new StockMarketProperties();
+        properties.getFugle().setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        properties.getRateLimit().setFugleLimit(8);
+        StockMetricsRecorder metricsRecorder = new StockMetricsRecorder(meterRegistryProvider);
+        client = new FugleClient(
+                properties,
+                new ObjectMapper(),
+                new ExternalApiRateLimiter(
+                        properties, metricsRecorder, new VendorCircuitBreakers(properties, metricsRecorder)),
+                metricsRecorder,
+                new CandleAggregator(),
+                httpClients.restClient("fugle", Duration.ofSeconds(3), Duration.ofSeconds(5)).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClients.close();
+        server.stop(0);
+    }
+
+    @Test
+    void tooManyRequests_shouldHalveLimitsAndWaitOutRetryAfter() {
+        tooManyRequests.add("1");
+
+        BusinessException ex = assertThrows(BusinessException.class, () -> client.getQuote("2330"));
+        assertEquals(ErrorCode.RATE_LIMITED, ex.getErrorCode());
+        assertEquals(4.0, gauge("stock.external.ratelimit.effective"));
+        assertEquals(4.0, gauge("stock.external.ratelimit.concurrency"));
+
+        assertTrue(client.getQuote("2330").isPresent());
+        long gapMs = TimeUnit.NANOSECONDS.toMillis(arrivals.get(1) - arrivals.get(0));
+        assertTrue(gapMs >= 900, "second request sent after " + gapMs + " ms");
+    }
+
+    @Test
+    void retryAfterBeyondDeadline_shouldRejectWithoutCallingVendor() {
+        tooManyRequests.add("30");
+        assertThrows(BusinessException.class, () -> client.getQuote("2330"));
+
+        BusinessException ex = assertThrows(BusinessException.class,
+                () -> VendorCallPriority.callAs(VendorCallPriority.INTERACTIVE, () -> client.getQuote("2330")));
+
+        assertEquals(ErrorCode.RATE_LIMITED, ex.getErrorCode());
+        assertEquals(1, arrivals.size());
+    }
+
+    @Test
+    void successes_shouldGrowLimitBackGradually() {
+        properties.getRateLimit().setWindowMs(100);
+        tooManyRequests.add("0");
+        assertThrows(BusinessException.class, () -> client.getQuote("2330"));
+        assertEquals(4.0, gauge("stock.external.ratelimit.effective"));
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(client.getQuote("2330").isPresent());
+        }
+        assertEquals(5.0, gauge("stock.external.ratelimit.effective"));
+
+        for (int i = 0; i < 40; i++) {
+            client.getQuote("2330");
+        }
+        assertEquals(8.0, gauge("stock.external.ratelimit.effective"));
+        assertEquals(8.0, gauge("stock.external.ratelimit.concurrency"));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("vendor", "fugle").gauge().value();
+    }
+
+    private void handleQuote(HttpExchange exchange) throws IOException {
+        arrivals.add(System.nanoTime());
+        String retryAfter = tooManyRequests.poll();
+        if (retryAfter != null) {
+            exchange.getResponseHeaders().add("Retry-After", retryAfter);
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = QUOTE_BODY.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package tw.bk.appstocks.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appcommon.http.OutboundHttpClientFactory;
+import tw.bk.appcommon.http.OutboundHttpPoolSettings;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.Quote;
+import tw.bk.appstocks.service.CandleAggregator;
+import tw.bk.appstocks.service.ExternalApiRateLimiter;
+import tw.bk.appstocks.service.StockMetricsRecorder;
+import tw.bk.appstocks.service.VendorCircuitBreakers;
+
+/**
+ * 以錄製的 Fugle {@code /snapshot/quotes/{market}} 回應驗證全市場快照的串流解析與呼叫次數
+ */
+@ExtendWith(MockitoExtension.class)
+class FugleClientSnapshotTest {
+    private static final String TSE_FIXTURE = "/fixtures/fugle/fugle_snapshot_quotes_tse.json";
+    private static final String OTC_FIXTURE = "/fixtures/fugle/fugle_snapshot_quotes_otc.json";
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private volatile String failingMarket;
+    private HttpServer server;
+    private OutboundHttpClientFactory httpClients;
+    private StockMarketProperties properties;
+    private FugleClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/snapshot/quotes/", this::handleSnapshot);
+        server.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        lenient().when(meterRegistryProvider.getIfAvailable()).thenReturn(meterRegistry);
+        httpClients = new OutboundHttpClientFactory(new OutboundHttpPoolSettings(), meterRegistry);
+        properties = new StockMarketProperties();
+        properties.getFugle().setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        StockMetricsRecorder metricsRecorder = new StockMetricsRecorder(meterRegistryProvider);
+        client = new FugleClient(
+                properties,
+                new ObjectMapper(),
+                new ExternalApiRateLimiter(
+                        properties, metricsRecorder, new VendorCircuitBreakers(properties, metricsRecorder)),
+                metricsRecorder,
+                new CandleAggregator(),
+                httpClients.restClient("fugle", Duration.ofSeconds(3), Duration.ofSeconds(5)).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClients.close();
+        server.stop(0);
+    }
+
+    @Test
+    void parseSnapshot_shouldMapFixtureRowsAndSkipRowsWithoutTrade() throws IOException {
+        List<Quote> quotes = new ArrayList<>();
+        try (InputStream body = getClass().getResourceAsStream(TSE_FIXTURE)) {
+            assertNotNull(body);
+            assertEquals(3, client.parseSnapshot(body, quotes::add));
+        }
+
+        assertEquals(List.of("0050", "2330", "2317"), quotes.stream().map(Quote::getTicker).toList());
+        Quote tsmc = quotes.get(1);
+        assertEquals(new BigDecimal("1010"), tsmc.getPrice());
+        assertEquals(new BigDecimal("1005"), tsmc.getOpen());
+        assertEquals(new BigDecimal("1000"), tsmc.getPreviousClose());
+        assertEquals(new BigDecimal("10"), tsmc.getChange());
+        assertEquals(41_235L, tsmc.getVolume());
+        // lastUpdated 為 epoch 微秒（13:30 收盤）
+        assertEquals(Instant.parse("2026-02-27T05:30:00Z"), tsmc.getTimestamp());
+        assertEquals(new BigDecimal("151.5"), quotes.get(2).getPreviousClose());
+    }
+
+    @Test
+    void streamMarketSnapshot_shouldCoverListedAndOtcMarketsInOneCallEach() {
+        List<Quote> quotes = new ArrayList<>();
+
+        int delivered = client.streamMarketSnapshot(quotes::add);
+
+        assertEquals(4, delivered);
+        assertEquals(List.of("0050", "2330", "2317", "6488"), quotes.stream().map(Quote::getTicker).toList());
+        assertEquals(List.of("/snapshot/quotes/TSE?type=ALLBUT0999", "/snapshot/quotes/OTC?type=ALLBUT0999"),
+                requests);
+        assertTrue(client.supportsMarketSnapshot());
+    }
+
+    @Test
+    void streamMarketSnapshot_shouldReportFailedMarketAfterStreamingTheOthers() {
+        failingMarket = "TSE";
+        List<Quote> quotes = new ArrayList<>();
+
+        BusinessException ex = assertThrows(BusinessException.class, () -> client.streamMarketSnapshot(quotes::add));
+
+        assertEquals(ErrorCode.INTERNAL_ERROR, ex.getErrorCode());
+        assertTrue(ex.getMessage().contains("[TSE]"), ex.getMessage());
+        // 上市失敗不影響上櫃，已交給 consumer 的列仍有效
+        assertEquals(List.of("6488"), quotes.stream().map(Quote::getTicker).toList());
+        assertEquals(2, requests.size());
+    }
+
+    private void handleSnapshot(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requests.add(path + "?" + exchange.getRequestURI().getRawQuery());
+        if (failingMarket != null && path.endsWith("/" + failingMarket)) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        String fixture = path.endsWith("/OTC") ? OTC_FIXTURE : TSE_FIXTURE;
+        byte[] body;
+        try (InputStream in = getClass().getResourceAsStream(fixture)) {
+            body = in.readAllBytes();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
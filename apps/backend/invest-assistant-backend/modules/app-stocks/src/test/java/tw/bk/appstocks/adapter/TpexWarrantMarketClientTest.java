@@ -0,0 +1,196 @@
+package tw.bk.appstocks.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.web.client.RestClient;
+import tw.bk.appstocks.adapter.TpexWarrantMarketClient.QuoteType;
+import tw.bk.appstocks.adapter.TpexWarrantMarketClient.TpexWarrantQuote;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+class TpexWarrantMarketClientTest {
+    private static final String DAILY_FIXTURE = "/fixtures/tpex/tpex_warrant_daily_quts.json";
+    private static final int FULL_MARKET_ROWS = 40_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TpexWarrantMarketClient client =
+            new TpexWarrantMarketClient(new StockMarketProperties(), objectMapper, RestClient.create());
+
+    @Test
+    void parseQuotes_shouldMapFixtureRowsAndSkipInvalidOnes() throws IOException {
+        List<TpexWarrantQuote> quotes = new ArrayList<>();
+        try (InputStream body = getClass().getResourceAsStream(DAILY_FIXTURE)) {
+            assertNotNull(body);
+            assertEquals(4, client.parseQuotes(body, QuoteType.DAILY, quotes::add));
+        }
+
+        assertEquals(List.of("700001", "700002", "700003", "700005"),
+                quotes.stream().map(TpexWarrantQuote::code).toList());
+        TpexWarrantQuote first = quotes.get(0);
+        assertEquals(LocalDate.of(2026, 2, 27), first.date());
+        assertEquals(new BigDecimal("1.01"), first.close());
+        assertEquals(new BigDecimal("0.10"), first.change());
+        assertEquals(125_000L, first.volume());
+        assertNull(quotes.get(2).close());
+        assertNull(quotes.get(3).change());
+    }
+
+    @Test
+    void parseQuotes_shouldMapArrayRowsByFieldsEvenWhenFieldsComeLast() throws IOException {
+        String json = "{\"stat\":\"OK\",\"data\":[[\"2026/02\",\"700001\",\"1.20\"],[\"2026/02\",\"700002\",\"3.00\"]],"
+                + "\"fields\":[\"日期\",\"代號\",\"收盤價\"]}";
+        List<TpexWarrantQuote> quotes = new ArrayList<>();
+
+        int count = client.parseQuotes(utf8(json), QuoteType.MONTHLY, quotes::add);
+
+        assertEquals(2, count);
+        assertEquals(LocalDate.of(2026, 2, 1), quotes.get(0).date());
+        assertEquals(new BigDecimal("3.00"), quotes.get(1).close());
+    }
+
+    @Test
+    void parseQuotes_shouldDeliverFirstRowBeforeReadingWholeFullMarketBody() throws IOException {
+        SyntheticMarketStream body = new SyntheticMarketStream(FULL_MARKET_ROWS);
+        AtomicLong bytesAtFirstRow = new AtomicLong(-1);
+
+        int count = client.parseQuotes(body, QuoteType.DAILY, quote -> {
+            if (bytesAtFirstRow.get() < 0) {
+                bytesAtFirstRow.set(body.bytesRead());
+            }
+        });
+
+        assertEquals(FULL_MARKET_ROWS, count);
+        assertTrue(bytesAtFirstRow.get() < body.bytesRead() / 100,
+                "first row at " + bytesAtFirstRow.get() + " of " + body.bytesRead() + " bytes");
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "stock.benchmark", matches = "true")
+    void benchmark_peakHeapStreamingVersusTree() throws IOException {
+        long treePeak = measurePeakHeap(() -> {
+            String text = new String(new SyntheticMarketStream(FULL_MARKET_ROWS).readAllBytes(), StandardCharsets.UTF_8);
+            JsonNode root = objectMapper.readTree(text);
+            return root.size();
+        });
+        long streamingPeak = measurePeakHeap(() -> client.parseQuotes(
+                new SyntheticMarketStream(FULL_MARKET_ROWS), QuoteType.DAILY, quote -> {
+                }));
+
+        System.out.printf("tpex full market rows=%d peak heap: readTree=%d KB, streaming=%d KB%n",
+                FULL_MARKET_ROWS, treePeak / 1024, streamingPeak / 1024);
+    }
+
+    private static long measurePeakHeap(IoTask task) throws IOException {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        long baseline = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+            baseline += pool.getUsage().getUsed();
+        }
+        int result = task.run();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        assertTrue(result > 0);
+        return Math.max(0, peak - baseline);
+    }
+
+    private static InputStream utf8(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @FunctionalInterface
+    private interface IoTask {
+        int run() throws IOException;
+    }
+
+    /**
+     * 依 TPEx OpenAPI 外型即時產生的全市場回應，不在記憶體保留整份內容，並記錄已被讀取的位元組數
+     */
+    private static final class SyntheticMarketStream extends InputStream {
+        private final int rows;
+        private int nextRow;
+        private byte[] chunk = "[".getBytes(StandardCharsets.UTF_8);
+        private int position;
+        private long bytesRead;
+        private boolean finished;
+
+        SyntheticMarketStream(int rows) {
+            this.rows = rows;
+        }
+
+        long bytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public int read() {
+            if (!ensureChunk()) {
+                return -1;
+            }
+            bytesRead++;
+            return chunk[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!ensureChunk()) {
+                return -1;
+            }
+            int copied = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, buffer, offset, copied);
+            position += copied;
+            bytesRead += copied;
+            return copied;
+        }
+
+        private boolean ensureChunk() {
+            while (position >= chunk.length) {
+                if (finished) {
+                    return false;
+                }
+                position = 0;
+                if (nextRow == rows) {
+                    chunk = "]".getBytes(StandardCharsets.UTF_8);
+                    finished = true;
+                } else {
+                    chunk = row(nextRow++).getBytes(StandardCharsets.UTF_8);
+                }
+            }
+            return true;
+        }
+
+        private String row(int index) {
+            String close = BigDecimal.valueOf(100 + index % 500, 2).toPlainString();
+            return (index == 0 ? "" : ",")
+                    + "{\"Date\":\"2026/02/27\",\"Code\":\"" + (700_000 + index) + "\",\"Name\":\"權證" + index
+                    + "\",\"Close\":\"" + close + "\",\"Change\":\"0.01\",\"Open\":\"" + close
+                    + "\",\"High\":\"" + close + "\",\"Low\":\"" + close + "\",\"TradeVol.\":\"1,000\"}";
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package tw.bk.appstocks.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+import tw.bk.appstocks.adapter.TwDailyCloseClient.DailyClose;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+class TwDailyCloseClientTest {
+    private static final String TWSE_FIXTURE = "/fixtures/twse/twse_stock_day_all.json";
+    private static final String TPEX_FIXTURE = "/fixtures/tpex/tpex_mainboard_daily_close_quotes.json";
+    private static final LocalDate TRADE_DATE = LocalDate.of(2026, 3, 6);
+
+    private final TwDailyCloseClient client = new TwDailyCloseClient(
+            new StockMarketProperties(), new ObjectMapper(), RestClient.create(), RestClient.create());
+
+    @Test
+    void parseCloses_shouldMapTwseFixtureAndKeepNoTradeRows() throws IOException {
+        List<DailyClose> closes = parseFixture(TWSE_FIXTURE, 5);
+
+        assertEquals(List.of("0050", "2330", "2317", "1260", "9999"),
+                closes.stream().map(DailyClose::code).toList());
+        DailyClose tsmc = closes.get(1);
+        assertEquals(TRADE_DATE, tsmc.date());
+        assertEquals(new BigDecimal("1005.00"), tsmc.open());
+        assertEquals(new BigDecimal("1015.00"), tsmc.high());
+        assertEquals(new BigDecimal("1000.00"), tsmc.low());
+        assertEquals(new BigDecimal("1010.00"), tsmc.close());
+        assertEquals(41_235_118L, tsmc.volume());
+        assertTrue(tsmc.hasTrade());
+        // 無成交：價格欄位為空字串
+        assertFalse(closes.get(3).hasTrade());
+        assertNull(closes.get(3).close());
+    }
+
+    @Test
+    void parseCloses_shouldMapTpexFixtureFieldNames() throws IOException {
+        List<DailyClose> closes = parseFixture(TPEX_FIXTURE, 3);
+
+        assertEquals(List.of("6488", "00679B", "5483"), closes.stream().map(DailyClose::code).toList());
+        DailyClose bondEtf = closes.get(1);
+        assertEquals(TRADE_DATE, bondEtf.date());
+        assertEquals(new BigDecimal("27.85"), bondEtf.close());
+        assertEquals(15_830_211L, bondEtf.volume());
+        assertEquals(new BigDecimal("480.00"), closes.get(0).close());
+        // 無成交：價格欄位為 ----
+        assertFalse(closes.get(2).hasTrade());
+    }
+
+    @Test
+    void parseCloses_shouldAcceptRocAndGregorianDates() throws IOException {
+        String json = "[{\"Date\":\"115/03/06\",\"Code\":\"2330\",\"ClosingPrice\":\"1010\"},"
+                + "{\"Date\":\"20260306\",\"Code\":\"2317\",\"ClosingPrice\":\"152.5\"},"
+                + "{\"Date\":\"2026-03-06\",\"Code\":\"0050\",\"ClosingPrice\":\"200.1\"},"
+                + "{\"Date\":\"N/A\",\"Code\":\"2303\",\"ClosingPrice\":\"50\"}]";
+        List<DailyClose> closes = new ArrayList<>();
+
+        int count = client.parseCloses(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), closes::add);
+
+        assertEquals(3, count);
+        assertTrue(closes.stream().allMatch(close -> TRADE_DATE.equals(close.date())));
+    }
+
+    private List<DailyClose> parseFixture(String fixture, int expectedRows) throws IOException {
+        List<DailyClose> closes = new ArrayList<>();
+        try (InputStream body = getClass().getResourceAsStream(fixture)) {
+            assertNotNull(body);
+            assertEquals(expectedRows, client.parseCloses(body, closes::add));
+        }
+        return closes;
+    }
+}
@@ -0,0 +1,105 @@
+package tw.bk.appstocks.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleCacheEntry;
+
+/**
+ * 1 年日 K 序列在新舊序列化器下的大小與編解碼時間比較
+ * 大小比較每次建置都執行（不輸出）；時間比較需 -Dstock.benchmark=true（結果輸出至 stdout，不做門檻判斷）
+ */
+class StockCacheCodecBenchmarkTest {
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 5_000;
+
+    private final RedisSerializer<Object> json = RedisConfig.jsonValueSerializer();
+    private final StockCacheCodec codec = new StockCacheCodec(RedisConfig.jsonValueSerializer(), true);
+
+    @Test
+    void oneYearDailySeries_shouldBeAtLeastFourTimesSmallerThanJson() {
+        CandleCacheEntry entry = oneYearDailySeries();
+
+        int jsonBytes = json.serialize(entry).length;
+        int binaryBytes = codec.serialize(entry).length;
+
+        assertTrue(binaryBytes * 4 <= jsonBytes, "binary=" + binaryBytes + ", json=" + jsonBytes);
+        assertEquals(entry, codec.deserialize(codec.serialize(entry)));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "stock.benchmark", matches = "true")
+    void oneYearDailySeries_encodeDecodeTiming() {
+        CandleCacheEntry entry = oneYearDailySeries();
+        byte[] jsonValue = json.serialize(entry);
+        byte[] binaryValue = codec.serialize(entry);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            json.deserialize(json.serialize(entry));
+            codec.deserialize(codec.serialize(entry));
+        }
+        System.out.printf("json   encode=%,d ns/op decode=%,d ns/op%n",
+                encodeNanos(json, entry), decodeNanos(json, jsonValue));
+        System.out.printf("binary encode=%,d ns/op decode=%,d ns/op%n",
+                encodeNanos(codec, entry), decodeNanos(codec, binaryValue));
+    }
+
+    private static long encodeNanos(RedisSerializer<Object> serializer, Object value) {
+        long sink = 0L;
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += serializer.serialize(value).length;
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        assertTrue(sink > 0L);
+        return elapsed / MEASURED_ROUNDS;
+    }
+
+    private static long decodeNanos(RedisSerializer<Object> serializer, byte[] value) {
+        int sink = 0;
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += ((CandleCacheEntry) serializer.deserialize(value)).getCandles().size();
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        assertTrue(sink > 0);
+        return elapsed / MEASURED_ROUNDS;
+    }
+
+    /**
+     * 約 250 個交易日、價格兩位小數的日 K 序列
+     */
+    private static CandleCacheEntry oneYearDailySeries() {
+        List<Candle> candles = new ArrayList<>();
+        BigDecimal close = new BigDecimal("580.00");
+        for (LocalDate date = LocalDate.of(2025, 1, 2); date.isBefore(LocalDate.of(2026, 1, 1)); date = date.plusDays(1)) {
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                continue;
+            }
+            BigDecimal move = BigDecimal.valueOf((date.getDayOfYear() * 37L % 21L) - 10L, 1);
+            BigDecimal open = close;
+            close = close.add(move).setScale(2, RoundingMode.HALF_UP);
+            candles.add(Candle.builder()
+                    .ticker("2330")
+                    .timestamp(date.atStartOfDay())
+                    .open(open)
+                    .high(open.max(close).add(new BigDecimal("2.50")))
+                    .low(open.min(close).subtract(new BigDecimal("1.50")))
+                    .close(close)
+                    .volume(20_000_000L + date.getDayOfYear() * 12_345L)
+                    .build());
+        }
+        return new CandleCacheEntry(candles, Instant.parse("2026-01-02T06:00:00Z"));
+    }
+}
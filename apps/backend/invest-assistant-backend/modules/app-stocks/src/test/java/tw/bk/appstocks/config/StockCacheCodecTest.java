@@ -0,0 +1,104 @@
+package tw.bk.appstocks.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleCacheEntry;
+import tw.bk.appstocks.model.Quote;
+
+class StockCacheCodecTest {
+    private final StockCacheCodec codec = new StockCacheCodec(RedisConfig.jsonValueSerializer(), true);
+
+    @Test
+    void quote_shouldRoundTripThroughBinaryFormat() {
+        Quote quote = Quote.builder()
+                .ticker("2330")
+                .price(new BigDecimal("1085.00"))
+                .open(new BigDecimal("1070"))
+                .previousClose(new BigDecimal("1065.5"))
+                .volume(35_123_456L)
+                .change(new BigDecimal("-19.50"))
+                .changePercent(new BigDecimal("-1.8307"))
+                .timestamp(Instant.parse("2026-03-02T05:30:00.123456789Z"))
+                .cachedAt(Instant.parse("2026-03-02T05:30:01Z"))
+                .build();
+
+        byte[] bytes = codec.serialize(quote);
+
+        assertEquals(StockCacheCodec.MAGIC, bytes[0]);
+        assertEquals(quote, codec.deserialize(bytes));
+    }
+
+    @Test
+    void candles_shouldRoundTripWithSharedTickerAndNullFields() {
+        List<Candle> candles = new ArrayList<>();
+        candles.add(candle("AAPL", LocalDateTime.of(2026, 1, 2, 0, 0), "243.85"));
+        candles.add(Candle.builder().ticker("AAPL").timestamp(LocalDateTime.of(2026, 1, 5, 14, 30)).build());
+        candles.add(candle("MSFT", LocalDateTime.of(2025, 12, 31, 0, 0), "421.5"));
+        candles.add(null);
+        CandleCacheEntry entry = new CandleCacheEntry(candles, Instant.parse("2026-01-06T00:00:00Z"));
+
+        Object decoded = codec.deserialize(codec.serialize(entry));
+
+        assertEquals(entry, decoded);
+    }
+
+    @Test
+    void deserialize_shouldReadLegacyJsonValues() {
+        Quote quote = Quote.builder().ticker("2330").price(new BigDecimal("1085.00")).build();
+        byte[] json = RedisConfig.jsonValueSerializer().serialize(quote);
+
+        assertEquals(quote, codec.deserialize(json));
+    }
+
+    @Test
+    void serialize_shouldFallBackToJsonWhenDecimalExceedsLong() {
+        Quote quote = Quote.builder().ticker("X").price(new BigDecimal("123456789012345678901234567890.5")).build();
+
+        byte[] bytes = codec.serialize(quote);
+
+        assertEquals('{', bytes[0]);
+        assertEquals(quote, codec.deserialize(bytes));
+    }
+
+    @Test
+    void serialize_shouldWriteJsonWhenBinaryDisabled() {
+        StockCacheCodec jsonOnly = new StockCacheCodec(RedisConfig.jsonValueSerializer(), false);
+        List<Candle> candles = new ArrayList<>();
+        candles.add(candle("2330", LocalDate.of(2026, 3, 2).atStartOfDay(), "1085"));
+        CandleCacheEntry entry = new CandleCacheEntry(candles, null);
+
+        byte[] bytes = jsonOnly.serialize(entry);
+
+        assertEquals('{', bytes[0]);
+        assertInstanceOf(CandleCacheEntry.class, codec.deserialize(bytes));
+        assertEquals(entry, codec.deserialize(bytes));
+    }
+
+    @Test
+    void deserialize_shouldReturnNullForEmptyValue() {
+        assertNull(codec.deserialize(new byte[0]));
+    }
+
+    static Candle candle(String ticker, LocalDateTime timestamp, String close) {
+        BigDecimal price = new BigDecimal(close);
+        return Candle.builder()
+                .ticker(ticker)
+                .timestamp(timestamp)
+                .open(price)
+                .high(price.add(BigDecimal.ONE))
+                .low(price.subtract(BigDecimal.ONE))
+                .close(price)
+                .volume(12_345_678L)
+                .build();
+    }
+}
@@ -0,0 +1,176 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleSeries;
+
+/**
+ * 多年日 K 聚合為週/月 K：CandleSeries 單次走訪 vs 原本的 BigDecimal 分組路徑（{@link LegacyAggregator}）
+ * 結果一致性每次建置都檢查；時間比較需 -Dstock.benchmark=true（結果輸出至 stdout，不做門檻判斷）
+ */
+class CandleAggregatorBenchmarkTest {
+    private static final int WARMUP_ROUNDS = 300;
+    private static final int MEASURED_ROUNDS = 1_000;
+
+    private final CandleAggregator aggregator = new CandleAggregator();
+
+    @Test
+    void seriesPath_shouldMatchLegacyPath() {
+        List<Candle> daily = dailyCandles(5);
+
+        for (String interval : List.of("1w", "1mo")) {
+            List<Candle> expected = LegacyAggregator.aggregate(interval, daily);
+            List<Candle> actual = aggregator.aggregate(interval, daily);
+            assertEquals(expected.size(), actual.size(), interval);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                assertEquals(0, expected.get(i).getOpen().compareTo(actual.get(i).getOpen()));
+                assertEquals(0, expected.get(i).getHigh().compareTo(actual.get(i).getHigh()));
+                assertEquals(0, expected.get(i).getLow().compareTo(actual.get(i).getLow()));
+                assertEquals(0, expected.get(i).getClose().compareTo(actual.get(i).getClose()));
+                assertEquals(expected.get(i).getVolume(), actual.get(i).getVolume());
+            }
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "stock.benchmark", matches = "true")
+    void fiveYearDailyRollup_timing() {
+        List<Candle> daily = dailyCandles(5);
+        CandleSeries series = CandleSeries.fromCandles(daily);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            LegacyAggregator.aggregate("1mo", daily);
+            aggregator.aggregate("1mo", daily);
+            aggregator.aggregate("1mo", series);
+        }
+        for (String interval : List.of("1w", "1mo")) {
+            System.out.printf("%s rows=%d legacy=%,d ns/op series(with conversion)=%,d ns/op series(only)=%,d ns/op%n",
+                    interval,
+                    daily.size(),
+                    nanosPerOp(() -> LegacyAggregator.aggregate(interval, daily).size()),
+                    nanosPerOp(() -> aggregator.aggregate(interval, daily).size()),
+                    nanosPerOp(() -> aggregator.aggregate(interval, series).size()));
+        }
+    }
+
+    private static long nanosPerOp(IntSupplier operation) {
+        long sink = 0L;
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += operation.getAsInt();
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        assertTrue(sink > 0L);
+        return elapsed / MEASURED_ROUNDS;
+    }
+
+    private static List<Candle> dailyCandles(int years) {
+        List<Candle> candles = new ArrayList<>();
+        BigDecimal close = new BigDecimal("120.00");
+        LocalDate end = LocalDate.of(2026, 1, 1);
+        for (LocalDate date = end.minusYears(years); date.isBefore(end); date = date.plusDays(1)) {
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                continue;
+            }
+            BigDecimal open = close;
+            close = close.add(BigDecimal.valueOf((date.toEpochDay() * 31L % 17L) - 8L, 1))
+                    .setScale(2, RoundingMode.HALF_UP);
+            candles.add(Candle.builder()
+                    .ticker("2330")
+                    .timestamp(date.atStartOfDay())
+                    .open(open)
+                    .high(open.max(close).add(BigDecimal.ONE))
+                    .low(open.min(close).subtract(BigDecimal.ONE))
+                    .close(close)
+                    .volume(1_000_000L + date.getDayOfYear())
+                    .build());
+        }
+        return candles;
+    }
+
+    /**
+     * 改為 CandleSeries 前的聚合實作，作為比較基準
+     */
+    private static final class LegacyAggregator {
+
+        static List<Candle> aggregate(String interval, List<Candle> dailyCandles) {
+            Function<Candle, Object> keyFunction = "1w".equals(interval)
+                    ? LegacyAggregator::weeklyKey
+                    : LegacyAggregator::monthlyKey;
+            Map<Object, Accumulator> groups = new LinkedHashMap<>();
+            for (Candle candle : dailyCandles.stream()
+                    .filter(candle -> candle != null && candle.getTimestamp() != null)
+                    .sorted(Comparator.comparing(Candle::getTimestamp))
+                    .toList()) {
+                Object key = keyFunction.apply(candle);
+                groups.computeIfAbsent(key, ignored -> new Accumulator(candle)).add(candle);
+            }
+            return groups.values().stream()
+                    .map(Accumulator::toCandle)
+                    .toList();
+        }
+
+        private static WeeklyKey weeklyKey(Candle candle) {
+            LocalDate date = candle.getTimestamp().toLocalDate();
+            return new WeeklyKey(date.get(WeekFields.ISO.weekBasedYear()), date.get(WeekFields.ISO.weekOfWeekBasedYear()));
+        }
+
+        private static YearMonth monthlyKey(Candle candle) {
+            return YearMonth.from(candle.getTimestamp());
+        }
+
+        private record WeeklyKey(int year, int week) {
+        }
+
+        private static final class Accumulator {
+            private final Candle first;
+            private Candle last;
+            private BigDecimal high;
+            private BigDecimal low;
+            private long volume;
+
+            private Accumulator(Candle first) {
+                this.first = first;
+                this.high = first.getHigh();
+                this.low = first.getLow();
+            }
+
+            private void add(Candle candle) {
+                last = candle;
+                high = high.max(candle.getHigh());
+                low = low.min(candle.getLow());
+                volume += candle.getVolume();
+            }
+
+            private Candle toCandle() {
+                return Candle.builder()
+                        .ticker(first.getTicker())
+                        .timestamp(first.getTimestamp())
+                        .open(first.getOpen())
+                        .high(high)
+                        .low(low)
+                        .close(last.getClose())
+                        .volume(volume)
+                        .build();
+            }
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package tw.bk.appstocks.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleSeries;
 
 class CandleAggregatorTest {
 
@@ -93,6 +100,143 @@ class CandleAggregatorTest {
         assertEquals(LocalDateTime.parse("2026-01-06T00:00:00"), result.get(1).getTimestamp());
     }
 
+    @Test
+    void aggregateWeekly_shouldKeepIsoWeekAcrossYearBoundary() {
+        List<Candle> dailyCandles = List.of(
+                candle("2330", "2025-12-31T00:00:00", "100", "110", "90", "105", 100),
+                candle("2330", "2026-01-02T00:00:00", "105", "112", "99", "111", 200),
+                candle("2330", "2026-01-05T00:00:00", "111", "115", "108", "114", 300));
+
+        List<Candle> weekly = aggregator.aggregate("1w", dailyCandles);
+
+        assertEquals(2, weekly.size());
+        assertEquals(LocalDateTime.parse("2025-12-31T00:00:00"), weekly.get(0).getTimestamp());
+        assertEquals(new BigDecimal("111"), weekly.get(0).getClose());
+        assertEquals(300L, weekly.get(0).getVolume());
+        assertEquals(LocalDateTime.parse("2026-01-05T00:00:00"), weekly.get(1).getTimestamp());
+    }
+
+    @Test
+    void aggregateMonthly_shouldUseSeriesScaleAndSkipMissingValues() {
+        List<Candle> dailyCandles = new ArrayList<>();
+        dailyCandles.add(candle("AAPL", "2026-01-05T00:00:00", "243.5", "245.25", "241", "244.1", 100));
+        dailyCandles.add(Candle.builder()
+                .ticker("AAPL")
+                .timestamp(LocalDateTime.parse("2026-01-06T00:00:00"))
+                .close(new BigDecimal("246"))
+                .build());
+        dailyCandles.add(null);
+
+        List<Candle> monthly = aggregator.aggregate("1mo", dailyCandles);
+
+        assertEquals(1, monthly.size());
+        Candle candle = monthly.getFirst();
+        assertEquals(new BigDecimal("243.50"), candle.getOpen());
+        assertEquals(new BigDecimal("245.25"), candle.getHigh());
+        assertEquals(new BigDecimal("241.00"), candle.getLow());
+        assertEquals(new BigDecimal("246.00"), candle.getClose());
+        assertEquals(100L, candle.getVolume());
+    }
+
+    @Test
+    void aggregateSeries_shouldMatchCalendarMonthsOverMultipleYears() {
+        List<Candle> dailyCandles = new ArrayList<>();
+        for (LocalDate date = LocalDate.of(2023, 1, 1); date.isBefore(LocalDate.of(2026, 1, 1)); date = date.plusDays(1)) {
+            dailyCandles.add(candle("2330", date.atStartOfDay().toString(), "10", "11", "9", "10", 1));
+        }
+
+        CandleSeries monthly = aggregator.aggregate("1mo", CandleSeries.fromCandles(dailyCandles));
+
+        assertEquals(36, monthly.size());
+        assertEquals(LocalDate.of(2024, 2, 1).toEpochDay(), monthly.epochDay(13));
+        assertEquals(29L, monthly.volume(13));
+        assertNull(monthly.toDecimal(CandleSeries.MISSING));
+    }
+
+    @Test
+    void aggregateMonthly_shouldLowerScaleWhenPriceOverflowsFixedPoint() {
+        // 2e11 在 scale 8 下超出 long，序列改用較小的 scale，而非整個請求失敗
+        List<Candle> dailyCandles = List.of(
+                candle("X", "2026-01-05T00:00:00", "0.12345678", "0.2", "0.1", "0.15", 1),
+                candle("X", "2026-01-06T00:00:00", "150000000000", "200000000000", "100000000000", "180000000000", 1));
+
+        List<Candle> monthly = aggregator.aggregate("1mo", dailyCandles);
+
+        assertEquals(1, monthly.size());
+        assertEquals(0, new BigDecimal("200000000000").compareTo(monthly.getFirst().getHigh()));
+        assertEquals(0, new BigDecimal("0.1").compareTo(monthly.getFirst().getLow()));
+        assertEquals(0, new BigDecimal("0.1234568").compareTo(monthly.getFirst().getOpen()));
+    }
+
+    @Test
+    void aggregateQuarterlyAndYearly_shouldUseCalendarMonths() {
+        List<Candle> dailyCandles = List.of(
+                candle("2330", "2025-12-31T00:00:00", "90", "95", "85", "92", 50),
+                candle("2330", "2026-01-05T00:00:00", "100", "110", "95", "105", 100),
+                candle("2330", "2026-03-31T00:00:00", "105", "120", "100", "118", 200),
+                candle("2330", "2026-04-01T00:00:00", "118", "125", "115", "121", 300));
+
+        List<Candle> quarterly = aggregator.aggregate("1q", dailyCandles);
+        List<Candle> yearly = aggregator.aggregate("1y", dailyCandles);
+
+        assertEquals(3, quarterly.size());
+        assertEquals(LocalDateTime.parse("2026-01-05T00:00:00"), quarterly.get(1).getTimestamp());
+        assertEquals(new BigDecimal("118"), quarterly.get(1).getClose());
+        assertEquals(300L, quarterly.get(1).getVolume());
+        assertEquals(2, yearly.size());
+        assertEquals(new BigDecimal("125"), yearly.get(1).getHigh());
+    }
+
+    @Test
+    void aggregateIntraday_shouldAlignBucketsToSessionOpen() {
+        // 台股 09:00 開盤；K 線時間為 UTC（09:00 台北 = 01:00 UTC）
+        List<Candle> fiveMinute = List.of(
+                candle("2330", "2026-03-02T01:00:00", "100", "101", "99", "100", 10),
+                candle("2330", "2026-03-02T01:55:00", "100", "104", "100", "103", 20),
+                candle("2330", "2026-03-02T02:00:00", "103", "105", "102", "104", 30),
+                candle("2330", "2026-03-02T05:25:00", "104", "106", "98", "99", 40));
+
+        List<Candle> hourly = aggregator.aggregate("1h", fiveMinute, ZoneId.of("Asia/Taipei"), LocalTime.of(9, 0));
+        List<Candle> fourHour = aggregator.aggregate("4h", fiveMinute, ZoneId.of("Asia/Taipei"), LocalTime.of(9, 0));
+
+        assertEquals(3, hourly.size());
+        assertEquals(LocalDateTime.parse("2026-03-02T01:00:00"), hourly.get(0).getTimestamp());
+        assertEquals(new BigDecimal("103"), hourly.get(0).getClose());
+        assertEquals(30L, hourly.get(0).getVolume());
+        assertEquals(LocalDateTime.parse("2026-03-02T05:00:00"), hourly.get(2).getTimestamp());
+        assertEquals(2, fourHour.size());
+        assertEquals(LocalDateTime.parse("2026-03-02T05:00:00"), fourHour.get(1).getTimestamp());
+    }
+
+    @Test
+    void aggregateIntraday_shouldAlignUsBucketsToHalfPastNine() {
+        // 美股 09:30 開盤（EST，UTC-5）
+        List<Candle> fiveMinute = List.of(
+                candle("AAPL", "2026-03-02T14:30:00", "240", "241", "239", "240", 10),
+                candle("AAPL", "2026-03-02T15:25:00", "240", "242", "238", "241", 20),
+                candle("AAPL", "2026-03-02T15:30:00", "241", "243", "240", "242", 30));
+
+        List<Candle> hourly = aggregator.aggregate(
+                "1h", fiveMinute, ZoneId.of("America/New_York"), LocalTime.of(9, 30));
+
+        assertEquals(2, hourly.size());
+        assertEquals(LocalDateTime.parse("2026-03-02T14:30:00"), hourly.get(0).getTimestamp());
+        assertEquals(LocalDateTime.parse("2026-03-02T15:30:00"), hourly.get(1).getTimestamp());
+    }
+
+    @Test
+    void baseIntervalOf_shouldPickFinestCachedSeries() {
+        assertEquals("1d", aggregator.baseIntervalOf("1w"));
+        assertEquals("1d", aggregator.baseIntervalOf("1Y"));
+        assertEquals("5m", aggregator.baseIntervalOf("4h"));
+        assertEquals("5m", aggregator.baseIntervalOf("15m"));
+        assertEquals("1m", aggregator.baseIntervalOf("3m"));
+        assertEquals("2d", aggregator.baseIntervalOf("2d"));
+        assertTrue(aggregator.isAggregateInterval("30m"));
+        assertFalse(aggregator.isAggregateInterval("5m"));
+        assertFalse(aggregator.isAggregateInterval("1d"));
+    }
+
     private Candle candle(
             String ticker,
             String timestamp,
@@ -0,0 +1,158 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.port.StockMarketClient;
+import tw.bk.apppersistence.entity.DailyCandleEntity;
+import tw.bk.apppersistence.repository.DailyCandleBatchRepository;
+import tw.bk.apppersistence.repository.DailyCandleRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
+
+@ExtendWith(MockitoExtension.class)
+class DailyCandleStoreTest {
+    private static final Long INSTRUMENT_ID = 2330L;
+    private static final LocalDate MON = LocalDate.parse("2026-03-02");
+    private static final LocalDate TUE = LocalDate.parse("2026-03-03");
+    private static final LocalDate WED = LocalDate.parse("2026-03-04");
+    private static final LocalDate THU = LocalDate.parse("2026-03-05");
+    private static final LocalDate FRI = LocalDate.parse("2026-03-06");
+
+    @Mock
+    private DailyCandleRepository repository;
+
+    @Mock
+    private DailyCandleBatchRepository batchRepository;
+
+    @Mock
+    private StockMarketClient client;
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    @Test
+    void getDailyCandles_shouldFetchOnlyMissingTradingDaysAndPersistThem() {
+        // 週五 15:00 台北時間，當週皆已定案
+        DailyCandleStore store = store("2026-03-06T07:00:00Z");
+        when(repository.findByInstrumentIdAndTradeDateBetweenOrderByTradeDateAsc(INSTRUMENT_ID, MON, FRI))
+                .thenReturn(List.of(row(MON), row(TUE)));
+        when(client.getVendor()).thenReturn("fugle");
+        when(client.getCandles("2330", "1d", WED, FRI)).thenReturn(List.of(candle(WED), candle(FRI)));
+
+        List<Candle> result = store.getDailyCandles(instrument(), MarketCode.TW, client, MON, FRI);
+
+        assertEquals(List.of(MON, TUE, WED, FRI),
+                result.stream().map(candle -> candle.getTimestamp().toLocalDate()).toList());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DailyCandleEntity>> persisted = ArgumentCaptor.forClass(List.class);
+        verify(batchRepository).upsertAll(persisted.capture());
+        assertEquals(List.of(WED, THU, FRI),
+                persisted.getValue().stream().map(DailyCandleEntity::getTradeDate).toList());
+        DailyCandleEntity wednesday = persisted.getValue().get(0);
+        assertTrue(wednesday.isHasData());
+        assertEquals("fugle", wednesday.getSource());
+        // 來源有回應但該日無資料的已定案交易日寫入標記，之後不再補抓
+        assertFalse(persisted.getValue().get(1).isHasData());
+    }
+
+    @Test
+    void getDailyCandles_shouldNotMarkNoDataWhenVendorReturnsNothing() {
+        DailyCandleStore store = store("2026-03-06T07:00:00Z");
+        when(repository.findByInstrumentIdAndTradeDateBetweenOrderByTradeDateAsc(INSTRUMENT_ID, MON, FRI))
+                .thenReturn(List.of(row(MON), row(TUE)));
+        // 來源對整段回傳空清單時無法確認是否為暫時缺資料
+        when(client.getCandles("2330", "1d", WED, FRI)).thenReturn(List.of());
+
+        List<Candle> result = store.getDailyCandles(instrument(), MarketCode.TW, client, MON, FRI);
+
+        assertEquals(List.of(MON, TUE),
+                result.stream().map(candle -> candle.getTimestamp().toLocalDate()).toList());
+        verify(batchRepository, never()).upsertAll(any());
+    }
+
+    @Test
+    void getDailyCandles_shouldServeUnsettledTodayFromVendorWithoutPersisting() {
+        // 週五 10:00 台北時間盤中，最近定案日為週四
+        DailyCandleStore store = store("2026-03-06T02:00:00Z");
+        when(repository.findByInstrumentIdAndTradeDateBetweenOrderByTradeDateAsc(INSTRUMENT_ID, MON, THU))
+                .thenReturn(List.of(row(MON), row(TUE), row(WED), row(THU)));
+        when(client.getCandles("2330", "1d", FRI, FRI)).thenReturn(List.of(candle(FRI)));
+
+        List<Candle> result = store.getDailyCandles(instrument(), MarketCode.TW, client, MON, FRI);
+
+        assertEquals(5, result.size());
+        verify(client).getCandles("2330", "1d", FRI, FRI);
+        verify(batchRepository, never()).upsertAll(any());
+        verifyNoMoreInteractions(batchRepository);
+    }
+
+    @Test
+    void findStoredClose_shouldServeLatestTradingDayCloseFromDatabaseOnly() {
+        DailyCandleStore store = store("2026-03-09T08:00:00Z");
+        LocalDate sunday = LocalDate.parse("2026-03-08");
+        when(repository.findFirstByInstrumentIdAndTradeDateBetweenAndHasDataTrueOrderByTradeDateDesc(
+                INSTRUMENT_ID, MON, sunday)).thenReturn(Optional.of(row(FRI)));
+        when(repository.findFirstByInstrumentIdAndTradeDateBetweenAndHasDataTrueOrderByTradeDateDesc(
+                INSTRUMENT_ID, MON, FRI)).thenReturn(Optional.of(row(THU)));
+
+        // 週日查詢取最近交易日（週五）的收盤
+        assertEquals(Optional.of(BigDecimal.TEN), store.findStoredClose(instrument(), MarketCode.TW, MON, sunday));
+        // 週五尚未寫入時不以週四代替，由呼叫端改向外部來源取得
+        assertTrue(store.findStoredClose(instrument(), MarketCode.TW, MON, FRI).isEmpty());
+        verifyNoMoreInteractions(client);
+    }
+
+    private DailyCandleStore store(String now) {
+        MarketCalendar calendar = new MarketCalendar(new StockMarketProperties(), () -> Instant.parse(now));
+        calendar.initSessions();
+        return new DailyCandleStore(repository, batchRepository, calendar, metricsRecorder);
+    }
+
+    private static InstrumentCatalogRow instrument() {
+        return new InstrumentCatalogRow(
+                INSTRUMENT_ID, "TW", "TWSE", "XTAI", "2330", "TW:XTAI:2330", null, null, "TWD", "STOCK", "ACTIVE");
+    }
+
+    private static DailyCandleEntity row(LocalDate date) {
+        DailyCandleEntity entity = new DailyCandleEntity();
+        entity.setInstrumentId(INSTRUMENT_ID);
+        entity.setTradeDate(date);
+        entity.setOpen(BigDecimal.TEN);
+        entity.setHigh(BigDecimal.TEN);
+        entity.setLow(BigDecimal.TEN);
+        entity.setClose(BigDecimal.TEN);
+        entity.setVolume(100L);
+        return entity;
+    }
+
+    private static Candle candle(LocalDate date) {
+        return Candle.builder()
+                .ticker("2330")
+                .timestamp(date.atStartOfDay())
+                .open(BigDecimal.ONE)
+                .high(BigDecimal.ONE)
+                .low(BigDecimal.ONE)
+                .close(BigDecimal.ONE)
+                .volume(10L)
+                .build();
+    }
+}
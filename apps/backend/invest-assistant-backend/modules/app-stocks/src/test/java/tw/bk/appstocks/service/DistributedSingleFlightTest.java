@@ -0,0 +1,190 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+/**
+ * 以兩個 application context 模擬兩個節點，共用同一個 Redis 驗證跨節點 single-flight
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class DistributedSingleFlightTest {
+    private static final String CACHE_KEY = "quote:TW:XTAI:2330";
+
+    @Container
+    static final GenericContainer<?> REDIS =
+            new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private AnnotationConfigApplicationContext nodeA;
+    private AnnotationConfigApplicationContext nodeB;
+    private StringRedisTemplate redis;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = node();
+        nodeB = node();
+        redis = nodeA.getBean(StringRedisTemplate.class);
+        redis.delete(CACHE_KEY);
+        redis.delete(DistributedSingleFlight.LEASE_PREFIX + CACHE_KEY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void concurrentMisses_shouldCallLoaderOnceAndWakeOtherNodeByNotification() throws Exception {
+        // 輪詢間隔大於載入時間，另一節點須靠 pub/sub 通知才能及時取得結果
+        nodeA.getBean(StockMarketProperties.class).getSingleFlight().setPollIntervalMs(5_000);
+        nodeB.getBean(StockMarketProperties.class).getSingleFlight().setPollIntervalMs(5_000);
+        CountDownLatch start = new CountDownLatch(1);
+
+        long startedAt = System.nanoTime();
+        CompletableFuture<String> fromA = CompletableFuture.supplyAsync(() -> awaitAndExecute(nodeA, start));
+        CompletableFuture<String> fromB = CompletableFuture.supplyAsync(() -> awaitAndExecute(nodeB, start));
+        start.countDown();
+
+        assertEquals("1010", fromA.get(10, TimeUnit.SECONDS));
+        assertEquals("1010", fromB.get(10, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        assertEquals(1, loads.get());
+        assertTrue(elapsedMs < 3_000, "remote join took " + elapsedMs + " ms");
+        assertEquals(1.0, count(nodeA, "stock.singleflight.joined", "scope", "remote")
+                + count(nodeB, "stock.singleflight.joined", "scope", "remote"));
+        assertEquals(1.0, count(nodeA, "stock.singleflight.lease", "outcome", "acquired")
+                + count(nodeB, "stock.singleflight.lease", "outcome", "acquired"));
+    }
+
+    @Test
+    void deadLeaseHolder_shouldBeTakenOverAfterLeaseExpires() {
+        nodeB.getBean(StockMarketProperties.class).getSingleFlight().setPollIntervalMs(50);
+        // 持有者當機：lease 留在 Redis，但不會釋放也不會發布完成通知
+        redis.opsForValue().set(
+                DistributedSingleFlight.LEASE_PREFIX + CACHE_KEY, "crashed-node", Duration.ofMillis(500));
+
+        long startedAt = System.nanoTime();
+        String result = execute(nodeB);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        assertEquals("1010", result);
+        assertEquals(1, loads.get());
+        assertTrue(elapsedMs >= 400, "took over after " + elapsedMs + " ms");
+        assertEquals(1.0, count(nodeB, "stock.singleflight.lease", "outcome", "takeover"));
+    }
+
+    @Test
+    void waitBeyondMaxWait_shouldLoadLocally() {
+        StockMarketProperties.SingleFlight config = nodeB.getBean(StockMarketProperties.class).getSingleFlight();
+        config.setPollIntervalMs(50);
+        config.setMaxWaitMs(200);
+        redis.opsForValue().set(
+                DistributedSingleFlight.LEASE_PREFIX + CACHE_KEY, "slow-node", Duration.ofSeconds(30));
+
+        assertEquals("1010", execute(nodeB));
+        assertEquals(1, loads.get());
+        assertEquals(1.0, count(nodeB, "stock.singleflight.lease", "outcome", "timeout"));
+    }
+
+    private String awaitAndExecute(AnnotationConfigApplicationContext node, CountDownLatch start) {
+        try {
+            start.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+        return execute(node);
+    }
+
+    private String execute(AnnotationConfigApplicationContext node) {
+        StringRedisTemplate template = node.getBean(StringRedisTemplate.class);
+        return node.getBean(DistributedSingleFlight.class).execute(CACHE_KEY, "quote",
+                () -> Optional.ofNullable(template.opsForValue().get(CACHE_KEY)),
+                () -> {
+                    loads.incrementAndGet();
+                    sleep(300);
+                    template.opsForValue().set(CACHE_KEY, "1010", Duration.ofMinutes(1));
+                    return "1010";
+                });
+    }
+
+    private static double count(AnnotationConfigApplicationContext node, String name, String tagKey, String tagValue) {
+        Counter counter = node.getBean(MeterRegistry.class).find(name).tag(tagKey, tagValue).counter();
+        return counter == null ? 0.0 : counter.count();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static AnnotationConfigApplicationContext node() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(NodeConfig.class, StockMetricsRecorder.class, DistributedSingleFlight.class);
+        context.refresh();
+        return context;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class NodeConfig {
+        @Bean
+        LettuceConnectionFactory redisConnectionFactory() {
+            return new LettuceConnectionFactory(
+                    new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        }
+
+        @Bean
+        StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory) {
+            return new StringRedisTemplate(connectionFactory);
+        }
+
+        @Bean
+        RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            return container;
+        }
+
+        @Bean
+        StockMarketProperties stockMarketProperties() {
+            return new StockMarketProperties();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
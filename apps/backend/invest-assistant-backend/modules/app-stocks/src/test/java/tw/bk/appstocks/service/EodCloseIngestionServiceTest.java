@@ -0,0 +1,229 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.web.client.RestClient;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.apppersistence.entity.DailyCandleEntity;
+import tw.bk.apppersistence.repository.DailyCandleBatchRepository;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
+import tw.bk.appstocks.adapter.TwDailyCloseClient;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.EodCloseIngestResult;
+
+/**
+ * 以本機 stub server 提供錄製的 TWSE / TPEx 日收盤檔，驗證串流匯入、批次 upsert 與交易日冪等
+ */
+@ExtendWith(MockitoExtension.class)
+class EodCloseIngestionServiceTest {
+    private static final String TWSE_FIXTURE = "/fixtures/twse/twse_stock_day_all.json";
+    private static final String TPEX_FIXTURE = "/fixtures/tpex/tpex_mainboard_daily_close_quotes.json";
+    private static final LocalDate TRADE_DATE = LocalDate.of(2026, 3, 6);
+    private static final String TWSE_KEY = "stock:eod-close:twse:2026-03-06";
+    private static final String TPEX_KEY = "stock:eod-close:tpex:2026-03-06";
+
+    @Mock
+    private DailyCandleBatchRepository batchRepository;
+
+    @Mock
+    private InstrumentCatalogService instrumentCatalogService;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<List<DailyCandleEntity>> upserts = new ArrayList<>();
+    private HttpServer server;
+    private StockMarketProperties properties;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/twse/exchangeReport/STOCK_DAY_ALL", exchange -> serve(exchange, TWSE_FIXTURE));
+        server.createContext("/tpex/tpex_mainboard_daily_close_quotes", exchange -> serve(exchange, TPEX_FIXTURE));
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        properties = new StockMarketProperties();
+        properties.getTwse().setOpenApiBaseUrl(base + "/twse");
+        properties.getTpex().setBaseUrl(base + "/tpex/");
+        properties.getEodClose().setBatchSize(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void runScheduled_shouldUpsertBothMarketsInBatchesAndMarkTradeDateDone() {
+        // 週五 16:00 台北時間，最近定案交易日為當日
+        EodCloseIngestionService service = service("2026-03-06T08:00:00Z");
+        stubCatalog();
+        stubUpserts();
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(any(), eq("running"), any(Duration.class))).thenReturn(true);
+
+        service.runScheduled();
+
+        assertEquals(List.of("/twse/exchangeReport/STOCK_DAY_ALL", "/tpex/tpex_mainboard_daily_close_quotes"),
+                requests);
+        assertTrue(upserts.stream().allMatch(batch -> batch.size() <= 2));
+        Map<Long, DailyCandleEntity> written = upserts.stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(DailyCandleEntity::getInstrumentId, Function.identity()));
+        // 9999 不在商品目錄、合計列代號無效，皆不寫入
+        assertEquals(7, written.size());
+        DailyCandleEntity tsmc = written.get(2330L);
+        assertEquals(TRADE_DATE, tsmc.getTradeDate());
+        assertEquals(new BigDecimal("1010.00"), tsmc.getClose());
+        assertEquals(41_235_118L, tsmc.getVolume());
+        assertEquals("twse", tsmc.getSource());
+        assertTrue(tsmc.isHasData());
+        assertEquals("tpex", written.get(679L).getSource());
+        // 無成交寫入無資料標記
+        assertFalse(written.get(1260L).isHasData());
+        assertNull(written.get(1260L).getClose());
+        assertFalse(written.get(5483L).isHasData());
+        verify(valueOperations).set(TWSE_KEY, "done", Duration.ofDays(7));
+        verify(valueOperations).set(TPEX_KEY, "done", Duration.ofDays(7));
+    }
+
+    @Test
+    void ingest_shouldWriteSameRowsWhenRerunForSameTradeDate() {
+        EodCloseIngestionService service = service("2026-03-06T08:00:00Z");
+        stubCatalog();
+        stubUpserts();
+
+        List<EodCloseIngestResult> first = service.ingest(TRADE_DATE);
+        List<List<DailyCandleEntity>> firstUpserts = List.copyOf(upserts);
+        upserts.clear();
+        List<EodCloseIngestResult> second = service.ingest(TRADE_DATE);
+
+        assertEquals(first, second);
+        assertEquals(new EodCloseIngestResult("twse", TRADE_DATE, "success", 5, 4, 1), first.get(0));
+        assertEquals(new EodCloseIngestResult("tpex", TRADE_DATE, "success", 3, 3, 1), first.get(1));
+        assertEquals(snapshot(firstUpserts), snapshot(upserts));
+    }
+
+    @Test
+    void runScheduled_shouldReleaseClaimWhenSourceNotYetUpdatedAndSkipClaimedFeeds() {
+        // 週一 16:00 台北時間，來源檔案仍是上週五
+        EodCloseIngestionService service = service("2026-03-09T08:00:00Z");
+        when(instrumentCatalogService.list(eq(MarketCode.TW), eq("TPEx"), any(), any()))
+                .thenReturn(List.of(instrument(6488L, "TPEx", "6488", "STOCK")));
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("stock:eod-close:twse:2026-03-09"), eq("running"), any(Duration.class)))
+                .thenReturn(false);
+        when(valueOperations.setIfAbsent(eq("stock:eod-close:tpex:2026-03-09"), eq("running"), any(Duration.class)))
+                .thenReturn(true);
+
+        service.runScheduled();
+
+        // 上市已由其他節點處理，不下載
+        assertEquals(List.of("/tpex/tpex_mainboard_daily_close_quotes"), requests);
+        verify(batchRepository, never()).upsertAll(argThat(batch -> !batch.isEmpty()));
+        verify(stringRedisTemplate).delete("stock:eod-close:tpex:2026-03-09");
+        verify(valueOperations, never()).set(any(), eq("done"), any(Duration.class));
+    }
+
+    private EodCloseIngestionService service(String now) {
+        MarketCalendar calendar = new MarketCalendar(properties, () -> Instant.parse(now));
+        calendar.initSessions();
+        TwDailyCloseClient client = new TwDailyCloseClient(
+                properties, new ObjectMapper(), RestClient.create(), RestClient.create());
+        return new EodCloseIngestionService(client, batchRepository, instrumentCatalogService, calendar,
+                stringRedisTemplate, properties, metricsRecorder);
+    }
+
+    private void stubCatalog() {
+        when(instrumentCatalogService.list(eq(MarketCode.TW), eq("TWSE"), any(), any())).thenReturn(List.of(
+                instrument(50L, "TWSE", "0050", "ETF"),
+                instrument(1260L, "TWSE", "1260", "STOCK"),
+                instrument(2317L, "TWSE", "2317", "STOCK"),
+                instrument(2330L, "TWSE", "2330", "STOCK")));
+        when(instrumentCatalogService.list(eq(MarketCode.TW), eq("TPEx"), any(), any())).thenReturn(List.of(
+                instrument(679L, "TPEx", "00679B", "ETF"),
+                instrument(5483L, "TPEx", "5483", "STOCK"),
+                instrument(6488L, "TPEx", "6488", "STOCK")));
+    }
+
+    /**
+     * 服務在 upsert 後重用同一個緩衝清單，這裡保留每批的複本
+     */
+    private void stubUpserts() {
+        when(batchRepository.upsertAll(anyList())).thenAnswer(invocation -> {
+            List<DailyCandleEntity> batch = invocation.getArgument(0);
+            if (!batch.isEmpty()) {
+                upserts.add(List.copyOf(batch));
+            }
+            return batch.size();
+        });
+    }
+
+    private static List<String> snapshot(List<List<DailyCandleEntity>> batches) {
+        return batches.stream()
+                .flatMap(List::stream)
+                .map(row -> row.getInstrumentId() + "@" + row.getTradeDate() + "=" + row.getClose() + "/"
+                        + row.isHasData())
+                .toList();
+    }
+
+    private static InstrumentCatalogRow instrument(Long id, String exchange, String ticker, String assetType) {
+        return new InstrumentCatalogRow(id, "TW", exchange, "XTAI", ticker, "TW:XTAI:" + ticker, null, null, "TWD",
+                assetType, "ACTIVE");
+    }
+
+    private void serve(HttpExchange exchange, String fixture) throws IOException {
+        requests.add(exchange.getRequestURI().getPath());
+        byte[] body;
+        try (InputStream in = getClass().getResourceAsStream(fixture)) {
+            body = in.readAllBytes();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -3,9 +3,17 @@ package tw.bk.appstocks.service;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,7 +21,6 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import tw.bk.appcommon.enums.ErrorCode;
 import tw.bk.appcommon.exception.BusinessException;
-import tw.bk.appcommon.ratelimit.RateLimiter;
 import tw.bk.appstocks.config.StockMarketProperties;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,9 +29,6 @@ class ExternalApiRateLimiterTest {
     @Mock
     private StockMetricsRecorder metricsRecorder;
 
-    @Mock
-    private RateLimiter rateLimiter;
-
     private StockMarketProperties properties;
     private ExternalApiRateLimiter limiter;
 
@@ -33,32 +37,125 @@ class ExternalApiRateLimiterTest {
         properties = new StockMarketProperties();
         properties.getRateLimit().setEnabled(true);
         properties.getRateLimit().setWindowMs(1000);
-        properties.getRateLimit().setAlpacaLimit(1);
-        properties.getRateLimit().setFugleLimit(1);
-        limiter = new ExternalApiRateLimiter(properties, metricsRecorder, rateLimiter);
+        properties.getRateLimit().setAlpacaLimit(2);
+        properties.getRateLimit().setFugleLimit(2);
+        limiter = new ExternalApiRateLimiter(
+                properties, metricsRecorder, new VendorCircuitBreakers(properties, metricsRecorder));
     }
 
     @Test
-    void acquire_shouldThrowWhenExceedLimit() {
-        when(rateLimiter.tryAcquire("stock:external:alpaca:quote", 1, java.time.Duration.ofMillis(1000)))
-                .thenReturn(true)
-                .thenReturn(false);
+    void acquire_shouldPassBurstWithinCapacityWithoutWaiting() {
+        limiter.acquire("alpaca", "quote");
+        limiter.acquire("alpaca", "quote");
+        limiter.acquire("alpaca", "candles");
+
+        verify(metricsRecorder, times(2)).recordRateLimitWait(
+                eq("alpaca"), eq("quote"), eq(VendorCallPriority.DEFAULT), anyLong(), eq(true));
+        verify(metricsRecorder, never()).recordRateLimitBlocked("alpaca", "quote");
+    }
 
+    @Test
+    void acquire_shouldWaitForRefilledTokenInsteadOfFailing() {
+        properties.getRateLimit().setAlpacaLimit(1);
+        properties.getRateLimit().setWindowMs(200);
+
+        limiter.acquire("alpaca", "quote");
+        long startedAt = System.nanoTime();
         limiter.acquire("alpaca", "quote");
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
 
+        assertTrue(waitedMs >= 150, "waited " + waitedMs + " ms");
+        verify(metricsRecorder, never()).recordRateLimitBlocked("alpaca", "quote");
+    }
+
+    @Test
+    void acquire_shouldThrowWhenWaitWouldExceedDeadline() {
+        properties.getRateLimit().setAlpacaLimit(1);
+        properties.getRateLimit().setWindowMs(10_000);
+        properties.getRateLimit().setInteractiveMaxWaitMs(50);
+
+        limiter.acquire("alpaca", "quote");
         BusinessException ex = assertThrows(
                 BusinessException.class,
-                () -> limiter.acquire("alpaca", "quote"));
+                () -> VendorCallPriority.runAs(VendorCallPriority.INTERACTIVE,
+                        () -> limiter.acquire("alpaca", "quote")));
 
         assertEquals(ErrorCode.RATE_LIMITED, ex.getErrorCode());
         verify(metricsRecorder).recordRateLimitBlocked("alpaca", "quote");
+        verify(metricsRecorder).recordRateLimitWait(
+                eq("alpaca"), eq("quote"), eq(VendorCallPriority.INTERACTIVE), anyLong(), eq(false));
+    }
+
+    @Test
+    void acquire_shouldNotSpendTokenWhenConcurrencySlotIsRefused() {
+        properties.getRateLimit().setWindowMs(10_000);
+        properties.getRateLimit().setInteractiveMaxWaitMs(50);
+        properties.getRateLimit().getAdaptive().setMaxConcurrency(1);
+
+        VendorCallPermit inFlight = limiter.acquire("alpaca", "quote");
+        assertThrows(BusinessException.class, () -> VendorCallPriority.runAs(VendorCallPriority.INTERACTIVE,
+                () -> limiter.acquire("alpaca", "quote")));
+        inFlight.complete(200, 1L);
+
+        // 並行名額被拒的呼叫沒有扣 token，剩下的一個 token 仍可立即使用
+        assertDoesNotThrow(() -> VendorCallPriority.runAs(VendorCallPriority.INTERACTIVE,
+                () -> limiter.acquire("alpaca", "quote")));
+    }
+
+    @Test
+    void acquire_shouldServeInteractiveWaiterBeforeEarlierBatchWaiter() throws InterruptedException {
+        properties.getRateLimit().setFugleLimit(1);
+        properties.getRateLimit().setWindowMs(300);
+        limiter.acquire("fugle", "quote");
+        List<VendorCallPriority> served = new CopyOnWriteArrayList<>();
+
+        Thread batch = startWaiter(VendorCallPriority.BATCH, served);
+        awaitCondition(() -> limiter.queueDepth("fugle", "quote") == 1);
+        Thread interactive = startWaiter(VendorCallPriority.INTERACTIVE, served);
+        awaitCondition(() -> limiter.queueDepth("fugle", "quote") == 2);
+        batch.join(5_000);
+        interactive.join(5_000);
+
+        assertEquals(List.of(VendorCallPriority.INTERACTIVE, VendorCallPriority.BATCH), served);
+        assertEquals(0, limiter.queueDepth("fugle", "quote"));
+        verify(metricsRecorder).recordRateLimitQueueDepth("fugle", "quote", 2);
     }
 
     @Test
     void acquire_shouldSkipWhenLimiterDisabled() {
         properties.getRateLimit().setEnabled(false);
+        properties.getRateLimit().setAlpacaLimit(1);
 
         assertDoesNotThrow(() -> limiter.acquire("alpaca", "quote"));
         assertDoesNotThrow(() -> limiter.acquire("alpaca", "quote"));
+        assertEquals(0, limiter.queueDepth("alpaca", "quote"));
+    }
+
+    @Test
+    void parseRetryAfterMillis_shouldAcceptSecondsAndHttpDate() {
+        long now = 1_772_416_800_000L; // 2026-03-02T02:00:00Z
+
+        assertEquals(3_000L, ExternalApiRateLimiter.parseRetryAfterMillis(" 3 ", now));
+        assertEquals(90_000L, ExternalApiRateLimiter.parseRetryAfterMillis("Mon, 02 Mar 2026 02:01:30 GMT", now));
+        assertEquals(0L, ExternalApiRateLimiter.parseRetryAfterMillis("Mon, 02 Mar 2026 01:00:00 GMT", now));
+        assertEquals(-1L, ExternalApiRateLimiter.parseRetryAfterMillis("soon", now));
+        assertEquals(-1L, ExternalApiRateLimiter.parseRetryAfterMillis(null, now));
+    }
+
+    private Thread startWaiter(VendorCallPriority priority, List<VendorCallPriority> served) {
+        Thread thread = new Thread(() -> VendorCallPriority.runAs(priority, () -> {
+            limiter.acquire("fugle", "quote").complete(200, 1L);
+            served.add(priority);
+        }));
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached");
+            Thread.sleep(5);
+        }
     }
 }
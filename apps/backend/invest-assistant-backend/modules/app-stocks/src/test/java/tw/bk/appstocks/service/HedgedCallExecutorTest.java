@@ -0,0 +1,138 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+@ExtendWith(MockitoExtension.class)
+class HedgedCallExecutorTest {
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final CountDownLatch releaseSlowCall = new CountDownLatch(1);
+    private StockMarketProperties properties;
+    private VendorCircuitBreakers breakers;
+    private HedgedCallExecutor hedgedCalls;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StockMarketProperties();
+        properties.getHedge().setEnabled(true);
+        properties.getHedge().setMinSamples(1);
+        properties.getHedge().setMinDelayMs(50);
+        breakers = new VendorCircuitBreakers(properties, metricsRecorder);
+        hedgedCalls = new HedgedCallExecutor(breakers, metricsRecorder, executor);
+        breakers.admit("fugle", "quote").complete(200, 50L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseSlowCall.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void call_shouldFireHedgeAfterDelayAndTakeFirstResult() {
+        AtomicInteger attempts = new AtomicInteger();
+        long startedAt = System.nanoTime();
+
+        Optional<String> result = hedgedCalls.call("fugle", "quote", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                awaitRelease();
+                return Optional.of("slow");
+            }
+            return Optional.of("hedge");
+        });
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        assertEquals(Optional.of("hedge"), result);
+        assertEquals(2, attempts.get());
+        assertTrue(elapsedMs >= 50 && elapsedMs < 2_000, "returned after " + elapsedMs + " ms");
+        verify(metricsRecorder).recordHedge("fugle", "quote", "fired");
+        verify(metricsRecorder).recordHedge("fugle", "quote", "won");
+    }
+
+    @Test
+    void call_shouldNotHedgeWhenPrimaryReturnsWithinDelay() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        Optional<String> result = hedgedCalls.call("fugle", "quote", () -> {
+            attempts.incrementAndGet();
+            return Optional.of("fast");
+        });
+
+        assertEquals(Optional.of("fast"), result);
+        assertEquals(1, attempts.get());
+        verify(metricsRecorder, never()).recordHedge(eq("fugle"), eq("quote"), anyString());
+    }
+
+    @Test
+    void call_shouldWaitForPrimaryWhenHedgeReturnsEmpty() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        Optional<String> result = hedgedCalls.call("fugle", "quote", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(200);
+                return Optional.of("primary");
+            }
+            return Optional.empty();
+        });
+
+        assertEquals(Optional.of("primary"), result);
+        verify(metricsRecorder, never()).recordHedge("fugle", "quote", "won");
+    }
+
+    @Test
+    void call_shouldRunOnCallerThreadWhenHedgeDisabled() {
+        properties.getHedge().setEnabled(false);
+        Thread caller = Thread.currentThread();
+
+        Optional<Thread> result = hedgedCalls.call("fugle", "quote", () -> Optional.of(Thread.currentThread()));
+
+        assertSame(caller, result.orElseThrow());
+    }
+
+    @Test
+    void call_shouldPropagatePriorityToHedgedAttempts() {
+        Optional<VendorCallPriority> result = VendorCallPriority.callAs(VendorCallPriority.INTERACTIVE,
+                () -> hedgedCalls.call("fugle", "quote", () -> Optional.of(VendorCallPriority.current())));
+
+        assertEquals(Optional.of(VendorCallPriority.INTERACTIVE), result);
+    }
+
+    private void awaitRelease() {
+        try {
+            releaseSlowCall.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
+import tw.bk.apppersistence.repository.InstrumentSearchRow;
+
+class InstrumentCatalogTest {
+    private static final int HEAP_CATALOG_SIZE = 10_000;
+
+    /**
+     * 1 萬筆商品（含全部索引）的常駐上限；JDK 21 實測約 3.4 MB（每筆約 350 bytes），保留約兩倍餘裕
+     */
+    private static final long MAX_RETAINED_BYTES_PER_10K = 8L * 1024 * 1024;
+
+    @Test
+    void lookups_shouldUseSymbolKeyAndCaseInsensitiveTicker() {
+        InstrumentCatalog catalog = InstrumentCatalog.build(3L, List.of(
+                row(1L, "TW", "TWSE", "2330", "STOCK", "ACTIVE"),
+                row(2L, "US", "NASDAQ", "ABC", "STOCK", "ACTIVE"),
+                row(3L, "TW", "TPEx", "ABC", "STOCK", "ACTIVE"),
+                // 缺 symbolKey 的列不進目錄
+                new InstrumentCatalogRow(4L, "TW", "TWSE", "XTAI", "9999", null, null, null, "TWD", "STOCK",
+                        "ACTIVE")));
+
+        assertEquals(3L, catalog.version());
+        assertEquals(3, catalog.size());
+        assertEquals(1L, catalog.findBySymbolKey("TW:TWSE:2330").orElseThrow().id());
+        assertEquals(3L, catalog.findById(3L).orElseThrow().id());
+        assertEquals(List.of(2L, 3L), catalog.findByTicker(" abc ").stream().map(InstrumentCatalogRow::id).toList());
+        assertTrue(catalog.findByTicker("9999").isEmpty());
+        assertTrue(catalog.findBySymbolKey(null).isEmpty());
+    }
+
+    @Test
+    void list_shouldFilterByMarketExchangeTypeAndStatus() {
+        InstrumentCatalog catalog = InstrumentCatalog.build(1L, List.of(
+                row(1L, "TW", "TWSE", "2330", "STOCK", "ACTIVE"),
+                row(2L, "TW", "TWSE", "0050", "ETF", "ACTIVE"),
+                row(3L, "TW", "TWSE", "030001", "WARRANT", "ACTIVE"),
+                row(4L, "TW", "TPEx", "6488", "STOCK", "ACTIVE"),
+                row(5L, "TW", "TWSE", "1101", "STOCK", "DELISTED"),
+                row(6L, "US", "NASDAQ", "AAPL", "STOCK", "ACTIVE")));
+
+        assertEquals(List.of(2L, 1L), ids(catalog.list(MarketCode.TW, "twse", Set.of("STOCK", "ETF"), "ACTIVE")));
+        assertEquals(List.of(3L), ids(catalog.list(MarketCode.TW, null, Set.of("WARRANT"), "ACTIVE")));
+        assertEquals(List.of(2L, 3L, 5L, 1L, 4L), ids(catalog.list(MarketCode.TW, null, null, null)));
+        assertEquals(List.of(6L), ids(catalog.list(MarketCode.US, "NASDAQ", null, "ACTIVE")));
+        assertTrue(catalog.list(MarketCode.US, "TWSE", null, null).isEmpty());
+    }
+
+    @Test
+    void build_shouldShareRepeatedValues() {
+        InstrumentCatalog catalog = InstrumentCatalog.build(1L, List.of(
+                row(1L, "TW", "TWSE", "2330", new String("STOCK"), "ACTIVE"),
+                row(2L, "TW", "TWSE", "2303", new String("STOCK"), "ACTIVE")));
+
+        InstrumentCatalogRow first = catalog.findById(1L).orElseThrow();
+        InstrumentCatalogRow second = catalog.findById(2L).orElseThrow();
+        assertSame(first.assetType(), second.assetType());
+        assertSame(first.exchangeCode(), second.exchangeCode());
+    }
+
+    /**
+     * 以搜尋索引基準測試的合成商品目錄（台股股票 / ETF / 權證與美股混合）量測 1 萬筆的常駐記憶體
+     * 依賴 System.gc() 量測，平行或 fork 執行時不穩定，需 -Dstock.benchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "stock.benchmark", matches = "true")
+    void tenThousandInstruments_retainedHeapShouldStayWithinBudget() {
+        long before = usedHeapAfterGc();
+        InstrumentCatalog catalog = InstrumentCatalog.build(1L, syntheticRows(HEAP_CATALOG_SIZE));
+        long retained = usedHeapAfterGc() - before;
+
+        assertEquals(HEAP_CATALOG_SIZE, catalog.size());
+        assertTrue(retained < MAX_RETAINED_BYTES_PER_10K,
+                "retained=" + retained + ", estimated=" + catalog.estimatedBytes());
+    }
+
+    private static List<InstrumentCatalogRow> syntheticRows(int size) {
+        List<InstrumentCatalogRow> rows = new ArrayList<>(size);
+        for (InstrumentSearchRow source : InstrumentSearchIndexBenchmarkTest.syntheticCatalog(size, 42L)) {
+            String ticker = source.ticker();
+            boolean us = Character.isLetter(ticker.charAt(0));
+            String assetType = us || ticker.length() == 4 ? "STOCK" : ticker.startsWith("00") ? "ETF" : "WARRANT";
+            String market = us ? "US" : "TW";
+            String exchange = us ? "NASDAQ" : source.id() % 3 == 0 ? "TPEx" : "TWSE";
+            String mic = us ? "XNAS" : "XTAI";
+            rows.add(new InstrumentCatalogRow(source.id(), market, exchange, mic, ticker,
+                    market + ":" + mic + ":" + ticker, source.nameZh(), source.nameEn(), us ? "USD" : "TWD",
+                    assetType, "ACTIVE"));
+        }
+        return rows;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static InstrumentCatalogRow row(
+            Long id, String market, String exchange, String ticker, String assetType, String status) {
+        String mic = "US".equals(market) ? "XNAS" : "XTAI";
+        return new InstrumentCatalogRow(id, market, exchange, mic, ticker, market + ":" + exchange.toUpperCase()
+                + ":" + ticker, null, null, "US".equals(market) ? "USD" : "TWD", assetType, status);
+    }
+
+    private static List<Long> ids(List<InstrumentCatalogRow> rows) {
+        return rows.stream().map(InstrumentCatalogRow::id).toList();
+    }
+}
@@ -0,0 +1,189 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.apppersistence.repository.InstrumentDetailQueueRepository;
+import tw.bk.apppersistence.repository.InstrumentDetailQueueRepository.InstrumentDetailTask;
+import tw.bk.apppersistence.repository.InstrumentDetailQueueRepository.InstrumentDetailUpdate;
+import tw.bk.apppersistence.repository.MarketRepository;
+import tw.bk.apppersistence.repository.UserPositionRepository;
+import tw.bk.appstocks.adapter.FugleClient;
+import tw.bk.appstocks.adapter.dto.FugleTickerResponse;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+@ExtendWith(MockitoExtension.class)
+class InstrumentDetailEnricherTest {
+    @Mock
+    private FugleClient fugleClient;
+
+    @Mock
+    private ExternalApiRateLimiter rateLimiter;
+
+    @Mock
+    private InstrumentDetailQueueRepository queueRepository;
+
+    @Mock
+    private MarketRepository marketRepository;
+
+    @Mock
+    private UserPositionRepository userPositionRepository;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private InstrumentSearchIndexService instrumentSearchIndexService;
+
+    @Mock
+    private InstrumentCatalogService instrumentCatalogService;
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    private final List<VendorCallPriority> priorities = new ArrayList<>();
+    private StockMarketProperties properties;
+    private InstrumentDetailEnricher enricher;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StockMarketProperties();
+        properties.getRateLimit().setWindowMs(1000);
+        // 有效速率 40 次/秒 × 0.25 = 每 100 ms 一次；每輪 300 ms → 最多 3 筆
+        properties.getDetailEnrichment().setBudgetFraction(0.25);
+        properties.getDetailEnrichment().setTickMs(300);
+        properties.getDetailEnrichment().setMaxBatch(50);
+        lenient().when(rateLimiter.effectiveLimit("fugle")).thenReturn(40);
+        enricher = new InstrumentDetailEnricher(fugleClient, rateLimiter, queueRepository, marketRepository,
+                userPositionRepository, stringRedisTemplate, instrumentSearchIndexService, instrumentCatalogService,
+                properties, metricsRecorder);
+    }
+
+    @Test
+    void drain_shouldClaimWithinBudgetAndWriteBatchOnce() {
+        when(queueRepository.claimDue(eq(3), any(Duration.class))).thenReturn(List.of(
+                new InstrumentDetailTask(1L, "2330", InstrumentDetailEnricher.PRIORITY_HELD, 0),
+                new InstrumentDetailTask(2L, "0050", InstrumentDetailEnricher.PRIORITY_NEW, 0)));
+        when(fugleClient.getTickerDetail("2330")).thenAnswer(invocation -> {
+            priorities.add(VendorCallPriority.current());
+            return Optional.of(detail("台積電", "TSMC", "TWD", "01"));
+        });
+        when(fugleClient.getTickerDetail("0050")).thenAnswer(invocation -> {
+            priorities.add(VendorCallPriority.current());
+            return Optional.of(detail("元大台灣50", "Yuanta Taiwan 50", "TWD", "24"));
+        });
+
+        long startedAt = System.nanoTime();
+        enricher.drain(properties.getDetailEnrichment());
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - startedAt).toMillis();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InstrumentDetailUpdate>> written = ArgumentCaptor.forClass(List.class);
+        verify(queueRepository).complete(written.capture());
+        assertEquals(List.of(
+                        new InstrumentDetailUpdate(1L, "TSMC", "台積電", "TWD", null),
+                        new InstrumentDetailUpdate(2L, "Yuanta Taiwan 50", "元大台灣50", "TWD", "ETF")),
+                written.getValue());
+        assertEquals(List.of(VendorCallPriority.BATCH, VendorCallPriority.BATCH), priorities);
+        // 兩次呼叫之間依預算間隔等待
+        assertTrue(elapsedMs >= 100, "elapsed=" + elapsedMs);
+        verify(metricsRecorder).recordInstrumentEnrichmentBudget(600L);
+    }
+
+    @Test
+    void drain_shouldReleaseRemainingTasksWhenRateLimited() {
+        properties.getDetailEnrichment().setTickMs(100);
+        when(rateLimiter.effectiveLimit("fugle")).thenReturn(4000);
+        when(queueRepository.claimDue(anyInt(), any(Duration.class))).thenReturn(List.of(
+                new InstrumentDetailTask(1L, "2330", InstrumentDetailEnricher.PRIORITY_HELD, 0),
+                new InstrumentDetailTask(2L, "2303", InstrumentDetailEnricher.PRIORITY_NEW, 0),
+                new InstrumentDetailTask(3L, "1101", InstrumentDetailEnricher.PRIORITY_NEW, 0)));
+        when(fugleClient.getTickerDetail("2330")).thenReturn(Optional.of(detail("台積電", "TSMC", "TWD", "01")));
+        when(fugleClient.getTickerDetail("2303"))
+                .thenThrow(new BusinessException(ErrorCode.RATE_LIMITED, "Fugle rate limited"));
+
+        enricher.drain(properties.getDetailEnrichment());
+
+        verify(queueRepository).release(List.of(2L, 3L));
+        verify(queueRepository).fail(eq(List.of()), any(Duration.class), anyInt());
+        verify(fugleClient, never()).getTickerDetail("1101");
+        verify(metricsRecorder).recordInstrumentEnrichment("released", 2);
+    }
+
+    @Test
+    void refreshCatalog_shouldReloadOnceAfterBacklogDrained() {
+        when(queueRepository.claimDue(anyInt(), any(Duration.class))).thenReturn(List.of(
+                new InstrumentDetailTask(1L, "2330", InstrumentDetailEnricher.PRIORITY_NEW, 0)));
+        when(fugleClient.getTickerDetail("2330")).thenReturn(Optional.of(detail("台積電", "TSMC", "TWD", "01")));
+        when(queueRepository.complete(anyList())).thenReturn(1);
+
+        boolean drained = enricher.drain(properties.getDetailEnrichment());
+        enricher.refreshCatalog(drained, properties.getDetailEnrichment());
+        // 沒有新的補齊結果時不再重建
+        enricher.refreshCatalog(true, properties.getDetailEnrichment());
+
+        assertTrue(drained);
+        verify(instrumentCatalogService, times(1)).scheduleReload();
+        verify(instrumentSearchIndexService, times(1)).scheduleRebuild();
+    }
+
+    @Test
+    void drain_shouldRecordFailureWhenDetailMissing() {
+        when(queueRepository.claimDue(anyInt(), any(Duration.class))).thenReturn(List.of(
+                new InstrumentDetailTask(5L, "9999", InstrumentDetailEnricher.PRIORITY_REFRESH, 2)));
+        when(fugleClient.getTickerDetail("9999")).thenReturn(Optional.empty());
+        when(queueRepository.fail(anyList(), any(Duration.class), anyInt())).thenReturn(0);
+
+        enricher.drain(properties.getDetailEnrichment());
+
+        verify(queueRepository).fail(
+                eq(List.of(new InstrumentDetailQueueRepository.InstrumentDetailFailure(
+                        5L, "ticker detail unavailable"))),
+                eq(Duration.ofMillis(properties.getDetailEnrichment().getRetryBackoffMs())),
+                eq(properties.getDetailEnrichment().getMaxAttempts()));
+        verify(queueRepository).complete(List.of());
+    }
+
+    @Test
+    void toUpdate_shouldKeepExistingValuesForBlankOrInvalidFields() {
+        InstrumentDetailUpdate update = InstrumentDetailEnricher.toUpdate(
+                7L, detail(" ", "  Far Eastern ", "NTD1", null));
+
+        assertEquals("Far Eastern", update.nameEn());
+        assertNull(update.nameZh());
+        assertNull(update.currency());
+        assertNull(update.assetType());
+    }
+
+    private static FugleTickerResponse detail(String name, String nameEn, String currency, String securityType) {
+        FugleTickerResponse detail = new FugleTickerResponse();
+        detail.setName(name);
+        detail.setNameEn(nameEn);
+        detail.setTradingCurrency(currency);
+        detail.setSecurityType(securityType);
+        return detail;
+    }
+}
@@ -0,0 +1,279 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntSupplier;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import tw.bk.apppersistence.repository.InstrumentRepository;
+import tw.bk.apppersistence.repository.InstrumentSearchRow;
+
+/**
+ * 約 4 萬筆商品目錄：記憶體索引 vs 原本的 LOWER(...) LIKE '%q%' 分頁查詢（資料列 + count 兩次查詢）
+ * vs {@link InstrumentRepository} 的排名查詢（pg_trgm GIN 索引 + 相關度排序）
+ * 需 -Dstock.benchmark=true 與 Docker（PostgreSQL 以 Flyway 建立正式 schema，含 V22 的 trigram 索引）；
+ * 結果輸出至 stdout，不做門檻判斷。索引與排名查詢的計時包含以主鍵載入當頁資料列，與實際 InstrumentService 的路徑一致
+ */
+class InstrumentSearchIndexBenchmarkTest {
+    static final List<String> QUERIES = List.of("2330", "23", "0", "台", "積電", "金融控股", "semi", "bank", "inc", "zzzz");
+
+    private static final int CATALOG_SIZE = 40_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 100;
+
+    private static final String LIKE_WHERE = " FROM app.instruments i WHERE "
+            + "LOWER(i.ticker) LIKE LOWER(CONCAT('%', ?, '%')) OR "
+            + "LOWER(i.name_en) LIKE LOWER(CONCAT('%', ?, '%')) OR "
+            + "LOWER(i.name_zh) LIKE LOWER(CONCAT('%', ?, '%'))";
+
+    private static final String RANKED_IDS = jdbc(
+            "SELECT i.id " + InstrumentRepository.SEARCH_FROM_WHERE + InstrumentRepository.SEARCH_ORDER_BY)
+            + " LIMIT " + PAGE_SIZE;
+    private static final String RANKED_COUNT = jdbc("SELECT COUNT(*) " + InstrumentRepository.SEARCH_FROM_WHERE);
+
+    private static final String[] ZH_WORDS = {
+            "台灣", "積體", "電路", "製造", "聯華", "電子", "鴻海", "精密", "金融", "控股", "國泰", "富邦", "中信", "玉山",
+            "航運", "長榮", "陽明", "鋼鐵", "中鋼", "塑膠", "南亞", "光電", "半導體", "生技", "醫療", "元大", "高股息",
+            "科技", "通訊", "能源", "營造", "建設", "食品", "紡織", "汽車", "觀光"
+    };
+
+    private static final String[] WARRANT_SUFFIXES = {"購", "售"};
+
+    private static final String[] EN_WORDS = {
+            "Taiwan", "Semiconductor", "Manufacturing", "United", "Micro", "Electronics", "Precision", "Industry",
+            "Financial", "Holdings", "Bank", "Insurance", "Marine", "Steel", "Plastics", "Optoelectronics",
+            "Biotech", "Medical", "Technology", "Communications", "Energy", "Construction", "Foods", "Textile",
+            "Motor", "Global", "American", "International", "Capital", "Systems", "Software", "Pharmaceuticals"
+    };
+
+    private static final String[] EN_SUFFIXES = {"Inc.", "Corp.", "Co., Ltd.", "Group", "Holdings Inc.", "PLC", "ETF"};
+
+    @Test
+    @EnabledIfSystemProperty(named = "stock.benchmark", matches = "true")
+    void fortyThousandInstruments_indexVsLike() throws SQLException {
+        List<InstrumentSearchRow> catalog = syntheticCatalog(CATALOG_SIZE, 42L);
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+                DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"))) {
+            postgres.start();
+            Flyway.configure()
+                    .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                    .locations("classpath:db/migration")
+                    .load()
+                    .migrate();
+
+            try (Connection connection = DriverManager.getConnection(
+                    postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())) {
+                List<InstrumentSearchRow> stored = insert(connection, catalog);
+
+                long buildStartedAt = System.nanoTime();
+                InstrumentSearchIndex index = InstrumentSearchIndex.build(stored);
+                System.out.printf("index build rows=%d postings=%,d took=%,d ms%n",
+                        index.size(), index.postingCount(), (System.nanoTime() - buildStartedAt) / 1_000_000);
+
+                for (String query : QUERIES) {
+                    long total = count(connection, "SELECT COUNT(*)" + LIKE_WHERE, query);
+                    assertEquals(total, index.search(query, 0, PAGE_SIZE).total(), query);
+                    assertEquals(total, count(connection, RANKED_COUNT, query), query);
+                    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                        likePage(connection, query);
+                        rankedPage(connection, query);
+                        indexPage(connection, index, query);
+                    }
+                    System.out.printf(
+                            "q=%-6s hits=%,6d like=%,9d ns/op trgm(ranked)=%,9d ns/op index(+pk fetch)=%,9d ns/op%n",
+                            query,
+                            total,
+                            nanosPerOp(() -> likePage(connection, query)),
+                            nanosPerOp(() -> rankedPage(connection, query)),
+                            nanosPerOp(() -> indexPage(connection, index, query)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 台股（4 碼股票、00 開頭 ETF、5~6 碼權證）與美股混合的合成商品目錄；ticker 不重複
+     */
+    static List<InstrumentSearchRow> syntheticCatalog(int size, long seed) {
+        Random random = new Random(seed);
+        Set<String> tickers = new HashSet<>();
+        List<InstrumentSearchRow> rows = new ArrayList<>(size);
+        while (rows.size() < size) {
+            int kind = random.nextInt(10);
+            String ticker;
+            String nameZh = null;
+            String nameEn = null;
+            if (kind < 3) {
+                ticker = String.valueOf(1101 + random.nextInt(8899));
+                nameZh = zhName(random);
+                nameEn = random.nextBoolean() ? enName(random) : null;
+            } else if (kind == 3) {
+                ticker = String.format("00%03d", random.nextInt(1000));
+                nameZh = zhName(random) + "ETF";
+            } else if (kind < 7) {
+                ticker = String.format("%05d%s", random.nextInt(100000), random.nextBoolean() ? "" : "P");
+                nameZh = ZH_WORDS[random.nextInt(ZH_WORDS.length)] + "元大" + (random.nextInt(90) + 10)
+                        + WARRANT_SUFFIXES[random.nextInt(2)] + String.format("%02d", random.nextInt(20));
+            } else {
+                StringBuilder letters = new StringBuilder();
+                int length = 1 + random.nextInt(4);
+                for (int i = 0; i < length; i++) {
+                    letters.append((char) ('A' + random.nextInt(26)));
+                }
+                ticker = letters.toString();
+                nameEn = enName(random);
+            }
+            if (tickers.add(ticker)) {
+                rows.add(new InstrumentSearchRow((long) rows.size() + 1, ticker, nameZh, nameEn));
+            }
+        }
+        return rows;
+    }
+
+    private static String zhName(Random random) {
+        return ZH_WORDS[random.nextInt(ZH_WORDS.length)] + ZH_WORDS[random.nextInt(ZH_WORDS.length)];
+    }
+
+    private static String enName(Random random) {
+        return EN_WORDS[random.nextInt(EN_WORDS.length)] + " " + EN_WORDS[random.nextInt(EN_WORDS.length)] + " "
+                + EN_SUFFIXES[random.nextInt(EN_SUFFIXES.length)];
+    }
+
+    private static List<InstrumentSearchRow> insert(Connection connection, List<InstrumentSearchRow> catalog)
+            throws SQLException {
+        String sql = "INSERT INTO app.instruments (market_id, exchange_id, ticker, name_zh, name_en, currency, symbol_key) "
+                + "SELECT e.market_id, e.id, ?, ?, ?, 'TWD', ? FROM app.exchanges e WHERE e.mic = 'XTAI'";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (InstrumentSearchRow row : catalog) {
+                statement.setString(1, row.ticker());
+                statement.setString(2, row.nameZh());
+                statement.setString(3, row.nameEn());
+                statement.setString(4, "TW:XTAI:" + row.ticker());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        // 以資料庫產生的 id 建立索引，兩邊比對的是同一份資料
+        List<InstrumentSearchRow> stored = new ArrayList<>(catalog.size());
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id, ticker, name_zh, name_en FROM app.instruments");
+                ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                stored.add(new InstrumentSearchRow(resultSet.getLong(1), resultSet.getString(2),
+                        resultSet.getString(3), resultSet.getString(4)));
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement("ANALYZE app.instruments")) {
+            statement.execute();
+        }
+        return stored;
+    }
+
+    private static int likePage(Connection connection, String query) {
+        int rows = 0;
+        String sql = "SELECT i.*" + LIKE_WHERE + " LIMIT " + PAGE_SIZE;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, sql, query);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows++;
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return rows + (int) count(connection, "SELECT COUNT(*)" + LIKE_WHERE, query);
+    }
+
+    private static int rankedPage(Connection connection, String query) {
+        List<Long> ids = new ArrayList<>(PAGE_SIZE);
+        try (PreparedStatement statement = connection.prepareStatement(RANKED_IDS)) {
+            bind(statement, RANKED_IDS, query);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return fetchByIds(connection, ids) + (int) count(connection, RANKED_COUNT, query);
+    }
+
+    private static int indexPage(Connection connection, InstrumentSearchIndex index, String query) {
+        InstrumentSearchIndex.Hits hits = index.search(query, 0, PAGE_SIZE);
+        return fetchByIds(connection, hits.ids()) + (int) hits.total();
+    }
+
+    private static int fetchByIds(Connection connection, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT i.* FROM app.instruments i WHERE i.id = ANY(?)")) {
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows++;
+                }
+            }
+            return rows;
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static long count(Connection connection, String sql, String query) {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, sql, query);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Repository 的原生查詢使用具名參數 :query，改為 JDBC 的 ? 佔位
+     */
+    private static String jdbc(String sql) {
+        return sql.replace(":query", "?");
+    }
+
+    private static void bind(PreparedStatement statement, String sql, String query) throws SQLException {
+        int parameters = sql.length() - sql.replace("?", "").length();
+        for (int i = 1; i <= parameters; i++) {
+            statement.setString(i, query);
+        }
+    }
+
+    private static long nanosPerOp(IntSupplier operation) {
+        long sink = 0L;
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += operation.getAsInt();
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        return elapsed / MEASURED_ROUNDS;
+    }
+}
@@ -0,0 +1,77 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import tw.bk.apppersistence.repository.InstrumentSearchRow;
+
+class InstrumentSearchIndexTest {
+    private static final List<InstrumentSearchRow> ROWS = List.of(
+            new InstrumentSearchRow(1L, "2330", "台積電", "Taiwan Semiconductor Manufacturing"),
+            new InstrumentSearchRow(2L, "23301P", "台積電凱基57售01", null),
+            new InstrumentSearchRow(3L, "2303", "聯電", "United Microelectronics"),
+            new InstrumentSearchRow(4L, "TSM", null, "Taiwan Semiconductor Manufacturing ADR"),
+            new InstrumentSearchRow(5L, "12330", "測試", "Test 2330 Holdings"),
+            new InstrumentSearchRow(6L, "AAPL", null, "Apple Inc."),
+            new InstrumentSearchRow(7L, "PINE", null, "Pineapple Corp"),
+            new InstrumentSearchRow(8L, "2330", "台積電", "TSMC (TPEx listing)"));
+
+    private final InstrumentSearchIndex index = InstrumentSearchIndex.build(ROWS);
+
+    @Test
+    void search_shouldRankExactTickerThenPrefixThenNamePrefixThenContains() {
+        InstrumentSearchIndex.Hits hits = index.search("2330", 0, 10);
+
+        // 同 ticker 依 id；12330 的英文名稱以單字 2330 開頭
+        assertEquals(List.of(1L, 8L, 2L, 5L), hits.ids());
+        assertEquals(4L, hits.total());
+    }
+
+    @Test
+    void search_shouldMatchCjkInfixAndIgnoreCase() {
+        assertEquals(List.of(1L, 8L, 2L), index.search("積電", 0, 10).ids());
+        assertEquals(List.of(3L), index.search("聯", 0, 10).ids());
+        assertEquals(List.of(1L, 4L), index.search("semi", 0, 10).ids());
+        assertEquals(List.of(6L, 7L), index.search("APPLE", 0, 10).ids());
+        assertEquals(List.of(), index.search("台積電x", 0, 10).ids());
+    }
+
+    @Test
+    void search_shouldPageWithTotal() {
+        InstrumentSearchIndex.Hits first = index.search("", 0, 3);
+        InstrumentSearchIndex.Hits last = index.search("", 6, 3);
+
+        assertEquals(8L, first.total());
+        assertEquals(List.of(5L, 3L, 1L), first.ids());
+        assertEquals(List.of(7L, 4L), last.ids());
+        assertEquals(List.of(), index.search("", 20, 3).ids());
+        assertEquals(InstrumentSearchIndex.Hits.NONE, index.search(null, 0, 3));
+    }
+
+    @Test
+    void search_shouldHitExactlyTheRowsMatchedByLikeQuery() {
+        List<InstrumentSearchRow> catalog = InstrumentSearchIndexBenchmarkTest.syntheticCatalog(5_000, 7L);
+        InstrumentSearchIndex large = InstrumentSearchIndex.build(catalog);
+
+        for (String query : InstrumentSearchIndexBenchmarkTest.QUERIES) {
+            Set<Long> expected = catalog.stream()
+                    .filter(row -> like(row.ticker(), query) || like(row.nameEn(), query) || like(row.nameZh(), query))
+                    .map(InstrumentSearchRow::id)
+                    .collect(Collectors.toSet());
+            InstrumentSearchIndex.Hits hits = large.search(query, 0, Integer.MAX_VALUE);
+
+            assertEquals(expected.size(), hits.total(), query);
+            assertEquals(expected, Set.copyOf(hits.ids()), query);
+        }
+        assertTrue(large.postingCount() > large.size());
+    }
+
+    private static boolean like(String value, String query) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(query.toLowerCase(Locale.ROOT));
+    }
+}
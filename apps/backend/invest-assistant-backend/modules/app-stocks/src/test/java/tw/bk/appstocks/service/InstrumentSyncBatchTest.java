@@ -0,0 +1,128 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tw.bk.apppersistence.repository.InstrumentBatchRepository;
+import tw.bk.apppersistence.repository.InstrumentSyncRow;
+import tw.bk.apppersistence.repository.WarrantProfileRow;
+
+@ExtendWith(MockitoExtension.class)
+class InstrumentSyncBatchTest {
+    private static final Long MARKET_ID = 1L;
+    private static final Long TWSE_ID = 10L;
+    private static final LocalDate EXPIRY = LocalDate.parse("2026-12-31");
+
+    @Mock
+    private InstrumentBatchRepository batchRepository;
+
+    @Test
+    void finish_shouldWriteOnlyNewAndRenamedInstruments() {
+        List<InstrumentSyncRow> existing = List.of(
+                existing(1L, "2330", "台積電"),
+                existing(2L, "2303", "聯電"),
+                existing(3L, "1101", "台泥"));
+        stubUpsert(existing);
+        InstrumentSyncBatch batch = new InstrumentSyncBatch(batchRepository, 500, existing, List.of());
+
+        batch.accept(row("2330", "台積電"));
+        batch.accept(row("2303", "聯華電子"));
+        batch.accept(row("2317", "鴻海"));
+        batch.accept(row("2317", "鴻海"));
+        // 來源未提供名稱時不覆寫既有名稱
+        batch.accept(row("1101", null));
+        InstrumentSyncBatch.Counts counts = batch.finish();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InstrumentSyncRow>> written = ArgumentCaptor.forClass(List.class);
+        verify(batchRepository).upsertAll(written.capture());
+        assertEquals(List.of("2303", "2317"), written.getValue().stream().map(InstrumentSyncRow::ticker).toList());
+        assertEquals(new InstrumentSyncBatch.Counts(5, 1, 1, 3, 0), counts);
+        verify(batchRepository, never()).upsertWarrantProfiles(any());
+    }
+
+    @Test
+    void accept_shouldFlushEveryBatchSizeChangedRows() {
+        stubUpsert(List.of());
+        InstrumentSyncBatch batch = new InstrumentSyncBatch(batchRepository, 2, List.of(), List.of());
+
+        for (int i = 0; i < 5; i++) {
+            batch.accept(row("03000" + i, "權證" + i));
+        }
+        InstrumentSyncBatch.Counts counts = batch.finish();
+
+        verify(batchRepository, times(3)).upsertAll(any());
+        assertEquals(5, counts.added());
+    }
+
+    @Test
+    void finish_shouldWriteWarrantProfilesWithReturnedIdsAndSkipUnchanged() {
+        List<InstrumentSyncRow> existing = List.of(
+                existing(1L, "030001", "甲購01"),
+                existing(2L, "030002", "乙購01"));
+        List<WarrantProfileRow> profiles = List.of(
+                new WarrantProfileRow(1L, "2330", EXPIRY),
+                new WarrantProfileRow(2L, "2303", EXPIRY));
+        stubUpsert(existing);
+        InstrumentSyncBatch batch = new InstrumentSyncBatch(batchRepository, 500, existing, profiles);
+
+        batch.accept(row("030001", "甲購01"), "2330", EXPIRY);
+        // 缺到期日沿用既有值，只比對標的
+        batch.accept(row("030002", "乙購01"), "2317", null);
+        batch.accept(row("030003", "丙購01"), "2454", EXPIRY);
+        InstrumentSyncBatch.Counts counts = batch.finish();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<WarrantProfileRow>> written = ArgumentCaptor.forClass(List.class);
+        verify(batchRepository).upsertWarrantProfiles(written.capture());
+        assertEquals(Set.of(
+                        new WarrantProfileRow(2L, "2317", null),
+                        new WarrantProfileRow(100L, "2454", EXPIRY)),
+                Set.copyOf(written.getValue()));
+        assertEquals(new InstrumentSyncBatch.Counts(3, 1, 1, 1, 2), counts);
+    }
+
+    /**
+     * 模擬 upsert：未在既有清單的列為新增並配發 id，其餘為名稱更新
+     */
+    private void stubUpsert(List<InstrumentSyncRow> existing) {
+        Set<String> existingKeys = Set.copyOf(existing.stream().map(InstrumentSyncRow::syncKey).toList());
+        AtomicLong nextId = new AtomicLong(100L);
+        when(batchRepository.upsertAll(any())).thenAnswer(invocation -> {
+            List<InstrumentSyncRow> rows = invocation.getArgument(0);
+            List<InstrumentBatchRepository.UpsertedInstrument> upserted = new ArrayList<>();
+            for (InstrumentSyncRow row : rows) {
+                boolean inserted = !existingKeys.contains(row.syncKey());
+                upserted.add(new InstrumentBatchRepository.UpsertedInstrument(
+                        inserted ? nextId.getAndIncrement() : null, row.exchangeId(), row.ticker(), inserted));
+            }
+            return upserted;
+        });
+        lenient().when(batchRepository.upsertWarrantProfiles(any())).thenAnswer(invocation ->
+                invocation.<List<WarrantProfileRow>>getArgument(0).size());
+    }
+
+    private static InstrumentSyncRow existing(Long id, String ticker, String name) {
+        return new InstrumentSyncRow(id, MARKET_ID, TWSE_ID, ticker, "TW:XTAI:" + ticker, name, "TWD", "STOCK",
+                "ACTIVE");
+    }
+
+    private static InstrumentSyncRow row(String ticker, String name) {
+        return existing(null, ticker, name);
+    }
+}
@@ -0,0 +1,77 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+class MarketCalendarTest {
+    private static final long INTRADAY_TTL = 5_000L;
+
+    @Test
+    void isTradingDay_shouldExcludeWeekendsAndConfiguredHolidays() {
+        MarketCalendar calendar = calendar("2026-03-02T02:00:00Z", List.of("2026-04-03"));
+
+        assertTrue(calendar.isTradingDay(MarketCode.TW, LocalDate.parse("2026-04-02")));
+        assertFalse(calendar.isTradingDay(MarketCode.TW, LocalDate.parse("2026-04-03")));
+        assertFalse(calendar.isTradingDay(MarketCode.TW, LocalDate.parse("2026-04-04")));
+    }
+
+    @Test
+    void quoteTtlMs_shouldUseIntradayTtlDuringSessionAndSettleWindow() {
+        // 10:00 台北時間（盤中）
+        MarketCalendar open = calendar("2026-03-02T02:00:00Z", List.of());
+        assertEquals(INTRADAY_TTL, open.quoteTtlMs(MarketCode.TW, Instant.parse("2026-03-02T02:00:00Z"), INTRADAY_TTL));
+
+        // 13:35 台北時間（收盤後 settle 緩衝內）
+        MarketCalendar settling = calendar("2026-03-02T05:35:00Z", List.of());
+        assertEquals(INTRADAY_TTL,
+                settling.quoteTtlMs(MarketCode.TW, Instant.parse("2026-03-02T05:35:00Z"), INTRADAY_TTL));
+    }
+
+    @Test
+    void quoteTtlMs_shouldCacheUntilNextOpenSkippingWeekendAndHoliday() {
+        // 週五 14:00 台北時間收盤後，下週一休市 → 下次開盤為週二 09:00
+        MarketCalendar calendar = calendar("2026-03-06T06:00:00Z", List.of("2026-03-09"));
+        long ttl = calendar.quoteTtlMs(MarketCode.TW, Instant.parse("2026-03-06T06:00:00Z"), INTRADAY_TTL);
+
+        Instant nextOpen = Instant.parse("2026-03-10T01:00:00Z");
+        assertEquals(Duration.between(Instant.parse("2026-03-06T06:00:00Z"), nextOpen).toMillis(), ttl);
+        assertEquals(nextOpen, calendar.nextOpen(MarketCode.TW, Instant.parse("2026-03-06T06:00:00Z")));
+    }
+
+    @Test
+    void quoteTtlMs_shouldKeepPollingWhenEodDataLagsBehindLastSession() {
+        // 收盤後拿到的仍是前一交易日資料（例如 TPEx 尚未公布），維持短 TTL
+        MarketCalendar calendar = calendar("2026-03-06T07:00:00Z", List.of());
+        Instant previousSession = LocalDate.parse("2026-03-05").atStartOfDay(calendar.zoneOf(MarketCode.TW)).toInstant();
+
+        assertEquals(INTRADAY_TTL, calendar.quoteTtlMs(MarketCode.TW, previousSession, INTRADAY_TTL));
+        assertFalse(calendar.isSettled(MarketCode.TW, previousSession, Instant.parse("2026-03-06T07:00:00Z")));
+    }
+
+    @Test
+    void isSettled_shouldRequireQuoteCachedAfterSettlement() {
+        // 週六查詢：週五收盤前寫入的報價仍需刷新，settle 後寫入的視為最終行情
+        MarketCalendar calendar = calendar("2026-03-07T03:00:00Z", List.of());
+        Instant friday = Instant.parse("2026-03-06T05:20:00Z");
+
+        assertFalse(calendar.isSettled(MarketCode.TW, friday, friday));
+        assertTrue(calendar.isSettled(MarketCode.TW, friday, Instant.parse("2026-03-06T06:00:00Z")));
+    }
+
+    private static MarketCalendar calendar(String now, List<String> twHolidays) {
+        StockMarketProperties properties = new StockMarketProperties();
+        properties.getCalendar().getTw().setHolidays(twHolidays);
+        MarketCalendar calendar = new MarketCalendar(properties, () -> Instant.parse(now));
+        calendar.initSessions();
+        return calendar;
+    }
+}
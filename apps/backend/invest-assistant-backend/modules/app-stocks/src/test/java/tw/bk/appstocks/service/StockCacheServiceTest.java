@@ -0,0 +1,243 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleCacheEntry;
+import tw.bk.appstocks.model.Quote;
+
+@ExtendWith(MockitoExtension.class)
+class StockCacheServiceTest {
+    private static final String CHANNEL = "stock:cache:invalidate";
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    private StockCacheService cacheService;
+
+    @BeforeEach
+    void setUp() {
+        StockMarketProperties properties = new StockMarketProperties();
+        properties.getCache().setLocalEnabled(true);
+        properties.getCache().setLocalTtl(60_000);
+        properties.getCache().setQuoteTtl(60_000);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        cacheService = new StockCacheService(
+                redisTemplate, stringRedisTemplate, listenerContainer, properties, metricsRecorder);
+        cacheService.initLocalCache();
+    }
+
+    @Test
+    void get_shouldServeRepeatedReadsFromLocalTier() {
+        Quote quote = Quote.builder().ticker("2330").price(new BigDecimal("1000")).build();
+        stubPipelinedReads(List.of(quote, 50_000L));
+
+        Optional<Quote> first = cacheService.get("quote:TW:XTAI:2330", Quote.class);
+        Optional<Quote> second = cacheService.get("quote:TW:XTAI:2330", Quote.class);
+
+        assertEquals(quote, first.orElseThrow());
+        assertEquals(quote, second.orElseThrow());
+        verify(valueOperations, times(1)).get("quote:TW:XTAI:2330");
+        verify(metricsRecorder).recordCacheTierHit(StockCacheService.TIER_REDIS, "quote");
+        verify(metricsRecorder).recordCacheTierHit(StockCacheService.TIER_LOCAL, "quote");
+    }
+
+    @Test
+    void get_shouldNotKeepLocalEntryLongerThanRemainingRedisTtl() throws InterruptedException {
+        Quote quote = Quote.builder().ticker("2330").price(new BigDecimal("1000")).build();
+        stubPipelinedReads(List.of(quote, 5L), List.of(quote, 50_000L));
+
+        cacheService.get("quote:TW:XTAI:2330", Quote.class);
+        Thread.sleep(50);
+        // Redis 只剩 5ms 的項目在 L1 也只留 5ms，不會以完整 localTtl 重新計時
+        cacheService.get("quote:TW:XTAI:2330", Quote.class);
+        cacheService.get("quote:TW:XTAI:2330", Quote.class);
+
+        verify(valueOperations, times(2)).get("quote:TW:XTAI:2330");
+    }
+
+    @Test
+    void get_shouldNotFillLocalTierWhenRedisEntryAlreadyExpired() {
+        Quote quote = Quote.builder().ticker("2330").price(new BigDecimal("1000")).build();
+        stubPipelinedReads(List.of(quote, -2L), List.of(quote, -2L));
+
+        cacheService.get("quote:TW:XTAI:2330", Quote.class);
+        cacheService.get("quote:TW:XTAI:2330", Quote.class);
+
+        verify(valueOperations, times(2)).get("quote:TW:XTAI:2330");
+    }
+
+    @Test
+    void multiGet_shouldFetchValuesAndTtlsInOnePipeline() {
+        Quote quote = Quote.builder().ticker("2330").price(new BigDecimal("1000")).build();
+        stubPipelinedReads(Arrays.asList(Arrays.asList(quote, null), 50_000L, -2L));
+        List<String> keys = List.of("quote:TW:XTAI:2330", "quote:TW:XTAI:2317");
+
+        Map<String, Quote> first = cacheService.multiGet(keys, Quote.class);
+        Map<String, Quote> second = cacheService.multiGet(List.of("quote:TW:XTAI:2330"), Quote.class);
+
+        assertEquals(Map.of("quote:TW:XTAI:2330", quote), first);
+        assertEquals(first, second);
+        // MGET 與 PTTL 同一次往返，命中的 key 之後由 L1 提供
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(valueOperations).multiGet(keys);
+    }
+
+    @Test
+    void getListWithTtl_shouldReturnValueWithRemainingRedisTtl() {
+        List<String> warrants = List.of("700001", "700002");
+        stubPipelinedReads(List.of(warrants, 42_000L), List.of(warrants, -1L));
+
+        StockCacheService.Expiring<List<String>> first =
+                cacheService.getListWithTtl("warrant:monthly:2026-03", String.class).orElseThrow();
+        StockCacheService.Expiring<List<String>> second =
+                cacheService.getListWithTtl("warrant:monthly:2026-03", String.class).orElseThrow();
+
+        assertEquals(warrants, first.value());
+        assertEquals(42_000L, first.remainingMs());
+        // 未設定過期的 key 不限制呼叫端保留時間
+        assertEquals(Long.MAX_VALUE, second.remainingMs());
+        verify(valueOperations, times(2)).get("warrant:monthly:2026-03");
+    }
+
+    @Test
+    void get_shouldNotShareLocalValueWithCallers() {
+        Candle candle = Candle.builder()
+                .ticker("2330")
+                .timestamp(LocalDateTime.parse("2026-03-02T00:00:00"))
+                .close(new BigDecimal("1000"))
+                .build();
+        cacheService.set("candles:TW:XTAI:2330:1d:m2026-03",
+                new CandleCacheEntry(new ArrayList<>(List.of(candle)), Instant.EPOCH), 60_000);
+
+        CandleCacheEntry first = cacheService.get("candles:TW:XTAI:2330:1d:m2026-03", CandleCacheEntry.class)
+                .orElseThrow();
+        first.getCandles().get(0).setClose(BigDecimal.ONE);
+        first.getCandles().clear();
+        candle.setClose(BigDecimal.TEN);
+
+        // 呼叫端修改回傳值或寫入時的物件都不影響 L1
+        CandleCacheEntry second = cacheService.get("candles:TW:XTAI:2330:1d:m2026-03", CandleCacheEntry.class)
+                .orElseThrow();
+        assertEquals(1, second.getCandles().size());
+        assertEquals(new BigDecimal("1000"), second.getCandles().get(0).getClose());
+        verify(valueOperations, times(0)).get(any());
+    }
+
+    @Test
+    void onInvalidation_shouldEvictLocalEntryOnlyForOtherNodes() {
+        Quote quote = Quote.builder().ticker("AAPL").price(new BigDecimal("200")).build();
+        cacheService.set("quote:US:XNAS:AAPL", quote, 60_000);
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate).convertAndSend(eq(CHANNEL), payload.capture());
+
+        // 自己發出的通知不應清掉剛寫入的 L1
+        cacheService.onInvalidation(message(payload.getValue()));
+        assertTrue(cacheService.get("quote:US:XNAS:AAPL", Quote.class).isPresent());
+        verify(valueOperations, times(0)).get(any());
+
+        // 其他節點的通知要清掉 L1，下次讀取回到 Redis
+        stubPipelinedReads(List.of());
+        cacheService.onInvalidation(message("other-node|quote:US:XNAS:AAPL"));
+        cacheService.get("quote:US:XNAS:AAPL", Quote.class);
+        verify(valueOperations, times(1)).get("quote:US:XNAS:AAPL");
+    }
+
+    @Test
+    void setAll_shouldPipelineWritesAndPublishOneInvalidation() {
+        @SuppressWarnings("unchecked")
+        RedisOperations<String, Object> pipeline = mock(RedisOperations.class);
+        when(pipeline.opsForValue()).thenReturn(valueOperations);
+        doAnswer(invocation -> {
+            SessionCallback<?> callback = invocation.getArgument(0);
+            callback.execute(pipeline);
+            return List.of();
+        }).when(redisTemplate).executePipelined(any(SessionCallback.class));
+        Quote tsmc = Quote.builder().ticker("2330").price(new BigDecimal("1000")).build();
+        Quote foxconn = Quote.builder().ticker("2317").price(new BigDecimal("150")).build();
+
+        cacheService.setAll(List.of(
+                new StockCacheService.Write("quote:TW:XTAI:2330", tsmc, 60_000),
+                new StockCacheService.Write("quote:TW:XTAI:2317", foxconn, 30_000)));
+
+        verify(valueOperations).set("quote:TW:XTAI:2330", tsmc, Duration.ofMillis(60_000));
+        verify(valueOperations).set("quote:TW:XTAI:2317", foxconn, Duration.ofMillis(30_000));
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate, times(1)).convertAndSend(eq(CHANNEL), payload.capture());
+        assertTrue(payload.getValue().endsWith("|quote:TW:XTAI:2330\nquote:TW:XTAI:2317"));
+
+        // 其他節點的合併通知要清掉每一個 key
+        cacheService.onInvalidation(message("other-node|quote:TW:XTAI:2330\nquote:TW:XTAI:2317"));
+        cacheService.get("quote:TW:XTAI:2330", Quote.class);
+        cacheService.get("quote:TW:XTAI:2317", Quote.class);
+        verify(valueOperations).get("quote:TW:XTAI:2330");
+        verify(valueOperations).get("quote:TW:XTAI:2317");
+    }
+
+    /**
+     * 每次 pipeline 在 mock 上執行讀取指令後依序回傳 replies（GET/MGET 結果後接各 key 的 PTTL）
+     */
+    private void stubPipelinedReads(List<?>... replies) {
+        @SuppressWarnings("unchecked")
+        RedisOperations<String, Object> pipeline = mock(RedisOperations.class);
+        when(pipeline.opsForValue()).thenReturn(valueOperations);
+        Iterator<List<?>> next = List.of(replies).iterator();
+        doAnswer(invocation -> {
+            SessionCallback<?> callback = invocation.getArgument(0);
+            callback.execute(pipeline);
+            return next.hasNext() ? next.next() : List.of();
+        }).when(redisTemplate).executePipelined(any(SessionCallback.class));
+    }
+
+    private DefaultMessage message(String payload) {
+        return new DefaultMessage(
+                CHANNEL.getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,164 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.QuoteWarmResult;
+import tw.bk.apppersistence.repository.UserPositionRepository;
+
+@ExtendWith(MockitoExtension.class)
+class StockCacheWarmerTest {
+    // 2026-03-02 為週一；台北時間 = UTC+8
+    private static final Instant PRE_OPEN = Instant.parse("2026-03-02T00:55:00Z");
+    private static final Instant SESSION = Instant.parse("2026-03-02T01:30:00Z");
+    private static final Instant SETTLING = Instant.parse("2026-03-02T05:35:00Z");
+    private static final Instant POST_CLOSE = Instant.parse("2026-03-02T05:45:00Z");
+
+    @Mock
+    private UserPositionRepository userPositionRepository;
+
+    @Mock
+    private StockQuoteService stockQuoteService;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(SESSION);
+    private final List<List<String>> batches = new ArrayList<>();
+    private final List<VendorCallPriority> priorities = new ArrayList<>();
+    private StockMarketProperties properties;
+    private StockCacheWarmer warmer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StockMarketProperties();
+        properties.getWarmer().setMarkets(List.of("TW"));
+        properties.getWarmer().setBatchSize(2);
+        properties.getWarmer().setBatchPauseMs(0);
+        MarketCalendar marketCalendar = new MarketCalendar(properties, now::get);
+        marketCalendar.initSessions();
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        warmer = new StockCacheWarmer(
+                userPositionRepository,
+                stockQuoteService,
+                marketCalendar,
+                stringRedisTemplate,
+                properties,
+                metricsRecorder,
+                now::get);
+    }
+
+    @Test
+    void dueWave_shouldFollowMarketSession() {
+        assertEquals(StockCacheWarmer.Wave.PRE_OPEN, dueAt(PRE_OPEN));
+        assertNull(dueAt(PRE_OPEN.minus(Duration.ofMinutes(15))));
+        assertEquals(StockCacheWarmer.Wave.SESSION, dueAt(SESSION));
+        // 收盤後 settle 緩衝內行情尚未定案
+        assertNull(dueAt(SETTLING));
+        assertEquals(StockCacheWarmer.Wave.POST_CLOSE, dueAt(POST_CLOSE));
+    }
+
+    @Test
+    void tick_shouldWarmHeldAndRecentSymbolsInBatchesAtBatchPriority() {
+        when(userPositionRepository.findDistinctHeldSymbolKeys())
+                .thenReturn(List.of("TW:XTAI:2330", "US:XNAS:AAPL", "TW:XTAI:2317"));
+        when(zSetOperations.reverseRange(StockCacheWarmer.VIEWED_KEY, 0, 499))
+                .thenReturn(new LinkedHashSet<>(List.of("TW:XTAI:2454", "TW:XTAI:2330")));
+        stubWarm(List.of(new QuoteWarmResult(2, 1, 1, 1, 2), new QuoteWarmResult(1, 0, 1, 1, 1)));
+
+        warmer.tick();
+        // 同一盤中間隔內不重複預熱
+        warmer.tick();
+
+        assertEquals(List.of(List.of("TW:XTAI:2330", "TW:XTAI:2317"), List.of("TW:XTAI:2454")), batches);
+        assertEquals(List.of(VendorCallPriority.BATCH, VendorCallPriority.BATCH), priorities);
+        verify(stockQuoteService, times(2)).warmQuotes(any(), eq(false));
+        verify(metricsRecorder).recordCacheWarm(
+                eq("TW"), eq("session"), eq("completed"), eq(new QuoteWarmResult(3, 1, 2, 2, 3)), anyLong());
+    }
+
+    @Test
+    void tick_shouldForceRefreshBeforeOpenAndAbortWhenBatchRefreshesNothing() {
+        now.set(PRE_OPEN);
+        when(userPositionRepository.findDistinctHeldSymbolKeys())
+                .thenReturn(List.of("TW:XTAI:2330", "TW:XTAI:2317", "TW:XTAI:2454"));
+        when(zSetOperations.reverseRange(StockCacheWarmer.VIEWED_KEY, 0, 499)).thenReturn(Set.of());
+        stubWarm(List.of(new QuoteWarmResult(2, 2, 2, 0, 2)));
+
+        warmer.tick();
+
+        assertEquals(1, batches.size());
+        verify(stockQuoteService).warmQuotes(any(), eq(true));
+        verify(metricsRecorder).recordCacheWarm(eq("TW"), eq("pre_open"), eq("aborted"), any(), anyLong());
+    }
+
+    @Test
+    void tick_shouldSkipWaveClaimedByAnotherNode() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+
+        warmer.tick();
+
+        verify(stockQuoteService, never()).warmQuotes(any(), anyBoolean());
+        verify(userPositionRepository, never()).findDistinctHeldSymbolKeys();
+    }
+
+    @Test
+    void recordViewed_shouldWriteEachSymbolOncePerInterval() {
+        warmer.recordViewed(List.of("TW:XTAI:2330", "TW:XTAI:2330", "US:XNAS:AAPL"));
+        warmer.recordViewed(List.of("TW:XTAI:2330"));
+
+        verify(zSetOperations).add(StockCacheWarmer.VIEWED_KEY, "TW:XTAI:2330", (double) SESSION.toEpochMilli());
+        verify(zSetOperations).add(StockCacheWarmer.VIEWED_KEY, "US:XNAS:AAPL", (double) SESSION.toEpochMilli());
+    }
+
+    private StockCacheWarmer.Wave dueAt(Instant at) {
+        now.set(at);
+        return warmer.dueWave(MarketCode.TW, at);
+    }
+
+    private void stubWarm(List<QuoteWarmResult> results) {
+        when(stockQuoteService.warmQuotes(any(), anyBoolean())).thenAnswer(invocation -> {
+            batches.add(List.copyOf(invocation.<List<String>>getArgument(0)));
+            priorities.add(VendorCallPriority.current());
+            return results.get(Math.min(batches.size(), results.size()) - 1);
+        });
+    }
+}
@@ -0,0 +1,360 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.enums.MarketCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.CandleCacheEntry;
+import tw.bk.appstocks.model.Quote;
+import tw.bk.appstocks.model.QuoteWarmResult;
+import tw.bk.appstocks.port.StockMarketClient;
+import tw.bk.apppersistence.repository.InstrumentCatalogRow;
+
+@ExtendWith(MockitoExtension.class)
+class StockQuoteServiceTest {
+    private static final String SYMBOL_KEY = "TW:XTAI:2330";
+    private static final String CACHE_KEY = "quote:" + SYMBOL_KEY;
+    private static final Instant NOW = Instant.parse("2026-03-02T02:00:00Z");
+
+    @Mock
+    private InstrumentCatalogService instrumentCatalogService;
+
+    @Mock
+    private StockMarketClient client;
+
+    @Mock
+    private StockCacheService cacheService;
+
+    @Mock
+    private WarrantQuoteService warrantQuoteService;
+
+    @Mock
+    private DailyCandleStore dailyCandleStore;
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private StockMarketProperties properties;
+    private StockQuoteService service;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StockMarketProperties();
+        properties.getCache().setQuoteTtl(300_000);
+        properties.getCache().setQuoteSoftTtl(30_000);
+        properties.getSingleFlight().setDistributedEnabled(false);
+        when(client.getSupportedMarket()).thenReturn(MarketCode.TW);
+        Executor executor = scheduled::add;
+        MarketCalendar marketCalendar = new MarketCalendar(properties, () -> NOW);
+        marketCalendar.initSessions();
+        service = new StockQuoteService(
+                instrumentCatalogService,
+                List.of(client),
+                cacheService,
+                properties,
+                warrantQuoteService,
+                dailyCandleStore,
+                new CandleBucketCache(cacheService, properties, marketCalendar, () -> NOW),
+                new CandleAggregator(),
+                metricsRecorder,
+                new HedgedCallExecutor(
+                        new VendorCircuitBreakers(properties, metricsRecorder), metricsRecorder, Runnable::run),
+                new DistributedSingleFlight(null, null, properties, metricsRecorder),
+                marketCalendar,
+                () -> NOW,
+                executor);
+        service.initClientMap();
+    }
+
+    @Test
+    void getQuote_shouldReturnFreshCachedQuoteWithoutRefresh() {
+        Quote cached = quote("1000", NOW.minusSeconds(10));
+        when(cacheService.get(CACHE_KEY, Quote.class)).thenReturn(Optional.of(cached));
+
+        Quote result = service.getQuote(SYMBOL_KEY);
+
+        assertFalse(result.isStale());
+        assertNull(result.getAgeMs());
+        assertTrue(scheduled.isEmpty());
+    }
+
+    @Test
+    void getQuote_shouldServeStaleQuoteAndRefreshOnceInBackground() {
+        Quote cached = quote("1000", NOW.minusSeconds(45));
+        when(cacheService.get(CACHE_KEY, Quote.class)).thenReturn(Optional.of(cached));
+
+        Quote first = service.getQuote(SYMBOL_KEY);
+        Quote second = service.getQuote(SYMBOL_KEY);
+
+        assertTrue(first.isStale());
+        assertEquals(45_000L, first.getAgeMs());
+        assertTrue(second.isStale());
+        // 快取物件可能被 L1 共用，不可被標記
+        assertFalse(cached.isStale());
+        // 同一 key 只排一次背景刷新，且呼叫端不等待外部 API
+        assertEquals(1, scheduled.size());
+        verify(client, never()).getQuote("2330");
+
+        when(instrumentCatalogService.findBySymbolKey(SYMBOL_KEY)).thenReturn(Optional.of(instrument()));
+        when(client.getQuote("2330")).thenReturn(Optional.of(quote("1010", null)));
+        scheduled.get(0).run();
+
+        ArgumentCaptor<Object> written = ArgumentCaptor.forClass(Object.class);
+        verify(cacheService).set(eq(CACHE_KEY), written.capture(), anyLong());
+        Quote refreshed = (Quote) written.getValue();
+        assertEquals(new BigDecimal("1010"), refreshed.getPrice());
+        assertEquals(NOW, refreshed.getCachedAt());
+        verify(metricsRecorder).recordBackgroundRefresh("quote", "success");
+
+        // 刷新完成後可再次排程
+        service.getQuote(SYMBOL_KEY);
+        assertEquals(2, scheduled.size());
+    }
+
+    @Test
+    void getQuote_shouldServeLastKnownQuoteWhenCircuitOpen() {
+        when(cacheService.get(CACHE_KEY, Quote.class)).thenReturn(Optional.empty());
+        when(instrumentCatalogService.findBySymbolKey(SYMBOL_KEY)).thenReturn(Optional.of(instrument()));
+        when(client.getQuote("2330")).thenThrow(
+                new BusinessException(ErrorCode.SERVICE_UNAVAILABLE, "External API circuit open"));
+        Quote lastKnown = quote("990", NOW.minusSeconds(600));
+        when(cacheService.multiGet(List.of("quote:last:" + SYMBOL_KEY), Quote.class))
+                .thenReturn(Map.of("quote:last:" + SYMBOL_KEY, lastKnown));
+
+        Quote result = service.getQuote(SYMBOL_KEY);
+
+        assertTrue(result.isStale());
+        assertEquals(600_000L, result.getAgeMs());
+        assertEquals(new BigDecimal("990"), result.getPrice());
+        // 斷路期間不寫回報價快取，恢復後的下一次讀取即重新呼叫外部來源
+        verify(cacheService, never()).set(eq(CACHE_KEY), any(), anyLong());
+        verify(metricsRecorder).recordStaleServed("quote");
+    }
+
+    @Test
+    void warmQuotes_shouldRefreshOnlyMissingOrStaleQuotes() {
+        String missingKey = "TW:XTAI:2317";
+        when(cacheService.multiGet(List.of(CACHE_KEY, "quote:" + missingKey), Quote.class))
+                .thenReturn(Map.of(CACHE_KEY, quote("1000", NOW.minusSeconds(10))));
+        when(instrumentCatalogService.findBySymbolKeys(List.of(missingKey)))
+                .thenReturn(List.of(instrument("2317", missingKey)));
+        when(client.getQuotes(Set.of("2317"))).thenReturn(Map.of("2317", quote("150", null)));
+
+        QuoteWarmResult result = service.warmQuotes(List.of(SYMBOL_KEY, missingKey), false);
+
+        assertEquals(new QuoteWarmResult(2, 1, 1, 1, 2), result);
+        verify(client, never()).getQuote("2330");
+        verify(cacheService).set(eq("quote:" + missingKey), any(), anyLong());
+        verify(metricsRecorder, never()).recordCacheMiss("quote");
+    }
+
+    @Test
+    void warmQuotes_shouldRefreshLargeSetFromOneMarketSnapshot() {
+        properties.getCache().setQuoteSnapshotMinSymbols(3);
+        List<String> wanted = List.of(SYMBOL_KEY, "TW:XTAI:2317", "TW:XTAI:2303");
+        when(cacheService.multiGet(any(), eq(Quote.class))).thenReturn(Map.of());
+        when(instrumentCatalogService.findBySymbolKeys(wanted)).thenReturn(List.of(
+                instrument(), instrument("2317", "TW:XTAI:2317"), instrument("2303", "TW:XTAI:2303")));
+        when(instrumentCatalogService.list(MarketCode.TW, null, null, "ACTIVE")).thenReturn(List.of(
+                instrument(), instrument("2317", "TW:XTAI:2317"), instrument("2303", "TW:XTAI:2303"),
+                instrument("1101", "TW:XTAI:1101"),
+                new InstrumentCatalogRow(null, "TW", "TWSE", "XTAI", "030001", "TW:XTAI:030001", null, null, "TWD",
+                        "WARRANT", "ACTIVE")));
+        when(client.supportsMarketSnapshot()).thenReturn(true);
+        doAnswer(invocation -> {
+            Consumer<Quote> consumer = invocation.getArgument(0);
+            consumer.accept(snapshotQuote("2330", "1000"));
+            consumer.accept(snapshotQuote("2317", "150"));
+            consumer.accept(snapshotQuote("1101", "40"));
+            consumer.accept(snapshotQuote("030001", "1.2"));
+            consumer.accept(snapshotQuote("9999", "10"));
+            return 5;
+        }).when(client).streamMarketSnapshot(any());
+        // 快照沒有成交價的商品改走批次呼叫
+        when(client.getQuotes(Set.of("2303"))).thenReturn(Map.of("2303", quote("50", null)));
+
+        QuoteWarmResult result = service.warmQuotes(wanted, false);
+
+        assertEquals(new QuoteWarmResult(3, 0, 3, 3, 3), result);
+        verify(client, never()).getQuote(anyString());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockCacheService.Write>> writes = ArgumentCaptor.forClass(List.class);
+        verify(cacheService).setAll(writes.capture());
+        // 目錄內的有效商品都寫入快取（報價 + last-known），權證與目錄外的代號略過
+        assertEquals(Set.of(CACHE_KEY, "quote:last:" + SYMBOL_KEY, "quote:TW:XTAI:2317", "quote:last:TW:XTAI:2317",
+                        "quote:TW:XTAI:1101", "quote:last:TW:XTAI:1101"),
+                Set.copyOf(writes.getValue().stream().map(StockCacheService.Write::key).toList()));
+        Quote cached = (Quote) writes.getValue().get(0).value();
+        assertEquals(NOW, cached.getCachedAt());
+        verify(cacheService).set(eq("quote:TW:XTAI:2303"), any(), anyLong());
+        verify(metricsRecorder).recordQuoteSnapshot(eq("TW"), eq("success"), eq(5), eq(3), anyLong());
+    }
+
+    @Test
+    void warmQuotes_shouldRecordPartialSnapshotAsErrorAndKeepDeliveredQuotes() {
+        properties.getCache().setQuoteSnapshotMinSymbols(2);
+        List<String> wanted = List.of(SYMBOL_KEY, "TW:XTAI:2317");
+        when(cacheService.multiGet(any(), eq(Quote.class))).thenReturn(Map.of());
+        when(instrumentCatalogService.findBySymbolKeys(wanted)).thenReturn(List.of(
+                instrument(), instrument("2317", "TW:XTAI:2317")));
+        when(instrumentCatalogService.list(MarketCode.TW, null, null, "ACTIVE")).thenReturn(List.of(
+                instrument(), instrument("2317", "TW:XTAI:2317")));
+        when(client.supportsMarketSnapshot()).thenReturn(true);
+        // 上市成功、上櫃失敗：已收到的 2330 仍有效，例外在所有市場跑完後才拋出
+        doAnswer(invocation -> {
+            Consumer<Quote> consumer = invocation.getArgument(0);
+            consumer.accept(snapshotQuote("2330", "1000"));
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "Fugle snapshot failed: markets=[OTC]");
+        }).when(client).streamMarketSnapshot(any());
+        when(client.getQuotes(Set.of("2317"))).thenReturn(Map.of("2317", quote("150", null)));
+
+        QuoteWarmResult result = service.warmQuotes(wanted, false);
+
+        assertEquals(2, result.refreshed());
+        verify(cacheService).setAll(any());
+        verify(cacheService).set(eq("quote:TW:XTAI:2317"), any(), anyLong());
+        verify(metricsRecorder).recordQuoteSnapshot(eq("TW"), eq("error"), eq(1), eq(1), anyLong());
+        verify(metricsRecorder, never()).recordQuoteSnapshot(eq("TW"), eq("success"), anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void getCandles_shouldFetchOnlyMissingMonthAndAggregateMonthlyFromDailyBuckets() {
+        String januaryKey = "candles:" + SYMBOL_KEY + ":1d:m2026-01";
+        String februaryKey = "candles:" + SYMBOL_KEY + ":1d:m2026-02";
+        CandleCacheEntry january = new CandleCacheEntry(
+                List.of(candle("2026-01-05", "100"), candle("2026-01-30", "110")), NOW.minusSeconds(3600));
+        when(cacheService.multiGet(any(), eq(CandleCacheEntry.class))).thenReturn(Map.of(januaryKey, january));
+        InstrumentCatalogRow instrument = instrument();
+        when(instrumentCatalogService.findBySymbolKey(SYMBOL_KEY)).thenReturn(Optional.of(instrument));
+        when(dailyCandleStore.getDailyCandles(instrument, MarketCode.TW, client,
+                LocalDate.of(2026, 2, 1), LocalDate.of(2026, 2, 28)))
+                .thenReturn(List.of(candle("2026-02-02", "120"), candle("2026-02-27", "130")));
+
+        List<Candle> result = service.getCandles(SYMBOL_KEY, "1mo", LocalDate.of(2026, 1, 10), LocalDate.of(2026, 2, 20));
+
+        // 只補抓缺漏的二月，並裁切至 [from, to] 後聚合
+        assertEquals(2, result.size());
+        assertEquals(new BigDecimal("110"), result.get(0).getClose());
+        assertEquals(new BigDecimal("120"), result.get(1).getClose());
+        // 二月已全數定案（2/28 為週六），使用長 TTL
+        ArgumentCaptor<Object> written = ArgumentCaptor.forClass(Object.class);
+        verify(cacheService).set(eq(februaryKey), written.capture(),
+                eq(properties.getCache().getCandlesClosedBucketTtl()));
+        assertEquals(2, ((CandleCacheEntry) written.getValue()).getCandles().size());
+        verify(cacheService, never()).set(eq(januaryKey), any(), anyLong());
+        assertTrue(scheduled.isEmpty());
+    }
+
+    @Test
+    void getCandles_shouldNotCacheClosedBucketWhenVendorFails() {
+        when(instrumentCatalogService.findBySymbolKey(SYMBOL_KEY)).thenReturn(Optional.of(instrument()));
+        when(client.getCandles("2330", "5m", LocalDate.of(2026, 2, 2), LocalDate.of(2026, 2, 8)))
+                .thenThrow(new BusinessException(ErrorCode.INTERNAL_ERROR, "Fugle candles fetch failed"));
+
+        BusinessException ex = assertThrows(BusinessException.class,
+                () -> service.getCandles(SYMBOL_KEY, "5m", LocalDate.of(2026, 2, 2), LocalDate.of(2026, 2, 6)));
+
+        assertEquals(ErrorCode.INTERNAL_ERROR, ex.getErrorCode());
+        verify(cacheService, never()).set(anyString(), any(), anyLong());
+    }
+
+    @Test
+    void getCandles_shouldCacheEmptyClosedBucketWithOpenBucketTtl() {
+        when(instrumentCatalogService.findBySymbolKey(SYMBOL_KEY)).thenReturn(Optional.of(instrument()));
+        when(client.getCandles("2330", "5m", LocalDate.of(2026, 2, 2), LocalDate.of(2026, 2, 8)))
+                .thenReturn(List.of());
+
+        assertTrue(service.getCandles(SYMBOL_KEY, "5m", LocalDate.of(2026, 2, 2), LocalDate.of(2026, 2, 6)).isEmpty());
+
+        // 已定案但空白的區段不使用 7 天的長 TTL
+        verify(cacheService).set(eq("candles:" + SYMBOL_KEY + ":5m:w2026-02-02"), any(),
+                eq(properties.getCache().getCandlesOpenBucketTtl()));
+    }
+
+    @Test
+    void getCandles_shouldSendWarrantsToExactRangePathWithoutTouchingBuckets() {
+        String warrantKey = "TW:XTAI:030001";
+        when(instrumentCatalogService.findBySymbolKey(warrantKey)).thenReturn(Optional.of(new InstrumentCatalogRow(
+                null, "TW", "TWSE", "XTAI", "030001", warrantKey, null, null, "TWD", "WARRANT", "ACTIVE")));
+        when(warrantQuoteService.getCandles("030001", "1d", LocalDate.of(2026, 2, 2), LocalDate.of(2026, 2, 27)))
+                .thenReturn(List.of(candle("2026-02-02", "1.2")));
+
+        List<Candle> result = service.getCandles(warrantKey, "1d", LocalDate.of(2026, 2, 2), LocalDate.of(2026, 2, 27));
+
+        assertEquals(1, result.size());
+        // 不讀區段快取、只記一次整段快取的 miss
+        verify(cacheService, never()).multiGet(any(), any());
+        verify(metricsRecorder).recordCacheMiss("candles");
+        verify(cacheService).set(eq("candles:" + warrantKey + ":1d:2026-02-02:2026-02-27"), any(), anyLong());
+    }
+
+    private static Candle candle(String date, String close) {
+        return Candle.builder()
+                .ticker("2330")
+                .timestamp(LocalDate.parse(date).atStartOfDay())
+                .open(new BigDecimal(close))
+                .high(new BigDecimal(close))
+                .low(new BigDecimal(close))
+                .close(new BigDecimal(close))
+                .volume(1000L)
+                .build();
+    }
+
+    private static Quote quote(String price, Instant cachedAt) {
+        return Quote.builder()
+                .ticker("2330")
+                .price(new BigDecimal(price))
+                .cachedAt(cachedAt)
+                .build();
+    }
+
+    private static Quote snapshotQuote(String ticker, String price) {
+        return Quote.builder()
+                .ticker(ticker)
+                .price(new BigDecimal(price))
+                .timestamp(NOW)
+                .build();
+    }
+
+    private static InstrumentCatalogRow instrument() {
+        return instrument("2330", SYMBOL_KEY);
+    }
+
+    private static InstrumentCatalogRow instrument(String ticker, String symbolKey) {
+        return new InstrumentCatalogRow(
+                null, "TW", "TWSE", "XTAI", ticker, symbolKey, null, null, "TWD", "STOCK", "ACTIVE");
+    }
+}
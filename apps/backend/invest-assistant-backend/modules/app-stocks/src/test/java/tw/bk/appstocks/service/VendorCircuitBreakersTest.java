@@ -0,0 +1,152 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tw.bk.appcommon.enums.ErrorCode;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appstocks.config.StockMarketProperties;
+
+@ExtendWith(MockitoExtension.class)
+class VendorCircuitBreakersTest {
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    private StockMarketProperties properties;
+    private VendorCircuitBreakers breakers;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StockMarketProperties();
+        properties.getCircuitBreaker().setWindowSize(4);
+        properties.getCircuitBreaker().setMinimumCalls(4);
+        properties.getCircuitBreaker().setFailureRateThreshold(0.5);
+        properties.getCircuitBreaker().setOpenDurationMs(100);
+        properties.getCircuitBreaker().setHalfOpenProbes(2);
+        breakers = new VendorCircuitBreakers(properties, metricsRecorder);
+    }
+
+    @Test
+    void failures_shouldOpenAndRejectWithoutQueueing() {
+        call(200);
+        call(null);
+        call(503);
+        assertEquals(VendorCircuitBreaker.State.CLOSED, state());
+
+        call(500);
+
+        assertEquals(VendorCircuitBreaker.State.OPEN, state());
+        BusinessException ex = assertThrows(BusinessException.class, () -> breakers.admit("fugle", "quote"));
+        assertEquals(ErrorCode.SERVICE_UNAVAILABLE, ex.getErrorCode());
+        verify(metricsRecorder).recordCircuitRejected("fugle", "quote");
+        verify(metricsRecorder).recordCircuitState("fugle", "quote", 2);
+    }
+
+    @Test
+    void tooManyRequestsAndClientErrors_shouldNotCountAsFailures() {
+        call(429);
+        call(429);
+        call(404);
+        call(429);
+
+        assertEquals(VendorCircuitBreaker.State.CLOSED, state());
+    }
+
+    @Test
+    void halfOpen_shouldLimitProbesAndCloseWhenAllSucceed() throws InterruptedException {
+        open();
+        Thread.sleep(150);
+
+        VendorCircuitBreakers.Admission first = breakers.admit("fugle", "quote");
+        VendorCircuitBreakers.Admission second = breakers.admit("fugle", "quote");
+        assertThrows(BusinessException.class, () -> breakers.admit("fugle", "quote"));
+        assertEquals(VendorCircuitBreaker.State.HALF_OPEN, state());
+
+        first.complete(200, 10L);
+        assertEquals(VendorCircuitBreaker.State.HALF_OPEN, state());
+        second.complete(200, 10L);
+        assertEquals(VendorCircuitBreaker.State.CLOSED, state());
+    }
+
+    @Test
+    void halfOpen_shouldReopenWhenProbeFails() throws InterruptedException {
+        open();
+        Thread.sleep(150);
+
+        breakers.admit("fugle", "quote").complete(null, 5_000L);
+
+        assertEquals(VendorCircuitBreaker.State.OPEN, state());
+        assertThrows(BusinessException.class, () -> breakers.admit("fugle", "quote"));
+    }
+
+    @Test
+    void cancelledProbe_shouldReturnProbeQuota() throws InterruptedException {
+        open();
+        Thread.sleep(150);
+
+        breakers.admit("fugle", "quote").cancel();
+        breakers.admit("fugle", "quote");
+        breakers.admit("fugle", "quote");
+
+        assertThrows(BusinessException.class, () -> breakers.admit("fugle", "quote"));
+    }
+
+    @Test
+    void resultsFromBeforeTransition_shouldBeIgnored() throws InterruptedException {
+        VendorCircuitBreakers.Admission inFlight = breakers.admit("fugle", "quote");
+        open();
+        Thread.sleep(150);
+        VendorCircuitBreakers.Admission probe = breakers.admit("fugle", "quote");
+
+        // open 前送出的慢請求逾時，不應讓 half-open 重新 open
+        inFlight.complete(null, 5_000L);
+        assertEquals(VendorCircuitBreaker.State.HALF_OPEN, state());
+        probe.complete(200, 10L);
+        assertEquals(VendorCircuitBreaker.State.HALF_OPEN, state());
+    }
+
+    @Test
+    void hedgeDelayMs_shouldUsePercentileOfRecentSuccessLatencies() {
+        properties.getHedge().setEnabled(true);
+        properties.getHedge().setMinSamples(20);
+        properties.getHedge().setMinDelayMs(50);
+
+        for (int i = 1; i <= 19; i++) {
+            call(200, i * 10L);
+        }
+        assertEquals(-1L, breakers.hedgeDelayMs("fugle", "quote"));
+
+        for (int i = 20; i <= 100; i++) {
+            call(200, i * 10L);
+        }
+        call(503, 99_000L);
+        assertEquals(950L, breakers.hedgeDelayMs("fugle", "quote"));
+        assertEquals(-1L, breakers.hedgeDelayMs("alpaca", "quote"));
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            call(null);
+        }
+        assertEquals(VendorCircuitBreaker.State.OPEN, state());
+    }
+
+    private VendorCircuitBreaker.State state() {
+        return breakers.state("fugle", "quote");
+    }
+
+    private void call(Integer status) {
+        call(status, 10L);
+    }
+
+    private void call(Integer status, long latencyMs) {
+        breakers.admit("fugle", "quote").complete(status, latencyMs);
+    }
+}
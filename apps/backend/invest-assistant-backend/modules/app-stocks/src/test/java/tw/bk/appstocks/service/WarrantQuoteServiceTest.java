@@ -0,0 +1,172 @@
+package tw.bk.appstocks.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tw.bk.appcommon.exception.BusinessException;
+import tw.bk.appstocks.adapter.TpexWarrantMarketClient;
+import tw.bk.appstocks.adapter.TpexWarrantMarketClient.TpexWarrantQuote;
+import tw.bk.appstocks.config.StockMarketProperties;
+import tw.bk.appstocks.model.Candle;
+import tw.bk.appstocks.model.Quote;
+
+@ExtendWith(MockitoExtension.class)
+class WarrantQuoteServiceTest {
+    private static final Instant NOW = Instant.parse("2026-03-02T02:00:00Z");
+    private static final String DAILY_KEY = "warrant:daily:2026-03-02";
+
+    @Mock
+    private TpexWarrantMarketClient marketClient;
+
+    @Mock
+    private StockCacheService cacheService;
+
+    @Mock
+    private StockMetricsRecorder metricsRecorder;
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(NOW);
+    private WarrantQuoteService service;
+
+    @BeforeEach
+    void setUp() {
+        StockMarketProperties properties = new StockMarketProperties();
+        properties.getCache().setQuoteTtl(300_000);
+        properties.getCache().setCandlesTtl(3_600_000);
+        MarketCalendar marketCalendar = new MarketCalendar(properties, now::get);
+        marketCalendar.initSessions();
+        service = new WarrantQuoteService(
+                marketClient,
+                cacheService,
+                properties,
+                marketCalendar,
+                new CandleAggregator(),
+                metricsRecorder,
+                now::get);
+    }
+
+    @Test
+    void getQuote_shouldIndexDailyDownloadOnceAndReuseItForLookups() {
+        when(cacheService.getListWithTtl(DAILY_KEY, TpexWarrantQuote.class)).thenReturn(Optional.empty());
+        when(marketClient.fetchDailyQuotes()).thenReturn(dailyQuotes(3_000));
+
+        Quote first = service.getQuote("700001");
+        Quote second = service.getQuote(" 702999 ");
+
+        assertEquals("700001", first.getTicker());
+        assertEquals(new BigDecimal("1.01"), first.getPrice());
+        assertEquals(new BigDecimal("0.10"), first.getChange());
+        assertEquals("702999", second.getTicker());
+        verify(marketClient, times(1)).fetchDailyQuotes();
+        verify(cacheService, times(1)).getListWithTtl(DAILY_KEY, TpexWarrantQuote.class);
+        verify(cacheService).setList(eq(DAILY_KEY), eq(dailyQuotes(3_000)), anyLong());
+        verify(metricsRecorder).recordWarrantIndex(eq("daily"), eq(3_000),
+                eq(3_000 * WarrantQuoteIndex.ESTIMATED_QUOTE_BYTES + 3_000 * WarrantQuoteIndex.ESTIMATED_CODE_BYTES));
+        verify(metricsRecorder, times(2)).recordWarrantIndexLookup(eq("daily"), anyLong(), eq(true));
+    }
+
+    @Test
+    void getQuote_shouldRebuildIndexFromRedisAfterExpiry() {
+        when(cacheService.getListWithTtl(DAILY_KEY, TpexWarrantQuote.class))
+                .thenReturn(cached(dailyQuotes(2)))
+                .thenReturn(cached(List.of(quote("700001", LocalDate.of(2026, 2, 27), "2.00", "0.50"))));
+
+        assertEquals(new BigDecimal("1.01"), service.getQuote("700001").getPrice());
+        now.set(NOW.plusSeconds(299));
+        assertEquals(new BigDecimal("1.01"), service.getQuote("700001").getPrice());
+        now.set(NOW.plusSeconds(301));
+        assertEquals(new BigDecimal("2.00"), service.getQuote("700001").getPrice());
+
+        verify(cacheService, times(2)).getListWithTtl(DAILY_KEY, TpexWarrantQuote.class);
+        verify(metricsRecorder, times(2)).recordWarrantIndex(eq("daily"), anyInt(), anyLong());
+    }
+
+    @Test
+    void getQuote_shouldRecordMissAndThrowNotFound() {
+        when(cacheService.getListWithTtl(DAILY_KEY, TpexWarrantQuote.class)).thenReturn(cached(dailyQuotes(2)));
+
+        assertThrows(BusinessException.class, () -> service.getQuote("799999"));
+        verify(metricsRecorder).recordWarrantIndexLookup(eq("daily"), anyLong(), eq(false));
+    }
+
+    @Test
+    void getCandles_shouldReadMonthlyHistoryForOneCodeInDateOrder() {
+        String monthlyKey = "warrant:monthly:" + YearMonth.now(ZoneId.of("Asia/Taipei"));
+        List<TpexWarrantQuote> monthly = new ArrayList<>();
+        monthly.add(quote("700001", LocalDate.of(2026, 2, 1), "1.20", null));
+        monthly.add(quote("700002", LocalDate.of(2026, 1, 1), "3.00", null));
+        monthly.add(quote("700001", LocalDate.of(2025, 12, 1), "1.00", null));
+        monthly.add(quote("700001", LocalDate.of(2026, 1, 1), "1.10", null));
+        when(cacheService.getListWithTtl(monthlyKey, TpexWarrantQuote.class)).thenReturn(cached(monthly));
+
+        List<Candle> candles = service.getCandles("700001", "1mo", LocalDate.of(2026, 1, 1), null);
+
+        assertEquals(2, candles.size());
+        assertEquals(new BigDecimal("1.10"), candles.get(0).getClose());
+        assertEquals(new BigDecimal("1.20"), candles.get(1).getClose());
+    }
+
+    @Test
+    void getCandles_shouldExpireMonthlyIndexWithRemainingRedisTtl() {
+        String monthlyKey = "warrant:monthly:" + YearMonth.now(ZoneId.of("Asia/Taipei"));
+        // candlesTtl 為 1 小時，但 Redis 的副本只剩 60 秒
+        when(cacheService.getListWithTtl(monthlyKey, TpexWarrantQuote.class))
+                .thenReturn(Optional.of(new StockCacheService.Expiring<>(
+                        List.of(quote("700001", LocalDate.of(2026, 1, 1), "1.10", null)), 60_000L)))
+                .thenReturn(cached(List.of(quote("700001", LocalDate.of(2026, 1, 1), "1.30", null))));
+
+        assertEquals(new BigDecimal("1.10"), service.getCandles("700001", "1mo", null, null).get(0).getClose());
+        now.set(NOW.plusSeconds(59));
+        assertEquals(new BigDecimal("1.10"), service.getCandles("700001", "1mo", null, null).get(0).getClose());
+        now.set(NOW.plusSeconds(61));
+        assertEquals(new BigDecimal("1.30"), service.getCandles("700001", "1mo", null, null).get(0).getClose());
+
+        verify(cacheService, times(2)).getListWithTtl(monthlyKey, TpexWarrantQuote.class);
+    }
+
+    private static <T> Optional<StockCacheService.Expiring<List<T>>> cached(List<T> value) {
+        return Optional.of(new StockCacheService.Expiring<>(value, Long.MAX_VALUE));
+    }
+
+    private static List<TpexWarrantQuote> dailyQuotes(int count) {
+        List<TpexWarrantQuote> quotes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String code = String.valueOf(700_000 + i);
+            quotes.add(quote(code, LocalDate.of(2026, 2, 27),
+                    BigDecimal.valueOf(100 + i, 2).toPlainString(), "0.10"));
+        }
+        return quotes;
+    }
+
+    private static TpexWarrantQuote quote(String code, LocalDate date, String close, String change) {
+        BigDecimal price = new BigDecimal(close);
+        return new TpexWarrantQuote(
+                code,
+                date,
+                price,
+                price,
+                price,
+                price,
+                change == null ? null : new BigDecimal(change),
+                1_000L);
+    }
+}
@@ -42,5 +42,6 @@ export const ErrorCode = {
   OCR_PARSE_FAILED: "OCR_PARSE_FAILED",
   RATE_LIMITED: "RATE_LIMITED",
   INTERNAL_ERROR: "INTERNAL_ERROR",
+  SERVICE_UNAVAILABLE: "SERVICE_UNAVAILABLE",
 } as const;
 